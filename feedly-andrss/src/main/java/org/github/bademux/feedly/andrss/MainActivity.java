@@ -81,6 +81,30 @@ public class MainActivity extends Activity
     commitFragment();
   }
 
+  @Override
+  protected void onPause() {
+    if (mFeedlyUtil != null) {
+      try {
+        mFeedlyUtil.flush();
+      } catch (IOException e) {
+        Log.e(TAG, "Can't store credential", e);
+      }
+    }
+    super.onPause();
+  }
+
+  @Override
+  protected void onDestroy() {
+    if (mFeedlyUtil != null) {
+      try {
+        mFeedlyUtil.close();
+      } catch (IOException e) {
+        Log.e(TAG, "Can't store credential", e);
+      }
+    }
+    super.onDestroy();
+  }
+
   private void initNavigationDrawer() {
     mTitle = getTitle();
 
@@ -31,11 +31,11 @@ import android.util.Log;
 
 import org.github.bademux.feedly.andrss.R;
 import org.github.bademux.feedly.api.model.EntriesResponse;
-import org.github.bademux.feedly.api.model.Entry;
 import org.github.bademux.feedly.api.model.Feed;
 import org.github.bademux.feedly.api.model.Stream;
 import org.github.bademux.feedly.api.model.Subscription;
 import org.github.bademux.feedly.api.service.Feedly;
+import org.github.bademux.feedly.api.service.Pages;
 import org.github.bademux.feedly.api.service.ServiceManager;
 import org.github.bademux.feedly.api.service.Utils;
 import org.github.bademux.feedly.api.util.FeedlyUtil;
@@ -45,8 +45,6 @@ import org.github.bademux.feedly.provider.FeedlyCacheProvider;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Collection;
 import java.util.List;
 
 import static android.app.DownloadManager.Request;
@@ -74,6 +72,16 @@ public class FeedlyCacheService extends IntentService {
     super.onCreate();
   }
 
+  @Override
+  public void onDestroy() {
+    try {
+      mFeedlyUtil.close();
+    } catch (IOException e) {
+      Log.e(TAG, "Can't store credential", e);
+    }
+    super.onDestroy();
+  }
+
   @Override
   protected void onHandleIntent(final Intent intent) {
     Log.i(TAG, "onStartCommand " + intent.getAction());
@@ -82,6 +90,11 @@ public class FeedlyCacheService extends IntentService {
     } catch (Exception e) {
       Log.e(TAG, "error while pooling", e);
     }
+    try {
+      mFeedlyUtil.flush();
+    } catch (IOException e) {
+      Log.e(TAG, "Can't store credential", e);
+    }
   }
 
   private void handleIntent(final Intent intent, final ContentResolver contentResolver)
@@ -136,26 +149,17 @@ public class FeedlyCacheService extends IntentService {
     }
     cursor.close();
 
-    processEntries(contentResolver, execute(request));
-  }
-
-  private Collection<Entry> execute(final Feedly.Streams.Contents request) {
-    final Collection<Entry> entriesCache = new ArrayList<Entry>();
-    do {
-
-      try {
-        EntriesResponse result = request.execute();
-        request.setContinuation(result.getContinuation());
-        List<Entry> entries = result.items();
-        if (entries != null && !entries.isEmpty()) {
-          entriesCache.addAll(entries);
-        }
-      } catch (IOException e) {
-        Log.e(TAG, "unknown action", e);
-        request.setContinuation(null);
+    //next page is fetched while the current one is stored
+    Pages<EntriesResponse>.PageIterator pages = request.pages().iterator();
+    try {
+      while (pages.hasNext()) {
+        processEntries(contentResolver, pages.next().items());
       }
-    } while (!isNullOrEmpty(request.getContinuation()));
-    return entriesCache;
+    } catch (Pages.FetchException e) {
+      Log.e(TAG, "can't fetch entries", e.getCause());
+    } finally {
+      pages.close();
+    }
   }
 
   /**
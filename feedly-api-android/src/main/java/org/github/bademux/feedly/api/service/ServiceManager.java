@@ -28,6 +28,11 @@ import android.content.Intent;
 import android.net.ConnectivityManager;
 import android.util.Log;
 
+import org.github.bademux.feedly.api.util.store.BinaryCodec;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.io.Serializable;
 
 /**
@@ -178,6 +183,29 @@ public abstract class ServiceManager {
 
     static final long serialVersionUID = 44212L;
 
+    /** Binary form of the status, stored by {@link Utils#store(Context, Status)}. */
+    static final BinaryCodec<Status> CODEC = new BinaryCodec<Status>(Status.class, 2, 1) {
+      @Override
+      protected void write(Status value, DataOutput out) throws IOException {
+        out.writeInt(value.interval);
+        out.writeBoolean(value.isStorageOk);
+        out.writeBoolean(value.isNetworkAvailable);
+        out.writeBoolean(value.isBatteryOk);
+        out.writeBoolean(value.isPowerConnected);
+      }
+
+      @Override
+      protected Status read(DataInput in, int version) throws IOException {
+        Status status = new Status();
+        status.interval = in.readInt();
+        status.isStorageOk = in.readBoolean();
+        status.isNetworkAvailable = in.readBoolean();
+        status.isBatteryOk = in.readBoolean();
+        status.isPowerConnected = in.readBoolean();
+        return status;
+      }
+    };
+
     public final static int DEFAULT_INTERVAL = 30;
   }
 }
\ No newline at end of file
@@ -29,13 +29,13 @@ import android.os.BatteryManager;
 import android.os.Environment;
 import android.util.Log;
 
+import org.github.bademux.feedly.api.util.store.BinaryCodec;
+
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.ObjectInput;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.URL;
@@ -45,10 +45,10 @@ import static org.github.bademux.feedly.api.service.ServiceManager.Status;
 public final class Utils {
 
   public static void store(final Context context, Status status) {
-    ObjectOutputStream out = null;
+    OutputStream out = null;
     try {
-      out = new ObjectOutputStream(context.openFileOutput(STATUS_TMP, Context.MODE_PRIVATE));
-      out.writeObject(status);
+      out = context.openFileOutput(STATUS_TMP, Context.MODE_PRIVATE);
+      out.write(Status.CODEC.encode(status));
     } catch (IOException e) {
       Log.e(ServiceManager.TAG, "can't write status file", e);
     } finally {
@@ -63,24 +63,19 @@ public final class Utils {
   }
 
   public static Status load(final Context context) {
-    ObjectInput in = null;
     try {
-      in = new ObjectInputStream(context.openFileInput(STATUS_TMP));
-      return (Status) in.readObject();
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      IOUtils.copy(context.openFileInput(STATUS_TMP), bytes);
+      byte[] status = bytes.toByteArray();
+      if (BinaryCodec.isEncoded(status)) {
+        return Status.CODEC.decode(status);
+      }
+      //written by the previous version with Java serialization
+      return (Status) IOUtils.deserialize(status);
     } catch (FileNotFoundException e) {
       //ignore and creare new one
     } catch (IOException e) {
       Log.e(ServiceManager.TAG, "can't read status file", e);
-    } catch (ClassNotFoundException e) {
-      Log.e(ServiceManager.TAG, "", e);
-    } finally {
-      if (in != null) {
-        try {
-          in.close();
-        } catch (IOException e) {
-          Log.e(ServiceManager.TAG, "", e);
-        }
-      }
     }
 
     return null;
@@ -38,22 +38,26 @@ import org.github.bademux.feedly.api.dev.service.DevFeedly;
 import org.github.bademux.feedly.api.oauth2.FeedlyAuthorizationCodeFlow;
 import org.github.bademux.feedly.api.oauth2.FeedlyCredential;
 import org.github.bademux.feedly.api.oauth2.FeedlyOAuthConstants;
+import org.github.bademux.feedly.api.oauth2.FeedlyStoredCredential;
 import org.github.bademux.feedly.api.oauth2.FeedlyTokenResponse;
 import org.github.bademux.feedly.api.service.Feedly;
 import org.github.bademux.feedly.api.util.store.AndroidDataStoreFactory;
+import org.github.bademux.feedly.api.util.store.WriteBehindDataStore;
 
+import java.io.Closeable;
 import java.io.IOException;
 
 import static org.github.bademux.feedly.api.oauth2.FeedlyOAuthConstants.REDIRECT_URI_LOCAL;
 
-public final class FeedlyUtil {
+public final class FeedlyUtil implements Closeable {
 
   public FeedlyUtil(Context context, String clientId, String clientSecrets)
       throws IOException {
-    dataStoreFactory = new AndroidDataStoreFactory(context);
+    credentialDataStore = getCredentialDataStore(context);
+    dataStoreFactory = credentialDataStore.getDataStoreFactory();
     flow = new DevFeedlyAuthorizationCodeFlow.Builder(HTTP_TRANSPORT, JSON_FACTORY,
                                                       clientId, clientSecrets)
-        .setDataStoreFactory(dataStoreFactory).build();
+        .setFeedlyCredentialDataStore(credentialDataStore).build();
 
     credential = flow.loadCredential(USER_ID);
   }
@@ -100,6 +104,7 @@ public final class FeedlyUtil {
     } catch (Throwable e) {
       ret = false;
     }
+    flow.releaseCredential(USER_ID);
     try {
       flow.getFeedlyCredentialDataStore().clear();
     } catch (Throwable e) {
@@ -108,6 +113,35 @@ public final class FeedlyUtil {
     return ret;
   }
 
+  /** Writes pending credential changes, ie. when the app goes to background. */
+  public void flush() throws IOException {
+    credentialDataStore.flush();
+  }
+
+  /**
+   * Writes pending credential changes, call when the instance is no longer used. The credential
+   * store is shared by the process and stays open.
+   */
+  @Override
+  public void close() throws IOException {
+    flush();
+  }
+
+  /**
+   * Returns the credential store of the process. All instances share it, so credentials are
+   * written in the order they were changed and a stale one can't overwrite a newer one.
+   */
+  private static synchronized WriteBehindDataStore<FeedlyStoredCredential> getCredentialDataStore(
+      Context context) throws IOException {
+    if (sharedCredentialDataStore == null) {
+      //SharedPreferences.commit() blocks, write credentials in background
+      sharedCredentialDataStore = new WriteBehindDataStore<FeedlyStoredCredential>(
+          FeedlyStoredCredential.getDefaultDataStore(
+              new AndroidDataStoreFactory(context.getApplicationContext())));
+    }
+    return sharedCredentialDataStore;
+  }
+
   public boolean isAuthenticated() {
     return credential != null
            && credential.getAccessToken() != null && credential.getRefreshToken() != null;
@@ -145,6 +179,10 @@ public final class FeedlyUtil {
    */
   public final DataStoreFactory dataStoreFactory;
 
+  private final WriteBehindDataStore<FeedlyStoredCredential> credentialDataStore;
+
+  private static WriteBehindDataStore<FeedlyStoredCredential> sharedCredentialDataStore;
+
   /** Global instance of the HTTP transport. */
   protected static final HttpTransport HTTP_TRANSPORT = AndroidHttp.newCompatibleTransport();
 
@@ -33,7 +33,7 @@ import android.net.Uri;
 import org.github.bademux.feedly.api.model.Category;
 import org.github.bademux.feedly.api.model.Entry;
 import org.github.bademux.feedly.api.model.Feed;
-import org.github.bademux.feedly.api.model.IdGenericJson;
+import org.github.bademux.feedly.api.model.StreamId;
 import org.github.bademux.feedly.api.model.Subscription;
 import org.github.bademux.feedly.api.model.Tag;
 import org.github.bademux.feedly.api.service.Utils;
@@ -287,7 +287,8 @@ public final class FeedlyDbUtils {
       }
 
       Entry.Origin stream = entry.getOrigin();
-      Feed feed = new Subscription(IdGenericJson.parse(stream.getStreamId()), stream.getTitle());
+      Feed feed = new Subscription(StreamId.of(stream.getStreamId()).getName(),
+                                   stream.getTitle());
 
       feeds.add(convert(feed));
 
@@ -21,7 +21,6 @@
 
 package org.github.bademux.feedly.api.util.store;
 
-import com.google.api.client.util.IOUtils;
 import com.google.api.client.util.Lists;
 import com.google.api.client.util.Preconditions;
 import com.google.api.client.util.store.AbstractDataStore;
@@ -44,6 +43,10 @@ import java.util.concurrent.locks.ReentrantLock;
 
 import static android.content.Context.MODE_PRIVATE;
 
+/**
+ * Data store factory that keeps each data store in {@link SharedPreferences}, values are stored
+ * with {@link ValueCodecs} and Base64.
+ */
 public class AndroidDataStoreFactory extends AbstractDataStoreFactory {
 
   @Override
@@ -75,7 +78,8 @@ public class AndroidDataStoreFactory extends AbstractDataStoreFactory {
       try {
         List<V> result = Lists.newArrayList();
         for (Object serialized : preferences.getAll().values()) {
-          result.add(IOUtils.<V>deserialize(((String) serialized).getBytes("UTF8")));
+          result.add(ValueCodecs.<V>deserialize(Base64.decode((String) serialized,
+                                                               Base64.DEFAULT)));
         }
         return Collections.unmodifiableList(result);
       } finally {
@@ -94,7 +98,7 @@ public class AndroidDataStoreFactory extends AbstractDataStoreFactory {
         if (serialized == null) {
           return null;
         }
-        return IOUtils.deserialize(Base64.decode(serialized, Base64.DEFAULT));
+        return ValueCodecs.deserialize(Base64.decode(serialized, Base64.DEFAULT));
       } finally {
         lock.unlock();
       }
@@ -106,7 +110,7 @@ public class AndroidDataStoreFactory extends AbstractDataStoreFactory {
       Preconditions.checkNotNull(value);
       lock.lock();
       try {
-        String serialized = Base64.encodeToString(IOUtils.serialize(value), Base64.DEFAULT);
+        String serialized = Base64.encodeToString(ValueCodecs.serialize(value), Base64.DEFAULT);
         preferences.edit().putString(key, serialized).commit();
       } finally {
         lock.unlock();
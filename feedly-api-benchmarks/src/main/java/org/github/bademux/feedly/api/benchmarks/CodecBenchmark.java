@@ -0,0 +1,90 @@
+/*
+ * Copyright 2014 Bademus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *    Contributors:
+ *                 Bademus
+ */
+
+
+package org.github.bademux.feedly.api.benchmarks;
+
+import com.google.api.client.util.Base64;
+import com.google.api.client.util.IOUtils;
+
+import org.github.bademux.feedly.api.oauth2.FeedlyStoredCredential;
+import org.github.bademux.feedly.api.util.store.ValueCodecs;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stored credential in the form kept by {@code AndroidDataStore}: Java serialization vs {@link
+ * ValueCodecs}, both Base64 encoded.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CodecBenchmark {
+
+  private final FeedlyStoredCredential credential = new FeedlyStoredCredential(
+      new FeedlyStoredCredential.Snapshot(
+          "AQAAF4iTvPam_M4_dWheV-5NjPTnsSlJjRVnO2RdC7x3j0n1FnZu0hEtOmEvYQJhkvDuU1xcbHNMdZMn2c"
+          + "i4XM4WGRxVUR-aHjVr0Pb2ivhwbLPwT_rX3Ts8kp4ST0V-kTEydiMELRANaT8oNcOyMGO1iFi9_Ra7M3",
+          "AQAAZdtR3JxRUB4xd7kNhuF6o3VOsSPJT6fXg-Ku5Gh3aD0K4hI2y3_fy1PC-1Fqv8",
+          1400000000000L, Fixtures.USER_ID, "standard"));
+
+  private String javaSerialized;
+
+  private String binary;
+
+  @Setup
+  public void setUp() throws IOException {
+    javaSerialized = javaSerialize();
+    binary = binarySerialize();
+  }
+
+  @Benchmark
+  public String javaSerialize() throws IOException {
+    return Base64.encodeBase64String(IOUtils.serialize(credential));
+  }
+
+  @Benchmark
+  public FeedlyStoredCredential javaDeserialize() throws IOException {
+    return IOUtils.deserialize(Base64.decodeBase64(javaSerialized));
+  }
+
+  @Benchmark
+  public String binarySerialize() throws IOException {
+    return Base64.encodeBase64String(ValueCodecs.serialize(credential));
+  }
+
+  @Benchmark
+  public FeedlyStoredCredential binaryDeserialize() throws IOException {
+    return ValueCodecs.deserialize(Base64.decodeBase64(binary));
+  }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2014 Bademus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *    Contributors:
+ *                 Bademus
+ */
+
+package org.github.bademux.feedly.api.benchmarks;
+
+import com.google.api.client.http.LowLevelHttpRequest;
+import com.google.api.client.http.LowLevelHttpResponse;
+import com.google.api.client.json.gson.GsonFactory;
+import com.google.api.client.testing.http.MockHttpTransport;
+import com.google.api.client.testing.http.MockLowLevelHttpRequest;
+import com.google.api.client.testing.http.MockLowLevelHttpResponse;
+import com.google.api.client.util.IOUtils;
+
+import org.github.bademux.feedly.api.oauth2.FeedlyCredential;
+import org.github.bademux.feedly.api.service.Feedly;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/** Recorded responses and a client that answers every request with a recorded response. */
+final class Fixtures {
+
+  static final String USER_ID = "c805fcbf-3acf-4302-a97e-d82f9d7c897f";
+
+  /** Returns content of the fixture from {@code /fixtures}. */
+  static byte[] load(String name) throws IOException {
+    InputStream in = Fixtures.class.getResourceAsStream("/fixtures/" + name);
+    if (in == null) {
+      throw new IOException("Fixture not found: " + name);
+    }
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    IOUtils.copy(in, out);
+    return out.toByteArray();
+  }
+
+  /** Returns client that answers every request with the given content, no network involved. */
+  static Feedly newFeedly(final byte[] content) {
+    MockHttpTransport transport = new MockHttpTransport() {
+      @Override
+      public LowLevelHttpRequest buildRequest(String method, String url) {
+        return new MockLowLevelHttpRequest(url) {
+          @Override
+          public LowLevelHttpResponse execute() {
+            return new MockLowLevelHttpResponse().setContent(new ByteArrayInputStream(content))
+                .setContentType("application/json; charset=UTF-8");
+          }
+        };
+      }
+    };
+    return new Feedly.Builder(transport, GsonFactory.getDefaultInstance(),
+                              new FeedlyCredential().setUserId(USER_ID)).build();
+  }
+
+  private Fixtures() {}
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2014 Bademus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *    Contributors:
+ *                 Bademus
+ */
+
+package org.github.bademux.feedly.api.benchmarks;
+
+import org.github.bademux.feedly.api.model.Category;
+import org.github.bademux.feedly.api.model.IdGenericJson;
+import org.github.bademux.feedly.api.model.StreamId;
+import org.github.bademux.feedly.api.model.Tag;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/** Id construction and parsing of {@link IdGenericJson} and {@link StreamId}. */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class IdBenchmark {
+
+  private final Category category = new Category("tech", Fixtures.USER_ID);
+
+  private final String tagId = "user/" + Fixtures.USER_ID + "/tag/global.saved";
+
+  @Benchmark
+  public Category newCategory() { return new Category("tech", Fixtures.USER_ID); }
+
+  @Benchmark
+  public Tag newGlobalTag() { return new Tag("global.saved", null); }
+
+  @Benchmark
+  public String getName() { return category.getName(); }
+
+  @SuppressWarnings("deprecation")
+  @Benchmark
+  public String parse() { return IdGenericJson.parse(tagId); }
+
+  @Benchmark
+  public String streamIdName() { return StreamId.of(tagId).getName(); }
+
+  @Benchmark
+  public String encode() { return StreamId.encode(tagId); }
+}
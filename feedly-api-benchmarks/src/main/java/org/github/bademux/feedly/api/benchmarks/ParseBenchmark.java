@@ -0,0 +1,105 @@
+/*
+ * Copyright 2014 Bademus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *    Contributors:
+ *                 Bademus
+ */
+
+package org.github.bademux.feedly.api.benchmarks;
+
+import com.google.api.client.json.JsonObjectParser;
+import com.google.api.client.json.gson.GsonFactory;
+
+import org.github.bademux.feedly.api.json.CodecObjectParser;
+import org.github.bademux.feedly.api.model.EntriesResponse;
+import org.github.bademux.feedly.api.model.Entry;
+import org.github.bademux.feedly.api.model.Tag;
+import org.github.bademux.feedly.api.model.UnreadResponse;
+import org.github.bademux.feedly.api.service.EntryHandler;
+import org.github.bademux.feedly.api.service.Feedly;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+
+/** Parsing of recorded responses the way {@code Request.execute()} does it. */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParseBenchmark {
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  /** Whether generated codecs are used or the reflective parser of the JSON library. */
+  @Param({"true", "false"})
+  private boolean codecs;
+
+  private JsonObjectParser parser;
+
+  private byte[] entries;
+
+  private byte[] unread;
+
+  private Feedly.Streams.Contents contents;
+
+  @Setup
+  public void setUp() throws IOException {
+    parser = codecs ? new CodecObjectParser(GsonFactory.getDefaultInstance())
+                    : new JsonObjectParser(GsonFactory.getDefaultInstance());
+    entries = Fixtures.load("entries.json");
+    unread = Fixtures.load("unread.json");
+    contents = Fixtures.newFeedly(entries).streams().contents(new Tag("global.saved", null));
+  }
+
+  @Benchmark
+  public EntriesResponse entriesResponse() throws IOException {
+    return parser.parseAndClose(new ByteArrayInputStream(entries), UTF_8, EntriesResponse.class);
+  }
+
+  @Benchmark
+  public UnreadResponse unreadResponse() throws IOException {
+    return parser.parseAndClose(new ByteArrayInputStream(unread), UTF_8, UnreadResponse.class);
+  }
+
+  /** Full request over an in-memory transport, entries are streamed instead of collected. */
+  @Benchmark
+  public EntriesResponse entriesStreamed(final Blackhole blackhole) throws IOException {
+    return contents.forEachEntry(new EntryHandler() {
+      public void handle(Entry entry) { blackhole.consume(entry); }
+    });
+  }
+
+  /** Full request over an in-memory transport, for comparison with {@link #entriesStreamed}. */
+  @Benchmark
+  public EntriesResponse entriesExecuted() throws IOException {
+    return contents.execute();
+  }
+}
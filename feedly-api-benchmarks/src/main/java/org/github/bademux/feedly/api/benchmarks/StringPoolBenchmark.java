@@ -0,0 +1,83 @@
+/*
+ * Copyright 2014 Bademus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *    Contributors:
+ *                 Bademus
+ */
+
+package org.github.bademux.feedly.api.benchmarks;
+
+import com.google.api.client.json.gson.GsonFactory;
+
+import org.github.bademux.feedly.api.json.CodecObjectParser;
+import org.github.bademux.feedly.api.json.ParseContext;
+import org.github.bademux.feedly.api.json.StringPool;
+import org.github.bademux.feedly.api.model.EntriesResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of deduplicating repeated strings of entries while parsing, the saving is the retained
+ * heap of parsed pages, see {@link StringPool}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StringPoolBenchmark {
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  /** Pool scope: none, a pool per parsed page or a pool shared by all pages. */
+  @Param({"none", "page", "client"})
+  private String scope;
+
+  private CodecObjectParser parser;
+
+  private byte[] entries;
+
+  @Setup
+  public void setUp() throws IOException {
+    ParseContext context = ParseContext.DEFAULT;
+    if (scope.equals("page")) {
+      context = context.withPageStringPool(StringPool.DEFAULT_CAPACITY);
+    } else if (scope.equals("client")) {
+      context = context.withStringPool(new StringPool());
+    }
+    parser = new CodecObjectParser(GsonFactory.getDefaultInstance(), context);
+    entries = Fixtures.load("entries.json");
+  }
+
+  @Benchmark
+  public EntriesResponse entriesResponse() throws IOException {
+    return parser.parseAndClose(new ByteArrayInputStream(entries), UTF_8, EntriesResponse.class);
+  }
+}
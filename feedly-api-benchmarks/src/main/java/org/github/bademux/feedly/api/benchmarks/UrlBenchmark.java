@@ -0,0 +1,79 @@
+/*
+ * Copyright 2014 Bademus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *    Contributors:
+ *                 Bademus
+ */
+
+package org.github.bademux.feedly.api.benchmarks;
+
+import com.google.api.client.http.GenericUrl;
+
+import org.github.bademux.feedly.api.model.Category;
+import org.github.bademux.feedly.api.service.Feedly;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/** URI template expansion of {@code Request.buildHttpRequestUrl()}. */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UrlBenchmark {
+
+  private Feedly.Streams.Contents contents;
+
+  private Feedly.Tags.Untag untag;
+
+  @Setup
+  public void setUp() {
+    Feedly feedly = Fixtures.newFeedly(new byte[0]);
+    contents = feedly.streams().contents(new Category("tech", Fixtures.USER_ID))
+        .setCount(100).setUnreadOnly(true).setContinuation("1458a1a0027:201d58bd");
+    List<String> entryIds = new ArrayList<String>();
+    for (int i = 0; i < 20; i++) {
+      entryIds.add("babced20:1458a1a" + (1000 + i) + ":72e6cc3a");
+    }
+    untag = feedly.tags().untag(entryIds, Arrays.asList(
+        "user/" + Fixtures.USER_ID + "/tag/global.saved", "user/" + Fixtures.USER_ID + "/tag/a"));
+  }
+
+  /** Path variable and query parameters. */
+  @Benchmark
+  public GenericUrl streamContents() { return contents.buildHttpRequestUrl(); }
+
+  /** Two path variables expanded from id lists. */
+  @Benchmark
+  public GenericUrl untag() { return untag.buildHttpRequestUrl(); }
+
+  /** Expanded and encoded URL as it is sent. */
+  @Benchmark
+  public String streamContentsBuilt() { return contents.buildHttpRequestUrl().build(); }
+}
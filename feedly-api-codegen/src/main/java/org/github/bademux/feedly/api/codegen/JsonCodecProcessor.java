@@ -0,0 +1,642 @@
+/*
+ * Copyright 2014 Bademus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *    Contributors:
+ *                 Bademus
+ */
+
+package org.github.bademux.feedly.api.codegen;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+
+/**
+ * Generates a {@code JsonCodec} for every class annotated with {@code GenerateCodec}, and for
+ * enums used by their fields.
+ *
+ * <p> The codec reads and writes {@code @Key} fields without reflection: directly if the field is
+ * accessible to the codec, with its non-private {@code setName} and {@code getName}, {@code
+ * isName} or {@code name} methods otherwise. Fields are looked up by name in a hash map. </p>
+ *
+ * <p> Unknown fields of a {@code GenericData} subclass are kept in its unknown keys unless the
+ * {@code ParseContext} drops unknown fields, in which case they are skipped. Unknown fields of any
+ * other class are always skipped. See {@code org.github.bademux.feedly.api.json.GenerateCodec}
+ * for the supported types. </p>
+ */
+public class JsonCodecProcessor extends AbstractProcessor {
+
+  static final String GENERATE_CODEC = "org.github.bademux.feedly.api.json.GenerateCodec";
+
+  private static final String JSON = "org.github.bademux.feedly.api.json.";
+
+  private static final String POOLED = JSON + "Pooled";
+
+  private static final String KEY = "com.google.api.client.util.Key";
+
+  private static final String VALUE = "com.google.api.client.util.Value";
+
+  private static final String NULL_VALUE = "com.google.api.client.util.NullValue";
+
+  private static final String GENERIC_DATA = "com.google.api.client.util.GenericData";
+
+  private static final String GENERIC_JSON = "com.google.api.client.json.GenericJson";
+
+  private static final String DEFAULT_NAME = "##default";
+
+  private Elements elements;
+
+  private Types types;
+
+  private Filer filer;
+
+  private Messager messager;
+
+  /** Qualified names of generated codecs. */
+  private final Set<String> generated = new HashSet<String>();
+
+  @Override
+  public synchronized void init(ProcessingEnvironment processingEnv) {
+    super.init(processingEnv);
+    elements = processingEnv.getElementUtils();
+    types = processingEnv.getTypeUtils();
+    filer = processingEnv.getFiler();
+    messager = processingEnv.getMessager();
+  }
+
+  @Override
+  public Set<String> getSupportedAnnotationTypes() {
+    return Collections.singleton(GENERATE_CODEC);
+  }
+
+  @Override
+  public SourceVersion getSupportedSourceVersion() {
+    return SourceVersion.latestSupported();
+  }
+
+  @Override
+  public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+    TypeElement annotation = elements.getTypeElement(GENERATE_CODEC);
+    if (annotation == null) {
+      return false;
+    }
+    for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+      try {
+        codecOf((TypeElement) element);
+      } catch (CodegenException e) {
+        messager.printMessage(Diagnostic.Kind.ERROR, e.getMessage(), e.element);
+      } catch (IOException e) {
+        messager.printMessage(Diagnostic.Kind.ERROR, "can't write codec: " + e, element);
+      }
+    }
+    return true;
+  }
+
+  /** Generates the codec of the type unless done already, returns its qualified name. */
+  private String codecOf(TypeElement type) throws IOException {
+    String codec = codecName(type);
+    if (generated.add(codec)) {
+      if (type.getKind() == ElementKind.ENUM) {
+        writeEnumCodec(type, codec);
+      } else {
+        TypeMirror element = listElementOf(type);
+        if (element != null) {
+          writeListCodec(type, codec, element);
+        } else {
+          writeObjectCodec(type, codec);
+        }
+      }
+    }
+    return codec;
+  }
+
+  private void writeObjectCodec(TypeElement type, String codec) throws IOException {
+    if (type.getModifiers().contains(Modifier.ABSTRACT) || !hasNoArgConstructor(type)) {
+      throw new CodegenException("needs a non-private no-arg constructor", type);
+    }
+    List<VariableElement> fields = keyFields(type);
+    String typeName = type.getQualifiedName().toString();
+    StringBuilder src = header(type, codec, typeName);
+    src.append("  private static final java.util.Map<String, Integer> FIELDS =\n")
+        .append("      new java.util.HashMap<String, Integer>();\n\n");
+    for (int i = 0; i < fields.size(); i++) {
+      TypeMirror fieldType = boxed(fields.get(i).asType());
+      src.append("  private static final ").append(JSON).append("JsonCodec<")
+          .append(typeName(fieldType, fields.get(i))).append("> C").append(i).append(" =\n")
+          .append("      ").append(fieldCodecExpression(fieldType, fields.get(i))).append(";\n\n");
+    }
+    src.append("  static {\n");
+    for (int i = 0; i < fields.size(); i++) {
+      src.append("    FIELDS.put(").append(literal(keyName(fields.get(i)))).append(", ")
+          .append(i).append(");\n");
+    }
+    src.append("  }\n\n");
+    boolean genericData = isSubtype(type, GENERIC_DATA);
+
+    src.append("  public ").append(typeName).append(
+        " read(com.google.api.client.json.JsonParser parser,\n")
+        .append("      ").append(JSON)
+        .append("ParseContext context) throws java.io.IOException {\n")
+        .append("    if (parser.getCurrentToken() == com.google.api.client.json.JsonToken"
+                + ".VALUE_NULL) {\n")
+        .append("      return null;\n")
+        .append("    }\n")
+        .append("    ").append(JSON).append("JsonCodecs.checkStartObject(parser);\n")
+        .append("    ").append(typeName).append(" value = new ").append(typeName).append("();\n");
+    if (isSubtype(type, GENERIC_JSON)) {
+      src.append("    value.setFactory(parser.getFactory());\n");
+    }
+    src.append("    while (parser.nextToken() == com.google.api.client.json.JsonToken"
+               + ".FIELD_NAME) {\n")
+        .append("      String name = parser.getCurrentName();\n")
+        .append("      parser.nextToken();\n")
+        .append("      Integer field = FIELDS.get(name);\n")
+        .append("      if (field == null) {\n")
+        .append(genericData
+                ? "        " + JSON + "JsonCodecs.readUnknownKey(parser, context, name, value);\n"
+                : "        parser.skipChildren();\n")
+        .append("        continue;\n")
+        .append("      }\n")
+        .append("      switch (field) {\n");
+    for (int i = 0; i < fields.size(); i++) {
+      VariableElement field = fields.get(i);
+      src.append("        case ").append(i).append(":\n");
+      if (field.asType().getKind().isPrimitive()) {
+        src.append("          ").append(typeName(boxed(field.asType()), field))
+            .append(" v").append(i).append(" = C").append(i).append(".read(parser, context);\n")
+            .append("          if (v").append(i).append(" != null) {\n")
+            .append("            ").append(setStatement(type, field, "v" + i)).append("\n")
+            .append("          }\n");
+      } else {
+        src.append("          ")
+            .append(setStatement(type, field, "C" + i + ".read(parser, context)")).append("\n");
+      }
+      src.append("          break;\n");
+    }
+    src.append("      }\n")
+        .append("    }\n")
+        .append("    return value;\n")
+        .append("  }\n\n");
+
+    src.append("  public void write(com.google.api.client.json.JsonGenerator generator, ")
+        .append(typeName).append(" value)\n")
+        .append("      throws java.io.IOException {\n")
+        .append("    if (value == null) {\n")
+        .append("      generator.writeNull();\n")
+        .append("      return;\n")
+        .append("    }\n")
+        .append("    generator.writeStartObject();\n");
+    for (int i = 0; i < fields.size(); i++) {
+      VariableElement field = fields.get(i);
+      String indent = "    ";
+      String fieldValue = getExpression(type, field);
+      if (!field.asType().getKind().isPrimitive()) {
+        src.append("    ").append(typeName(field.asType(), field)).append(" f").append(i)
+            .append(" = ").append(fieldValue).append(";\n")
+            .append("    if (f").append(i).append(" != null) {\n");
+        fieldValue = "f" + i;
+        indent = "      ";
+      }
+      src.append(indent).append("generator.writeFieldName(").append(literal(keyName(field)))
+          .append(");\n")
+          .append(indent).append("C").append(i).append(".write(generator, ").append(fieldValue)
+          .append(");\n");
+      if (!field.asType().getKind().isPrimitive()) {
+        src.append("    }\n");
+      }
+    }
+    if (genericData) {
+      src.append("    ").append(JSON)
+          .append("JsonCodecs.writeUnknownKeys(generator, value.getUnknownKeys());\n");
+    }
+    src.append("    generator.writeEndObject();\n")
+        .append("  }\n")
+        .append("}\n");
+    write(type, codec, src);
+  }
+
+  private void writeListCodec(TypeElement type, String codec, TypeMirror element)
+      throws IOException {
+    if (type.getModifiers().contains(Modifier.ABSTRACT) || !hasNoArgConstructor(type)) {
+      throw new CodegenException("needs a non-private no-arg constructor", type);
+    }
+    String typeName = type.getQualifiedName().toString();
+    StringBuilder src = header(type, codec, typeName);
+    src.append("  private static final ").append(JSON).append("JsonCodec<")
+        .append(typeName(element, type)).append("> ELEMENT =\n")
+        .append("      ").append(codecExpression(element, type)).append(";\n\n")
+        .append("  public ").append(typeName).append(
+            " read(com.google.api.client.json.JsonParser parser,\n")
+        .append("      ").append(JSON)
+        .append("ParseContext context) throws java.io.IOException {\n")
+        .append("    return parser.getCurrentToken() == com.google.api.client.json.JsonToken"
+                + ".VALUE_NULL\n")
+        .append("           ? null : ").append(JSON)
+        .append("JsonCodecs.readElements(parser, context, new ")
+        .append(typeName).append("(), ELEMENT);\n")
+        .append("  }\n\n")
+        .append("  public void write(com.google.api.client.json.JsonGenerator generator, ")
+        .append(typeName).append(" value)\n")
+        .append("      throws java.io.IOException {\n")
+        .append("    ").append(JSON)
+        .append("JsonCodecs.writeElements(generator, value, ELEMENT);\n")
+        .append("  }\n")
+        .append("}\n");
+    write(type, codec, src);
+  }
+
+  private void writeEnumCodec(TypeElement type, String codec) throws IOException {
+    String typeName = type.getQualifiedName().toString();
+    String nullConstant = null;
+    List<String> constants = new ArrayList<String>();
+    List<String> values = new ArrayList<String>();
+    for (VariableElement constant : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+      if (constant.getKind() != ElementKind.ENUM_CONSTANT) {
+        continue;
+      }
+      String name = constant.getSimpleName().toString();
+      if (annotation(constant, NULL_VALUE) != null) {
+        nullConstant = name;
+      } else {
+        constants.add(name);
+        String value = annotationValue(annotation(constant, VALUE));
+        values.add(value == null ? name : value);
+      }
+    }
+    StringBuilder src = header(type, codec, typeName);
+    src.append("  public ").append(typeName).append(
+        " read(com.google.api.client.json.JsonParser parser,\n")
+        .append("      ").append(JSON)
+        .append("ParseContext context) throws java.io.IOException {\n")
+        .append("    if (parser.getCurrentToken() == com.google.api.client.json.JsonToken"
+                + ".VALUE_NULL) {\n")
+        .append("      return ")
+        .append(nullConstant == null ? "null" : typeName + '.' + nullConstant)
+        .append(";\n")
+        .append("    }\n")
+        .append("    String text = parser.getText();\n");
+    for (int i = 0; i < constants.size(); i++) {
+      src.append("    if (").append(literal(values.get(i))).append(".equals(text)) {\n")
+          .append("      return ").append(typeName).append('.').append(constants.get(i))
+          .append(";\n")
+          .append("    }\n");
+    }
+    src.append("    throw new IllegalArgumentException(\"unknown value \\\"\" + text + \"\\\" of ")
+        .append(type.getSimpleName()).append("\");\n")
+        .append("  }\n\n")
+        .append("  public void write(com.google.api.client.json.JsonGenerator generator, ")
+        .append(typeName).append(" value)\n")
+        .append("      throws java.io.IOException {\n")
+        .append("    if (value == null) {\n")
+        .append("      generator.writeNull();\n");
+    for (int i = 0; i < constants.size(); i++) {
+      src.append("    } else if (value == ").append(typeName).append('.').append(constants.get(i))
+          .append(") {\n")
+          .append("      generator.writeString(").append(literal(values.get(i))).append(");\n");
+    }
+    src.append("    } else {\n")
+        .append("      generator.writeNull();\n")
+        .append("    }\n")
+        .append("  }\n")
+        .append("}\n");
+    write(type, codec, src);
+  }
+
+  /** Starts the source of the codec class, up to the {@code INSTANCE} constant. */
+  private StringBuilder header(TypeElement type, String codec, String typeName) {
+    String simpleName = codec.substring(codec.lastIndexOf('.') + 1);
+    StringBuilder src = new StringBuilder();
+    String packageName = packageOf(type).getQualifiedName().toString();
+    src.append("// Generated by ").append(getClass().getSimpleName()).append(" from ")
+        .append(typeName).append(", do not edit.\n");
+    if (!packageName.isEmpty()) {
+      src.append("package ").append(packageName).append(";\n\n");
+    }
+    // model classes keep reading and writing their deprecated fields
+    return src.append("@SuppressWarnings(\"deprecation\")\n")
+        .append("public final class ").append(simpleName).append(" implements ")
+        .append(JSON).append("JsonCodec<").append(typeName).append("> {\n\n")
+        .append("  public static final ").append(simpleName).append(" INSTANCE = new ")
+        .append(simpleName).append("();\n\n");
+  }
+
+  private void write(TypeElement type, String codec, StringBuilder src) throws IOException {
+    String simpleName = codec.substring(codec.lastIndexOf('.') + 1);
+    int body = src.indexOf("\n\n", src.indexOf("INSTANCE"));
+    src.insert(body + 2, "  private " + simpleName + "() {}\n\n");
+    Writer writer = filer.createSourceFile(codec, type).openWriter();
+    try {
+      writer.write(src.toString());
+    } finally {
+      writer.close();
+    }
+  }
+
+  /** Returns the expression of the codec of the field, {@code Pooled} strings are pooled. */
+  private String fieldCodecExpression(TypeMirror type, VariableElement field) throws IOException {
+    if (annotation(field, POOLED) == null) {
+      return codecExpression(type, field);
+    }
+    if (!isString(type)) {
+      throw new CodegenException("@Pooled field must be a String", field);
+    }
+    return JSON + "JsonCodecs.POOLED_STRING";
+  }
+
+  /** Returns the expression of the codec of the given type. */
+  private String codecExpression(TypeMirror type, Element site) throws IOException {
+    if (type.getKind() != TypeKind.DECLARED) {
+      throw new CodegenException("unsupported type " + type, site);
+    }
+    TypeElement element = (TypeElement) ((DeclaredType) type).asElement();
+    String name = element.getQualifiedName().toString();
+    List<? extends TypeMirror> arguments = ((DeclaredType) type).getTypeArguments();
+    if (name.equals("java.lang.String")) {
+      return JSON + "JsonCodecs.STRING";
+    } else if (name.equals("java.lang.Long")) {
+      return JSON + "JsonCodecs.LONG";
+    } else if (name.equals("java.lang.Integer")) {
+      return JSON + "JsonCodecs.INTEGER";
+    } else if (name.equals("java.lang.Double")) {
+      return JSON + "JsonCodecs.DOUBLE";
+    } else if (name.equals("java.lang.Boolean")) {
+      return JSON + "JsonCodecs.BOOLEAN";
+    } else if (name.equals("java.lang.Object")) {
+      return JSON + "JsonCodecs.ANY";
+    } else if (name.equals("java.util.List") && arguments.size() == 1) {
+      return JSON + "JsonCodecs.listOf(" + codecExpression(arguments.get(0), site) + ")";
+    } else if (name.equals("java.util.Map") && arguments.size() == 2
+               && isString(arguments.get(0))) {
+      return JSON + "JsonCodecs.mapOf(" + codecExpression(arguments.get(1), site) + ")";
+    } else if (element.getKind() == ElementKind.ENUM
+               || annotation(element, GENERATE_CODEC) != null) {
+      return codecOf(element) + ".INSTANCE";
+    }
+    throw new CodegenException(
+        "unsupported type " + type + ", annotate it with @GenerateCodec", site);
+  }
+
+  /** Returns the source name of the type. */
+  private String typeName(TypeMirror type, Element site) {
+    if (type.getKind() != TypeKind.DECLARED) {
+      throw new CodegenException("unsupported type " + type, site);
+    }
+    DeclaredType declared = (DeclaredType) type;
+    StringBuilder name = new StringBuilder(
+        ((TypeElement) declared.asElement()).getQualifiedName().toString());
+    List<? extends TypeMirror> arguments = declared.getTypeArguments();
+    if (!arguments.isEmpty()) {
+      name.append('<');
+      for (int i = 0; i < arguments.size(); i++) {
+        name.append(i == 0 ? "" : ", ").append(typeName(arguments.get(i), site));
+      }
+      name.append('>');
+    }
+    return name.toString();
+  }
+
+  /** Returns {@code @Key} fields of the type and its superclasses, superclass fields first. */
+  private List<VariableElement> keyFields(TypeElement type) {
+    List<VariableElement> fields = new ArrayList<VariableElement>();
+    TypeElement current = type;
+    while (current != null && !isFramework(current)) {
+      List<VariableElement> declared = new ArrayList<VariableElement>();
+      for (VariableElement field : ElementFilter.fieldsIn(current.getEnclosedElements())) {
+        if (annotation(field, KEY) == null) {
+          continue;
+        }
+        Set<Modifier> modifiers = field.getModifiers();
+        if (modifiers.contains(Modifier.STATIC) || modifiers.contains(Modifier.FINAL)) {
+          throw new CodegenException("@Key field must not be static or final", field);
+        }
+        declared.add(field);
+      }
+      fields.addAll(0, declared);
+      TypeMirror superclass = current.getSuperclass();
+      current = superclass.getKind() == TypeKind.DECLARED
+                ? (TypeElement) ((DeclaredType) superclass).asElement() : null;
+    }
+    return fields;
+  }
+
+  /** Returns the statement setting the field of {@code value} to the expression. */
+  private String setStatement(TypeElement type, VariableElement field, String expression) {
+    if (isAccessible(type, field)) {
+      return "value." + field.getSimpleName() + " = " + expression + ";";
+    }
+    ExecutableElement setter = accessor(type, field, "set");
+    if (setter == null) {
+      throw new CodegenException("@Key field must be accessible to " + codecName(type)
+                                 + " or have a non-private setter", field);
+    }
+    return "value." + setter.getSimpleName() + "(" + expression + ");";
+  }
+
+  /** Returns the expression reading the field of {@code value}. */
+  private String getExpression(TypeElement type, VariableElement field) {
+    if (isAccessible(type, field)) {
+      return "value." + field.getSimpleName();
+    }
+    ExecutableElement getter = accessor(type, field, "get");
+    if (getter == null && field.asType().getKind() == TypeKind.BOOLEAN) {
+      getter = accessor(type, field, "is");
+    }
+    if (getter == null) {
+      getter = accessor(type, field, "");
+    }
+    if (getter == null) {
+      throw new CodegenException("@Key field must be accessible to " + codecName(type)
+                                 + " or have a non-private getter", field);
+    }
+    return "value." + getter.getSimpleName() + "()";
+  }
+
+  /**
+   * Returns the setter ({@code prefix} is {@code "set"}) or the getter of the field that is
+   * accessible to the codec of the type, {@code null} if there is none. Getter is named like the
+   * field if the prefix is empty.
+   */
+  private ExecutableElement accessor(TypeElement type, VariableElement field, String prefix) {
+    String fieldName = field.getSimpleName().toString();
+    String name = prefix.isEmpty() ? fieldName : prefix
+        + Character.toUpperCase(fieldName.charAt(0)) + fieldName.substring(1);
+    boolean setter = prefix.equals("set");
+    for (ExecutableElement method : ElementFilter.methodsIn(elements.getAllMembers(type))) {
+      if (!method.getSimpleName().contentEquals(name) || !isAccessible(type, method)
+          || method.getModifiers().contains(Modifier.STATIC)) {
+        continue;
+      }
+      List<? extends VariableElement> parameters = method.getParameters();
+      if (setter ? parameters.size() == 1
+                   && types.isSameType(parameters.get(0).asType(), field.asType())
+                 : parameters.isEmpty()
+                   && types.isSameType(method.getReturnType(), field.asType())) {
+        return method;
+      }
+    }
+    return null;
+  }
+
+  /** Returns whether the member is accessible to the codec of the type, it is in its package. */
+  private static boolean isAccessible(TypeElement type, Element member) {
+    Set<Modifier> modifiers = member.getModifiers();
+    return modifiers.contains(Modifier.PUBLIC) || !modifiers.contains(Modifier.PRIVATE)
+                                                  && packageOf(member).equals(packageOf(type));
+  }
+
+  /** Returns the element type if the type extends {@code ArrayList}, {@code null} otherwise. */
+  private TypeMirror listElementOf(TypeElement type) {
+    TypeMirror superclass = type.getSuperclass();
+    if (superclass.getKind() != TypeKind.DECLARED) {
+      return null;
+    }
+    DeclaredType declared = (DeclaredType) superclass;
+    String name = ((TypeElement) declared.asElement()).getQualifiedName().toString();
+    if (!name.equals("java.util.ArrayList")) {
+      return null;
+    }
+    if (declared.getTypeArguments().size() != 1) {
+      throw new CodegenException("ArrayList element type must be given", type);
+    }
+    return declared.getTypeArguments().get(0);
+  }
+
+  private boolean hasNoArgConstructor(TypeElement type) {
+    for (ExecutableElement constructor : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+      if (constructor.getParameters().isEmpty()
+          && !constructor.getModifiers().contains(Modifier.PRIVATE)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** Returns whether the type is a class of the JSON library, its fields are not serialized. */
+  private static boolean isFramework(TypeElement type) {
+    String name = type.getQualifiedName().toString();
+    return name.equals(GENERIC_DATA) || name.equals(GENERIC_JSON) || name.equals("java.lang.Object")
+           || name.equals("java.util.AbstractMap");
+  }
+
+  private boolean isSubtype(TypeElement type, String superType) {
+    TypeElement superElement = elements.getTypeElement(superType);
+    return superElement != null
+           && types.isSubtype(types.erasure(type.asType()), types.erasure(superElement.asType()));
+  }
+
+  private boolean isString(TypeMirror type) {
+    return type.getKind() == TypeKind.DECLARED && ((TypeElement) ((DeclaredType) type).asElement())
+        .getQualifiedName().contentEquals("java.lang.String");
+  }
+
+  private TypeMirror boxed(TypeMirror type) {
+    return type.getKind().isPrimitive()
+           ? types.boxedClass(types.getPrimitiveType(type.getKind())).asType() : type;
+  }
+
+  /** Returns the JSON name of the field. */
+  private static String keyName(VariableElement field) {
+    String name = annotationValue(annotation(field, KEY));
+    return name == null ? field.getSimpleName().toString() : name;
+  }
+
+  /** Returns the qualified name of the codec, like {@code pkg.Entry_LocationCodec}. */
+  private static String codecName(TypeElement type) {
+    StringBuilder name = new StringBuilder(type.getSimpleName()).append("Codec");
+    Element enclosing = type.getEnclosingElement();
+    while (enclosing.getKind() != ElementKind.PACKAGE) {
+      name.insert(0, enclosing.getSimpleName() + "_");
+      enclosing = enclosing.getEnclosingElement();
+    }
+    String packageName = ((PackageElement) enclosing).getQualifiedName().toString();
+    return packageName.isEmpty() ? name.toString() : packageName + '.' + name;
+  }
+
+  private static PackageElement packageOf(Element element) {
+    while (element.getKind() != ElementKind.PACKAGE) {
+      element = element.getEnclosingElement();
+    }
+    return (PackageElement) element;
+  }
+
+  private static AnnotationMirror annotation(Element element, String annotationType) {
+    for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+      if (((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName()
+          .contentEquals(annotationType)) {
+        return mirror;
+      }
+    }
+    return null;
+  }
+
+  /** Returns the {@code value} of the annotation or {@code null} if it is missing or default. */
+  private static String annotationValue(AnnotationMirror annotation) {
+    if (annotation == null) {
+      return null;
+    }
+    for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry
+        : annotation.getElementValues().entrySet()) {
+      if (entry.getKey().getSimpleName().contentEquals("value")) {
+        String value = String.valueOf(entry.getValue().getValue());
+        return value.equals(DEFAULT_NAME) ? null : value;
+      }
+    }
+    return null;
+  }
+
+  private static String literal(String value) {
+    return '"' + value.replace("\\", "\\\\").replace("\"", "\\\"") + '"';
+  }
+
+  /** Reports an unsupported element, generation continues with the next class. */
+  @SuppressWarnings("serial")
+  private static final class CodegenException extends RuntimeException {
+
+    final Element element;
+
+    CodegenException(String message, Element element) {
+      super(message);
+      this.element = element;
+    }
+  }
+}
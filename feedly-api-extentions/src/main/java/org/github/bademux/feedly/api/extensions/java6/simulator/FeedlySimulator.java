@@ -0,0 +1,729 @@
+/*
+ * Copyright 2014 Bademus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *    Contributors:
+ *                 Bademus
+ */
+
+package org.github.bademux.feedly.api.extensions.java6.simulator;
+
+import com.google.api.client.json.JsonFactory;
+import com.google.api.client.util.IOUtils;
+import com.google.api.client.util.Preconditions;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.github.bademux.feedly.api.extensions.java6.simulator.SimulatorData.Entry;
+import org.github.bademux.feedly.api.extensions.java6.simulator.SimulatorData.Feed;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * In-process stand-in for the Feedly cloud API, for offline load and latency testing.
+ *
+ * <p> It serves streams (contents and ids), mixes, markers, entries and feeds (single and
+ * {@code .mget}), tags, subscriptions, categories, profile, preferences and opml from synthetic
+ * data generated from a seed, so runs are reproducible. Latency, server errors and {@code 429 Too
+ * Many Requests} can be injected. Point a client at it with {@code setRootUrl}: </p>
+ *
+ * <pre>
+ * FeedlySimulator simulator = new FeedlySimulator.Builder(jsonFactory)
+ *     .setFeedCount(200).setLatency(20, 80).setErrorRate(0.01).build().start();
+ * Feedly feedly = new Feedly.Builder(transport, jsonFactory, credential)
+ *     .setRootUrl(simulator.getRootUrl()).build();
+ * ...
+ * simulator.close();
+ * </pre>
+ *
+ * <p> Authorization is not checked. Implementation is thread-safe. </p>
+ */
+public class FeedlySimulator implements Closeable {
+
+  /** Id of the simulated user. */
+  public static final String USER_ID = "00000000-0000-0000-0000-000000000000";
+
+  private static final String SERVICE_PATH = "/v3/";
+
+  private static final String JSON = "application/json; charset=UTF-8";
+
+  private final Builder config;
+
+  private final JsonFactory jsonFactory;
+
+  private final SimulatorData data;
+
+  /** Decides injected faults and latency, seeded for reproducible runs. */
+  private final Random random;
+
+  private final AtomicLong requestCount = new AtomicLong();
+
+  private final AtomicLong errorCount = new AtomicLong();
+
+  private final AtomicLong throttledCount = new AtomicLong();
+
+  /** Start of the current rate limit window. */
+  private long windowStart;
+
+  /** Requests in the current rate limit window. */
+  private int windowCount;
+
+  private HttpServer server;
+
+  private ExecutorService executor;
+
+  protected FeedlySimulator(Builder builder) {
+    config = builder;
+    jsonFactory = builder.jsonFactory;
+    random = new Random(builder.seed);
+    data = new SimulatorData(USER_ID, builder.seed, builder.categoryCount, builder.feedCount,
+                             builder.entriesPerFeed, builder.summaryLength);
+  }
+
+  /** Starts listening on the loopback interface. */
+  public synchronized FeedlySimulator start() throws IOException {
+    Preconditions.checkState(server == null, "simulator is already started");
+    server = HttpServer.create(new InetSocketAddress(InetAddress.getByName(null), config.port), 0);
+    executor = Executors.newCachedThreadPool();
+    server.setExecutor(executor);
+    server.createContext("/", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        try {
+          FeedlySimulator.this.handle(exchange);
+        } finally {
+          exchange.close();
+        }
+      }
+    });
+    server.start();
+    return this;
+  }
+
+  /** Stops the server, requests in progress are given a second to complete. */
+  @Override
+  public synchronized void close() {
+    if (server != null) {
+      server.stop(1);
+      executor.shutdownNow();
+      server = null;
+    }
+  }
+
+  /** Returns the root URL to pass to {@code Feedly.Builder.setRootUrl}. */
+  public synchronized String getRootUrl() {
+    Preconditions.checkState(server != null, "simulator is not started");
+    return "http://127.0.0.1:" + server.getAddress().getPort() + '/';
+  }
+
+  /** Returns the number of received requests. */
+  public long getRequestCount() { return requestCount.get(); }
+
+  /** Returns the number of requests answered with an injected server error. */
+  public long getErrorCount() { return errorCount.get(); }
+
+  /** Returns the number of requests answered with {@code 429 Too Many Requests}. */
+  public long getThrottledCount() { return throttledCount.get(); }
+
+  /** Returns id of the generated feed, {@code 0 <= index < feedCount}. */
+  public String getFeedId(int index) { return data.feeds.get(index).id; }
+
+  /** Returns id of the category with the given label for the simulated user. */
+  public String getCategoryId(String label) { return data.categoryId(label); }
+
+  /** Returns id of the tag with the given label for the simulated user. */
+  public String getTagId(String label) { return data.tagId(label); }
+
+  /** Returns the number of generated entries. */
+  public int getEntryCount() { return data.entries.size(); }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    requestCount.incrementAndGet();
+    sleep(latency());
+    if (throttle(exchange)) {
+      throttledCount.incrementAndGet();
+      sendError(exchange, 429, "API rate limit reached");
+      return;
+    }
+    if (chance(config.errorRate)) {
+      errorCount.incrementAndGet();
+      sendError(exchange, 500, "Simulated server error");
+      return;
+    }
+    String rawPath = exchange.getRequestURI().getRawPath();
+    if (!rawPath.startsWith(SERVICE_PATH)) {
+      sendError(exchange, 404, "Not found: " + rawPath);
+      return;
+    }
+    List<String> path = new ArrayList<String>();
+    for (String segment : rawPath.substring(SERVICE_PATH.length()).split("/")) {
+      path.add(URLDecoder.decode(segment, "UTF-8"));
+    }
+    Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+    String method = exchange.getRequestMethod();
+    Object response = route(exchange, method, path, query);
+    if (response == NOT_FOUND) {
+      sendError(exchange, 404, "Unsupported: " + method + ' ' + rawPath);
+    } else if (response instanceof String) {
+      send(exchange, 200, "text/xml; charset=UTF-8", ((String) response).getBytes("UTF-8"));
+    } else if (response == null) {
+      send(exchange, 200, null, new byte[0]);
+    } else {
+      send(exchange, 200, JSON, jsonFactory.toByteArray(response));
+    }
+  }
+
+  /** Returns the response object, {@code null} for an empty response. */
+  private Object route(HttpExchange exchange, String method, List<String> path,
+                       Map<String, String> query) throws IOException {
+    String resource = path.get(0);
+    String id = path.size() > 1 ? path.get(1) : null;
+    boolean get = method.equals("GET");
+    if (resource.equals("streams") && get && path.size() == 3) {
+      return path.get(2).equals("ids") ? streamIds(id, query) : streamContents(id, query);
+    }
+    if (resource.equals("mixes") && get && path.size() == 3) {
+      return streamContents(id, query);
+    }
+    if (resource.equals("entries")) {
+      if (method.equals("POST") && ".mget".equals(id)) {
+        Object ids = ((Map<?, ?>) readBody(exchange)).get("ids");
+        return entries(SimulatorData.ids((Collection<?>) ids));
+      }
+      if (get && id != null) {
+        return entries(Collections.singleton(id));
+      }
+    }
+    if (resource.equals("feeds")) {
+      if (method.equals("POST") && ".mget".equals(id)) {
+        return feeds(SimulatorData.ids((Collection<?>) readBody(exchange)));
+      }
+      if (get && id != null) {
+        Feed feed = data.feedsById.get(id);
+        return feed == null ? NOT_FOUND : data.toJson(feed);
+      }
+    }
+    if (resource.equals("markers")) {
+      return markers(exchange, method, id, query);
+    }
+    if (resource.equals("tags")) {
+      return tags(exchange, method, path);
+    }
+    if (resource.equals("subscriptions")) {
+      return subscriptions(exchange, method, id);
+    }
+    if (resource.equals("categories") && get) {
+      List<Object> categories = new ArrayList<Object>();
+      for (SimulatorData.Category category : data.categories) {
+        categories.add(category.toJson());
+      }
+      return categories;
+    }
+    if (resource.equals("profile") && get) {
+      Map<String, Object> profile = new LinkedHashMap<String, Object>();
+      profile.put("id", USER_ID);
+      profile.put("email", "simulator@simulator.local");
+      profile.put("givenName", "Simulated");
+      profile.put("familyName", "User");
+      return profile;
+    }
+    if (resource.equals("preferences") && get) {
+      return Collections.emptyMap();
+    }
+    if (resource.equals("opml")) {
+      if (get) {
+        return opml();
+      }
+      readBody(exchange);
+      return null;
+    }
+    return NOT_FOUND;
+  }
+
+  private Object streamContents(String streamId, Map<String, String> query) {
+    List<Entry> page = new ArrayList<Entry>();
+    String continuation = page(streamId, query, 20, page);
+    if (continuation == NOT_FOUND) {
+      return NOT_FOUND;
+    }
+    List<Object> items = new ArrayList<Object>(page.size());
+    for (Entry entry : page) {
+      items.add(data.toJson(entry));
+    }
+    Map<String, Object> response = new LinkedHashMap<String, Object>();
+    response.put("id", streamId);
+    response.put("updated", SimulatorData.NEWEST_CRAWLED);
+    response.put("continuation", continuation);
+    response.put("items", items);
+    return response;
+  }
+
+  private Object streamIds(String streamId, Map<String, String> query) {
+    List<Entry> page = new ArrayList<Entry>();
+    String continuation = page(streamId, query, 20, page);
+    if (continuation == NOT_FOUND) {
+      return NOT_FOUND;
+    }
+    List<String> ids = new ArrayList<String>(page.size());
+    for (Entry entry : page) {
+      ids.add(entry.id);
+    }
+    Map<String, Object> response = new LinkedHashMap<String, Object>();
+    response.put("ids", ids);
+    response.put("continuation", continuation);
+    return response;
+  }
+
+  /**
+   * Collects the requested page of the stream, the continuation is the offset in the stream.
+   *
+   * @return continuation of the next page, {@code null} for the last page, {@link #NOT_FOUND} for
+   *         an unknown stream
+   */
+  private String page(String streamId, Map<String, String> query, int defaultCount,
+                      List<Entry> page) {
+    List<Entry> stream = data.stream(streamId);
+    if (stream == null) {
+      return NOT_FOUND;
+    }
+    int count = query.containsKey("count") ? Integer.parseInt(query.get("count")) : defaultCount;
+    boolean unreadOnly = Boolean.parseBoolean(query.get("unreadOnly"));
+    long newerThan = query.containsKey("newerThan") ? Long.parseLong(query.get("newerThan")) : 0;
+    int index = query.containsKey("continuation") ? Integer.parseInt(query.get("continuation")) : 0;
+    for (; index < stream.size() && page.size() < count; index++) {
+      Entry entry = stream.get(index);
+      if (entry.crawled <= newerThan) {
+        index = stream.size();
+        break;
+      }
+      if (!unreadOnly || !data.read.contains(entry.id)) {
+        page.add(entry);
+      }
+    }
+    return index < stream.size() ? String.valueOf(index) : null;
+  }
+
+  private List<Object> entries(Collection<String> ids) {
+    List<Object> entries = new ArrayList<Object>(ids.size());
+    for (String id : ids) {
+      Entry entry = data.entriesById.get(id);
+      if (entry != null) {
+        entries.add(data.toJson(entry));
+      }
+    }
+    return entries;
+  }
+
+  private List<Object> feeds(Collection<String> ids) {
+    List<Object> feeds = new ArrayList<Object>(ids.size());
+    for (String id : ids) {
+      Feed feed = data.feedsById.get(id);
+      if (feed != null) {
+        feeds.add(data.toJson(feed));
+      }
+    }
+    return feeds;
+  }
+
+  private Object markers(HttpExchange exchange, String method, String id,
+                         Map<String, String> query) throws IOException {
+    if (method.equals("GET") && "counts".equals(id)) {
+      return Collections.singletonMap("unreadcounts", data.unreadCounts());
+    }
+    if (method.equals("GET") && "reads".equals(id)) {
+      Map<String, Object> reads = new LinkedHashMap<String, Object>();
+      reads.put("entries", new ArrayList<String>(data.read));
+      reads.put("feeds", Collections.emptyList());
+      return reads;
+    }
+    if (method.equals("GET") && "tags".equals(id)) {
+      Map<String, Object> tagged = new LinkedHashMap<String, Object>();
+      for (Map.Entry<String, ? extends Collection<String>> entry : data.taggedEntries.entrySet()) {
+        tagged.put(entry.getKey(), new ArrayList<String>(entry.getValue()));
+      }
+      return Collections.singletonMap("taggedEntries", tagged);
+    }
+    if (method.equals("POST") && id == null) {
+      Map<?, ?> marker = (Map<?, ?>) readBody(exchange);
+      String type = String.valueOf(marker.get("type"));
+      boolean asRead = "markAsRead".equals(marker.get("action"));
+      if (type.equals("entries")) {
+        Collection<String> entryIds = SimulatorData.ids((Collection<?>) marker.get("entryIds"));
+        if (asRead) {
+          data.read.addAll(entryIds);
+        } else {
+          data.read.removeAll(entryIds);
+        }
+        return null;
+      }
+      Object ids = marker.get(type.equals("feeds") ? "feedIds" : "categoryIds");
+      if (asRead && ids != null) {
+        Object asOf = marker.get("asOf");
+        data.markStreamsAsRead(SimulatorData.ids((Collection<?>) ids),
+                               asOf == null ? null : Long.valueOf(asOf.toString()));
+      }
+      return null;
+    }
+    return NOT_FOUND;
+  }
+
+  private Object tags(HttpExchange exchange, String method, List<String> path)
+      throws IOException {
+    if (method.equals("GET") && path.size() == 1) {
+      List<Object> tags = new ArrayList<Object>();
+      for (Map.Entry<String, String> tag : data.tags.entrySet()) {
+        Map<String, Object> json = new LinkedHashMap<String, Object>();
+        json.put("id", tag.getKey());
+        json.put("label", tag.getValue());
+        tags.add(json);
+      }
+      return tags;
+    }
+    if (path.size() < 2) {
+      return NOT_FOUND;
+    }
+    List<String> tagIds = Arrays.asList(path.get(1).split(","));
+    if (method.equals("PUT")) {
+      Object entryIds = ((Map<?, ?>) readBody(exchange)).get("entryIds");
+      data.tag(tagIds, SimulatorData.ids((Collection<?>) entryIds));
+      return null;
+    }
+    if (method.equals("DELETE")) {
+      if (path.size() > 2) {
+        data.untag(tagIds, Arrays.asList(path.get(2).split(",")));
+      } else {
+        data.deleteTags(tagIds);
+      }
+      return null;
+    }
+    if (method.equals("POST")) {
+      Object label = ((Map<?, ?>) readBody(exchange)).get("label");
+      data.tags.put(tagIds.get(0), String.valueOf(label));
+      return null;
+    }
+    return NOT_FOUND;
+  }
+
+  private Object subscriptions(HttpExchange exchange, String method, String id)
+      throws IOException {
+    if (method.equals("GET")) {
+      List<Object> subscriptions = new ArrayList<Object>();
+      for (String feedId : data.subscriptions) {
+        Feed feed = data.feedsById.get(feedId);
+        subscriptions.add(feed == null ? Collections.singletonMap("id", feedId)
+                                       : data.toJson(feed));
+      }
+      return subscriptions;
+    }
+    if (method.equals("POST")) {
+      data.subscriptions.add(String.valueOf(((Map<?, ?>) readBody(exchange)).get("id")));
+      return null;
+    }
+    if (method.equals("DELETE") && id != null) {
+      data.subscriptions.remove(id);
+      return null;
+    }
+    return NOT_FOUND;
+  }
+
+  private String opml() {
+    StringBuilder opml = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
+        .append("<opml version=\"1.0\"><head><title>Simulator</title></head><body>\n");
+    for (SimulatorData.Category category : data.categories) {
+      opml.append("<outline text=\"").append(category.label).append("\">\n");
+      for (Feed feed : data.feeds) {
+        if (feed.category == category && data.subscriptions.contains(feed.id)) {
+          opml.append("<outline type=\"rss\" text=\"").append(feed.title)
+              .append("\" xmlUrl=\"").append(feed.id.substring("feed/".length()))
+              .append("\" htmlUrl=\"").append(feed.website).append("\"/>\n");
+        }
+      }
+      opml.append("</outline>\n");
+    }
+    return opml.append("</body></opml>\n").toString();
+  }
+
+  /** Returns whether the request is over the rate limit or picked to be throttled. */
+  private boolean throttle(HttpExchange exchange) {
+    long retryAfterMillis = TimeUnit.SECONDS.toMillis(config.retryAfterSeconds);
+    boolean throttled = chance(config.throttleRate);
+    if (config.rateLimit > 0) {
+      int count;
+      long resetMillis;
+      synchronized (this) {
+        long now = System.currentTimeMillis();
+        if (now - windowStart >= config.rateLimitWindowMillis) {
+          windowStart = now;
+          windowCount = 0;
+        }
+        count = ++windowCount;
+        resetMillis = windowStart + config.rateLimitWindowMillis - now;
+      }
+      long resetSeconds = Math.max(1, TimeUnit.MILLISECONDS.toSeconds(resetMillis + 999));
+      exchange.getResponseHeaders().set("X-RateLimit-Limit", String.valueOf(config.rateLimit));
+      exchange.getResponseHeaders().set("X-RateLimit-Count", String.valueOf(count));
+      exchange.getResponseHeaders().set("X-RateLimit-Reset", String.valueOf(resetSeconds));
+      if (count > config.rateLimit) {
+        throttled = true;
+        retryAfterMillis = resetMillis;
+      }
+    }
+    if (throttled) {
+      exchange.getResponseHeaders().set(
+          "Retry-After", String.valueOf(Math.max(1, TimeUnit.MILLISECONDS.toSeconds(
+              retryAfterMillis + 999))));
+    }
+    return throttled;
+  }
+
+  private long latency() {
+    long latency = config.minLatencyMillis;
+    long spread = config.maxLatencyMillis - config.minLatencyMillis;
+    synchronized (random) {
+      if (spread > 0) {
+        latency += (long) (random.nextDouble() * spread);
+      }
+      if (config.slowRate > 0 && random.nextDouble() < config.slowRate) {
+        latency += config.slowLatencyMillis;
+      }
+    }
+    return latency;
+  }
+
+  private boolean chance(double rate) {
+    if (rate <= 0) {
+      return false;
+    }
+    synchronized (random) {
+      return random.nextDouble() < rate;
+    }
+  }
+
+  private static void sleep(long millis) {
+    if (millis <= 0) {
+      return;
+    }
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private Object readBody(HttpExchange exchange) throws IOException {
+    InputStream in = exchange.getRequestBody();
+    if ("gzip".equalsIgnoreCase(exchange.getRequestHeaders().getFirst("Content-Encoding"))) {
+      in = new GZIPInputStream(in);
+    }
+    ByteArrayOutputStream body = new ByteArrayOutputStream();
+    IOUtils.copy(in, body);
+    if (body.size() == 0) {
+      return Collections.emptyMap();
+    }
+    if (exchange.getRequestURI().getRawPath().endsWith("/opml")) {
+      return body.toString("UTF-8");
+    }
+    return jsonFactory.createJsonParser(body.toString("UTF-8")).parse(Object.class, true);
+  }
+
+  private void sendError(HttpExchange exchange, int statusCode, String message)
+      throws IOException {
+    Map<String, Object> error = new LinkedHashMap<String, Object>();
+    error.put("errorCode", statusCode);
+    error.put("errorId", "simulator");
+    error.put("errorMessage", message);
+    send(exchange, statusCode, JSON, jsonFactory.toByteArray(error));
+  }
+
+  private static void send(HttpExchange exchange, int statusCode, String contentType,
+                           byte[] content) throws IOException {
+    if (contentType != null) {
+      exchange.getResponseHeaders().set("Content-Type", contentType);
+    }
+    exchange.sendResponseHeaders(statusCode, content.length == 0 ? -1 : content.length);
+    if (content.length > 0) {
+      OutputStream out = exchange.getResponseBody();
+      out.write(content);
+      out.close();
+    }
+  }
+
+  private static Map<String, String> parseQuery(String rawQuery)
+      throws UnsupportedEncodingException {
+    Map<String, String> query = new LinkedHashMap<String, String>();
+    if (rawQuery == null) {
+      return query;
+    }
+    for (String parameter : rawQuery.split("&")) {
+      int eq = parameter.indexOf('=');
+      if (eq > 0) {
+        query.put(URLDecoder.decode(parameter.substring(0, eq), "UTF-8"),
+                  URLDecoder.decode(parameter.substring(eq + 1), "UTF-8"));
+      }
+    }
+    return query;
+  }
+
+  /** Marks a request the simulator doesn't support. */
+  private static final String NOT_FOUND = new String("not found");
+
+  /**
+   * Builder for {@link FeedlySimulator}.
+   *
+   * <p> Implementation is not thread-safe. </p>
+   */
+  public static class Builder {
+
+    final JsonFactory jsonFactory;
+
+    int port;
+
+    long seed = 42;
+
+    int categoryCount = 5;
+
+    int feedCount = 50;
+
+    int entriesPerFeed = 100;
+
+    int summaryLength = 500;
+
+    long minLatencyMillis;
+
+    long maxLatencyMillis;
+
+    double slowRate;
+
+    long slowLatencyMillis;
+
+    double errorRate;
+
+    double throttleRate;
+
+    long retryAfterSeconds = 1;
+
+    int rateLimit;
+
+    long rateLimitWindowMillis;
+
+    /** @param jsonFactory JSON factory used to read requests and write responses */
+    public Builder(JsonFactory jsonFactory) {
+      this.jsonFactory = Preconditions.checkNotNull(jsonFactory);
+    }
+
+    public FeedlySimulator build() { return new FeedlySimulator(this); }
+
+    /** Sets the port to listen on, by default {@code 0} picks a free one. */
+    public Builder setPort(int port) {
+      this.port = port;
+      return this;
+    }
+
+    /** Sets the seed of generated data and injected faults, by default {@code 42}. */
+    public Builder setSeed(long seed) {
+      this.seed = seed;
+      return this;
+    }
+
+    /**
+     * Sets the scale of generated data, by default 5 categories, 50 feeds and 100 entries per
+     * feed. Feeds are assigned to categories round-robin.
+     */
+    public Builder setScale(int categoryCount, int feedCount, int entriesPerFeed) {
+      Preconditions.checkArgument(categoryCount >= 0 && feedCount >= 0 && entriesPerFeed >= 0);
+      this.categoryCount = categoryCount;
+      this.feedCount = feedCount;
+      this.entriesPerFeed = entriesPerFeed;
+      return this;
+    }
+
+    /** Sets the approximate length of entry summaries in characters, by default 500. */
+    public Builder setSummaryLength(int summaryLength) {
+      this.summaryLength = summaryLength;
+      return this;
+    }
+
+    /** Sets latency added to every response, uniformly distributed between the bounds. */
+    public Builder setLatency(long minMillis, long maxMillis) {
+      Preconditions.checkArgument(0 <= minMillis && minMillis <= maxMillis);
+      this.minLatencyMillis = minMillis;
+      this.maxLatencyMillis = maxMillis;
+      return this;
+    }
+
+    /** Sets the share of responses delayed by additional latency, to simulate a long tail. */
+    public Builder setSlowResponses(double rate, long extraLatencyMillis) {
+      this.slowRate = checkRate(rate);
+      this.slowLatencyMillis = extraLatencyMillis;
+      return this;
+    }
+
+    /** Sets the share of requests answered with {@code 500 Internal Server Error}. */
+    public Builder setErrorRate(double rate) {
+      this.errorRate = checkRate(rate);
+      return this;
+    }
+
+    /**
+     * Sets the share of requests answered with {@code 429 Too Many Requests} and the {@code
+     * Retry-After} they carry, by default 1 second.
+     */
+    public Builder setThrottleRate(double rate, long retryAfterSeconds) {
+      this.throttleRate = checkRate(rate);
+      this.retryAfterSeconds = retryAfterSeconds;
+      return this;
+    }
+
+    /**
+     * Limits requests per window, requests over the limit are answered with {@code 429 Too Many
+     * Requests}. Every response carries {@code X-RateLimit-Limit}, {@code X-RateLimit-Count} and
+     * {@code X-RateLimit-Reset} (seconds to the next window).
+     *
+     * @param limit max number of requests in the window, {@code 0} for no limit
+     */
+    public Builder setRateLimit(int limit, long windowMillis) {
+      Preconditions.checkArgument(limit >= 0 && (limit == 0 || windowMillis > 0));
+      this.rateLimit = limit;
+      this.rateLimitWindowMillis = windowMillis;
+      return this;
+    }
+
+    private static double checkRate(double rate) {
+      Preconditions.checkArgument(0 <= rate && rate <= 1, "rate must be between 0 and 1");
+      return rate;
+    }
+  }
+}
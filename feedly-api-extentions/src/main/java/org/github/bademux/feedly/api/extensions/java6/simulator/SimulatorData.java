@@ -0,0 +1,403 @@
+/*
+ * Copyright 2014 Bademus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *    Contributors:
+ *                 Bademus
+ */
+
+package org.github.bademux.feedly.api.extensions.java6.simulator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/** Synthetic feeds, entries and the mutable user state of {@link FeedlySimulator}. */
+final class SimulatorData {
+
+  /** Crawl time of the newest generated entry. */
+  static final long NEWEST_CRAWLED = 1400000000000L;
+
+  static final String GLOBAL_ALL = "global.all";
+
+  static final String GLOBAL_SAVED = "global.saved";
+
+  private static final String[] WORDS = ("feedly cloud stream entry marker tag category reader "
+                                         + "sync offline json parse latency cache network image "
+                                         + "article news android java server client request")
+      .split(" ");
+
+  private final String userId;
+
+  private final long seed;
+
+  private final int summaryLength;
+
+  final List<Category> categories = new ArrayList<Category>();
+
+  final List<Feed> feeds = new ArrayList<Feed>();
+
+  final Map<String, Feed> feedsById = new LinkedHashMap<String, Feed>();
+
+  final Map<String, Entry> entriesById = new ConcurrentHashMap<String, Entry>();
+
+  /** All entries, newest first. */
+  final List<Entry> entries;
+
+  /** Ids of entries marked as read. */
+  final Set<String> read = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+  /** Labels of tags by tag id. */
+  final ConcurrentMap<String, String> tags = new ConcurrentHashMap<String, String>();
+
+  /** Ids of tagged entries by tag id. */
+  final ConcurrentMap<String, Set<String>> taggedEntries =
+      new ConcurrentHashMap<String, Set<String>>();
+
+  /** Ids of subscribed feeds, feeds added by the client are not generated so have no entries. */
+  final Set<String> subscriptions =
+      Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+  SimulatorData(String userId, long seed, int categoryCount, int feedCount, int entriesPerFeed,
+                int summaryLength) {
+    this.userId = userId;
+    this.seed = seed;
+    this.summaryLength = summaryLength;
+    Random random = new Random(seed);
+    for (int c = 0; c < categoryCount; c++) {
+      categories.add(new Category(categoryId("category-" + c), "category-" + c));
+    }
+    List<Entry> all = new ArrayList<Entry>(feedCount * entriesPerFeed);
+    for (int f = 0; f < feedCount; f++) {
+      String website = "http://feed" + f + ".simulator.local/";
+      Category category = categoryCount == 0 ? null : categories.get(f % categoryCount);
+      Feed feed = new Feed("feed/" + website + "rss", "Feed " + f, website, category);
+      long crawled = NEWEST_CRAWLED - random.nextInt(3600000);
+      for (int e = 0; e < entriesPerFeed; e++) {
+        Entry entry = new Entry(f + ":" + Long.toHexString(crawled) + ":" + e, feed, crawled,
+                                random.nextInt(1000));
+        feed.entries.add(entry);
+        entriesById.put(entry.id, entry);
+        all.add(entry);
+        crawled -= 1 + random.nextInt(2 * 3600000);
+      }
+      feeds.add(feed);
+      feedsById.put(feed.id, feed);
+      subscriptions.add(feed.id);
+      if (category != null) {
+        category.entries.addAll(feed.entries);
+      }
+    }
+    Collections.sort(all, NEWEST_FIRST);
+    entries = Collections.unmodifiableList(all);
+    for (Category category : categories) {
+      Collections.sort(category.entries, NEWEST_FIRST);
+    }
+    tags.put(tagId(GLOBAL_SAVED), GLOBAL_SAVED);
+  }
+
+  String categoryId(String label) { return "user/" + userId + "/category/" + label; }
+
+  String tagId(String label) { return "user/" + userId + "/tag/" + label; }
+
+  /**
+   * Returns entries of the stream, newest first, or {@code null} if the stream is unknown. The
+   * user id may be {@code -} for the current user.
+   */
+  List<Entry> stream(String streamId) {
+    if (streamId.startsWith("feed/")) {
+      Feed feed = feedsById.get(streamId);
+      return feed == null ? null : feed.entries;
+    }
+    String label = labelOf(streamId, "/category/");
+    if (label != null) {
+      if (GLOBAL_ALL.equals(label)) {
+        return entries;
+      }
+      for (Category category : categories) {
+        if (category.label.equals(label)) {
+          return category.entries;
+        }
+      }
+      return null;
+    }
+    label = labelOf(streamId, "/tag/");
+    if (label != null) {
+      Set<String> ids = taggedEntries.get(tagId(label));
+      List<Entry> tagged = new ArrayList<Entry>();
+      if (ids != null) {
+        for (String id : ids) {
+          Entry entry = entriesById.get(id);
+          if (entry != null) {
+            tagged.add(entry);
+          }
+        }
+      }
+      Collections.sort(tagged, NEWEST_FIRST);
+      return tagged;
+    }
+    return null;
+  }
+
+  /** Returns the label of {@code user/<userId or ->/<kind>/<label>} or {@code null}. */
+  private String labelOf(String streamId, String kind) {
+    int at = streamId.indexOf(kind);
+    if (!streamId.startsWith("user/") || at == -1) {
+      return null;
+    }
+    String user = streamId.substring("user/".length(), at);
+    if (!user.equals("-") && !user.equals(userId)) {
+      return null;
+    }
+    return streamId.substring(at + kind.length());
+  }
+
+  void tag(Collection<String> tagIds, Collection<String> entryIds) {
+    for (String tagId : tagIds) {
+      tags.putIfAbsent(tagId, tagId.substring(tagId.lastIndexOf('/') + 1));
+      Set<String> tagged = taggedEntries.get(tagId);
+      if (tagged == null) {
+        Set<String> created =
+            Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        tagged = taggedEntries.putIfAbsent(tagId, created);
+        if (tagged == null) {
+          tagged = created;
+        }
+      }
+      tagged.addAll(entryIds);
+    }
+  }
+
+  void untag(Collection<String> tagIds, Collection<String> entryIds) {
+    for (String tagId : tagIds) {
+      Set<String> tagged = taggedEntries.get(tagId);
+      if (tagged != null) {
+        tagged.removeAll(entryIds);
+      }
+    }
+  }
+
+  void deleteTags(Collection<String> tagIds) {
+    for (String tagId : tagIds) {
+      tags.remove(tagId);
+      taggedEntries.remove(tagId);
+    }
+  }
+
+  /** Marks entries of the streams crawled before {@code asOf} as read, all if it is null. */
+  void markStreamsAsRead(Collection<String> streamIds, Long asOf) {
+    for (String streamId : streamIds) {
+      List<Entry> stream = stream(streamId);
+      if (stream == null) {
+        continue;
+      }
+      for (Entry entry : stream) {
+        if (asOf == null || entry.crawled <= asOf) {
+          read.add(entry.id);
+        }
+      }
+    }
+  }
+
+  /** Returns unread counts of feeds, categories and {@code global.all}. */
+  List<Map<String, Object>> unreadCounts() {
+    List<Map<String, Object>> counts = new ArrayList<Map<String, Object>>();
+    int all = 0;
+    for (Feed feed : feeds) {
+      int unread = unread(feed.entries);
+      all += unread;
+      counts.add(unreadCount(feed.id, unread, feed.entries));
+    }
+    for (Category category : categories) {
+      counts.add(unreadCount(category.id, unread(category.entries), category.entries));
+    }
+    counts.add(unreadCount(categoryId(GLOBAL_ALL), all, entries));
+    return counts;
+  }
+
+  private int unread(List<Entry> stream) {
+    int unread = 0;
+    for (Entry entry : stream) {
+      if (!read.contains(entry.id)) {
+        unread++;
+      }
+    }
+    return unread;
+  }
+
+  private static Map<String, Object> unreadCount(String id, int count, List<Entry> stream) {
+    Map<String, Object> item = new LinkedHashMap<String, Object>();
+    item.put("id", id);
+    item.put("count", count);
+    item.put("updated", stream.isEmpty() ? NEWEST_CRAWLED : stream.get(0).crawled);
+    return item;
+  }
+
+  /** Returns JSON object of the entry with its current read and tag state. */
+  Map<String, Object> toJson(Entry entry) {
+    Feed feed = entry.feed;
+    Map<String, Object> json = new LinkedHashMap<String, Object>();
+    json.put("id", entry.id);
+    json.put("fingerprint", Integer.toHexString(entry.id.hashCode()));
+    json.put("originId", feed.website + "?p=" + entry.id);
+    json.put("title", "Entry " + entry.id + " of " + feed.title);
+    json.put("author", "Author " + (entry.id.hashCode() & 7));
+    json.put("crawled", entry.crawled);
+    json.put("published", entry.crawled - 60000);
+    Map<String, Object> origin = new LinkedHashMap<String, Object>();
+    origin.put("streamId", feed.id);
+    origin.put("title", feed.title);
+    origin.put("htmlUrl", feed.website);
+    json.put("origin", origin);
+    Map<String, Object> alternate = new LinkedHashMap<String, Object>();
+    alternate.put("href", feed.website + "entry/" + entry.id);
+    alternate.put("type", "text/html");
+    json.put("alternate", Arrays.asList(alternate));
+    Map<String, Object> summary = new LinkedHashMap<String, Object>();
+    summary.put("content", summary(entry));
+    summary.put("direction", "ltr");
+    json.put("summary", summary);
+    json.put("unread", !read.contains(entry.id));
+    json.put("engagement", entry.engagement);
+    if (feed.category != null) {
+      json.put("categories", Arrays.asList(feed.category.toJson()));
+    }
+    List<Map<String, Object>> entryTags = new ArrayList<Map<String, Object>>();
+    for (Map.Entry<String, Set<String>> tagged : taggedEntries.entrySet()) {
+      if (tagged.getValue().contains(entry.id)) {
+        Map<String, Object> tag = new LinkedHashMap<String, Object>();
+        tag.put("id", tagged.getKey());
+        tag.put("label", tags.get(tagged.getKey()));
+        entryTags.add(tag);
+      }
+    }
+    if (!entryTags.isEmpty()) {
+      json.put("tags", entryTags);
+    }
+    return json;
+  }
+
+  /** Returns reproducible HTML of about {@code summaryLength} characters with an image. */
+  private String summary(Entry entry) {
+    Random random = new Random(seed ^ entry.id.hashCode());
+    StringBuilder html = new StringBuilder(summaryLength + 100).append("<p>");
+    while (html.length() < summaryLength) {
+      html.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+    }
+    return html.append("</p><img src=\"").append(entry.feed.website).append("img/")
+        .append(entry.id).append(".jpg\"/>").toString();
+  }
+
+  Map<String, Object> toJson(Feed feed) {
+    Map<String, Object> json = new LinkedHashMap<String, Object>();
+    json.put("id", feed.id);
+    json.put("title", feed.title);
+    json.put("website", feed.website);
+    json.put("velocity", feed.entries.size() / 7d);
+    json.put("subscribers", feed.id.hashCode() & 0xffff);
+    json.put("updated", feed.entries.isEmpty() ? NEWEST_CRAWLED : feed.entries.get(0).crawled);
+    if (feed.category != null) {
+      json.put("categories", Arrays.asList(feed.category.toJson()));
+    }
+    return json;
+  }
+
+  static final Comparator<Entry> NEWEST_FIRST = new Comparator<Entry>() {
+    @Override
+    public int compare(Entry lhs, Entry rhs) {
+      return lhs.crawled < rhs.crawled ? 1 : (lhs.crawled == rhs.crawled ? 0 : -1);
+    }
+  };
+
+  static final class Category {
+
+    final String id;
+
+    final String label;
+
+    /** Entries of feeds in the category, newest first. */
+    final List<Entry> entries = new ArrayList<Entry>();
+
+    Category(String id, String label) {
+      this.id = id;
+      this.label = label;
+    }
+
+    Map<String, Object> toJson() {
+      Map<String, Object> json = new LinkedHashMap<String, Object>();
+      json.put("id", id);
+      json.put("label", label);
+      return json;
+    }
+  }
+
+  static final class Feed {
+
+    final String id;
+
+    final String title;
+
+    final String website;
+
+    final Category category;
+
+    /** Entries newest first. */
+    final List<Entry> entries = new ArrayList<Entry>();
+
+    Feed(String id, String title, String website, Category category) {
+      this.id = id;
+      this.title = title;
+      this.website = website;
+      this.category = category;
+    }
+  }
+
+  /** Only what is needed to regenerate the entry, the JSON is built on request. */
+  static final class Entry {
+
+    final String id;
+
+    final Feed feed;
+
+    final long crawled;
+
+    final int engagement;
+
+    Entry(String id, Feed feed, long crawled, int engagement) {
+      this.id = id;
+      this.feed = feed;
+      this.crawled = crawled;
+      this.engagement = engagement;
+    }
+  }
+
+  /** Returns ids in insertion order without duplicates. */
+  static Set<String> ids(Collection<?> values) {
+    Set<String> ids = new LinkedHashSet<String>();
+    for (Object value : values) {
+      ids.add(String.valueOf(value));
+    }
+    return ids;
+  }
+}
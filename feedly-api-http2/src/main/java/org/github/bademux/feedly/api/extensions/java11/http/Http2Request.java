@@ -0,0 +1,117 @@
+/*
+ * Copyright 2014 Bademus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *    Contributors:
+ *                 Bademus
+ */
+
+package org.github.bademux.feedly.api.extensions.java11.http;
+
+import com.google.api.client.http.LowLevelHttpRequest;
+import com.google.api.client.http.LowLevelHttpResponse;
+import com.google.api.client.util.StreamingContent;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.Flow;
+
+/** Low-level HTTP request of {@link Http2Transport}. */
+final class Http2Request extends LowLevelHttpRequest {
+
+  /** Headers {@link HttpClient} sets itself and refuses to take from the caller. */
+  private static final Set<String> RESTRICTED_HEADERS = new HashSet<String>(
+      Arrays.asList("connection", "content-length", "expect", "host", "upgrade"));
+
+  private final HttpClient httpClient;
+
+  private final String method;
+
+  private final HttpRequest.Builder builder;
+
+  private int readTimeout;
+
+  Http2Request(HttpClient httpClient, String method, String url) {
+    this.httpClient = httpClient;
+    this.method = method;
+    this.builder = HttpRequest.newBuilder(URI.create(url));
+  }
+
+  @Override
+  public void addHeader(String name, String value) {
+    if (!RESTRICTED_HEADERS.contains(name.toLowerCase(Locale.US))) {
+      builder.header(name, value);
+    }
+  }
+
+  /**
+   * The response headers must arrive within the sum of both timeouts, then each read of the
+   * content waits at most the read timeout. The connect timeout of the client applies as well.
+   */
+  @Override
+  public void setTimeout(int connectTimeout, int readTimeout) {
+    this.readTimeout = readTimeout;
+    if (connectTimeout > 0 && readTimeout > 0) {
+      builder.timeout(Duration.ofMillis((long) connectTimeout + readTimeout));
+    }
+  }
+
+  @Override
+  public LowLevelHttpResponse execute() throws IOException {
+    String contentType = getContentType();
+    if (contentType != null) {
+      builder.header("Content-Type", contentType);
+    }
+    String contentEncoding = getContentEncoding();
+    if (contentEncoding != null) {
+      builder.header("Content-Encoding", contentEncoding);
+    }
+    builder.method(method, bodyPublisher());
+    Http2ResponseContent content = new Http2ResponseContent(readTimeout);
+    try {
+      HttpResponse<Flow.Publisher<List<ByteBuffer>>> response =
+          httpClient.send(builder.build(), HttpResponse.BodyHandlers.ofPublisher());
+      response.body().subscribe(content);
+      return new Http2Response(response, content);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for the response");
+    }
+  }
+
+  /** Buffers the content, requests of the API are small. */
+  private HttpRequest.BodyPublisher bodyPublisher() throws IOException {
+    StreamingContent content = getStreamingContent();
+    if (content == null) {
+      return HttpRequest.BodyPublishers.noBody();
+    }
+    long contentLength = getContentLength();
+    ByteArrayOutputStream out = new ByteArrayOutputStream(
+        contentLength > 0 && contentLength < Integer.MAX_VALUE ? (int) contentLength : 512);
+    content.writeTo(out);
+    return HttpRequest.BodyPublishers.ofByteArray(out.toByteArray());
+  }
+}
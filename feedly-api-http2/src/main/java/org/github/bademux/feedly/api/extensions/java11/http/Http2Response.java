@@ -0,0 +1,114 @@
+/*
+ * Copyright 2014 Bademus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *    Contributors:
+ *                 Bademus
+ */
+
+package org.github.bademux.feedly.api.extensions.java11.http;
+
+import com.google.api.client.http.LowLevelHttpResponse;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpClient;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/** Low-level HTTP response of {@link Http2Transport}. */
+final class Http2Response extends LowLevelHttpResponse {
+
+  private final HttpResponse<?> response;
+
+  private final InputStream content;
+
+  private final List<String> headerNames = new ArrayList<String>();
+
+  private final List<String> headerValues = new ArrayList<String>();
+
+  Http2Response(HttpResponse<?> response, InputStream content) {
+    this.response = response;
+    this.content = content;
+    for (Map.Entry<String, List<String>> header : response.headers().map().entrySet()) {
+      // skip HTTP/2 pseudo headers like ":status"
+      if (!header.getKey().startsWith(":")) {
+        for (String value : header.getValue()) {
+          headerNames.add(header.getKey());
+          headerValues.add(value);
+        }
+      }
+    }
+  }
+
+  @Override
+  public InputStream getContent() {
+    return content;
+  }
+
+  @Override
+  public String getContentEncoding() {
+    return response.headers().firstValue("Content-Encoding").orElse(null);
+  }
+
+  @Override
+  public long getContentLength() {
+    return response.headers().firstValueAsLong("Content-Length").orElse(-1);
+  }
+
+  @Override
+  public String getContentType() {
+    return response.headers().firstValue("Content-Type").orElse(null);
+  }
+
+  @Override
+  public String getStatusLine() {
+    return (response.version() == HttpClient.Version.HTTP_2 ? "HTTP/2 " : "HTTP/1.1 ")
+           + response.statusCode();
+  }
+
+  @Override
+  public int getStatusCode() {
+    return response.statusCode();
+  }
+
+  /** HTTP/2 has no reason phrase and {@link HttpClient} doesn't expose the HTTP/1.1 one. */
+  @Override
+  public String getReasonPhrase() {
+    return null;
+  }
+
+  @Override
+  public int getHeaderCount() {
+    return headerNames.size();
+  }
+
+  @Override
+  public String getHeaderName(int index) {
+    return headerNames.get(index);
+  }
+
+  @Override
+  public String getHeaderValue(int index) {
+    return headerValues.get(index);
+  }
+
+  /** Closes the content, that resets the HTTP/2 stream or releases the connection. */
+  @Override
+  public void disconnect() throws IOException {
+    content.close();
+  }
+}
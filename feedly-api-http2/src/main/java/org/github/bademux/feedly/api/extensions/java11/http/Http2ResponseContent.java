@@ -0,0 +1,179 @@
+/*
+ * Copyright 2014 Bademus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *    Contributors:
+ *                 Bademus
+ */
+
+package org.github.bademux.feedly.api.extensions.java11.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Flow;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Response content of {@link Http2Response} that waits at most the read timeout for each chunk of
+ * the body, like a socket with {@link java.net.Socket#setSoTimeout(int)}. {@link
+ * java.net.http.HttpClient} has no such timeout, its request timeout ends once the headers
+ * arrive.
+ *
+ * <p> Chunks are requested one at a time, so at most one chunk is buffered ahead of the reader.
+ * </p>
+ */
+final class Http2ResponseContent extends InputStream
+    implements Flow.Subscriber<List<ByteBuffer>> {
+
+  /** Marks the end of the body, compared by identity. */
+  private static final List<ByteBuffer> END = new ArrayList<ByteBuffer>(0);
+
+  private final BlockingQueue<List<ByteBuffer>> chunks =
+      new LinkedBlockingQueue<List<ByteBuffer>>();
+
+  /** Max time a read waits for the next chunk, {@code 0} for no limit. */
+  private final int readTimeoutMillis;
+
+  private volatile Flow.Subscription subscription;
+
+  private volatile Throwable failure;
+
+  private volatile boolean closed;
+
+  private Iterator<ByteBuffer> buffers = Collections.<ByteBuffer>emptyList().iterator();
+
+  private ByteBuffer buffer;
+
+  private boolean ended;
+
+  /** @param readTimeoutMillis max time a read waits for the next chunk, {@code 0} for no limit */
+  Http2ResponseContent(int readTimeoutMillis) {
+    this.readTimeoutMillis = readTimeoutMillis;
+  }
+
+  @Override
+  public void onSubscribe(Flow.Subscription subscription) {
+    this.subscription = subscription;
+    if (closed) {
+      subscription.cancel();
+    } else {
+      subscription.request(1);
+    }
+  }
+
+  @Override
+  public void onNext(List<ByteBuffer> item) {
+    chunks.offer(item);
+  }
+
+  @Override
+  public void onError(Throwable throwable) {
+    failure = throwable;
+    chunks.offer(END);
+  }
+
+  @Override
+  public void onComplete() {
+    chunks.offer(END);
+  }
+
+  @Override
+  public int read() throws IOException {
+    ByteBuffer current = nextBuffer();
+    return current == null ? -1 : current.get() & 0xff;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    if (off < 0 || len < 0 || len > b.length - off) {
+      throw new IndexOutOfBoundsException();
+    }
+    if (len == 0) {
+      return 0;
+    }
+    ByteBuffer current = nextBuffer();
+    if (current == null) {
+      return -1;
+    }
+    int read = Math.min(len, current.remaining());
+    current.get(b, off, read);
+    return read;
+  }
+
+  @Override
+  public int available() throws IOException {
+    return buffer == null ? 0 : buffer.remaining();
+  }
+
+  /** Cancels the body, that resets the HTTP/2 stream or releases the connection. */
+  @Override
+  public void close() throws IOException {
+    closed = true;
+    Flow.Subscription current = subscription;
+    if (current != null) {
+      current.cancel();
+    }
+  }
+
+  /** Returns the buffer with remaining bytes or {@code null} at the end of the body. */
+  private ByteBuffer nextBuffer() throws IOException {
+    while (buffer == null || !buffer.hasRemaining()) {
+      if (closed) {
+        throw new IOException("Stream closed");
+      }
+      if (buffers.hasNext()) {
+        buffer = buffers.next();
+        continue;
+      }
+      if (ended) {
+        if (failure != null) {
+          throw failure instanceof IOException ? (IOException) failure : new IOException(failure);
+        }
+        return null;
+      }
+      List<ByteBuffer> chunk = takeChunk();
+      if (chunk == END) {
+        ended = true;
+      } else {
+        buffers = chunk.iterator();
+        subscription.request(1);
+      }
+    }
+    return buffer;
+  }
+
+  private List<ByteBuffer> takeChunk() throws IOException {
+    List<ByteBuffer> chunk;
+    try {
+      chunk = readTimeoutMillis > 0 ? chunks.poll(readTimeoutMillis, TimeUnit.MILLISECONDS)
+                                    : chunks.take();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for the response content");
+    }
+    if (chunk == null) {
+      throw new SocketTimeoutException("Read timed out");
+    }
+    return chunk;
+  }
+}
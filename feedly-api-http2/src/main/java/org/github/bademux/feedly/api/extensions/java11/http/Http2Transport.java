@@ -0,0 +1,99 @@
+/*
+ * Copyright 2014 Bademus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *    Contributors:
+ *                 Bademus
+ */
+
+package org.github.bademux.feedly.api.extensions.java11.http;
+
+import com.google.api.client.http.HttpMethods;
+import com.google.api.client.http.HttpTransport;
+import com.google.api.client.util.Preconditions;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.Arrays;
+
+/**
+ * Thread-safe HTTP transport based on {@link HttpClient}, the JDK 11 HTTP client.
+ *
+ * <p> Requests are multiplexed over HTTP/2 when the server supports it, falling back to HTTP/1.1
+ * keep-alive connections otherwise, so hundreds of concurrent requests share a few connections
+ * instead of paying a TLS handshake per socket. Socket I/O is asynchronous and is done by the
+ * client's selector thread. Example usage: </p>
+ *
+ * <pre>
+ * Feedly feedly = new Feedly.Builder(new Http2Transport(), jsonFactory, credential).build();
+ * </pre>
+ *
+ * <p> The connect timeout is fixed per client, see {@link #Http2Transport(HttpClient)}, the
+ * request timeouts set with {@link com.google.api.client.http.HttpRequest#setConnectTimeout(int)}
+ * and {@link com.google.api.client.http.HttpRequest#setReadTimeout(int)} are summed up into the
+ * time allowed until the response headers arrive. Each read of the response content then waits
+ * at most the read timeout, like a socket read. </p>
+ *
+ * <p> It is in the {@code feedly-api-http2} module that requires Java 11, the other modules run
+ * on Java 6/7. </p>
+ *
+ * <p> Implementation is thread-safe. For maximum efficiency, applications should use a single
+ * globally-shared instance of the HTTP transport. </p>
+ */
+public final class Http2Transport extends HttpTransport {
+
+  /** Default connect timeout, the same as of {@link com.google.api.client.http.HttpRequest}. */
+  public static final int DEFAULT_CONNECT_TIMEOUT_MILLIS = 20 * 1000;
+
+  private static final String[] SUPPORTED_METHODS = {HttpMethods.DELETE, HttpMethods.GET,
+      HttpMethods.HEAD, HttpMethods.OPTIONS, HttpMethods.PATCH, HttpMethods.POST, HttpMethods.PUT};
+
+  static {
+    Arrays.sort(SUPPORTED_METHODS);
+  }
+
+  private final HttpClient httpClient;
+
+  /** Uses a new HTTP/2 client with the default connect timeout. */
+  public Http2Transport() {
+    this(HttpClient.newBuilder()
+             .version(HttpClient.Version.HTTP_2)
+             .connectTimeout(Duration.ofMillis(DEFAULT_CONNECT_TIMEOUT_MILLIS))
+             .build());
+  }
+
+  /**
+   * @param httpClient client to send requests with, it should not follow redirects as {@link
+   *                   com.google.api.client.http.HttpRequest} follows them
+   */
+  public Http2Transport(HttpClient httpClient) {
+    this.httpClient = Preconditions.checkNotNull(httpClient);
+  }
+
+  /** Returns the client requests are sent with. */
+  public HttpClient getHttpClient() {
+    return httpClient;
+  }
+
+  @Override
+  public boolean supportsMethod(String method) {
+    return Arrays.binarySearch(SUPPORTED_METHODS, method) >= 0;
+  }
+
+  @Override
+  protected Http2Request buildRequest(String method, String url) {
+    Preconditions.checkArgument(supportsMethod(method), "HTTP method %s not supported", method);
+    return new Http2Request(httpClient, method, url);
+  }
+}
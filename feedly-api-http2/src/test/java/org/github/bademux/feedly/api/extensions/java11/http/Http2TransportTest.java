@@ -0,0 +1,211 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *  Contributors:
+ *               Bademus
+ */
+
+
+package org.github.bademux.feedly.api.extensions.java11.http;
+
+import com.google.api.client.http.ByteArrayContent;
+import com.google.api.client.http.GenericUrl;
+import com.google.api.client.http.HttpRequest;
+import com.google.api.client.http.HttpRequestFactory;
+import com.google.api.client.http.HttpResponse;
+import com.google.api.client.http.HttpResponseException;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.http.HttpTimeoutException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class Http2TransportTest {
+
+  /** Slow handlers wait for it, so timeouts don't depend on sleeps. */
+  private final CountDownLatch release = new CountDownLatch(1);
+
+  private ExecutorService executor;
+
+  private HttpServer server;
+
+  private HttpRequestFactory requestFactory;
+
+  @Before
+  public void setUp() throws Exception {
+    executor = Executors.newCachedThreadPool();
+    server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    server.setExecutor(executor);
+    server.createContext("/echo", new HttpHandler() {
+      public void handle(HttpExchange exchange) throws IOException {
+        byte[] body = readAll(exchange.getRequestBody());
+        exchange.getResponseHeaders().add("Content-Type", "text/plain; charset=UTF-8");
+        exchange.getResponseHeaders().add("X-Method", exchange.getRequestMethod());
+        exchange.getResponseHeaders().add(
+            "X-Echo", String.valueOf(exchange.getRequestHeaders().getFirst("X-Echo")));
+        exchange.sendResponseHeaders(200, body.length == 0 ? -1 : body.length);
+        exchange.getResponseBody().write(body);
+        exchange.close();
+      }
+    });
+    server.createContext("/missing", new HttpHandler() {
+      public void handle(HttpExchange exchange) throws IOException {
+        byte[] body = "{\"errorCode\":404}".getBytes("UTF-8");
+        exchange.sendResponseHeaders(404, body.length);
+        exchange.getResponseBody().write(body);
+        exchange.close();
+      }
+    });
+    server.createContext("/slow-headers", new HttpHandler() {
+      public void handle(HttpExchange exchange) throws IOException {
+        await();
+        exchange.sendResponseHeaders(204, -1);
+        exchange.close();
+      }
+    });
+    server.createContext("/slow-body", new HttpHandler() {
+      public void handle(HttpExchange exchange) throws IOException {
+        exchange.sendResponseHeaders(200, 0);
+        OutputStream body = exchange.getResponseBody();
+        body.write("first".getBytes("UTF-8"));
+        body.flush();
+        await();
+        body.write("second".getBytes("UTF-8"));
+        exchange.close();
+      }
+    });
+    server.start();
+    requestFactory = new Http2Transport().createRequestFactory();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    release.countDown();
+    server.stop(0);
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void testRoundTrip() throws Exception {
+    HttpRequest request = requestFactory.buildPostRequest(
+        url("/echo"), ByteArrayContent.fromString("application/json", "{\"id\":\"user\"}"));
+    request.getHeaders().set("X-Echo", "value");
+
+    HttpResponse response = request.execute();
+    try {
+      assertEquals(200, response.getStatusCode());
+      assertEquals("POST", response.getHeaders().getFirstHeaderStringValue("X-Method"));
+      assertEquals("value", response.getHeaders().getFirstHeaderStringValue("X-Echo"));
+      assertEquals("text/plain; charset=UTF-8", response.getContentType());
+      assertEquals("{\"id\":\"user\"}", response.parseAsString());
+    } finally {
+      response.disconnect();
+    }
+  }
+
+  @Test
+  public void testBodilessRequest() throws Exception {
+    HttpResponse response = requestFactory.buildDeleteRequest(url("/echo")).execute();
+    try {
+      assertEquals("DELETE", response.getHeaders().getFirstHeaderStringValue("X-Method"));
+      assertEquals("", response.parseAsString());
+    } finally {
+      response.disconnect();
+    }
+  }
+
+  @Test
+  public void testErrorResponse() throws Exception {
+    try {
+      requestFactory.buildGetRequest(url("/missing")).execute();
+      fail("404 must fail the request");
+    } catch (HttpResponseException e) {
+      assertEquals(404, e.getStatusCode());
+      assertEquals("{\"errorCode\":404}", e.getContent());
+    }
+  }
+
+  @Test
+  public void testSlowHeadersTimeOut() throws Exception {
+    HttpRequest request = requestFactory.buildGetRequest(url("/slow-headers"))
+        .setConnectTimeout(100).setReadTimeout(100);
+
+    try {
+      request.execute();
+      fail("the request must time out");
+    } catch (HttpTimeoutException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testSlowBodyTimesOut() throws Exception {
+    HttpResponse response = requestFactory.buildGetRequest(url("/slow-body"))
+        .setReadTimeout(200).execute();
+    InputStream content = response.getContent();
+    try {
+      byte[] first = new byte[5];
+      int read = 0;
+      while (read < first.length) {
+        read += content.read(first, read, first.length - read);
+      }
+      assertEquals("first", new String(first, "UTF-8"));
+      content.read();
+      fail("the read must time out");
+    } catch (SocketTimeoutException e) {
+      // expected
+    } finally {
+      response.disconnect();
+    }
+  }
+
+  private GenericUrl url(String path) {
+    return new GenericUrl("http://" + server.getAddress().getHostString() + ":"
+                          + server.getAddress().getPort() + path);
+  }
+
+  private void await() throws IOException {
+    try {
+      release.await(5, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      throw new IOException(e);
+    }
+  }
+
+  private static byte[] readAll(InputStream in) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buffer = new byte[512];
+    for (int read; (read = in.read(buffer)) != -1; ) {
+      out.write(buffer, 0, read);
+    }
+    return out.toByteArray();
+  }
+}
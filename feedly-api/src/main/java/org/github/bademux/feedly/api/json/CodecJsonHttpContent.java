@@ -0,0 +1,56 @@
+/*
+ * Copyright 2014 Bademus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *    Contributors:
+ *                 Bademus
+ */
+
+package org.github.bademux.feedly.api.json;
+
+import com.google.api.client.http.json.JsonHttpContent;
+import com.google.api.client.json.JsonFactory;
+import com.google.api.client.json.JsonGenerator;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * JSON HTTP content that writes classes with a {@link GenerateCodec generated codec} without
+ * reflection, other types are written by {@link JsonHttpContent}.
+ */
+public class CodecJsonHttpContent extends JsonHttpContent {
+
+  /**
+   * @param jsonFactory JSON factory to use
+   * @param data        JSON key name/value data
+   */
+  public CodecJsonHttpContent(JsonFactory jsonFactory, Object data) {
+    super(jsonFactory, data);
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public void writeTo(OutputStream out) throws IOException {
+    JsonCodec<Object> codec = getWrapperKey() == null
+                              ? (JsonCodec<Object>) JsonCodecs.get(getData().getClass()) : null;
+    if (codec == null) {
+      super.writeTo(out);
+      return;
+    }
+    JsonGenerator generator = getJsonFactory().createJsonGenerator(out, getCharset());
+    codec.write(generator, getData());
+    generator.flush();
+  }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2014 Bademus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *    Contributors:
+ *                 Bademus
+ */
+
+package org.github.bademux.feedly.api.json;
+
+import com.google.api.client.json.JsonFactory;
+import com.google.api.client.json.JsonObjectParser;
+import com.google.api.client.json.JsonParser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.lang.reflect.Type;
+import java.nio.charset.Charset;
+
+import static com.google.api.client.util.Preconditions.checkNotNull;
+
+/**
+ * JSON object parser that reads classes with a {@link GenerateCodec generated codec} without
+ * reflection, other types are parsed by {@link JsonObjectParser}. Unknown fields are dropped only
+ * by the generated codecs, if the {@link ParseContext} says so.
+ *
+ * <p> Implementation is thread-safe. </p>
+ */
+public class CodecObjectParser extends JsonObjectParser {
+
+  private final ParseContext context;
+
+  public CodecObjectParser(JsonFactory jsonFactory) {
+    this(jsonFactory, ParseContext.DEFAULT);
+  }
+
+  /** @param context options of parsing with generated codecs */
+  public CodecObjectParser(JsonFactory jsonFactory, ParseContext context) {
+    super(jsonFactory);
+    this.context = checkNotNull(context);
+  }
+
+  /** Returns options of parsing with generated codecs. */
+  public final ParseContext getParseContext() {
+    return context;
+  }
+
+  @Override
+  public Object parseAndClose(InputStream in, Charset charset, Type dataType) throws IOException {
+    JsonCodec<?> codec = codecOf(dataType);
+    if (codec == null) {
+      return super.parseAndClose(in, charset, dataType);
+    }
+    return readAndClose(getJsonFactory().createJsonParser(in, charset), codec);
+  }
+
+  @Override
+  public Object parseAndClose(Reader reader, Type dataType) throws IOException {
+    JsonCodec<?> codec = codecOf(dataType);
+    if (codec == null) {
+      return super.parseAndClose(reader, dataType);
+    }
+    return readAndClose(getJsonFactory().createJsonParser(reader), codec);
+  }
+
+  /** Returns the codec or {@code null} if the type has none or must be unwrapped. */
+  private JsonCodec<?> codecOf(Type dataType) {
+    return dataType instanceof Class && getWrapperKeys().isEmpty()
+           ? JsonCodecs.get((Class<?>) dataType) : null;
+  }
+
+  private Object readAndClose(JsonParser parser, JsonCodec<?> codec) throws IOException {
+    try {
+      parser.nextToken();
+      return codec.read(parser, context.forPage());
+    } finally {
+      parser.close();
+    }
+  }
+}
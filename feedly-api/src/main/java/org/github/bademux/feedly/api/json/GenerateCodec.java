@@ -0,0 +1,44 @@
+/*
+ * Copyright 2014 Bademus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *    Contributors:
+ *                 Bademus
+ */
+
+package org.github.bademux.feedly.api.json;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Generates a reflection-free {@link JsonCodec} for the annotated class at compile time.
+ *
+ * <p> The codec of {@code Entry.Location} is {@code Entry_LocationCodec} in the same package,
+ * {@link CodecObjectParser} and {@link CodecJsonHttpContent} find and use it. Supported are
+ * classes with a no-arg constructor and {@link com.google.api.client.util.Key} fields and
+ * subclasses of {@link java.util.ArrayList}. Private {@code @Key} fields need a non-private setter
+ * {@code setName} and getter {@code getName} or {@code name}, other fields are accessed directly.
+ * Their type must be a string, a primitive, {@link Object}, an annotated class, an enum, or a
+ * {@link java.util.List} or {@link java.util.Map} with string keys of those.
+ * Enums need no annotation, their codecs map {@link com.google.api.client.util.Value} constants
+ * and are generated along. </p>
+ */
+@Documented
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.TYPE)
+public @interface GenerateCodec {}
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2014 Bademus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *    Contributors:
+ *                 Bademus
+ */
+
+package org.github.bademux.feedly.api.json;
+
+import com.google.api.client.json.JsonGenerator;
+import com.google.api.client.json.JsonParser;
+
+import java.io.IOException;
+
+/**
+ * Streaming reader and writer of JSON values of a type, see {@link GenerateCodec}.
+ *
+ * <p> Implementation is thread-safe. </p>
+ *
+ * @param <T> type of the value
+ */
+public interface JsonCodec<T> {
+
+  /**
+   * Reads the value the parser is at, the current token is the first token of the value and is
+   * left at the last one, like {@code END_OBJECT}.
+   *
+   * @param context options of the parse, passed on to the codecs of nested values
+   * @return the value or {@code null} for JSON {@code null}
+   */
+  T read(JsonParser parser, ParseContext context) throws IOException;
+
+  /** Writes the value, {@code null} is written as JSON {@code null}. */
+  void write(JsonGenerator generator, T value) throws IOException;
+}
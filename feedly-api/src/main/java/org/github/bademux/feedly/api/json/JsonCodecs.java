@@ -0,0 +1,355 @@
+/*
+ * Copyright 2014 Bademus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *    Contributors:
+ *                 Bademus
+ */
+
+package org.github.bademux.feedly.api.json;
+
+import com.google.api.client.json.JsonGenerator;
+import com.google.api.client.json.JsonParser;
+import com.google.api.client.json.JsonToken;
+import com.google.api.client.util.ArrayMap;
+import com.google.api.client.util.Data;
+import com.google.api.client.util.GenericData;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Codecs of basic types and lookup of the codecs generated for {@link GenerateCodec} classes.
+ *
+ * <p> Values are read like {@link JsonParser#parse(Class)} reads them: numbers may be quoted,
+ * objects without a field to hold them become {@link ArrayMap}s and numbers {@link
+ * java.math.BigDecimal}s. </p>
+ */
+public final class JsonCodecs {
+
+  public static final JsonCodec<String> STRING = new JsonCodec<String>() {
+    public String read(JsonParser parser, ParseContext context) throws IOException {
+      return parser.getCurrentToken() == JsonToken.VALUE_NULL ? null : scalarText(parser);
+    }
+
+    public void write(JsonGenerator generator, String value) throws IOException {
+      if (value == null) {
+        generator.writeNull();
+      } else {
+        generator.writeString(value);
+      }
+    }
+  };
+
+  /** Reads strings like {@link #STRING} and deduplicates them in the pool of the context. */
+  public static final JsonCodec<String> POOLED_STRING = new JsonCodec<String>() {
+    public String read(JsonParser parser, ParseContext context) throws IOException {
+      return context.pool(STRING.read(parser, context));
+    }
+
+    public void write(JsonGenerator generator, String value) throws IOException {
+      STRING.write(generator, value);
+    }
+  };
+
+  public static final JsonCodec<Long> LONG = new JsonCodec<Long>() {
+    public Long read(JsonParser parser, ParseContext context) throws IOException {
+      switch (parser.getCurrentToken()) {
+        case VALUE_NULL: return null;
+        case VALUE_STRING: return Long.valueOf(parser.getText());
+        default: checkNumber(parser); return parser.getLongValue();
+      }
+    }
+
+    public void write(JsonGenerator generator, Long value) throws IOException {
+      if (value == null) {
+        generator.writeNull();
+      } else {
+        generator.writeNumber(value);
+      }
+    }
+  };
+
+  public static final JsonCodec<Integer> INTEGER = new JsonCodec<Integer>() {
+    public Integer read(JsonParser parser, ParseContext context) throws IOException {
+      switch (parser.getCurrentToken()) {
+        case VALUE_NULL: return null;
+        case VALUE_STRING: return Integer.valueOf(parser.getText());
+        default: checkNumber(parser); return parser.getIntValue();
+      }
+    }
+
+    public void write(JsonGenerator generator, Integer value) throws IOException {
+      if (value == null) {
+        generator.writeNull();
+      } else {
+        generator.writeNumber(value);
+      }
+    }
+  };
+
+  public static final JsonCodec<Double> DOUBLE = new JsonCodec<Double>() {
+    public Double read(JsonParser parser, ParseContext context) throws IOException {
+      switch (parser.getCurrentToken()) {
+        case VALUE_NULL: return null;
+        case VALUE_STRING: return Double.valueOf(parser.getText());
+        default: checkNumber(parser); return parser.getDoubleValue();
+      }
+    }
+
+    public void write(JsonGenerator generator, Double value) throws IOException {
+      if (value == null) {
+        generator.writeNull();
+      } else {
+        generator.writeNumber(value);
+      }
+    }
+  };
+
+  public static final JsonCodec<Boolean> BOOLEAN = new JsonCodec<Boolean>() {
+    public Boolean read(JsonParser parser, ParseContext context) throws IOException {
+      switch (parser.getCurrentToken()) {
+        case VALUE_NULL: return null;
+        case VALUE_TRUE: return Boolean.TRUE;
+        case VALUE_FALSE: return Boolean.FALSE;
+        case VALUE_STRING: return Boolean.valueOf(parser.getText());
+        default: throw unexpected(parser, "boolean");
+      }
+    }
+
+    public void write(JsonGenerator generator, Boolean value) throws IOException {
+      if (value == null) {
+        generator.writeNull();
+      } else {
+        generator.writeBoolean(value);
+      }
+    }
+  };
+
+  /**
+   * Reads any value into maps, lists, strings, big decimals and booleans, {@code null} into the
+   * magic {@link Data#nullOf(Class) null object}, so it is written back.
+   */
+  public static final JsonCodec<Object> ANY = new JsonCodec<Object>() {
+    public Object read(JsonParser parser, ParseContext context) throws IOException {
+      switch (parser.getCurrentToken()) {
+        case START_OBJECT:
+          Map<String, Object> map = ArrayMap.create();
+          while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            parser.nextToken();
+            map.put(name, read(parser, context));
+          }
+          return map;
+        case START_ARRAY:
+          List<Object> list = new ArrayList<Object>();
+          while (parser.nextToken() != JsonToken.END_ARRAY) {
+            list.add(read(parser, context));
+          }
+          return list;
+        case VALUE_STRING: return parser.getText();
+        case VALUE_NUMBER_INT:
+        case VALUE_NUMBER_FLOAT: return parser.getDecimalValue();
+        case VALUE_TRUE: return Boolean.TRUE;
+        case VALUE_FALSE: return Boolean.FALSE;
+        case VALUE_NULL: return Data.nullOf(Object.class);
+        default: throw unexpected(parser, "value");
+      }
+    }
+
+    public void write(JsonGenerator generator, Object value) throws IOException {
+      if (value == null) {
+        generator.writeNull();
+      } else {
+        generator.serialize(value);
+      }
+    }
+  };
+
+  /** Returns the codec of lists, {@link ArrayList}s are read. */
+  public static <E> JsonCodec<List<E>> listOf(final JsonCodec<E> elementCodec) {
+    return new JsonCodec<List<E>>() {
+      public List<E> read(JsonParser parser, ParseContext context) throws IOException {
+        return parser.getCurrentToken() == JsonToken.VALUE_NULL
+               ? null : readElements(parser, context, new ArrayList<E>(), elementCodec);
+      }
+
+      public void write(JsonGenerator generator, List<E> value) throws IOException {
+        writeElements(generator, value, elementCodec);
+      }
+    };
+  }
+
+  /** Returns the codec of maps with string keys, {@link ArrayMap}s are read. */
+  public static <V> JsonCodec<Map<String, V>> mapOf(final JsonCodec<V> valueCodec) {
+    return new JsonCodec<Map<String, V>>() {
+      public Map<String, V> read(JsonParser parser, ParseContext context) throws IOException {
+        if (parser.getCurrentToken() == JsonToken.VALUE_NULL) {
+          return null;
+        }
+        checkStartObject(parser);
+        Map<String, V> map = ArrayMap.create();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+          String name = parser.getCurrentName();
+          parser.nextToken();
+          map.put(name, valueCodec.read(parser, context));
+        }
+        return map;
+      }
+
+      public void write(JsonGenerator generator, Map<String, V> value) throws IOException {
+        if (value == null) {
+          generator.writeNull();
+          return;
+        }
+        generator.writeStartObject();
+        for (Map.Entry<String, V> entry : value.entrySet()) {
+          generator.writeFieldName(entry.getKey());
+          valueCodec.write(generator, entry.getValue());
+        }
+        generator.writeEndObject();
+      }
+    };
+  }
+
+  /** Reads elements of the array the parser is at into the collection. */
+  public static <E, C extends Collection<E>> C readElements(JsonParser parser,
+                                                            ParseContext context, C collection,
+                                                            JsonCodec<E> elementCodec)
+      throws IOException {
+    if (parser.getCurrentToken() != JsonToken.START_ARRAY) {
+      throw unexpected(parser, "array");
+    }
+    while (parser.nextToken() != JsonToken.END_ARRAY) {
+      collection.add(elementCodec.read(parser, context));
+    }
+    return collection;
+  }
+
+  /** Writes the collection as an array, {@code null} as JSON {@code null}. */
+  public static <E> void writeElements(JsonGenerator generator, Collection<E> collection,
+                                       JsonCodec<E> elementCodec) throws IOException {
+    if (collection == null) {
+      generator.writeNull();
+      return;
+    }
+    generator.writeStartArray();
+    for (E element : collection) {
+      elementCodec.write(generator, element);
+    }
+    generator.writeEndArray();
+  }
+
+  /**
+   * Reads the value of a field that has no {@link com.google.api.client.util.Key} field into the
+   * unknown keys of the data, or skips it if the context drops unknown fields.
+   */
+  public static void readUnknownKey(JsonParser parser, ParseContext context, String name,
+                                    GenericData data) throws IOException {
+    if (context.getDropUnknownFields()) {
+      parser.skipChildren();
+    } else {
+      data.getUnknownKeys().put(name, ANY.read(parser, context));
+    }
+  }
+
+  /** Writes fields of the map that has no {@link com.google.api.client.util.Key} field. */
+  public static void writeUnknownKeys(JsonGenerator generator, Map<String, Object> unknownKeys)
+      throws IOException {
+    for (Map.Entry<String, Object> entry : unknownKeys.entrySet()) {
+      generator.writeFieldName(entry.getKey());
+      ANY.write(generator, entry.getValue());
+    }
+  }
+
+  /** Checks that the parser is at the start of an object. */
+  public static void checkStartObject(JsonParser parser) {
+    if (parser.getCurrentToken() != JsonToken.START_OBJECT) {
+      throw unexpected(parser, "object");
+    }
+  }
+
+  private static void checkNumber(JsonParser parser) {
+    JsonToken token = parser.getCurrentToken();
+    if (token != JsonToken.VALUE_NUMBER_INT && token != JsonToken.VALUE_NUMBER_FLOAT) {
+      throw unexpected(parser, "number");
+    }
+  }
+
+  private static String scalarText(JsonParser parser) throws IOException {
+    switch (parser.getCurrentToken()) {
+      case START_OBJECT:
+      case START_ARRAY:
+        throw unexpected(parser, "string");
+      default:
+        return parser.getText();
+    }
+  }
+
+  /** Returns the exception thrown for a value of unexpected type. */
+  public static IllegalArgumentException unexpected(JsonParser parser, String expected) {
+    return new IllegalArgumentException(
+        "expected " + expected + " but was " + parser.getCurrentToken());
+  }
+
+  /**
+   * Returns the codec generated for the class or {@code null} if there is none. The lookup is
+   * reflective, but done once per class.
+   */
+  @SuppressWarnings("unchecked")
+  public static <T> JsonCodec<T> get(Class<T> type) {
+    Object codec = CODECS.get(type);
+    if (codec == null) {
+      codec = find(type);
+      CODECS.putIfAbsent(type, codec);
+    }
+    return codec == NONE ? null : (JsonCodec<T>) codec;
+  }
+
+  private static Object find(Class<?> type) {
+    if (type.isPrimitive() || type.isArray() || type.getClassLoader() == null) {
+      return NONE;
+    }
+    String name = type.getName();
+    int packageEnd = name.lastIndexOf('.');
+    String codecName = name.substring(0, packageEnd + 1)
+                       + name.substring(packageEnd + 1).replace('$', '_') + CODEC_SUFFIX;
+    try {
+      Class<?> codecClass = Class.forName(codecName, true, type.getClassLoader());
+      return codecClass.getField("INSTANCE").get(null);
+    } catch (ClassNotFoundException e) {
+      return NONE;
+    } catch (NoSuchFieldException e) {
+      return NONE;
+    } catch (IllegalAccessException e) {
+      return NONE;
+    }
+  }
+
+  /** Suffix of the generated codec class name. */
+  public static final String CODEC_SUFFIX = "Codec";
+
+  /** Codecs by class, {@link #NONE} for classes without one. */
+  private static final ConcurrentMap<Class<?>, Object> CODECS =
+      new ConcurrentHashMap<Class<?>, Object>();
+
+  private static final Object NONE = new Object();
+
+  private JsonCodecs() {}
+}
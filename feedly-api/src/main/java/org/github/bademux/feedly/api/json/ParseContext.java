@@ -0,0 +1,109 @@
+/*
+ * Copyright 2014 Bademus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *    Contributors:
+ *                 Bademus
+ */
+
+package org.github.bademux.feedly.api.json;
+
+import static com.google.api.client.util.Preconditions.checkArgument;
+
+/**
+ * Options of parsing with {@link JsonCodec}s, passed down to the codecs of nested values.
+ *
+ * <p> Implementation is immutable and thread-safe. </p>
+ */
+public final class ParseContext {
+
+  /** Keeps unknown fields in {@link com.google.api.client.util.GenericData}. */
+  public static final ParseContext DEFAULT = new ParseContext(false);
+
+  private final boolean dropUnknownFields;
+
+  /** Pool of {@link Pooled} strings shared by all parses or {@code null} for none. */
+  private final StringPool stringPool;
+
+  /** Capacity of the pool created for each parsed response or {@code 0} for none. */
+  private final int pageStringPoolCapacity;
+
+  /**
+   * @param dropUnknownFields whether values of fields without a {@link
+   *                          com.google.api.client.util.Key} field are skipped at the token level
+   *                          instead of being kept as unknown keys of {@link
+   *                          com.google.api.client.util.GenericData}
+   */
+  public ParseContext(boolean dropUnknownFields) {
+    this(dropUnknownFields, null, 0);
+  }
+
+  private ParseContext(boolean dropUnknownFields, StringPool stringPool,
+                       int pageStringPoolCapacity) {
+    this.dropUnknownFields = dropUnknownFields;
+    this.stringPool = stringPool;
+    this.pageStringPoolCapacity = pageStringPoolCapacity;
+  }
+
+  /** Returns whether values of unknown fields are skipped instead of being kept. */
+  public boolean getDropUnknownFields() {
+    return dropUnknownFields;
+  }
+
+  /** Returns the pool of {@link Pooled} strings of this parse or {@code null} for none. */
+  public StringPool getStringPool() {
+    return stringPool;
+  }
+
+  /** Returns the capacity of the pool created for each parsed response or {@code 0} for none. */
+  public int getPageStringPoolCapacity() {
+    return pageStringPoolCapacity;
+  }
+
+  /** Returns a copy that drops unknown fields or keeps them. */
+  public ParseContext withDropUnknownFields(boolean dropUnknownFields) {
+    return new ParseContext(dropUnknownFields, stringPool, pageStringPoolCapacity);
+  }
+
+  /**
+   * Returns a copy that deduplicates {@link Pooled} strings of all parses in the given pool or
+   * not at all for {@code null}.
+   */
+  public ParseContext withStringPool(StringPool stringPool) {
+    return new ParseContext(dropUnknownFields, stringPool, 0);
+  }
+
+  /**
+   * Returns a copy that deduplicates {@link Pooled} strings of each parsed response in a new pool
+   * of the given capacity or not at all for {@code 0}.
+   */
+  public ParseContext withPageStringPool(int capacity) {
+    checkArgument(capacity >= 0, "capacity must not be negative");
+    return new ParseContext(dropUnknownFields, null, capacity);
+  }
+
+  /**
+   * Returns the context of parsing one response, with a new string pool if pools are per
+   * response.
+   */
+  public ParseContext forPage() {
+    return pageStringPoolCapacity == 0
+           ? this : new ParseContext(dropUnknownFields, new StringPool(pageStringPoolCapacity), 0);
+  }
+
+  /** Returns the pooled instance equal to the string, or the string itself. */
+  public String pool(String value) {
+    return stringPool == null ? value : stringPool.intern(value);
+  }
+}
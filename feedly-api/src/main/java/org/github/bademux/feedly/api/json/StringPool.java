@@ -0,0 +1,83 @@
+/*
+ * Copyright 2014 Bademus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *    Contributors:
+ *                 Bademus
+ */
+
+package org.github.bademux.feedly.api.json;
+
+import static com.google.api.client.util.Preconditions.checkArgument;
+
+/**
+ * Bounded pool that deduplicates equal strings, like ids and titles of feeds repeated by every
+ * entry of a page, so parsed objects share one instance.
+ *
+ * <p> The pool is a hash table of fixed capacity without collision chains: a string goes into a
+ * pair of slots that keeps the most recently used string first, and a new string replaces the
+ * least recently used one. Memory stays bounded and a string that keeps repeating is not evicted
+ * by a single newcomer. Unlike {@link String#intern()} pooled strings are collected with the
+ * pool. </p>
+ *
+ * <p> Implementation is thread-safe, a lost race only misses a deduplication. </p>
+ */
+public final class StringPool {
+
+  public static final int DEFAULT_CAPACITY = 1024;
+
+  /** Longer strings are not pooled, they are rarely repeated. */
+  static final int MAX_LENGTH = 512;
+
+  private final String[] table;
+
+  public StringPool() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  /** @param capacity max number of pooled strings, rounded up to a power of two of at least 2 */
+  public StringPool(int capacity) {
+    checkArgument(capacity > 0 && capacity <= 1 << 30, "capacity must be in (0, 2^30]");
+    int size = 2;
+    while (size < capacity) {
+      size <<= 1;
+    }
+    table = new String[size];
+  }
+
+  /** Returns the capacity of the pool. */
+  public int getCapacity() {
+    return table.length;
+  }
+
+  /** Returns the pooled instance equal to the string or pools the string, {@code null} stays. */
+  public String intern(String value) {
+    if (value == null || value.length() > MAX_LENGTH) {
+      return value;
+    }
+    int hash = value.hashCode();
+    int first = (hash ^ hash >>> 16) & (table.length - 2);
+    String recent = table[first];
+    if (recent != null && recent.equals(value)) {
+      return recent;
+    }
+    String pooled = table[first + 1];
+    if (pooled != null && pooled.equals(value)) {
+      value = pooled;
+    }
+    table[first + 1] = recent;
+    table[first] = value;
+    return value;
+  }
+}
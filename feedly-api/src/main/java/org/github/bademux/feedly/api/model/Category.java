@@ -21,9 +21,13 @@ package org.github.bademux.feedly.api.model;
 
 import com.google.api.client.util.Key;
 
+import org.github.bademux.feedly.api.json.GenerateCodec;
+import org.github.bademux.feedly.api.json.Pooled;
+
 import java.util.ArrayList;
 
 
+@GenerateCodec
 public class Category extends IdGenericJson implements Markable, Stream {
 
   public static final String PREFIX = "category";
@@ -36,6 +40,7 @@ public class Category extends IdGenericJson implements Markable, Stream {
   public static final String UNCATEGORIZED = "global.uncategorized";
 
   @Key
+  @Pooled
   private String label;
 
   /**
@@ -66,6 +71,7 @@ public class Category extends IdGenericJson implements Markable, Stream {
   public Category clone() { return (Category) super.clone(); }
 
   @SuppressWarnings("serial")
+  @GenerateCodec
   public static class Categories extends ArrayList<Category> {}
 }
 
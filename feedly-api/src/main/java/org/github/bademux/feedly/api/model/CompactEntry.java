@@ -0,0 +1,425 @@
+/*
+ * Copyright 2014 Bademus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *    Contributors:
+ *                 Bademus
+ */
+
+package org.github.bademux.feedly.api.model;
+
+import org.github.bademux.feedly.api.model.Entry.Content.Direction;
+import org.github.bademux.feedly.api.model.Entry.Enclosure;
+import org.github.bademux.feedly.api.model.Entry.Location;
+import org.github.bademux.feedly.api.model.Entry.Origin;
+import org.github.bademux.feedly.api.model.Entry.Visual;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable and compact alternative to {@link Entry} for large in-memory caches.
+ *
+ * <p> Timestamps and engagement are primitives, absent values are {@link #NO_TIMESTAMP} and
+ * {@link #NO_ENGAGEMENT}. Content and summary are kept as UTF-8 slices of a single byte array and
+ * decoded on each access, so callers that read them repeatedly should keep the string. Unknown JSON
+ * fields of the entry and the deprecated {@code engagementRate} and {@code canonical} are not
+ * kept. </p>
+ *
+ * <p> Lists are unmodifiable, but origin, visual, alternate links, tags, categories and enclosures
+ * are the mutable model objects of {@link Entry}: they are shared, not copied, and must not be
+ * modified. {@link CompactEntryCodec} parses them without unknown fields, {@link #of(Entry)} keeps
+ * the nested objects of the entry as they are. </p>
+ *
+ * <p> Parsed directly from the JSON by {@link CompactEntryCodec}, see {@code
+ * Feedly.Streams.Contents#forEachCompactEntry}, or converted with {@link #of(Entry)}. </p>
+ *
+ * <p> Implementation is thread-safe. </p>
+ */
+public final class CompactEntry implements Markable {
+
+  /** Value of absent timestamps. */
+  public static final long NO_TIMESTAMP = Long.MIN_VALUE;
+
+  /** Value of absent engagement. */
+  public static final int NO_ENGAGEMENT = -1;
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  private static final byte UNREAD_KNOWN = 1;
+
+  private static final byte UNREAD = 2;
+
+  private final String id;
+
+  private final String title;
+
+  private final String author;
+
+  private final String originId;
+
+  private final String fingerprint;
+
+  private final String sid;
+
+  private final long crawled;
+
+  private final long recrawled;
+
+  private final long published;
+
+  private final long updated;
+
+  private final long actionTimestamp;
+
+  private final int engagement;
+
+  /** {@link #UNREAD_KNOWN} and {@link #UNREAD} flags. */
+  private final byte unread;
+
+  /** UTF-8 content followed by UTF-8 summary or {@code null} if both are absent. */
+  private final byte[] text;
+
+  /** Length of the content in {@link #text} or {@code -1} if absent. */
+  private final int contentLength;
+
+  /** Length of the summary in {@link #text} or {@code -1} if absent. */
+  private final int summaryLength;
+
+  private final Direction contentDirection;
+
+  private final Direction summaryDirection;
+
+  private final Origin origin;
+
+  private final Visual visual;
+
+  private final List<Location> alternate;
+
+  private final List<String> keywords;
+
+  private final List<Tag> tags;
+
+  private final List<Category> categories;
+
+  private final List<Enclosure> enclosure;
+
+  private CompactEntry(Builder builder) {
+    id = builder.id;
+    title = builder.title;
+    author = builder.author;
+    originId = builder.originId;
+    fingerprint = builder.fingerprint;
+    sid = builder.sid;
+    crawled = builder.crawled;
+    recrawled = builder.recrawled;
+    published = builder.published;
+    updated = builder.updated;
+    actionTimestamp = builder.actionTimestamp;
+    engagement = builder.engagement;
+    unread = builder.unread == null ? 0
+                                    : (byte) (UNREAD_KNOWN | (builder.unread ? UNREAD : 0));
+    byte[] contentBytes = builder.content == null ? null : builder.content.getBytes(UTF_8);
+    byte[] summaryBytes = builder.summary == null ? null : builder.summary.getBytes(UTF_8);
+    contentLength = contentBytes == null ? -1 : contentBytes.length;
+    summaryLength = summaryBytes == null ? -1 : summaryBytes.length;
+    if (contentBytes == null) {
+      text = summaryBytes;
+    } else if (summaryBytes == null) {
+      text = contentBytes;
+    } else {
+      text = Arrays.copyOf(contentBytes, contentBytes.length + summaryBytes.length);
+      System.arraycopy(summaryBytes, 0, text, contentBytes.length, summaryBytes.length);
+    }
+    contentDirection = builder.contentDirection;
+    summaryDirection = builder.summaryDirection;
+    origin = builder.origin;
+    visual = builder.visual;
+    alternate = immutable(builder.alternate);
+    keywords = immutable(builder.keywords);
+    tags = immutable(builder.tags);
+    categories = immutable(builder.categories);
+    enclosure = immutable(builder.enclosure);
+  }
+
+  /**
+   * Returns compact copy of the entry, unknown fields of the entry are dropped, its nested objects
+   * are shared.
+   */
+  public static CompactEntry of(Entry entry) {
+    Builder builder = new Builder()
+        .setId(entry.getId())
+        .setTitle(entry.getTitle())
+        .setAuthor(entry.getAuthor())
+        .setOriginId(entry.getOriginId())
+        .setFingerprint(entry.getFingerprint())
+        .setSid(entry.getSid())
+        .setCrawled(timestamp(entry.getCrawled()))
+        .setRecrawled(timestamp(entry.getRecrawled()))
+        .setPublished(timestamp(entry.getPublished()))
+        .setUpdated(timestamp(entry.getUpdated()))
+        .setActionTimestamp(timestamp(entry.getActionTimestamp()))
+        .setEngagement(entry.getEngagement() == null ? NO_ENGAGEMENT : entry.getEngagement())
+        .setUnread(entry.getUnread())
+        .setOrigin(entry.getOrigin())
+        .setVisual(entry.getVisual())
+        .setAlternate(entry.getAlternate())
+        .setKeywords(entry.getKeywords())
+        .setTags(entry.getTags())
+        .setCategories(entry.getCategories())
+        .setEnclosure(entry.getEnclosure());
+    if (entry.getContent() != null) {
+      builder.setContent(entry.getContent().getContent(), entry.getContent().getDirection());
+    }
+    if (entry.getSummary() != null) {
+      builder.setSummary(entry.getSummary().getContent(), entry.getSummary().getDirection());
+    }
+    return builder.build();
+  }
+
+  public String getId() { return id; }
+
+  public String getTitle() { return title; }
+
+  public String getAuthor() { return author; }
+
+  public String getOriginId() { return originId; }
+
+  public String getFingerprint() { return fingerprint; }
+
+  public String getSid() { return sid; }
+
+  /** @return timestamp in ms or {@link #NO_TIMESTAMP} */
+  public long getCrawled() { return crawled; }
+
+  /** @return timestamp in ms or {@link #NO_TIMESTAMP} */
+  public long getRecrawled() { return recrawled; }
+
+  /** @return timestamp in ms or {@link #NO_TIMESTAMP} */
+  public long getPublished() { return published; }
+
+  /** @return timestamp in ms or {@link #NO_TIMESTAMP} */
+  public long getUpdated() { return updated; }
+
+  /** @return timestamp in ms or {@link #NO_TIMESTAMP} */
+  public long getActionTimestamp() { return actionTimestamp; }
+
+  /** @return engagement or {@link #NO_ENGAGEMENT} */
+  public int getEngagement() { return engagement; }
+
+  /** @return {@code null} if unknown */
+  public Boolean getUnread() {
+    return (unread & UNREAD_KNOWN) == 0 ? null : Boolean.valueOf((unread & UNREAD) != 0);
+  }
+
+  /** Returns the content, decoded on each access, or {@code null} if absent. */
+  public String getContent() {
+    return contentLength < 0 ? null : new String(text, 0, contentLength, UTF_8);
+  }
+
+  public Direction getContentDirection() { return contentDirection; }
+
+  /** Returns the summary, decoded on each access, or {@code null} if absent. */
+  public String getSummary() {
+    return summaryLength < 0
+           ? null : new String(text, Math.max(contentLength, 0), summaryLength, UTF_8);
+  }
+
+  public Direction getSummaryDirection() { return summaryDirection; }
+
+  public Origin getOrigin() { return origin; }
+
+  public Visual getVisual() { return visual; }
+
+  public List<Location> getAlternate() { return alternate; }
+
+  public List<String> getKeywords() { return keywords; }
+
+  public List<Tag> getTags() { return tags; }
+
+  public List<Category> getCategories() { return categories; }
+
+  public List<Enclosure> getEnclosure() { return enclosure; }
+
+  @Override
+  public String toString() { return "CompactEntry{id=" + id + ", title=" + title + '}'; }
+
+  private static long timestamp(Long value) { return value == null ? NO_TIMESTAMP : value; }
+
+  /** Returns unmodifiable copy without spare capacity, {@code null} stays {@code null}. */
+  @SuppressWarnings("unchecked")
+  private static <T> List<T> immutable(List<T> list) {
+    if (list == null) {
+      return null;
+    }
+    switch (list.size()) {
+      case 0:
+        return Collections.emptyList();
+      case 1:
+        return Collections.singletonList(list.get(0));
+      default:
+        return Collections.unmodifiableList((List<T>) Arrays.asList(list.toArray()));
+    }
+  }
+
+  /**
+   * Builder of {@link CompactEntry}, absent values are {@code null}, {@link #NO_TIMESTAMP} and
+   * {@link #NO_ENGAGEMENT}.
+   *
+   * <p> Implementation is not thread-safe. </p>
+   */
+  public static final class Builder {
+
+    String id;
+    String title;
+    String author;
+    String originId;
+    String fingerprint;
+    String sid;
+    long crawled = NO_TIMESTAMP;
+    long recrawled = NO_TIMESTAMP;
+    long published = NO_TIMESTAMP;
+    long updated = NO_TIMESTAMP;
+    long actionTimestamp = NO_TIMESTAMP;
+    int engagement = NO_ENGAGEMENT;
+    Boolean unread;
+    String content;
+    Direction contentDirection;
+    String summary;
+    Direction summaryDirection;
+    Origin origin;
+    Visual visual;
+    List<Location> alternate;
+    List<String> keywords;
+    List<Tag> tags;
+    List<Category> categories;
+    List<Enclosure> enclosure;
+
+    public CompactEntry build() { return new CompactEntry(this); }
+
+    public Builder setId(String id) {
+      this.id = id;
+      return this;
+    }
+
+    public Builder setTitle(String title) {
+      this.title = title;
+      return this;
+    }
+
+    public Builder setAuthor(String author) {
+      this.author = author;
+      return this;
+    }
+
+    public Builder setOriginId(String originId) {
+      this.originId = originId;
+      return this;
+    }
+
+    public Builder setFingerprint(String fingerprint) {
+      this.fingerprint = fingerprint;
+      return this;
+    }
+
+    public Builder setSid(String sid) {
+      this.sid = sid;
+      return this;
+    }
+
+    public Builder setCrawled(long crawled) {
+      this.crawled = crawled;
+      return this;
+    }
+
+    public Builder setRecrawled(long recrawled) {
+      this.recrawled = recrawled;
+      return this;
+    }
+
+    public Builder setPublished(long published) {
+      this.published = published;
+      return this;
+    }
+
+    public Builder setUpdated(long updated) {
+      this.updated = updated;
+      return this;
+    }
+
+    public Builder setActionTimestamp(long actionTimestamp) {
+      this.actionTimestamp = actionTimestamp;
+      return this;
+    }
+
+    public Builder setEngagement(int engagement) {
+      this.engagement = engagement;
+      return this;
+    }
+
+    public Builder setUnread(Boolean unread) {
+      this.unread = unread;
+      return this;
+    }
+
+    public Builder setContent(String content, Direction direction) {
+      this.content = content;
+      this.contentDirection = direction;
+      return this;
+    }
+
+    public Builder setSummary(String summary, Direction direction) {
+      this.summary = summary;
+      this.summaryDirection = direction;
+      return this;
+    }
+
+    public Builder setOrigin(Origin origin) {
+      this.origin = origin;
+      return this;
+    }
+
+    public Builder setVisual(Visual visual) {
+      this.visual = visual;
+      return this;
+    }
+
+    public Builder setAlternate(List<Location> alternate) {
+      this.alternate = alternate;
+      return this;
+    }
+
+    public Builder setKeywords(List<String> keywords) {
+      this.keywords = keywords;
+      return this;
+    }
+
+    public Builder setTags(List<Tag> tags) {
+      this.tags = tags;
+      return this;
+    }
+
+    public Builder setCategories(List<Category> categories) {
+      this.categories = categories;
+      return this;
+    }
+
+    public Builder setEnclosure(List<Enclosure> enclosure) {
+      this.enclosure = enclosure;
+      return this;
+    }
+  }
+}
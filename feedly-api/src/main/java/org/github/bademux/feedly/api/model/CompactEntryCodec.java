@@ -0,0 +1,278 @@
+/*
+ * Copyright 2014 Bademus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *    Contributors:
+ *                 Bademus
+ */
+
+package org.github.bademux.feedly.api.model;
+
+import com.google.api.client.json.JsonGenerator;
+import com.google.api.client.json.JsonParser;
+import com.google.api.client.json.JsonToken;
+
+import org.github.bademux.feedly.api.json.JsonCodec;
+import org.github.bademux.feedly.api.json.JsonCodecs;
+import org.github.bademux.feedly.api.json.ParseContext;
+import org.github.bademux.feedly.api.model.Entry.Content;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads {@link CompactEntry} from the JSON of {@link Entry} and writes it back, unknown fields
+ * of the entry and of its nested objects are skipped without being parsed, whatever the {@link
+ * ParseContext#getDropUnknownFields()}. Found by {@link JsonCodecs#get(Class)}, so {@code
+ * CodecObjectParser} parses {@link CompactEntry} as well.
+ *
+ * <p> Implementation is thread-safe. </p>
+ */
+public final class CompactEntryCodec implements JsonCodec<CompactEntry> {
+
+  public static final CompactEntryCodec INSTANCE = new CompactEntryCodec();
+
+  private static final JsonCodec<List<Entry.Location>> LOCATIONS =
+      JsonCodecs.listOf(Entry_LocationCodec.INSTANCE);
+
+  private static final JsonCodec<List<String>> STRINGS = JsonCodecs.listOf(JsonCodecs.STRING);
+
+  private static final JsonCodec<List<Tag>> TAGS = JsonCodecs.listOf(TagCodec.INSTANCE);
+
+  private static final JsonCodec<List<Category>> CATEGORIES =
+      JsonCodecs.listOf(CategoryCodec.INSTANCE);
+
+  private static final JsonCodec<List<Entry.Enclosure>> ENCLOSURES =
+      JsonCodecs.listOf(Entry_EnclosureCodec.INSTANCE);
+
+  private static final int ID = 0, TITLE = 1, AUTHOR = 2, ORIGIN_ID = 3, FINGERPRINT = 4,
+      SID = 5, CRAWLED = 6, RECRAWLED = 7, PUBLISHED = 8, UPDATED = 9, ACTION_TIMESTAMP = 10,
+      ENGAGEMENT = 11, UNREAD = 12, CONTENT = 13, SUMMARY = 14, ORIGIN = 15, VISUAL = 16,
+      ALTERNATE = 17, KEYWORDS = 18, TAGS_FIELD = 19, CATEGORIES_FIELD = 20, ENCLOSURE = 21;
+
+  private static final Map<String, Integer> FIELDS = new HashMap<String, Integer>();
+
+  static {
+    FIELDS.put("id", ID);
+    FIELDS.put("title", TITLE);
+    FIELDS.put("author", AUTHOR);
+    FIELDS.put("originId", ORIGIN_ID);
+    FIELDS.put("fingerprint", FINGERPRINT);
+    FIELDS.put("sid", SID);
+    FIELDS.put("crawled", CRAWLED);
+    FIELDS.put("recrawled", RECRAWLED);
+    FIELDS.put("published", PUBLISHED);
+    FIELDS.put("updated", UPDATED);
+    FIELDS.put("actionTimestamp", ACTION_TIMESTAMP);
+    FIELDS.put("engagement", ENGAGEMENT);
+    FIELDS.put("unread", UNREAD);
+    FIELDS.put("content", CONTENT);
+    FIELDS.put("summary", SUMMARY);
+    FIELDS.put("origin", ORIGIN);
+    FIELDS.put("visual", VISUAL);
+    FIELDS.put("alternate", ALTERNATE);
+    FIELDS.put("keywords", KEYWORDS);
+    FIELDS.put("tags", TAGS_FIELD);
+    FIELDS.put("categories", CATEGORIES_FIELD);
+    FIELDS.put("enclosure", ENCLOSURE);
+  }
+
+  private CompactEntryCodec() {}
+
+  public CompactEntry read(JsonParser parser, ParseContext context) throws IOException {
+    if (parser.getCurrentToken() == JsonToken.VALUE_NULL) {
+      return null;
+    }
+    JsonCodecs.checkStartObject(parser);
+    // nested objects are shared by the immutable entry, keep no unknown fields in them
+    if (!context.getDropUnknownFields()) {
+      context = context.withDropUnknownFields(true);
+    }
+    CompactEntry.Builder builder = new CompactEntry.Builder();
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      Integer field = FIELDS.get(parser.getCurrentName());
+      parser.nextToken();
+      if (field == null) {
+        parser.skipChildren();
+        continue;
+      }
+      switch (field) {
+        case ID:
+          builder.id = JsonCodecs.STRING.read(parser, context);
+          break;
+        case TITLE:
+          builder.title = JsonCodecs.STRING.read(parser, context);
+          break;
+        case AUTHOR:
+          builder.author = JsonCodecs.STRING.read(parser, context);
+          break;
+        case ORIGIN_ID:
+          builder.originId = JsonCodecs.STRING.read(parser, context);
+          break;
+        case FINGERPRINT:
+          builder.fingerprint = JsonCodecs.STRING.read(parser, context);
+          break;
+        case SID:
+          builder.sid = JsonCodecs.STRING.read(parser, context);
+          break;
+        case CRAWLED:
+          builder.crawled = readTimestamp(parser, context);
+          break;
+        case RECRAWLED:
+          builder.recrawled = readTimestamp(parser, context);
+          break;
+        case PUBLISHED:
+          builder.published = readTimestamp(parser, context);
+          break;
+        case UPDATED:
+          builder.updated = readTimestamp(parser, context);
+          break;
+        case ACTION_TIMESTAMP:
+          builder.actionTimestamp = readTimestamp(parser, context);
+          break;
+        case ENGAGEMENT:
+          Integer engagement = JsonCodecs.INTEGER.read(parser, context);
+          builder.engagement = engagement == null ? CompactEntry.NO_ENGAGEMENT : engagement;
+          break;
+        case UNREAD:
+          builder.unread = JsonCodecs.BOOLEAN.read(parser, context);
+          break;
+        case CONTENT:
+          Content content = Entry_ContentCodec.INSTANCE.read(parser, context);
+          if (content != null) {
+            builder.setContent(content.getContent(), content.getDirection());
+          }
+          break;
+        case SUMMARY:
+          Content summary = Entry_ContentCodec.INSTANCE.read(parser, context);
+          if (summary != null) {
+            builder.setSummary(summary.getContent(), summary.getDirection());
+          }
+          break;
+        case ORIGIN:
+          builder.origin = Entry_OriginCodec.INSTANCE.read(parser, context);
+          break;
+        case VISUAL:
+          builder.visual = Entry_VisualCodec.INSTANCE.read(parser, context);
+          break;
+        case ALTERNATE:
+          builder.alternate = LOCATIONS.read(parser, context);
+          break;
+        case KEYWORDS:
+          builder.keywords = STRINGS.read(parser, context);
+          break;
+        case TAGS_FIELD:
+          builder.tags = TAGS.read(parser, context);
+          break;
+        case CATEGORIES_FIELD:
+          builder.categories = CATEGORIES.read(parser, context);
+          break;
+        case ENCLOSURE:
+          builder.enclosure = ENCLOSURES.read(parser, context);
+          break;
+      }
+    }
+    return builder.build();
+  }
+
+  public void write(JsonGenerator generator, CompactEntry value) throws IOException {
+    if (value == null) {
+      generator.writeNull();
+      return;
+    }
+    generator.writeStartObject();
+    writeString(generator, "id", value.getId());
+    writeString(generator, "title", value.getTitle());
+    writeString(generator, "author", value.getAuthor());
+    writeString(generator, "originId", value.getOriginId());
+    writeString(generator, "fingerprint", value.getFingerprint());
+    writeString(generator, "sid", value.getSid());
+    writeTimestamp(generator, "crawled", value.getCrawled());
+    writeTimestamp(generator, "recrawled", value.getRecrawled());
+    writeTimestamp(generator, "published", value.getPublished());
+    writeTimestamp(generator, "updated", value.getUpdated());
+    writeTimestamp(generator, "actionTimestamp", value.getActionTimestamp());
+    if (value.getEngagement() != CompactEntry.NO_ENGAGEMENT) {
+      generator.writeFieldName("engagement");
+      generator.writeNumber(value.getEngagement());
+    }
+    if (value.getUnread() != null) {
+      generator.writeFieldName("unread");
+      generator.writeBoolean(value.getUnread());
+    }
+    if (value.getContent() != null) {
+      generator.writeFieldName("content");
+      Entry_ContentCodec.INSTANCE.write(
+          generator, new Content(value.getContent(), value.getContentDirection()));
+    }
+    if (value.getSummary() != null) {
+      generator.writeFieldName("summary");
+      Entry_ContentCodec.INSTANCE.write(
+          generator, new Content(value.getSummary(), value.getSummaryDirection()));
+    }
+    if (value.getOrigin() != null) {
+      generator.writeFieldName("origin");
+      Entry_OriginCodec.INSTANCE.write(generator, value.getOrigin());
+    }
+    if (value.getVisual() != null) {
+      generator.writeFieldName("visual");
+      Entry_VisualCodec.INSTANCE.write(generator, value.getVisual());
+    }
+    if (value.getAlternate() != null) {
+      generator.writeFieldName("alternate");
+      LOCATIONS.write(generator, value.getAlternate());
+    }
+    if (value.getKeywords() != null) {
+      generator.writeFieldName("keywords");
+      STRINGS.write(generator, value.getKeywords());
+    }
+    if (value.getTags() != null) {
+      generator.writeFieldName("tags");
+      TAGS.write(generator, value.getTags());
+    }
+    if (value.getCategories() != null) {
+      generator.writeFieldName("categories");
+      CATEGORIES.write(generator, value.getCategories());
+    }
+    if (value.getEnclosure() != null) {
+      generator.writeFieldName("enclosure");
+      ENCLOSURES.write(generator, value.getEnclosure());
+    }
+    generator.writeEndObject();
+  }
+
+  private static long readTimestamp(JsonParser parser, ParseContext context)
+      throws IOException {
+    Long timestamp = JsonCodecs.LONG.read(parser, context);
+    return timestamp == null ? CompactEntry.NO_TIMESTAMP : timestamp;
+  }
+
+  private static void writeString(JsonGenerator generator, String name, String value)
+      throws IOException {
+    if (value != null) {
+      generator.writeFieldName(name);
+      generator.writeString(value);
+    }
+  }
+
+  private static void writeTimestamp(JsonGenerator generator, String name, long value)
+      throws IOException {
+    if (value != CompactEntry.NO_TIMESTAMP) {
+      generator.writeFieldName(name);
+      generator.writeNumber(value);
+    }
+  }
+}
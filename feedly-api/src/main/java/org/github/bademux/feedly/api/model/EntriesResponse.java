@@ -22,12 +22,15 @@ package org.github.bademux.feedly.api.model;
 import com.google.api.client.json.GenericJson;
 import com.google.api.client.util.Key;
 
+import org.github.bademux.feedly.api.json.GenerateCodec;
+
 import java.util.List;
 import java.util.Map;
 
 import static org.github.bademux.feedly.api.model.Entry.Content.Direction;
 import static org.github.bademux.feedly.api.model.Entry.Location;
 
+@GenerateCodec
 public final class EntriesResponse extends GenericJson implements Continuable {
 
   @Key
@@ -49,20 +52,36 @@ public final class EntriesResponse extends GenericJson implements Continuable {
 
   public String getId() { return id; }
 
+  void setId(final String id) { this.id = id; }
+
   public Direction getDirection() { return direction; }
 
+  void setDirection(final Direction direction) { this.direction = direction; }
+
   public String getTitle() { return title; }
 
+  void setTitle(final String title) { this.title = title; }
+
   public String getContinuation() { return continuation; }
 
+  void setContinuation(final String continuation) { this.continuation = continuation; }
+
   public List<Map<String, String>> getSelf() { return self; }
 
+  void setSelf(final List<Map<String, String>> self) { this.self = self; }
+
   public List<Location> getAlternate() { return alternate; }
 
+  void setAlternate(final List<Location> alternate) { this.alternate = alternate; }
+
   public Long getUpdated() { return updated; }
 
+  void setUpdated(final Long updated) { this.updated = updated; }
+
   public List<org.github.bademux.feedly.api.model.Entry> items() { return items; }
 
+  void setItems(final List<org.github.bademux.feedly.api.model.Entry> items) { this.items = items; }
+
   @Override
   public EntriesResponse set(String fieldName, Object value) {
     return (EntriesResponse) super.set(fieldName, value);
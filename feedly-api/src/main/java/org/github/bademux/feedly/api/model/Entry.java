@@ -24,9 +24,13 @@ import com.google.api.client.util.Key;
 import com.google.api.client.util.NullValue;
 import com.google.api.client.util.Value;
 
+import org.github.bademux.feedly.api.json.GenerateCodec;
+import org.github.bademux.feedly.api.json.Pooled;
+
 import java.util.ArrayList;
 import java.util.List;
 
+@GenerateCodec
 public final class Entry extends GenericJson implements Markable {
 
   /** the unique, immutable ID for this particular article. */
@@ -170,14 +174,20 @@ public final class Entry extends GenericJson implements Markable {
 
   public String getId() { return id; }
 
+  void setId(final String id) { this.id = id; }
+
   public String getTitle() { return title; }
 
   public void setTitle(final String title) { this.title = title; }
 
   public String getAuthor() { return author; }
 
+  void setAuthor(final String author) { this.author = author; }
+
   public Content getContent() { return content; }
 
+  void setContent(final Content content) { this.content = content; }
+
   public void setContent(final String content, final Content.Direction direction) {
     this.content = new Content(content, direction);
   }
@@ -186,16 +196,28 @@ public final class Entry extends GenericJson implements Markable {
 
   public Content getSummary() { return summary; }
 
+  void setSummary(final Content summary) { this.summary = summary; }
+
   public Long getCrawled() { return crawled; }
 
+  void setCrawled(final Long crawled) { this.crawled = crawled; }
+
   public Long getRecrawled() { return recrawled; }
 
+  void setRecrawled(final Long recrawled) { this.recrawled = recrawled; }
+
   public Long getPublished() { return published; }
 
+  void setPublished(final Long published) { this.published = published; }
+
   public Long getUpdated() { return updated; }
 
+  void setUpdated(final Long updated) { this.updated = updated; }
+
   public Boolean getUnread() { return unread; }
 
+  void setUnread(final Boolean unread) { this.unread = unread; }
+
   public List<String> getKeywords() { return keywords; }
 
   public void setKeywords(final List<String> keywords) { this.keywords = keywords; }
@@ -209,13 +231,22 @@ public final class Entry extends GenericJson implements Markable {
 
   public Visual getVisual() { return visual; }
 
+  void setVisual(final Visual visual) { this.visual = visual; }
+
   public Integer getEngagement() { return engagement; }
 
+  void setEngagement(final Integer engagement) { this.engagement = engagement; }
+
   @Deprecated
   public Double getEngagementRate() { return engagementRate; }
 
+  @Deprecated
+  void setEngagementRate(final Double engagementRate) { this.engagementRate = engagementRate; }
+
   public List<Category> getCategories() { return categories; }
 
+  void setCategories(final List<Category> categories) { this.categories = categories; }
+
   public List<Tag> getTags() { return tags; }
 
   public void setTags(final List<Tag> tags) { this.tags = tags; }
@@ -243,18 +274,33 @@ public final class Entry extends GenericJson implements Markable {
   @Deprecated
   public List<Location> getCanonical() { return canonical; }
 
+  @Deprecated
+  void setCanonical(final List<Location> canonical) { this.canonical = canonical; }
+
   public Origin getOrigin() { return origin; }
 
+  void setOrigin(final Origin origin) { this.origin = origin; }
+
   public Long getActionTimestamp() { return actionTimestamp; }
 
+  void setActionTimestamp(final Long actionTimestamp) { this.actionTimestamp = actionTimestamp; }
+
   public List<Enclosure> getEnclosure() { return enclosure; }
 
+  void setEnclosure(final List<Enclosure> enclosure) { this.enclosure = enclosure; }
+
   public String getOriginId() { return originId; }
 
+  void setOriginId(final String originId) { this.originId = originId; }
+
   public String getFingerprint() { return fingerprint; }
 
+  void setFingerprint(final String fingerprint) { this.fingerprint = fingerprint; }
+
   public String getSid() { return sid; }
 
+  void setSid(final String sid) { this.sid = sid; }
+
   @Override
   public org.github.bademux.feedly.api.model.Entry set(String fieldName, Object value) {
     return (org.github.bademux.feedly.api.model.Entry) super.set(fieldName, value);
@@ -265,11 +311,13 @@ public final class Entry extends GenericJson implements Markable {
     return (org.github.bademux.feedly.api.model.Entry) super.clone();
   }
 
+  @GenerateCodec
   public static class Location {
 
     @Key
     private String href;
     @Key
+    @Pooled
     private String type;
 
     public Location(final String href, final String type) {
@@ -281,9 +329,14 @@ public final class Entry extends GenericJson implements Markable {
 
     public String getHref() { return href; }
 
+    void setHref(final String href) { this.href = href; }
+
     public String getType() { return type; }
+
+    void setType(final String type) { this.type = type; }
   }
 
+  @GenerateCodec
   public static class Content {
 
     public enum Direction {@Value("ltr")LTR, @Value("rtl")RTL, @NullValue UNKNOWN}
@@ -302,16 +355,24 @@ public final class Entry extends GenericJson implements Markable {
 
     public String getContent() { return content; }
 
+    void setContent(final String content) { this.content = content; }
+
     public Direction getDirection() { return direction; }
+
+    void setDirection(final Direction direction) { this.direction = direction; }
   }
 
+  @GenerateCodec
   public static class Origin {
 
     @Key
+    @Pooled
     private String streamId;
     @Key
+    @Pooled
     private String title;
     @Key
+    @Pooled
     private String htmlUrl;
 
     public Origin(final String streamId, final String title, final String htmlUrl) {
@@ -324,10 +385,16 @@ public final class Entry extends GenericJson implements Markable {
 
     public String getStreamId() { return streamId; }
 
+    void setStreamId(final String streamId) { this.streamId = streamId; }
+
     public String getTitle() { return title; }
 
+    void setTitle(final String title) { this.title = title; }
+
     public String getHtmlUrl() { return htmlUrl; }
 
+    void setHtmlUrl(final String htmlUrl) { this.htmlUrl = htmlUrl; }
+
     public Feed toFeed() {
       return new Subscription(streamId.substring(streamId.indexOf('/') + 1), title);
     }
@@ -337,6 +404,7 @@ public final class Entry extends GenericJson implements Markable {
    * If present, “url” will contain the image URL, “width” and “height” its dimension, and
    * “contentType” its MIME type.
    */
+  @GenerateCodec
   public static class Visual implements File {
 
     @Key
@@ -352,15 +420,24 @@ public final class Entry extends GenericJson implements Markable {
 
     public Integer getWidth() { return width; }
 
+    void setWidth(final Integer width) { this.width = width; }
+
     public Integer getHeight() { return height; }
 
+    void setHeight(final Integer height) { this.height = height; }
+
     @Override
     public String getSource() { return url; }
 
     @Override
     public String getMime() { return contentType; }
+
+    String getContentType() { return contentType; }
+
+    void setContentType(final String contentType) { this.contentType = contentType; }
   }
 
+  @GenerateCodec
   public static class Enclosure implements File {
 
     @Key
@@ -374,6 +451,8 @@ public final class Entry extends GenericJson implements Markable {
 
     public Long getLength() { return length; }
 
+    void setLength(final Long length) { this.length = length; }
+
     @Override
     public String getSource() { return href; }
 
@@ -391,5 +470,6 @@ public final class Entry extends GenericJson implements Markable {
   }
 
   @SuppressWarnings("serial")
+  @GenerateCodec
   public static class Entries extends ArrayList<org.github.bademux.feedly.api.model.Entry> {}
 }
@@ -54,16 +54,22 @@ public abstract class Feed extends IdGenericJson implements Markable, Stream{
     return website;
   }
 
+  void setWebsite(final String website) { this.website = website; }
+
   /**
    * @return The average number of articles published weekly. It's updated every few days.
    */
   public Double getVelocity() { return velocity; }
 
+  void setVelocity(final Double velocity) { this.velocity = velocity; }
+
   public State getState() {
     return state;
   }
 
-  public String getUrl() { return getId().substring(PREFIX.length() + 1); }
+  void setState(final State state) { this.state = state; }
+
+  public String getUrl() { return getName(); }
 
   protected Feed() { super(PREFIX); }
   
@@ -21,10 +21,13 @@ package org.github.bademux.feedly.api.model;
 
 import com.google.api.client.util.Key;
 
+import org.github.bademux.feedly.api.json.GenerateCodec;
+
 import java.util.ArrayList;
 import java.util.List;
 
 
+@GenerateCodec
 public class FeedInfo extends Feed {
 
   @Key
@@ -42,22 +45,32 @@ public class FeedInfo extends Feed {
     return keywords;
   }
 
+  void setKeywords(final List<String> keywords) { this.keywords = keywords; }
+
   public Boolean getFeatured() {
     return featured;
   }
 
+  void setFeatured(final Boolean featured) { this.featured = featured; }
+
   public Boolean getSponsored() {
     return sponsored;
   }
 
+  void setSponsored(final Boolean sponsored) { this.sponsored = sponsored; }
+
   public Boolean getCurated() {
     return curated;
   }
 
+  void setCurated(final Boolean curated) { this.curated = curated; }
+
   public Integer getSubscribers() {
     return subscribers;
   }
 
+  void setSubscribers(final Integer subscribers) { this.subscribers = subscribers; }
+
   @Override
   public FeedInfo set(String fieldName, Object value) {
     return (FeedInfo) super.set(fieldName, value);
@@ -67,5 +80,6 @@ public class FeedInfo extends Feed {
   public FeedInfo clone() { return (FeedInfo) super.clone(); }
 
   @SuppressWarnings("serial")
+  @GenerateCodec
   public static class FeedsInfo extends ArrayList<FeedInfo> {}
 }
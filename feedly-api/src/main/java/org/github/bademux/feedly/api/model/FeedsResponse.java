@@ -21,8 +21,11 @@ package org.github.bademux.feedly.api.model;
 
 import com.google.api.client.json.GenericJson;
 
+import org.github.bademux.feedly.api.json.GenerateCodec;
+
 import java.util.List;
 
+@GenerateCodec
 public class FeedsResponse extends GenericJson {
 
   @com.google.api.client.util.Key
@@ -37,14 +40,20 @@ public class FeedsResponse extends GenericJson {
     return results;
   }
 
+  void setResults(final List<FeedInfo> results) { this.results = results; }
+
   public String getHint() {
     return hint;
   }
 
+  void setHint(final String hint) { this.hint = hint; }
+
   public List<String> getRelated() {
     return related;
   }
 
+  void setRelated(final List<String> related) { this.related = related; }
+
   @Override
   public FeedsResponse set(String fieldName, Object value) {
     return (FeedsResponse) super.set(fieldName, value);
@@ -22,6 +22,8 @@ package org.github.bademux.feedly.api.model;
 import com.google.api.client.json.GenericJson;
 import com.google.api.client.util.Key;
 
+import org.github.bademux.feedly.api.json.Pooled;
+
 import static com.google.api.client.util.Preconditions.checkNotNull;
 import static com.google.api.client.util.Strings.isNullOrEmpty;
 
@@ -31,33 +33,51 @@ public abstract class IdGenericJson extends GenericJson {
   private final String prefix;
 
   @Key
+  @Pooled
   private String id;
 
+  /** Parsed {@link #id}, refreshed if id is changed. */
+  private StreamId streamId;
+
   /**
    * Support current user format 'user/-/...'
    * see https://groups.google.com/forum/?fromgroups=#!topic/feedly-cloud/R0GC4IMgejI
    */
   protected IdGenericJson(String prefix, String name, String userId) {
-    this(prefix, name);
-    StringBuilder sb = new StringBuilder("user/");
-    if (isNullOrEmpty(userId)) {
-      sb.append('-');
-    } else {
-      sb.append(userId);
-    }
-    id = sb.append('/').append(id).toString();
+    this(prefix);
+    streamId = StreamId.build(prefix, name, userId);
+    id = streamId.getId();
   }
 
   protected IdGenericJson(String prefix, String name) {
     this(prefix);
-    id = new StringBuilder(prefix).append('/').append(checkNotNull(name)).toString();
+    streamId = StreamId.build(prefix, name);
+    id = streamId.getId();
   }
 
   protected IdGenericJson(String prefix) { this.prefix = checkNotNull(prefix); }
 
   public String getId() { return id; }
 
-  public String getName() { return id.substring(id.indexOf(prefix + '/') + prefix.length() + 1); }
+  void setId(final String id) { this.id = id; }
+
+  /** @return parsed id or {@code null} if id is not set */
+  public StreamId getStreamId() {
+    StreamId current = streamId;
+    if (current == null || !current.getId().equals(id)) {
+      current = id == null ? null : StreamId.of(id);
+      streamId = current;
+    }
+    return current;
+  }
+
+  public String getName() {
+    StreamId current = getStreamId();
+    if (current.getPrefix() == null || current.getPrefix().equals(prefix)) {
+      return current.getName();
+    }
+    return id.substring(id.indexOf(prefix + '/') + prefix.length() + 1);
+  }
 
   @Override
   public boolean equals(final Object o) {
@@ -73,7 +93,9 @@ public abstract class IdGenericJson extends GenericJson {
    *
    * @param id format id-type/data
    * @return data after slash
+   * @deprecated use {@link StreamId#of(String)} and {@link StreamId#getName()}
    */
+  @Deprecated
   public static final String parse(String id) {
     return isNullOrEmpty(id) ? null : id.substring(id.indexOf('/') + 1);
   }
@@ -22,9 +22,12 @@ package org.github.bademux.feedly.api.model;
 import com.google.api.client.util.GenericData;
 import com.google.api.client.util.Key;
 
+import org.github.bademux.feedly.api.json.GenerateCodec;
+
 import java.util.List;
 
 
+@GenerateCodec
 public class MarkReadsResponse extends GenericData {
 
   @Key
@@ -32,6 +35,7 @@ public class MarkReadsResponse extends GenericData {
   @Key
   private List<Item> feeds;
 
+  @GenerateCodec
   public static class Item {
 
     @Key
@@ -41,11 +45,17 @@ public class MarkReadsResponse extends GenericData {
 
     public String getId() { return id; }
 
+    void setId(final String id) { this.id = id; }
+
     public Long getAsOf() { return asOf; }
+
+    void setAsOf(final Long asOf) { this.asOf = asOf; }
   }
 
   public List<Item> feeds() { return feeds; }
 
+  void setFeeds(final List<Item> feeds) { this.feeds = feeds; }
+
   public Long feedAsOf(String feedId) {
     for (int i = 0; i < feeds.size(); i++) {
       if (feedId.equals(feeds.get(i).id)) { return feeds.get(i).asOf; }
@@ -55,6 +65,8 @@ public class MarkReadsResponse extends GenericData {
 
   public List<String> entries() { return entries; }
 
+  void setEntries(final List<String> entries) { this.entries = entries; }
+
   @Override
   public MarkReadsResponse set(String fieldName, Object value) {
     return (MarkReadsResponse) super.set(fieldName, value);
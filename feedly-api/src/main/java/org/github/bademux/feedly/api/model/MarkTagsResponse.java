@@ -22,10 +22,13 @@ package org.github.bademux.feedly.api.model;
 import com.google.api.client.util.GenericData;
 import com.google.api.client.util.Key;
 
+import org.github.bademux.feedly.api.json.GenerateCodec;
+
 import java.util.List;
 import java.util.Map;
 
 
+@GenerateCodec
 public class MarkTagsResponse extends GenericData {
 
   @Key
@@ -33,6 +36,10 @@ public class MarkTagsResponse extends GenericData {
 
   public Map<String, List<String>> taggedEntries() { return taggedEntries; }
 
+  void setTaggedEntries(final Map<String, List<String>> taggedEntries) {
+    this.taggedEntries = taggedEntries;
+  }
+
   public String getTagIdBy(String entryId) {
     for (Entry<String, List<String>> item : taggedEntries.entrySet()) {
       List<String> entryIds = item.getValue();
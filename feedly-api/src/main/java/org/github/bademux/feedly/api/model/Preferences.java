@@ -21,6 +21,9 @@ package org.github.bademux.feedly.api.model;
 
 import com.google.api.client.json.GenericJson;
 
+import org.github.bademux.feedly.api.json.GenerateCodec;
+
+@GenerateCodec
 public class Preferences extends GenericJson {
 
   @com.google.api.client.util.Key
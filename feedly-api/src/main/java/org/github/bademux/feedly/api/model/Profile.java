@@ -21,6 +21,9 @@ package org.github.bademux.feedly.api.model;
 
 import com.google.api.client.json.GenericJson;
 
+import org.github.bademux.feedly.api.json.GenerateCodec;
+
+@GenerateCodec
 public final class Profile extends GenericJson {
 
   @com.google.api.client.util.Key
@@ -64,10 +67,16 @@ public final class Profile extends GenericJson {
     return id;
   }
 
+  String getId() { return id; }
+
+  void setId(final String id) { this.id = id; }
+
   public String getClient() {
     return client;
   }
 
+  void setClient(final String client) { this.client = client; }
+
   public String getEmail() {
     return email;
   }
@@ -104,32 +113,56 @@ public final class Profile extends GenericJson {
     return created;
   }
 
+  void setCreated(final Long created) { this.created = created; }
+
   public String getWave() {
     return wave;
   }
 
+  void setWave(final String wave) { this.wave = wave; }
+
   public Boolean getWordPressConnected() {
     return wordPressConnected;
   }
 
+  void setWordPressConnected(final Boolean wordPressConnected) {
+    this.wordPressConnected = wordPressConnected;
+  }
+
   public Long getWordPressId() {
     return wordPressId;
   }
 
+  void setWordPressId(final Long wordPressId) { this.wordPressId = wordPressId; }
+
   public Long getWordPressPrimaryBlogId() {
     return wordPressPrimaryBlogId;
   }
 
+  void setWordPressPrimaryBlogId(final Long wordPressPrimaryBlogId) {
+    this.wordPressPrimaryBlogId = wordPressPrimaryBlogId;
+  }
+
   public String getWordPressAccessToken() { return wordPressAccessToken; }
 
+  void setWordPressAccessToken(final String wordPressAccessToken) {
+    this.wordPressAccessToken = wordPressAccessToken;
+  }
+
   public Boolean getEvernoteConnected() {
     return evernoteConnected;
   }
 
+  void setEvernoteConnected(final Boolean evernoteConnected) {
+    this.evernoteConnected = evernoteConnected;
+  }
+
   public Boolean getPocketConnected() {
     return pocketConnected;
   }
 
+  void setPocketConnected(final Boolean pocketConnected) { this.pocketConnected = pocketConnected; }
+
   @Override
   public Profile set(String fieldName, Object value) {
     return (Profile) super.set(fieldName, value);
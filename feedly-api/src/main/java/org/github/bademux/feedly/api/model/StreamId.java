@@ -0,0 +1,188 @@
+/*
+ * Copyright 2014 Bademus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *    Contributors:
+ *                 Bademus
+ */
+
+package org.github.bademux.feedly.api.model;
+
+import com.google.api.client.util.escape.CharEscapers;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static com.google.api.client.util.Preconditions.checkArgument;
+import static com.google.api.client.util.Preconditions.checkNotNull;
+import static com.google.api.client.util.Strings.isNullOrEmpty;
+
+/**
+ * Immutable stream id parsed once into its parts, ie. 'user/{userId}/category/{name}',
+ * 'topic/{name}' or 'feed/{url}'.
+ *
+ * <p> Instances are interned, so the same id is parsed and URL-encoded only once while it is
+ * used. The intern table is bounded and is dropped as a whole when it overflows. </p>
+ *
+ * <p> Implementation is thread-safe. </p>
+ */
+public final class StreamId implements Stream {
+
+  public enum Kind {
+    FEED(Feed.PREFIX), CATEGORY(Category.PREFIX), TAG(Tag.PREFIX), TOPIC(Topic.PREFIX),
+    /** Id with an unknown prefix. */
+    OTHER(null);
+
+    private final String prefix;
+
+    Kind(String prefix) { this.prefix = prefix; }
+
+    /** @return prefix of the id or {@code null} for {@link #OTHER} */
+    public String getPrefix() { return prefix; }
+
+    public static Kind forPrefix(String prefix) {
+      for (Kind kind : values()) {
+        if (kind.prefix != null && kind.prefix.equals(prefix)) {
+          return kind;
+        }
+      }
+      return OTHER;
+    }
+  }
+
+  /** Max number of interned ids. */
+  static final int MAX_INTERNED = 4096;
+
+  private static final ConcurrentMap<String, StreamId> INTERNED =
+      new ConcurrentHashMap<String, StreamId>();
+
+  private final String id;
+  private final Kind kind;
+  private final String prefix;
+  private final String userId;
+  private final String name;
+  private final String encodedId;
+
+  private StreamId(String id, String prefix, String userId, String name) {
+    this.id = id;
+    this.kind = Kind.forPrefix(prefix);
+    this.prefix = prefix;
+    this.userId = userId;
+    this.name = name;
+    this.encodedId = encode(id);
+  }
+
+  /**
+   * @param id format 'user/{userId}/{prefix}/{name}' or '{prefix}/{name}'
+   */
+  public static StreamId of(String id) {
+    StreamId streamId = INTERNED.get(checkNotNull(id));
+    return streamId != null ? streamId : intern(parse(id));
+  }
+
+  /** Creates global id '{prefix}/{name}', ie. 'topic/tech' used with 'mixes' API. */
+  public static StreamId of(Kind kind, String name) { return build(prefixOf(kind), name); }
+
+  /**
+   * Creates user id 'user/{userId}/{prefix}/{name}', empty userId stands for the current user
+   * 'user/-/...'
+   */
+  public static StreamId of(Kind kind, String name, String userId) {
+    return build(prefixOf(kind), name, userId);
+  }
+
+  static StreamId build(String prefix, String name) {
+    String id = prefix + '/' + checkNotNull(name);
+    StreamId streamId = INTERNED.get(id);
+    return streamId != null ? streamId : intern(new StreamId(id, prefix, null, name));
+  }
+
+  static StreamId build(String prefix, String name, String userId) {
+    if (isNullOrEmpty(userId)) {
+      userId = "-";
+    }
+    String id = "user/" + userId + '/' + prefix + '/' + checkNotNull(name);
+    StreamId streamId = INTERNED.get(id);
+    return streamId != null ? streamId : intern(new StreamId(id, prefix, userId, name));
+  }
+
+  /**
+   * URL-encodes id as a single path segment, same as
+   * {@link com.google.api.client.http.UriTemplate} does for a template variable. Uses the
+   * precomputed form if the id is interned.
+   */
+  public static String encode(String id) {
+    StreamId streamId = INTERNED.get(id);
+    return streamId != null ? streamId.encodedId
+                            : CharEscapers.escapeUriPath(id).replace("/", "%2F");
+  }
+
+  @Override
+  public String getId() { return id; }
+
+  public Kind getKind() { return kind; }
+
+  /** @return prefix of the id, ie. 'category' or {@code null} if id has no slash */
+  public String getPrefix() { return prefix; }
+
+  /** @return user id, '-' for the current user or {@code null} for global ids */
+  public String getUserId() { return userId; }
+
+  /** @return part after prefix, ie. category name or feed url */
+  public String getName() { return name; }
+
+  /** @return id URL-encoded as a single path segment, ie. 'user%2F-%2Ftag%2Fglobal.saved' */
+  public String getEncodedId() { return encodedId; }
+
+  @Override
+  public boolean equals(final Object o) {
+    if (this == o) { return true; }
+    if (o == null || getClass() != o.getClass()) { return false; }
+    return id.equals(((StreamId) o).id);
+  }
+
+  @Override
+  public int hashCode() { return id.hashCode(); }
+
+  @Override
+  public String toString() { return id; }
+
+  private static StreamId parse(String id) {
+    if (id.startsWith("user/")) {
+      int userEnd = id.indexOf('/', 5);
+      int prefixEnd = userEnd < 0 ? -1 : id.indexOf('/', userEnd + 1);
+      if (prefixEnd > 0) {
+        return new StreamId(id, id.substring(userEnd + 1, prefixEnd), id.substring(5, userEnd),
+                            id.substring(prefixEnd + 1));
+      }
+    }
+    int slash = id.indexOf('/');
+    return new StreamId(id, slash < 0 ? null : id.substring(0, slash), null,
+                        id.substring(slash + 1));
+  }
+
+  private static StreamId intern(StreamId streamId) {
+    if (INTERNED.size() >= MAX_INTERNED) {
+      INTERNED.clear();
+    }
+    StreamId interned = INTERNED.putIfAbsent(streamId.id, streamId);
+    return interned != null ? interned : streamId;
+  }
+
+  private static String prefixOf(Kind kind) {
+    String prefix = checkNotNull(kind).getPrefix();
+    checkArgument(prefix != null, "kind without prefix: %s", kind);
+    return prefix;
+  }
+}
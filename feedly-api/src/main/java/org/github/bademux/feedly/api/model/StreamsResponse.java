@@ -22,8 +22,11 @@ package org.github.bademux.feedly.api.model;
 import com.google.api.client.json.GenericJson;
 import com.google.api.client.util.Key;
 
+import org.github.bademux.feedly.api.json.GenerateCodec;
+
 import java.util.List;
 
+@GenerateCodec
 public final class StreamsResponse extends GenericJson implements Continuable {
 
   @Key
@@ -33,8 +36,12 @@ public final class StreamsResponse extends GenericJson implements Continuable {
 
   public List<String> ids() { return ids; }
 
+  void setIds(final List<String> ids) { this.ids = ids; }
+
   public String getContinuation() { return continuation; }
 
+  void setContinuation(final String continuation) { this.continuation = continuation; }
+
   @Override
   public StreamsResponse set(String fieldName, Object value) {
     return (StreamsResponse) super.set(fieldName, value);
@@ -21,10 +21,13 @@ package org.github.bademux.feedly.api.model;
 
 import com.google.api.client.util.Key;
 
+import org.github.bademux.feedly.api.json.GenerateCodec;
+
 import java.util.ArrayList;
 import java.util.List;
 
 
+@GenerateCodec
 public class Subscription extends Feed {
 
   @Key
@@ -47,8 +50,12 @@ public class Subscription extends Feed {
 
   public String getSortid() { return sortid; }
 
+  void setSortid(final String sortid) { this.sortid = sortid; }
+
   public Long getUpdated() { return updated; }
 
+  void setUpdated(final Long updated) { this.updated = updated; }
+
   public List<Category> getCategories() { return categories; }
 
   public void setCategories(final List<Category> categories) { this.categories = categories; }
@@ -78,6 +85,7 @@ public class Subscription extends Feed {
   public Subscription() {}
 
   @SuppressWarnings("serial")
+  @GenerateCodec
   public static class Subscriptions extends ArrayList<Subscription> {}
 }
 
@@ -21,9 +21,13 @@ package org.github.bademux.feedly.api.model;
 
 import com.google.api.client.util.Key;
 
+import org.github.bademux.feedly.api.json.GenerateCodec;
+import org.github.bademux.feedly.api.json.Pooled;
+
 import java.util.ArrayList;
 
 
+@GenerateCodec
 public class Tag extends IdGenericJson implements Stream {
 
   public static final String PREFIX = "tag";
@@ -34,6 +38,7 @@ public class Tag extends IdGenericJson implements Stream {
   public static final String SAVED = "global.saved";
 
   @Key
+  @Pooled
   private String label;
 
   /**
@@ -64,6 +69,7 @@ public class Tag extends IdGenericJson implements Stream {
   public Tag() {super(PREFIX);}
 
   @SuppressWarnings("serial")
+  @GenerateCodec
   public static class Tags extends ArrayList<Tag> {}
 }
 
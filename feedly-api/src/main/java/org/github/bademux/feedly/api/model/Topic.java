@@ -23,11 +23,14 @@ import com.google.api.client.util.Key;
 import com.google.api.client.util.NullValue;
 import com.google.api.client.util.Value;
 
+import org.github.bademux.feedly.api.json.GenerateCodec;
+
 import java.util.ArrayList;
 
 import static com.google.api.client.repackaged.com.google.common.base.Preconditions.checkNotNull;
 
 
+@GenerateCodec
 public class Topic extends IdGenericJson implements Stream {
 
   public static final String PREFIX = "topic";
@@ -77,10 +80,14 @@ public class Topic extends IdGenericJson implements Stream {
     return updated;
   }
 
+  void setUpdated(final Long updated) { this.updated = updated; }
+
   public Long getCreated() {
     return created;
   }
 
+  void setCreated(final Long created) { this.created = created; }
+
   public Topic() {super(PREFIX);}
 
 
@@ -91,6 +98,7 @@ public class Topic extends IdGenericJson implements Stream {
   public Topic clone() { return (Topic) super.clone(); }
 
   @SuppressWarnings("serial")
+  @GenerateCodec
   public static class Topics extends ArrayList<Topic> {}
 }
 
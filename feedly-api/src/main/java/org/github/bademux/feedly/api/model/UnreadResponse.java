@@ -22,16 +22,22 @@ package org.github.bademux.feedly.api.model;
 import com.google.api.client.json.GenericJson;
 import com.google.api.client.util.Key;
 
+import org.github.bademux.feedly.api.json.GenerateCodec;
+
 import java.util.List;
 
 
+@GenerateCodec
 public class UnreadResponse extends GenericJson {
 
-  @Key
-  private List<Item> unreadcounts;
+  @Key("unreadcounts")
+  private List<Item> unreadCounts;
+
+  public List<Item> unreadCounts() { return unreadCounts; }
 
-  public List<Item> unreadCounts() { return unreadcounts; }
+  void setUnreadCounts(final List<Item> unreadCounts) { this.unreadCounts = unreadCounts; }
 
+  @GenerateCodec
   public static class Item {
 
     @Key
@@ -43,10 +49,16 @@ public class UnreadResponse extends GenericJson {
 
     public String getId() { return id; }
 
+    void setId(final String id) { this.id = id; }
+
     public Integer getCount() { return count; }
 
+    void setCount(final Integer count) { this.count = count; }
+
     public Long getUpdated() { return updated; }
 
+    void setUpdated(final Long updated) { this.updated = updated; }
+
     public Class<? extends Markable> getType() {
       String prefix;
       if (id.startsWith(Subscription.PREFIX + '/')) {
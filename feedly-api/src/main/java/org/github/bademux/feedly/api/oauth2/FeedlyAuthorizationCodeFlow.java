@@ -41,6 +41,9 @@ import org.github.bademux.feedly.api.service.Feedly;
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
 
 import static org.github.bademux.feedly.api.oauth2.FeedlyOAuthConstants.AUTHORIZATION_SERVER_URL;
 import static org.github.bademux.feedly.api.oauth2.FeedlyOAuthConstants.TOKEN_SERVER_URL;
@@ -54,6 +57,17 @@ public class FeedlyAuthorizationCodeFlow extends AuthorizationCodeFlow {
   /** Stored credential data store or {@code null} for none. */
   private final DataStore<FeedlyStoredCredential> credentialDataStore;
 
+  /** Scheduler of the background token refresh or {@code null} for none. */
+  private final ScheduledExecutorService refreshScheduler;
+
+  private final long refreshAheadMillis;
+
+  private final long refreshJitterMillis;
+
+  /** Credentials in use by user ID, so a user has one token refresh at a time. */
+  private final ConcurrentMap<String, FeedlyCredential> credentials =
+      new ConcurrentHashMap<String, FeedlyCredential>();
+
   /**
    * @param transport    HTTP transport
    * @param jsonFactory  JSON factory
@@ -69,6 +83,9 @@ public class FeedlyAuthorizationCodeFlow extends AuthorizationCodeFlow {
     super(builder);
     credentialCreatedListener = builder.getCredentialCreatedListener();
     credentialDataStore = builder.getFeedlyCredentialDataStore();
+    refreshScheduler = builder.refreshScheduler;
+    refreshAheadMillis = builder.refreshAheadMillis;
+    refreshJitterMillis = builder.refreshJitterMillis;
   }
 
   /**
@@ -105,6 +122,12 @@ public class FeedlyAuthorizationCodeFlow extends AuthorizationCodeFlow {
     if (store != null) {
       store.set(userId, new FeedlyStoredCredential(credential));
     }
+    if (userId != null) {
+      FeedlyCredential previous = credentials.put(userId, credential);
+      if (previous != null) {
+        previous.cancelScheduledRefresh();
+      }
+    }
     if (credentialCreatedListener != null) {
       credentialCreatedListener.onCredentialCreated(credential, response);
     }
@@ -114,6 +137,9 @@ public class FeedlyAuthorizationCodeFlow extends AuthorizationCodeFlow {
   /**
    * Loads the credential of the given user ID from the credential store.
    *
+   * <p> The credential is kept until it is removed from the store or {@link
+   * #releaseCredential(String) released}, loading it again returns the same instance. </p>
+   *
    * @param userId user ID or {@code null} if not using a persisted credential store
    * @return credential found in the credential store of the given user ID or {@code null} for none
    * found
@@ -126,14 +152,45 @@ public class FeedlyAuthorizationCodeFlow extends AuthorizationCodeFlow {
     }
     FeedlyStoredCredential stored = store.get(userId);
     if (stored == null) {
+      releaseCredential(userId);
       return null;
     }
-    return newFeedlyCredential(userId)
-        .setAccessToken(stored.getAccessToken())
-        .setRefreshToken(stored.getRefreshToken())
-        .setExpirationTimeMilliseconds(stored.getExpirationTimeMilliseconds())
-        .setUserId(stored.getUserId())
-        .setPlan(stored.getPlan());
+    FeedlyCredential credential = userId == null ? null : credentials.get(userId);
+    if (credential != null) {
+      return credential;
+    }
+    FeedlyStoredCredential.Snapshot values = stored.getSnapshot();
+    credential = newFeedlyCredential(userId)
+        .setAccessToken(values.getAccessToken())
+        .setRefreshToken(values.getRefreshToken())
+        .setExpirationTimeMilliseconds(values.getExpirationTimeMilliseconds())
+        .setUserId(values.getUserId())
+        .setPlan(values.getPlan());
+    if (userId == null) {
+      return credential;
+    }
+    FeedlyCredential loaded = credentials.putIfAbsent(userId, credential);
+    if (loaded != null) {
+      credential.cancelScheduledRefresh();
+      return loaded;
+    }
+    return credential;
+  }
+
+  /**
+   * Forgets the credential of the given user ID and stops its background refresh, ie. on logout.
+   * The credential store is left as is.
+   *
+   * @param userId user ID or {@code null} for none
+   */
+  public void releaseCredential(String userId) {
+    if (userId == null) {
+      return;
+    }
+    FeedlyCredential credential = credentials.remove(userId);
+    if (credential != null) {
+      credential.cancelScheduledRefresh();
+    }
   }
 
   /**
@@ -147,12 +204,19 @@ public class FeedlyAuthorizationCodeFlow extends AuthorizationCodeFlow {
         .setTokenServerEncodedUrl(getTokenServerEncodedUrl())
         .setClientAuthentication(getClientAuthentication())
         .setRequestInitializer(getRequestInitializer())
-        .setClock(getClock());
+        .setClock(getClock())
+        .setRefreshScheduler(refreshScheduler)
+        .setRefreshAheadMillis(refreshAheadMillis)
+        .setRefreshJitterMillis(refreshJitterMillis);
     DataStore<StoredCredential> store = getCredentialDataStore();
     if (store != null) {
       builder.addRefreshListener(
           new DataStoreCredentialRefreshListener(userId, store));
     }
+    if (credentialDataStore != null && userId != null) {
+      builder.addRefreshListener(
+          new FeedlyDataStoreCredentialRefreshListener(userId, credentialDataStore));
+    }
     builder.getRefreshListeners().addAll(getRefreshListeners());
     return builder.build();
   }
@@ -164,6 +228,13 @@ public class FeedlyAuthorizationCodeFlow extends AuthorizationCodeFlow {
     return credentialDataStore;
   }
 
+  /** Returns scheduler of the background token refresh or {@code null} for none. */
+  public final ScheduledExecutorService getRefreshScheduler() { return refreshScheduler; }
+
+  public final long getRefreshAheadMillis() { return refreshAheadMillis; }
+
+  public final long getRefreshJitterMillis() { return refreshJitterMillis; }
+
   /**
    * Feedly authorization code flow builder.
    *
@@ -173,6 +244,12 @@ public class FeedlyAuthorizationCodeFlow extends AuthorizationCodeFlow {
 
     DataStore<FeedlyStoredCredential> credentialDataStore;
 
+    ScheduledExecutorService refreshScheduler;
+
+    long refreshAheadMillis = FeedlyCredential.DEFAULT_REFRESH_AHEAD_MILLIS;
+
+    long refreshJitterMillis = FeedlyCredential.DEFAULT_REFRESH_JITTER_MILLIS;
+
     /**
      * @param transport    HTTP transport
      * @param jsonFactory  JSON factory
@@ -211,12 +288,49 @@ public class FeedlyAuthorizationCodeFlow extends AuthorizationCodeFlow {
       return credentialDataStore;
     }
 
+    /**
+     * Sets the stored credential data store, it also receives refreshed credentials. Wrap it into
+     * {@link org.github.bademux.feedly.api.util.store.WriteBehindDataStore} to write in
+     * background.
+     */
     public Builder setFeedlyCredentialDataStore(
         DataStore<FeedlyStoredCredential> credentialDataStore) {
       this.credentialDataStore = credentialDataStore;
       return this;
     }
 
+    public final ScheduledExecutorService getRefreshScheduler() { return refreshScheduler; }
+
+    /**
+     * Sets scheduler that refreshes tokens of created and loaded credentials in background ahead
+     * of their expiration time or {@code null} for none (default).
+     *
+     * @see FeedlyCredential.Builder#setRefreshScheduler(ScheduledExecutorService)
+     */
+    public Builder setRefreshScheduler(ScheduledExecutorService refreshScheduler) {
+      this.refreshScheduler = refreshScheduler;
+      return this;
+    }
+
+    public final long getRefreshAheadMillis() { return refreshAheadMillis; }
+
+    /** @see FeedlyCredential.Builder#setRefreshAheadMillis(long) */
+    public Builder setRefreshAheadMillis(long refreshAheadMillis) {
+      Preconditions.checkArgument(refreshAheadMillis >= 0,
+                                  "refresh ahead time must not be negative");
+      this.refreshAheadMillis = refreshAheadMillis;
+      return this;
+    }
+
+    public final long getRefreshJitterMillis() { return refreshJitterMillis; }
+
+    /** @see FeedlyCredential.Builder#setRefreshJitterMillis(long) */
+    public Builder setRefreshJitterMillis(long refreshJitterMillis) {
+      Preconditions.checkArgument(refreshJitterMillis >= 0, "refresh jitter must not be negative");
+      this.refreshJitterMillis = refreshJitterMillis;
+      return this;
+    }
+
     @Override
     public Builder setCredentialDataStore(DataStore<StoredCredential> credentialDataStore) {
       throw new AssertionError();
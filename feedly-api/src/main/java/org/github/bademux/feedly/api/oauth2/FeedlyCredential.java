@@ -22,21 +22,82 @@ package org.github.bademux.feedly.api.oauth2;
 import com.google.api.client.auth.oauth2.Credential;
 import com.google.api.client.auth.oauth2.CredentialRefreshListener;
 import com.google.api.client.auth.oauth2.TokenResponse;
+import com.google.api.client.auth.oauth2.TokenResponseException;
 import com.google.api.client.http.GenericUrl;
 import com.google.api.client.http.HttpExecuteInterceptor;
+import com.google.api.client.http.HttpRequest;
 import com.google.api.client.http.HttpRequestInitializer;
+import com.google.api.client.http.HttpResponse;
+import com.google.api.client.http.HttpStatusCodes;
 import com.google.api.client.http.HttpTransport;
 import com.google.api.client.json.JsonFactory;
 import com.google.api.client.util.Clock;
+import com.google.api.client.util.Objects;
 
 import java.io.IOException;
+import java.lang.ref.WeakReference;
 import java.util.Collection;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import static com.google.api.client.util.Preconditions.checkArgument;
+
+/**
+ * Feedly OAuth 2.0 credential.
+ *
+ * <p> Concurrent token refreshes, ie. by several requests that got {@code 401} or by the {@link
+ * Builder#setRefreshScheduler(ScheduledExecutorService) background refresh}, share a single
+ * {@link FeedlyRefreshTokenRequest}. The refresh that sent the request sets the new token and
+ * notifies refresh listeners once, the joined ones wait for it. An explicit {@link
+ * #refreshToken()} always sends its own request. </p>
+ *
+ * <p> With a refresh scheduler the token is refreshed in background ahead of its expiration time,
+ * so requests don't wait for the token server. Requests keep using the current token while the
+ * new one is requested. The scheduler holds the credential weakly, the background refresh stops
+ * once the credential is no longer used or {@link #cancelScheduledRefresh()} is called. </p>
+ *
+ * <p> Implementation is thread-safe. </p>
+ */
 public class FeedlyCredential extends Credential {
 
   static final Logger LOGGER = Logger.getLogger(FeedlyCredential.class.getName());
 
+  /** Default time before expiration the background refresh starts at, 5 minutes. */
+  public static final long DEFAULT_REFRESH_AHEAD_MILLIS = 5 * 60 * 1000;
+
+  /** Default max random time added to the refresh ahead time, 1 minute. */
+  public static final long DEFAULT_REFRESH_JITTER_MILLIS = 60 * 1000;
+
+  /** Delay before the failed background refresh is retried. */
+  static final long REFRESH_RETRY_MILLIS = 30 * 1000;
+
+  private static final Random JITTER = new Random();
+
+  /** Scheduler of the background refresh or {@code null} for none. */
+  private final ScheduledExecutorService refreshScheduler;
+
+  private final long refreshAheadMillis;
+
+  private final long refreshJitterMillis;
+
+  /** Refresh in flight, shared by requests and the background refresh. */
+  private final AtomicReference<FutureTask<FeedlyTokenResponse>> refreshCall =
+      new AtomicReference<FutureTask<FeedlyTokenResponse>>();
+
+  /** Scheduled background refresh or {@code null} for none. */
+  private final AtomicReference<ScheduledFuture<?>> scheduledRefresh =
+      new AtomicReference<ScheduledFuture<?>>();
+
   /**
    * Feedly user id
    */
@@ -62,8 +123,18 @@ public class FeedlyCredential extends Credential {
     super(builder);
     userId = builder.userId;
     plan = builder.plan;
+    refreshScheduler = builder.refreshScheduler;
+    refreshAheadMillis = builder.refreshAheadMillis;
+    refreshJitterMillis = builder.refreshJitterMillis;
   }
 
+  /** Returns scheduler of the background refresh or {@code null} for none. */
+  public final ScheduledExecutorService getRefreshScheduler() { return refreshScheduler; }
+
+  public final long getRefreshAheadMillis() { return refreshAheadMillis; }
+
+  public final long getRefreshJitterMillis() { return refreshJitterMillis; }
+
   @Override
   public FeedlyCredential setAccessToken(String accessToken) {
     return (FeedlyCredential) super.setAccessToken(accessToken);
@@ -74,9 +145,20 @@ public class FeedlyCredential extends Credential {
     return (FeedlyCredential) super.setRefreshToken(refreshToken);
   }
 
+  /** Reschedules the background refresh if there is a {@link #getRefreshScheduler() scheduler}. */
   @Override
   public FeedlyCredential setExpirationTimeMilliseconds(Long expirationTimeMilliseconds) {
-    return (FeedlyCredential) super.setExpirationTimeMilliseconds(expirationTimeMilliseconds);
+    super.setExpirationTimeMilliseconds(expirationTimeMilliseconds);
+    if (refreshScheduler != null) {
+      if (expirationTimeMilliseconds == null) {
+        cancelScheduledRefresh();
+      } else {
+        long delay = expirationTimeMilliseconds - getClock().currentTimeMillis()
+                     - refreshAheadMillis - jitter();
+        scheduleRefresh(delay);
+      }
+    }
+    return this;
   }
 
   @Override
@@ -95,6 +177,109 @@ public class FeedlyCredential extends Credential {
     return (FeedlyCredential) super.setFromTokenResponse(tokenResponse);
   }
 
+  /** Sets the access token, refreshes it first if it is missing or expires within a minute. */
+  @Override
+  public void intercept(HttpRequest request) throws IOException {
+    Long expiresIn = getExpiresInSeconds();
+    if (getAccessToken() == null || expiresIn != null && expiresIn <= 60) {
+      refreshShared();
+    }
+    String accessToken = getAccessToken();
+    if (accessToken != null) {
+      getMethod().intercept(request, accessToken);
+    }
+  }
+
+  /** Refreshes the token on {@code 401} unless it was refreshed after the request was sent. */
+  @Override
+  public boolean handleResponse(HttpRequest request, HttpResponse response,
+                                boolean supportsRetry) {
+    if (response.getStatusCode() != HttpStatusCodes.STATUS_CODE_UNAUTHORIZED) {
+      return false;
+    }
+    try {
+      return !Objects.equal(getAccessToken(), getMethod().getAccessTokenFromRequest(request))
+             || refreshShared();
+    } catch (IOException e) {
+      LOGGER.log(Level.SEVERE, "unable to refresh token", e);
+      return false;
+    }
+  }
+
+  /**
+   * Requests a new access token or waits for the refresh in flight.
+   *
+   * @return whether the token is refreshed, {@code false} if there is no refresh token
+   */
+  private boolean refreshShared() throws IOException {
+    return getResult(runRefresh()) != null;
+  }
+
+  /** Returns the refresh in flight, runs a new one if there is none. */
+  private FutureTask<FeedlyTokenResponse> runRefresh() {
+    FutureTask<FeedlyTokenResponse> call = new FutureTask<FeedlyTokenResponse>(
+        new Callable<FeedlyTokenResponse>() {
+          @Override
+          public FeedlyTokenResponse call() throws IOException { return refreshOnce(); }
+        });
+    while (!refreshCall.compareAndSet(null, call)) {
+      FutureTask<FeedlyTokenResponse> sharedCall = refreshCall.get();
+      if (sharedCall != null) {
+        return sharedCall;
+      }
+    }
+    try {
+      call.run();
+    } finally {
+      refreshCall.compareAndSet(call, null);
+    }
+    return call;
+  }
+
+  /**
+   * Requests a new token, sets it and notifies refresh listeners like {@link #refreshToken()},
+   * failing listeners are logged.
+   *
+   * @return token response or {@code null} if there is no refresh token
+   */
+  private FeedlyTokenResponse refreshOnce() throws IOException {
+    FeedlyTokenResponse response;
+    try {
+      response = executeRefreshToken();
+    } catch (TokenResponseException e) {
+      boolean rejected = e.getStatusCode() >= 400 && e.getStatusCode() < 500;
+      if (rejected && e.getDetails() != null) {
+        setAccessToken(null);
+        setExpiresInSeconds(null);
+      }
+      for (CredentialRefreshListener listener : getRefreshListeners()) {
+        try {
+          listener.onTokenErrorResponse(this, e.getDetails());
+        } catch (IOException listenerError) {
+          LOGGER.log(Level.WARNING, "Refresh listener failed", listenerError);
+        }
+      }
+      throw e;
+    }
+    if (response == null) {
+      return null;
+    }
+    setFromTokenResponse(response);
+    for (CredentialRefreshListener listener : getRefreshListeners()) {
+      try {
+        listener.onTokenResponse(this, response);
+      } catch (IOException e) {
+        LOGGER.log(Level.WARNING, "Refresh listener failed", e);
+      }
+    }
+    return response;
+  }
+
+  /**
+   * Requests a new access token.
+   *
+   * @return token response or {@code null} if there is no refresh token
+   */
   @Override
   protected FeedlyTokenResponse executeRefreshToken() throws IOException {
     String refreshToken = getRefreshToken();
@@ -107,6 +292,129 @@ public class FeedlyCredential extends Credential {
         .setRequestInitializer(getRequestInitializer()).execute();
   }
 
+  /** Cancels the scheduled background refresh, it is scheduled again on the next token update. */
+  public void cancelScheduledRefresh() {
+    ScheduledFuture<?> previous = scheduledRefresh.getAndSet(null);
+    if (previous != null) {
+      previous.cancel(false);
+    }
+  }
+
+  private void scheduleRefresh(long delayMillis) {
+    ScheduledFuture<?> next = refreshScheduler.schedule(
+        new ScheduledRefresh(this), Math.max(0, delayMillis), TimeUnit.MILLISECONDS);
+    ScheduledFuture<?> previous = scheduledRefresh.getAndSet(next);
+    if (previous != null) {
+      previous.cancel(false);
+    }
+  }
+
+  /**
+   * Refreshes the token without holding the credential lock, so requests go on with the current
+   * token.
+   */
+  void refreshInBackground() {
+    try {
+      getResult(runRefresh());
+    } catch (TokenResponseException e) {
+      LOGGER.log(Level.WARNING, "Background token refresh rejected", e);
+      if (e.getStatusCode() >= 500) {
+        retryRefresh();
+      }
+    } catch (IOException e) {
+      LOGGER.log(Level.WARNING, "Background token refresh failed", e);
+      retryRefresh();
+    } catch (RuntimeException e) {
+      LOGGER.log(Level.WARNING, "Background token refresh failed", e);
+      retryRefresh();
+    }
+  }
+
+  /** Retries if the token is still valid by then, expired token is refreshed by requests. */
+  private void retryRefresh() {
+    Long expirationTime = getExpirationTimeMilliseconds();
+    if (expirationTime != null
+        && getClock().currentTimeMillis() + REFRESH_RETRY_MILLIS < expirationTime) {
+      scheduleRefresh(REFRESH_RETRY_MILLIS);
+    }
+  }
+
+  private long jitter() {
+    if (refreshJitterMillis <= 0) {
+      return 0;
+    }
+    synchronized (JITTER) {
+      return (long) (JITTER.nextDouble() * refreshJitterMillis);
+    }
+  }
+
+  private static FeedlyTokenResponse getResult(FutureTask<FeedlyTokenResponse> call)
+      throws IOException {
+    boolean interrupted = false;
+    try {
+      while (true) {
+        try {
+          return call.get();
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new IOException(cause);
+    } finally {
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /** Background refresh, does nothing if the credential is no longer used. */
+  private static final class ScheduledRefresh implements Runnable {
+
+    private final WeakReference<FeedlyCredential> credential;
+
+    ScheduledRefresh(FeedlyCredential credential) {
+      this.credential = new WeakReference<FeedlyCredential>(credential);
+    }
+
+    @Override
+    public void run() {
+      FeedlyCredential current = credential.get();
+      if (current != null) {
+        current.refreshInBackground();
+      }
+    }
+  }
+
+  /**
+   * Returns a new scheduler with a single daemon thread, suitable for {@link
+   * Builder#setRefreshScheduler(ScheduledExecutorService)}. Token requests run on its thread.
+   */
+  public static ScheduledExecutorService newRefreshScheduler() {
+    ThreadFactory threadFactory = new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread thread = new Thread(r, "feedly-token-refresh");
+        thread.setDaemon(true);
+        return thread;
+      }
+    };
+    ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, threadFactory);
+    scheduler.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+    scheduler.setRemoveOnCancelPolicy(true);
+    return scheduler;
+  }
+
   /**
    * FeedlyCredential builder.
    *
@@ -124,6 +432,12 @@ public class FeedlyCredential extends Credential {
      */
     String plan;
 
+    /** Scheduler of the background refresh or {@code null} for none. */
+    ScheduledExecutorService refreshScheduler;
+
+    long refreshAheadMillis = DEFAULT_REFRESH_AHEAD_MILLIS;
+
+    long refreshJitterMillis = DEFAULT_REFRESH_JITTER_MILLIS;
 
     public Builder() { super(FeedlyBearerToken.authorizationHeaderAccessMethod()); }
 
@@ -135,6 +449,49 @@ public class FeedlyCredential extends Credential {
 
     public void setPlan(final String plan) { this.plan = plan; }
 
+    /** Returns scheduler of the background refresh or {@code null} for none. */
+    public final ScheduledExecutorService getRefreshScheduler() { return refreshScheduler; }
+
+    /**
+     * Sets scheduler that refreshes the token in background ahead of its expiration time or
+     * {@code null} to refresh only when a request finds the token expired (default).
+     *
+     * <p> The credential does not shut down the given scheduler. </p>
+     *
+     * @see FeedlyCredential#newRefreshScheduler()
+     */
+    public Builder setRefreshScheduler(ScheduledExecutorService refreshScheduler) {
+      this.refreshScheduler = refreshScheduler;
+      return this;
+    }
+
+    public final long getRefreshAheadMillis() { return refreshAheadMillis; }
+
+    /**
+     * Sets how long before the expiration time the background refresh starts.
+     *
+     * <p> By default it is {@link #DEFAULT_REFRESH_AHEAD_MILLIS}. </p>
+     */
+    public Builder setRefreshAheadMillis(long refreshAheadMillis) {
+      checkArgument(refreshAheadMillis >= 0, "refresh ahead time must not be negative");
+      this.refreshAheadMillis = refreshAheadMillis;
+      return this;
+    }
+
+    public final long getRefreshJitterMillis() { return refreshJitterMillis; }
+
+    /**
+     * Sets max random time added to the refresh ahead time, so credentials that expire together
+     * don't hit the token server at once.
+     *
+     * <p> By default it is {@link #DEFAULT_REFRESH_JITTER_MILLIS}. </p>
+     */
+    public Builder setRefreshJitterMillis(long refreshJitterMillis) {
+      checkArgument(refreshJitterMillis >= 0, "refresh jitter must not be negative");
+      this.refreshJitterMillis = refreshJitterMillis;
+      return this;
+    }
+
     @Override
     public FeedlyCredential build() { return new FeedlyCredential(this); }
 
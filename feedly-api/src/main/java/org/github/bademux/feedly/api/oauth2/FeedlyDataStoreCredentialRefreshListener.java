@@ -0,0 +1,82 @@
+/*
+ * Copyright 2014 Bademus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *    Contributors:
+ *                 Bademus
+ */
+
+package org.github.bademux.feedly.api.oauth2;
+
+import com.google.api.client.auth.oauth2.Credential;
+import com.google.api.client.auth.oauth2.CredentialRefreshListener;
+import com.google.api.client.auth.oauth2.TokenErrorResponse;
+import com.google.api.client.auth.oauth2.TokenResponse;
+import com.google.api.client.util.store.DataStore;
+
+import java.io.IOException;
+
+import static com.google.api.client.util.Preconditions.checkNotNull;
+
+/**
+ * Persists the refreshed {@link FeedlyCredential} into the {@link FeedlyStoredCredential} data
+ * store. A token response is applied to the stored credential with {@link
+ * FeedlyStoredCredential#refresh(FeedlyTokenResponse)}, so stored values the response lacks, ie.
+ * user id and plan, are kept. Wrap the data store into {@link
+ * org.github.bademux.feedly.api.util.store.WriteBehindDataStore} to keep the write off the
+ * refreshing thread.
+ *
+ * <p> Implementation is thread-safe. </p>
+ */
+public class FeedlyDataStoreCredentialRefreshListener implements CredentialRefreshListener {
+
+  /**
+   * @param credentialId    credential ID
+   * @param credentialStore stored credential data store
+   */
+  public FeedlyDataStoreCredentialRefreshListener(
+      String credentialId, DataStore<FeedlyStoredCredential> credentialStore) {
+    this.credentialId = checkNotNull(credentialId);
+    this.credentialStore = checkNotNull(credentialStore);
+  }
+
+  @Override
+  public void onTokenResponse(Credential credential, TokenResponse tokenResponse)
+      throws IOException {
+    FeedlyStoredCredential stored = credentialStore.get(credentialId);
+    if (stored == null || !(tokenResponse instanceof FeedlyTokenResponse)) {
+      makePersistent(credential);
+      return;
+    }
+    stored.refresh((FeedlyTokenResponse) tokenResponse);
+    credentialStore.set(credentialId, stored);
+  }
+
+  @Override
+  public void onTokenErrorResponse(Credential credential, TokenErrorResponse tokenErrorResponse)
+      throws IOException {
+    makePersistent(credential);
+  }
+
+  /** Stores the credential of the credential ID. */
+  public void makePersistent(Credential credential) throws IOException {
+    credentialStore.set(credentialId, new FeedlyStoredCredential((FeedlyCredential) credential));
+  }
+
+  public final DataStore<FeedlyStoredCredential> getCredentialStore() { return credentialStore; }
+
+  private final String credentialId;
+
+  private final DataStore<FeedlyStoredCredential> credentialStore;
+}
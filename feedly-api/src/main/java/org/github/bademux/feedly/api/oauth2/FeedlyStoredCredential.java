@@ -24,16 +24,30 @@ import com.google.api.client.util.Objects;
 import com.google.api.client.util.store.DataStore;
 import com.google.api.client.util.store.DataStoreFactory;
 
+import org.github.bademux.feedly.api.util.store.BinaryCodec;
+
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
 import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
+import static com.google.api.client.util.Preconditions.checkNotNull;
+
 /**
  * {@link Beta} <br/>
  * Credential information to be stored in a {@link DataStoreFactory}.
  *
+ * <p> Fields are kept in an immutable {@link Snapshot} that is replaced atomically on update, so
+ * reads never block and {@link #getSnapshot()} gives a consistent view of all fields. Use {@link
+ * #compareAndSet(Snapshot, Snapshot)} to update several fields at once, ie. on token refresh. </p>
+ *
  * <p>
  * Implementation is thread safe.
  * </p>
@@ -46,146 +60,138 @@ public final class FeedlyStoredCredential implements Serializable {
 
   private static final long serialVersionUID = 2L;
 
-  /** Lock on access to the store. */
-  private final Lock lock = new ReentrantLock();
-
-  /** Access token or {@code null} for none. */
-  private String accessToken;
-
-  /** Expected expiration time in milliseconds or {@code null} for none. */
-  private Long expirationTimeMilliseconds;
-
-  /** Refresh token or {@code null} for none. */
-  private String refreshToken;
+  /**
+   * Serialized form of the previous lock based version, the lock is still written for its
+   * readers.
+   */
+  private static final ObjectStreamField[] serialPersistentFields = {
+      new ObjectStreamField("lock", Lock.class),
+      new ObjectStreamField("accessToken", String.class),
+      new ObjectStreamField("expirationTimeMilliseconds", Long.class),
+      new ObjectStreamField("refreshToken", String.class),
+      new ObjectStreamField("userId", String.class),
+      new ObjectStreamField("plan", String.class)
+  };
 
-  /** The feedly user id */
-  private String userId;
+  private static final AtomicReferenceFieldUpdater<FeedlyStoredCredential, Snapshot> SNAPSHOT =
+      AtomicReferenceFieldUpdater.newUpdater(FeedlyStoredCredential.class, Snapshot.class,
+                                             "snapshot");
 
-  /** Indicated the user plan (standard or pro) */
-  private String plan;
+  /** Current values, never {@code null}. */
+  private transient volatile Snapshot snapshot;
 
   public FeedlyStoredCredential() {
+    snapshot = Snapshot.EMPTY;
   }
 
   /**
    * @param credential existing credential to copy from
    */
   public FeedlyStoredCredential(FeedlyCredential credential) {
-    setAccessToken(credential.getAccessToken());
-    setRefreshToken(credential.getRefreshToken());
-    setExpirationTimeMilliseconds(credential.getExpirationTimeMilliseconds());
-    setUserId(credential.getUserId());
-    setPlan(credential.getPlan());
+    snapshot = new Snapshot(credential);
+  }
+
+  public FeedlyStoredCredential(Snapshot snapshot) {
+    this.snapshot = checkNotNull(snapshot);
+  }
+
+  /** Returns all fields as of now. */
+  public Snapshot getSnapshot() {
+    return snapshot;
+  }
+
+  /**
+   * Replaces the fields if they haven't been changed since the expected snapshot was taken.
+   *
+   * @return {@code false} if fields were changed concurrently, take a new snapshot and retry
+   */
+  public boolean compareAndSet(Snapshot expect, Snapshot update) {
+    return SNAPSHOT.compareAndSet(this, expect, checkNotNull(update));
+  }
+
+  /**
+   * Atomically applies the refreshed token.
+   *
+   * @return values after the refresh
+   */
+  public Snapshot refresh(FeedlyTokenResponse response) {
+    Snapshot current;
+    Snapshot refreshed;
+    do {
+      current = snapshot;
+      refreshed = current.withTokenResponse(response);
+    } while (!compareAndSet(current, refreshed));
+    return refreshed;
   }
 
   /** Returns the access token or {@code null} for none. */
   public String getAccessToken() {
-    lock.lock();
-    try {
-      return accessToken;
-    } finally {
-      lock.unlock();
-    }
+    return snapshot.accessToken;
   }
 
   /** Sets the access token or {@code null} for none. */
   public FeedlyStoredCredential setAccessToken(String accessToken) {
-    lock.lock();
-    try {
-      this.accessToken = accessToken;
-    } finally {
-      lock.unlock();
-    }
+    Snapshot current;
+    do {
+      current = snapshot;
+    } while (!SNAPSHOT.compareAndSet(this, current, current.withAccessToken(accessToken)));
     return this;
   }
 
   /** Returns the expected expiration time in milliseconds or {@code null} for none. */
   public Long getExpirationTimeMilliseconds() {
-    lock.lock();
-    try {
-      return expirationTimeMilliseconds;
-    } finally {
-      lock.unlock();
-    }
+    return snapshot.expirationTimeMilliseconds;
   }
 
   /** Sets the expected expiration time in milliseconds or {@code null} for none. */
   public FeedlyStoredCredential setExpirationTimeMilliseconds(Long expirationTimeMilliseconds) {
-    lock.lock();
-    try {
-      this.expirationTimeMilliseconds = expirationTimeMilliseconds;
-    } finally {
-      lock.unlock();
-    }
+    Snapshot current;
+    do {
+      current = snapshot;
+    } while (!SNAPSHOT.compareAndSet(this, current, current.withExpirationTimeMilliseconds(
+        expirationTimeMilliseconds)));
     return this;
   }
 
   /** Returns the refresh token or {@code null} for none. */
   public String getRefreshToken() {
-    lock.lock();
-    try {
-      return refreshToken;
-    } finally {
-      lock.unlock();
-    }
+    return snapshot.refreshToken;
   }
 
   /** Sets the refresh token or {@code null} for none. */
   public FeedlyStoredCredential setRefreshToken(String refreshToken) {
-    lock.lock();
-    try {
-      this.refreshToken = refreshToken;
-    } finally {
-      lock.unlock();
-    }
+    Snapshot current;
+    do {
+      current = snapshot;
+    } while (!SNAPSHOT.compareAndSet(this, current, current.withRefreshToken(refreshToken)));
     return this;
   }
 
   public String getUserId() {
-    lock.lock();
-    try {
-      return userId;
-    } finally {
-      lock.unlock();
-    }
+    return snapshot.userId;
   }
 
   public void setUserId(final String userId) {
-    lock.lock();
-    try {
-      this.userId = userId;
-    } finally {
-      lock.unlock();
-    }
+    Snapshot current;
+    do {
+      current = snapshot;
+    } while (!SNAPSHOT.compareAndSet(this, current, current.withUserId(userId)));
   }
 
   public String getPlan() {
-    lock.lock();
-    try {
-      return plan;
-    } finally {
-      lock.unlock();
-    }
+    return snapshot.plan;
   }
 
   public void setPlan(final String plan) {
-    lock.lock();
-    try {
-      this.plan = plan;
-    } finally {
-      lock.unlock();
-    }
+    Snapshot current;
+    do {
+      current = snapshot;
+    } while (!SNAPSHOT.compareAndSet(this, current, current.withPlan(plan)));
   }
 
   @Override
   public String toString() {
-    return Objects.toStringHelper(FeedlyStoredCredential.class)
-        .add("accessToken", getAccessToken())
-        .add("refreshToken", getRefreshToken())
-        .add("expirationTimeMilliseconds", getExpirationTimeMilliseconds())
-        .add("userId", getUserId())
-        .add("plan", getPlan())
-        .toString();
+    return snapshot.toString(this);
   }
 
   @Override
@@ -196,19 +202,12 @@ public final class FeedlyStoredCredential implements Serializable {
     if (!(other instanceof FeedlyStoredCredential)) {
       return false;
     }
-    FeedlyStoredCredential o = (FeedlyStoredCredential) other;
-    return Objects.equal(getAccessToken(), o.getAccessToken())
-           && Objects.equal(getRefreshToken(), o.getRefreshToken())
-           && Objects.equal(getExpirationTimeMilliseconds(), o.getExpirationTimeMilliseconds())
-           && Objects.equal(getUserId(), o.getUserId())
-           && Objects.equal(getPlan(), o.getPlan());
+    return snapshot.equals(((FeedlyStoredCredential) other).snapshot);
   }
 
   @Override
   public int hashCode() {
-    return Arrays.hashCode(
-        new Object[]{getAccessToken(), getRefreshToken(), getExpirationTimeMilliseconds(),
-                     getUserId(), getPlan()});
+    return snapshot.hashCode();
   }
 
   /**
@@ -222,4 +221,173 @@ public final class FeedlyStoredCredential implements Serializable {
       throws IOException {
     return dataStoreFactory.getDataStore(DEFAULT_DATA_STORE_ID);
   }
+
+  /**
+   * Binary form of the stored credential, registered at {@link
+   * org.github.bademux.feedly.api.util.store.ValueCodecs}.
+   */
+  public static final BinaryCodec<FeedlyStoredCredential> CODEC =
+      new BinaryCodec<FeedlyStoredCredential>(FeedlyStoredCredential.class, 1, 1) {
+        @Override
+        protected void write(FeedlyStoredCredential value, DataOutput out) throws IOException {
+          Snapshot current = value.snapshot;
+          writeString(out, current.accessToken);
+          writeString(out, current.refreshToken);
+          writeLong(out, current.expirationTimeMilliseconds);
+          writeString(out, current.userId);
+          writeString(out, current.plan);
+        }
+
+        @Override
+        protected FeedlyStoredCredential read(DataInput in, int version) throws IOException {
+          return new FeedlyStoredCredential(
+              new Snapshot(readString(in), readString(in), readLong(in), readString(in),
+                           readString(in)));
+        }
+      };
+
+  private void writeObject(ObjectOutputStream out) throws IOException {
+    Snapshot current = snapshot;
+    ObjectOutputStream.PutField fields = out.putFields();
+    fields.put("lock", new ReentrantLock());
+    fields.put("accessToken", current.accessToken);
+    fields.put("expirationTimeMilliseconds", current.expirationTimeMilliseconds);
+    fields.put("refreshToken", current.refreshToken);
+    fields.put("userId", current.userId);
+    fields.put("plan", current.plan);
+    out.writeFields();
+  }
+
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    ObjectInputStream.GetField fields = in.readFields();
+    snapshot = new Snapshot((String) fields.get("accessToken", null),
+                            (String) fields.get("refreshToken", null),
+                            (Long) fields.get("expirationTimeMilliseconds", null),
+                            (String) fields.get("userId", null),
+                            (String) fields.get("plan", null));
+  }
+
+  /**
+   * Immutable values of the stored credential.
+   *
+   * <p> Implementation is thread-safe. </p>
+   */
+  public static final class Snapshot {
+
+    static final Snapshot EMPTY = new Snapshot(null, null, null, null, null);
+
+    final String accessToken;
+
+    final String refreshToken;
+
+    final Long expirationTimeMilliseconds;
+
+    final String userId;
+
+    final String plan;
+
+    /**
+     * @param accessToken                access token or {@code null} for none
+     * @param refreshToken               refresh token or {@code null} for none
+     * @param expirationTimeMilliseconds expected expiration time in milliseconds or {@code null}
+     *                                   for none
+     * @param userId                     feedly user id
+     * @param plan                       user plan (standard or pro)
+     */
+    public Snapshot(String accessToken, String refreshToken, Long expirationTimeMilliseconds,
+                    String userId, String plan) {
+      this.accessToken = accessToken;
+      this.refreshToken = refreshToken;
+      this.expirationTimeMilliseconds = expirationTimeMilliseconds;
+      this.userId = userId;
+      this.plan = plan;
+    }
+
+    /** Copies current values of the credential. */
+    public Snapshot(FeedlyCredential credential) {
+      this(credential.getAccessToken(), credential.getRefreshToken(),
+           credential.getExpirationTimeMilliseconds(), credential.getUserId(),
+           credential.getPlan());
+    }
+
+    public String getAccessToken() { return accessToken; }
+
+    public String getRefreshToken() { return refreshToken; }
+
+    public Long getExpirationTimeMilliseconds() { return expirationTimeMilliseconds; }
+
+    public String getUserId() { return userId; }
+
+    public String getPlan() { return plan; }
+
+    public Snapshot withAccessToken(String accessToken) {
+      return new Snapshot(accessToken, refreshToken, expirationTimeMilliseconds, userId, plan);
+    }
+
+    public Snapshot withRefreshToken(String refreshToken) {
+      return new Snapshot(accessToken, refreshToken, expirationTimeMilliseconds, userId, plan);
+    }
+
+    public Snapshot withExpirationTimeMilliseconds(Long expirationTimeMilliseconds) {
+      return new Snapshot(accessToken, refreshToken, expirationTimeMilliseconds, userId, plan);
+    }
+
+    public Snapshot withUserId(String userId) {
+      return new Snapshot(accessToken, refreshToken, expirationTimeMilliseconds, userId, plan);
+    }
+
+    public Snapshot withPlan(String plan) {
+      return new Snapshot(accessToken, refreshToken, expirationTimeMilliseconds, userId, plan);
+    }
+
+    /**
+     * Returns values refreshed from the token response, values missing in the response, ie.
+     * refresh token, are kept.
+     */
+    public Snapshot withTokenResponse(FeedlyTokenResponse response) {
+      Long expiresIn = response.getExpiresInSeconds();
+      return new Snapshot(response.getAccessToken(),
+                          response.getRefreshToken() != null ? response.getRefreshToken()
+                                                             : refreshToken,
+                          expiresIn == null ? null
+                                            : System.currentTimeMillis() + expiresIn * 1000,
+                          response.getUserId() != null ? response.getUserId() : userId,
+                          response.getPlan() != null ? response.getPlan() : plan);
+    }
+
+    @Override
+    public String toString() { return toString(this); }
+
+    String toString(Object owner) {
+      return Objects.toStringHelper(owner)
+          .add("accessToken", accessToken)
+          .add("refreshToken", refreshToken)
+          .add("expirationTimeMilliseconds", expirationTimeMilliseconds)
+          .add("userId", userId)
+          .add("plan", plan)
+          .toString();
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (this == other) {
+        return true;
+      }
+      if (!(other instanceof Snapshot)) {
+        return false;
+      }
+      Snapshot o = (Snapshot) other;
+      return Objects.equal(accessToken, o.accessToken)
+             && Objects.equal(refreshToken, o.refreshToken)
+             && Objects.equal(expirationTimeMilliseconds, o.expirationTimeMilliseconds)
+             && Objects.equal(userId, o.userId)
+             && Objects.equal(plan, o.plan);
+    }
+
+    @Override
+    public int hashCode() {
+      return Arrays.hashCode(
+          new Object[]{accessToken, refreshToken, expirationTimeMilliseconds, userId, plan});
+    }
+  }
 }
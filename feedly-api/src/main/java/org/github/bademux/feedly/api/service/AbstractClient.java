@@ -29,9 +29,15 @@ import com.google.api.client.json.JsonObjectParser;
 import com.google.api.client.util.ObjectParser;
 import com.google.api.client.util.Preconditions;
 
+import org.github.bademux.feedly.api.json.CodecObjectParser;
+import org.github.bademux.feedly.api.json.ParseContext;
+import org.github.bademux.feedly.api.json.StringPool;
 import org.github.bademux.feedly.api.oauth2.FeedlyCredential;
 
 import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
 
 /** Abstract thread-safe client. */
 public abstract class AbstractClient {
@@ -49,7 +55,7 @@ public abstract class AbstractClient {
   private final String servicePath;
 
   /** Object parser or {@code null} for none. */
-  private final JsonObjectParser objectParser;
+  private final CodecObjectParser objectParser;
 
   /** Whether discovery pattern checks should be suppressed on required parameters. */
   private boolean suppressPatternChecks;
@@ -57,6 +63,30 @@ public abstract class AbstractClient {
   /** Whether discovery required parameter checks should be suppressed. */
   private boolean suppressRequiredParameterChecks;
 
+  /** Executor for asynchronous requests or {@code null} until the default one is needed. */
+  private Executor executor;
+
+  /** Cache of conditional GET responses or {@code null} for none. */
+  private final ResponseCache responseCache;
+
+  /** Request metrics or {@code null} if they are not recorded. */
+  private final RequestMetrics metrics;
+
+  /** Rate limiter or {@code null} if requests are not paced. */
+  private final RateLimiter rateLimiter;
+
+  /** Retry policy of GET requests or {@code null} to not retry them. */
+  private final RetryPolicy readRetryPolicy;
+
+  /** Retry policy of POST, PUT and DELETE requests or {@code null} to not retry them. */
+  private final RetryPolicy writeRetryPolicy;
+
+  /** Latency quantile after which a GET request is hedged or {@code 0} to not hedge. */
+  private final double hedgeQuantile;
+
+  /** Results of in-flight GET requests by key or {@code null} if they are not shared. */
+  private final ConcurrentMap<String, RequestFuture<Object>> inFlight;
+
   /** @param builder builder */
   protected AbstractClient(Builder builder) {
     rootUrl = normalizeRootUrl(builder.rootUrl);
@@ -65,6 +95,16 @@ public abstract class AbstractClient {
     objectParser = builder.objectParser;
     suppressPatternChecks = builder.suppressPatternChecks;
     suppressRequiredParameterChecks = builder.suppressRequiredParameterChecks;
+    executor = builder.executor;
+    responseCache = builder.responseCache;
+    metrics = builder.metrics;
+    rateLimiter = builder.rateLimiter;
+    readRetryPolicy = builder.readRetryPolicy;
+    writeRetryPolicy = builder.writeRetryPolicy;
+    hedgeQuantile = builder.hedgeQuantile;
+    inFlight = builder.singleFlight ? new ConcurrentHashMap<String, RequestFuture<Object>>() : null;
+    Preconditions.checkArgument(hedgeQuantile == 0 || metrics != null,
+                                "hedging requires request metrics");
   }
 
   /**
@@ -124,6 +164,100 @@ public abstract class AbstractClient {
     return suppressRequiredParameterChecks;
   }
 
+  /**
+   * Returns the executor that runs asynchronous requests, see {@link Request#executeAsync()}.
+   *
+   * <p> If none was set on the {@link Builder} a shared cached pool of daemon threads is created
+   * on first use. </p>
+   */
+  public final synchronized Executor getExecutor() {
+    if (executor == null) {
+      executor = RequestExecutors.newDefaultExecutor();
+    }
+    return executor;
+  }
+
+  /**
+   * Returns the cache of conditional GET responses or {@code null} for none, see {@link
+   * Request#setCacheable(boolean)}.
+   */
+  public final ResponseCache getResponseCache() {
+    return responseCache;
+  }
+
+  /** Returns the request metrics or {@code null} if they are not recorded. */
+  public final RequestMetrics getMetrics() {
+    return metrics;
+  }
+
+  /** Returns the rate limiter or {@code null} if requests are not paced. */
+  public final RateLimiter getRateLimiter() {
+    return rateLimiter;
+  }
+
+  /** Returns the retry policy of GET requests or {@code null} if they are not retried. */
+  public final RetryPolicy getReadRetryPolicy() {
+    return readRetryPolicy;
+  }
+
+  /**
+   * Returns the retry policy of POST, PUT and DELETE requests or {@code null} if they are not
+   * retried.
+   */
+  public final RetryPolicy getWriteRetryPolicy() {
+    return writeRetryPolicy;
+  }
+
+  /**
+   * Returns the latency quantile after which a GET request is hedged or {@code 0} if requests are
+   * not hedged.
+   */
+  public final double getHedgeQuantile() {
+    return hedgeQuantile;
+  }
+
+  /**
+   * Returns whether identical concurrent GET requests share one call, see {@link
+   * Builder#setSingleFlight(boolean)}.
+   */
+  public final boolean getSingleFlight() {
+    return inFlight != null;
+  }
+
+  /** Returns results of in-flight GET requests by key or {@code null} if they are not shared. */
+  ConcurrentMap<String, RequestFuture<Object>> inFlight() {
+    return inFlight;
+  }
+
+  /**
+   * Returns whether values of unknown JSON fields are skipped instead of being kept in the parsed
+   * objects, see {@link Builder#setDropUnknownFields(boolean)}.
+   */
+  public final boolean getDropUnknownFields() {
+    return objectParser.getParseContext().getDropUnknownFields();
+  }
+
+  /** Returns options of parsing responses with generated codecs. */
+  ParseContext parseContext() {
+    return objectParser.getParseContext();
+  }
+
+  /** Returns id of the current user or {@code null} if the client has no Feedly credential. */
+  String userId() {
+    HttpRequestInitializer initializer = requestFactory.getInitializer();
+    return initializer instanceof FeedlyCredential
+           ? ((FeedlyCredential) initializer).getUserId() : null;
+  }
+
+  /**
+   * Returns key of the response cache entry for the given URL and the current user or {@code
+   * null} if there is no user to key by.
+   */
+  String responseCacheKey(GenericUrl url) {
+    String userId = userId();
+    return userId == null ? null : userId + ' ' + url.build();
+  }
+
   /** If the specified root URL does not end with a "/" then a "/" is added to the end. */
   static String normalizeRootUrl(String rootUrl) {
     Preconditions.checkNotNull(rootUrl, "root URL cannot be null.");
@@ -192,7 +326,7 @@ public abstract class AbstractClient {
     HttpRequestInitializer httpRequestInitializer;
 
     /** Object parser to use for parsing responses. */
-    final JsonObjectParser objectParser;
+    CodecObjectParser objectParser;
 
     /** The root URL of the service, for example {@code "https://www.googleapis.com/"}. */
     String rootUrl;
@@ -206,6 +340,30 @@ public abstract class AbstractClient {
     /** Whether discovery required parameter checks should be suppressed. */
     boolean suppressRequiredParameterChecks;
 
+    /** Executor for asynchronous requests or {@code null} for the default one. */
+    Executor executor;
+
+    /** Cache of conditional GET responses or {@code null} for none. */
+    ResponseCache responseCache;
+
+    /** Request metrics or {@code null} if they are not recorded. */
+    RequestMetrics metrics;
+
+    /** Rate limiter or {@code null} if requests are not paced. */
+    RateLimiter rateLimiter;
+
+    /** Retry policy of GET requests or {@code null} to not retry them. */
+    RetryPolicy readRetryPolicy;
+
+    /** Retry policy of POST, PUT and DELETE requests or {@code null} to not retry them. */
+    RetryPolicy writeRetryPolicy;
+
+    /** Latency quantile after which a GET request is hedged or {@code 0} to not hedge. */
+    double hedgeQuantile;
+
+    /** Whether identical concurrent GET requests share one call. */
+    boolean singleFlight;
+
     /**
      * Returns an instance of a new builder.
      *
@@ -218,7 +376,7 @@ public abstract class AbstractClient {
     protected Builder(HttpTransport transport, JsonFactory jsonFactory, String rootUrl,
                       String servicePath, HttpRequestInitializer httpRequestInitializer) {
       this.transport = Preconditions.checkNotNull(transport);
-      this.objectParser = new JsonObjectParser(jsonFactory);
+      this.objectParser = new CodecObjectParser(jsonFactory);
       setRootUrl(rootUrl);
       setServicePath(servicePath);
       this.httpRequestInitializer = httpRequestInitializer;
@@ -347,6 +505,251 @@ public abstract class AbstractClient {
       return this;
     }
 
+    /** Returns the executor for asynchronous requests or {@code null} for the default one. */
+    public final Executor getExecutor() {
+      return executor;
+    }
+
+    /**
+     * Sets the executor that runs asynchronous requests or {@code null} for the default cached
+     * pool of daemon threads.
+     *
+     * <p> The client does not shut down the given executor. </p>
+     *
+     * <p> Overriding is only supported for the purpose of calling the super implementation and
+     * changing the return type, but nothing else. </p>
+     */
+    public Builder setExecutor(Executor executor) {
+      this.executor = executor;
+      return this;
+    }
+
+    /**
+     * Runs every asynchronous request on its own virtual thread, so thousands of in-flight calls
+     * need only a handful of carrier threads.
+     *
+     * <p> Overriding is only supported for the purpose of calling the super implementation and
+     * changing the return type, but nothing else. </p>
+     *
+     * @throws UnsupportedOperationException if the runtime has no virtual threads
+     */
+    public Builder setVirtualThreadPerRequest() {
+      return setExecutor(RequestExecutors.newVirtualThreadPerTaskExecutor());
+    }
+
+    /** Returns the cache of conditional GET responses or {@code null} for none. */
+    public final ResponseCache getResponseCache() {
+      return responseCache;
+    }
+
+    /**
+     * Sets the cache of conditional GET responses or {@code null} for none.
+     *
+     * <p> Cacheable requests, like subscriptions or categories lists, are revalidated with {@code
+     * ETag}/{@code Last-Modified} instead of being fetched again, and an unchanged response is
+     * not downloaded. Each request returns its own copy of the cached object. </p>
+     *
+     * <p> Overriding is only supported for the purpose of calling the super implementation and
+     * changing the return type, but nothing else. </p>
+     */
+    public Builder setResponseCache(ResponseCache responseCache) {
+      this.responseCache = responseCache;
+      return this;
+    }
+
+    /** Returns the request metrics or {@code null} if they are not recorded. */
+    public final RequestMetrics getMetrics() {
+      return metrics;
+    }
+
+    /**
+     * Sets the registry that records latency, size and status of requests or {@code null} to not
+     * record them. The registry may be shared by several clients.
+     *
+     * <p> Overriding is only supported for the purpose of calling the super implementation and
+     * changing the return type, but nothing else. </p>
+     */
+    public Builder setMetrics(RequestMetrics metrics) {
+      this.metrics = metrics;
+      return this;
+    }
+
+    /** Returns the rate limiter or {@code null} if requests are not paced. */
+    public final RateLimiter getRateLimiter() {
+      return rateLimiter;
+    }
+
+    /**
+     * Sets the rate limiter that paces requests of the user to stay within the API quota or {@code
+     * null} to not pace them. The limiter may be shared by several clients.
+     *
+     * <p> Overriding is only supported for the purpose of calling the super implementation and
+     * changing the return type, but nothing else. </p>
+     */
+    public Builder setRateLimiter(RateLimiter rateLimiter) {
+      this.rateLimiter = rateLimiter;
+      return this;
+    }
+
+    /** Returns the retry policy of GET requests or {@code null} if they are not retried. */
+    public final RetryPolicy getReadRetryPolicy() {
+      return readRetryPolicy;
+    }
+
+    /**
+     * Sets the retry policy of GET requests or {@code null} to not retry them.
+     *
+     * <p> Overriding is only supported for the purpose of calling the super implementation and
+     * changing the return type, but nothing else. </p>
+     */
+    public Builder setReadRetryPolicy(RetryPolicy readRetryPolicy) {
+      this.readRetryPolicy = readRetryPolicy;
+      return this;
+    }
+
+    /**
+     * Returns the retry policy of POST, PUT and DELETE requests or {@code null} if they are not
+     * retried.
+     */
+    public final RetryPolicy getWriteRetryPolicy() {
+      return writeRetryPolicy;
+    }
+
+    /**
+     * Sets the retry policy of POST, PUT and DELETE requests, like marker operations, or {@code
+     * null} to not retry them.
+     *
+     * <p> Overriding is only supported for the purpose of calling the super implementation and
+     * changing the return type, but nothing else. </p>
+     */
+    public Builder setWriteRetryPolicy(RetryPolicy writeRetryPolicy) {
+      this.writeRetryPolicy = writeRetryPolicy;
+      return this;
+    }
+
+    /**
+     * Returns the latency quantile after which a GET request is hedged or {@code 0} if requests
+     * are not hedged.
+     */
+    public final double getHedgeQuantile() {
+      return hedgeQuantile;
+    }
+
+    /**
+     * Sets the latency quantile after which a GET request is hedged, for example {@code 0.95}, or
+     * {@code 0} to not hedge.
+     *
+     * <p> If {@link Request#execute()} of a GET request hasn't returned after the given quantile of
+     * the latency recorded for its endpoint, a duplicate request is sent on the {@link
+     * #setExecutor(Executor) executor} and whichever answers first is returned. The request itself
+     * keeps running on the calling thread, so it never waits for a free executor thread, even when
+     * executed asynchronously. The call returns once that request completes: a slow request that
+     * fails is answered by the duplicate, which is usually done by then, at the cost of a few
+     * percent more requests. Requires {@link #setMetrics(RequestMetrics) metrics}, endpoints with
+     * less than 20 recorded requests are not hedged. </p>
+     *
+     * <p> Overriding is only supported for the purpose of calling the super implementation and
+     * changing the return type, but nothing else. </p>
+     */
+    public Builder setHedgeQuantile(double hedgeQuantile) {
+      Preconditions.checkArgument(0 <= hedgeQuantile && hedgeQuantile < 1,
+                                  "hedge quantile must be in [0, 1)");
+      this.hedgeQuantile = hedgeQuantile;
+      return this;
+    }
+
+    /** Returns whether identical concurrent GET requests share one call. */
+    public final boolean getSingleFlight() {
+      return singleFlight;
+    }
+
+    /** Returns whether values of unknown JSON fields are skipped. */
+    public final boolean getDropUnknownFields() {
+      return objectParser.getParseContext().getDropUnknownFields();
+    }
+
+    /**
+     * Sets whether values of JSON fields that have no {@link com.google.api.client.util.Key}
+     * field are skipped at the token level instead of being kept as unknown keys of the parsed
+     * objects, so they are never allocated.
+     *
+     * <p> Applies to classes with a generated codec, which includes all responses of {@link
+     * Feedly}. Skipped fields are lost, e.g. {@code thumbnail} of entries can't be read with
+     * {@link com.google.api.client.util.GenericData#get(String)} any more. </p>
+     *
+     * <p> By default it is {@code false}. </p>
+     *
+     * <p> Overriding is only supported for the purpose of calling the super implementation and
+     * changing the return type, but nothing else. </p>
+     */
+    public Builder setDropUnknownFields(boolean dropUnknownFields) {
+      setParseContext(objectParser.getParseContext().withDropUnknownFields(dropUnknownFields));
+      return this;
+    }
+
+    /** Returns the pool of repeated strings shared by all responses or {@code null} for none. */
+    public final StringPool getStringPool() {
+      return objectParser.getParseContext().getStringPool();
+    }
+
+    /**
+     * Sets the pool that deduplicates repeated strings of all responses, like origins of entries
+     * and ids and labels of categories and tags, or {@code null} to not deduplicate them. The pool
+     * may be shared by several clients. Replaces {@link #setPageStringPool(int)}.
+     *
+     * <p> Overriding is only supported for the purpose of calling the super implementation and
+     * changing the return type, but nothing else. </p>
+     */
+    public Builder setStringPool(StringPool stringPool) {
+      setParseContext(objectParser.getParseContext().withStringPool(stringPool));
+      return this;
+    }
+
+    /**
+     * Returns the capacity of the string pool created for each response or {@code 0} if there is
+     * none.
+     */
+    public final int getPageStringPoolCapacity() {
+      return objectParser.getParseContext().getPageStringPoolCapacity();
+    }
+
+    /**
+     * Deduplicates repeated strings of each response, like origins of entries and ids and labels
+     * of categories and tags, in a new pool of the given capacity or not at all for {@code 0}.
+     * Unlike {@link #setStringPool(StringPool)} the pool is collected with the response. Replaces
+     * {@link #setStringPool(StringPool)}.
+     *
+     * <p> Overriding is only supported for the purpose of calling the super implementation and
+     * changing the return type, but nothing else. </p>
+     */
+    public Builder setPageStringPool(int capacity) {
+      setParseContext(objectParser.getParseContext().withPageStringPool(capacity));
+      return this;
+    }
+
+    private void setParseContext(ParseContext parseContext) {
+      objectParser = new CodecObjectParser(objectParser.getJsonFactory(), parseContext);
+    }
+
+    /**
+     * Sets whether identical concurrent GET requests share one call.
+     *
+     * <p> While {@link Request#execute()} of a GET request is in flight, the same request of the
+     * same user (equal URL, the {@code ck} cache-buster aside, request headers and response
+     * class) waits for it and returns its result or exception instead of sending another call.
+     * Each waiting request returns its own copy of the result and records the response headers
+     * and status of the call. </p>
+     *
+     * <p> By default it is {@code false}. </p>
+     *
+     * <p> Overriding is only supported for the purpose of calling the super implementation and
+     * changing the return type, but nothing else. </p>
+     */
+    public Builder setSingleFlight(boolean singleFlight) {
+      this.singleFlight = singleFlight;
+      return this;
+    }
+
     /**
      * Suppresses all discovery pattern and required parameter checks.
      *
@@ -0,0 +1,231 @@
+/*
+ * Copyright 2014 Bademus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *    Contributors:
+ *                 Bademus
+ */
+
+package org.github.bademux.feedly.api.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.api.client.util.Preconditions.checkArgument;
+import static com.google.api.client.util.Preconditions.checkNotNull;
+import static com.google.api.client.util.Preconditions.checkState;
+
+/**
+ * Coalesces single item lookups into batch requests.
+ *
+ * <p> Ids passed to {@link #load(String)} within the batch window are collected and fetched with
+ * one {@code .mget} request, once the window elapses or the batch reaches {@code maxBatchSize}
+ * ids. The result of the batch request is fanned out to the returned futures, an item that does
+ * not exist completes its future with {@code null}. Example usage: </p>
+ *
+ * <pre>
+ * BatchLoader&lt;Entry&gt; loader = service.entries().newLoader();
+ * for (String id : ids) {
+ *   loader.load(id).addCallback(callback);
+ * }
+ * loader.close();
+ * </pre>
+ *
+ * <p> Batch requests run on the {@link AbstractClient#getExecutor() client executor}. The loader
+ * should be shared between callers, as only lookups passed to the same loader are coalesced. </p>
+ *
+ * <p> Implementation is thread-safe. </p>
+ *
+ * @param <V> type of the item
+ */
+public abstract class BatchLoader<V> implements Closeable {
+
+  /** Default time to wait for more ids before the batch is sent. */
+  public static final long DEFAULT_WINDOW_MILLIS = 10;
+
+  /** Default max number of ids in one batch, it is the limit of {@code entries/.mget}. */
+  public static final int DEFAULT_MAX_BATCH_SIZE = 1000;
+
+  private final AbstractClient client;
+
+  private final long windowMillis;
+
+  private final int maxBatchSize;
+
+  /** Ids waiting for the next batch mapped to their futures. */
+  private Map<String, RequestFuture<V>> batch = new LinkedHashMap<String, RequestFuture<V>>();
+
+  private boolean closed;
+
+  /**
+   * @param client       client that executes batch requests
+   * @param windowMillis time to wait for more ids before the batch is sent, {@code 0} to send
+   *                     every batch as soon as possible
+   * @param maxBatchSize max number of ids in one batch request
+   */
+  protected BatchLoader(AbstractClient client, long windowMillis, int maxBatchSize) {
+    checkArgument(windowMillis >= 0, "window must not be negative");
+    checkArgument(maxBatchSize > 0, "max batch size must be positive");
+    this.client = checkNotNull(client);
+    this.windowMillis = windowMillis;
+    this.maxBatchSize = maxBatchSize;
+  }
+
+  /** Fetches items with the given ids in one request, missing items are omitted. */
+  protected abstract List<V> fetch(List<String> ids) throws IOException;
+
+  /** Returns id of the fetched item. */
+  protected abstract String idOf(V item);
+
+  public final long getWindowMillis() { return windowMillis; }
+
+  public final int getMaxBatchSize() { return maxBatchSize; }
+
+  /**
+   * Schedules the item for the next batch. Loading an id that is already waiting for the batch
+   * returns the same future.
+   *
+   * @return future of the item or of {@code null} if the item doesn't exist
+   * @throws IllegalStateException if the loader is closed
+   */
+  public RequestFuture<V> load(String id) {
+    checkNotNull(id);
+    Map<String, RequestFuture<V>> full = null;
+    Map<String, RequestFuture<V>> started = null;
+    RequestFuture<V> future;
+    synchronized (this) {
+      checkState(!closed, "loader is closed");
+      future = batch.get(id);
+      if (future != null) {
+        return future;
+      }
+      future = new RequestFuture<V>();
+      batch.put(id, future);
+      if (batch.size() >= maxBatchSize) {
+        full = takeBatch();
+      } else if (batch.size() == 1) {
+        started = batch;
+      }
+    }
+    if (full != null) {
+      dispatch(full);
+    } else if (started != null) {
+      scheduleFlush(started);
+    }
+    return future;
+  }
+
+  /** Sends the pending batch without waiting for the window to elapse. */
+  public void flush() {
+    Map<String, RequestFuture<V>> pending;
+    synchronized (this) {
+      pending = takeBatch();
+    }
+    dispatch(pending);
+  }
+
+  /** Sends the pending batch, further {@link #load(String)} calls are rejected. */
+  @Override
+  public void close() {
+    synchronized (this) {
+      closed = true;
+    }
+    flush();
+  }
+
+  /** Must be called holding the monitor. */
+  private Map<String, RequestFuture<V>> takeBatch() {
+    Map<String, RequestFuture<V>> taken = batch;
+    batch = new LinkedHashMap<String, RequestFuture<V>>();
+    return taken;
+  }
+
+  /** Sends the given batch once the window elapses, unless it was already sent due to its size. */
+  private void scheduleFlush(final Map<String, RequestFuture<V>> scheduled) {
+    Runnable flush = new Runnable() {
+      public void run() {
+        synchronized (BatchLoader.this) {
+          if (batch != scheduled) {
+            return;
+          }
+          takeBatch();
+        }
+        dispatch(scheduled);
+      }
+    };
+    try {
+      if (windowMillis == 0) {
+        client.getExecutor().execute(flush);
+      } else {
+        RequestExecutors.timer().schedule(flush, windowMillis, TimeUnit.MILLISECONDS);
+      }
+    } catch (RejectedExecutionException e) {
+      flush.run();
+    }
+  }
+
+  /** Runs the batch request on the client executor. */
+  private void dispatch(final Map<String, RequestFuture<V>> toFetch) {
+    for (Iterator<RequestFuture<V>> it = toFetch.values().iterator(); it.hasNext(); ) {
+      if (it.next().isDone()) {
+        it.remove();
+      }
+    }
+    if (toFetch.isEmpty()) {
+      return;
+    }
+    try {
+      client.getExecutor().execute(new Runnable() {
+        public void run() { fetchAll(toFetch); }
+      });
+    } catch (RejectedExecutionException e) {
+      fail(toFetch, e);
+    }
+  }
+
+  private void fetchAll(Map<String, RequestFuture<V>> toFetch) {
+    List<V> items;
+    try {
+      items = fetch(new ArrayList<String>(toFetch.keySet()));
+    } catch (Throwable e) {
+      fail(toFetch, e);
+      return;
+    }
+    Map<String, V> byId = new HashMap<String, V>();
+    if (items != null) {
+      for (V item : items) {
+        if (item != null) {
+          byId.put(idOf(item), item);
+        }
+      }
+    }
+    for (Map.Entry<String, RequestFuture<V>> entry : toFetch.entrySet()) {
+      entry.getValue().set(byId.get(entry.getKey()));
+    }
+  }
+
+  private void fail(Map<String, RequestFuture<V>> toFetch, Throwable e) {
+    for (RequestFuture<V> future : toFetch.values()) {
+      future.setException(e);
+    }
+  }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2014 Bademus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *    Contributors:
+ *                 Bademus
+ */
+
+package org.github.bademux.feedly.api.service;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Aggregate result of a request that was split into several requests, see {@link
+ * Feedly.Tags.Tag#executeChunked()}.
+ */
+public class BulkResult {
+
+  private final int requestCount;
+
+  private final List<Failure> failures;
+
+  BulkResult(int requestCount, List<Failure> failures) {
+    this.requestCount = requestCount;
+    this.failures = Collections.unmodifiableList(failures);
+  }
+
+  /** Returns the number of sent requests. */
+  public int getRequestCount() { return requestCount; }
+
+  /** Returns the failed requests, empty if all requests succeeded. */
+  public List<Failure> getFailures() { return failures; }
+
+  public boolean isSuccessful() { return failures.isEmpty(); }
+
+  /**
+   * Throws the cause of the first failure, if any.
+   *
+   * @return this result
+   */
+  public BulkResult checkSuccessful() throws IOException {
+    if (!failures.isEmpty()) {
+      Throwable cause = failures.get(0).getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new IOException(cause);
+    }
+    return this;
+  }
+
+  @Override
+  public String toString() {
+    return "BulkResult{requestCount=" + requestCount + ", failures=" + failures.size() + '}';
+  }
+
+  /** Failed request with the reason. */
+  public static class Failure {
+
+    private final Request<?> request;
+
+    private final Throwable cause;
+
+    Failure(Request<?> request, Throwable cause) {
+      this.request = request;
+      this.cause = cause;
+    }
+
+    /** Returns the failed request, it carries the ids of its chunk. */
+    public Request<?> getRequest() { return request; }
+
+    public Throwable getCause() { return cause; }
+  }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2014 Bademus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *    Contributors:
+ *                 Bademus
+ */
+
+package org.github.bademux.feedly.api.service;
+
+import com.google.api.client.util.escape.CharEscapers;
+
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.google.api.client.util.Preconditions.checkArgument;
+
+/** Splits id lists expanded into the URL path and executes the resulting requests. */
+final class Chunks {
+
+  /** Default max URL length, most servers and proxies accept at least 2,000 characters. */
+  static final int DEFAULT_MAX_URL_LENGTH = 2000;
+
+  /** Default number of chunk requests executed concurrently. */
+  static final int DEFAULT_PARALLELISM = 4;
+
+  /** Returns the length of the ids once expanded into the path, ids are comma separated. */
+  static int encodedLength(Collection<String> ids) {
+    int length = Math.max(ids.size() - 1, 0);
+    for (String id : ids) {
+      length += CharEscapers.escapeUriPath(id).length();
+    }
+    return length;
+  }
+
+  /**
+   * Returns how many characters of the given max URL length are left for the ids expanded into
+   * the path of the request.
+   *
+   * @param idsLength encoded length of the ids currently expanded into the path
+   */
+  static int roomForIds(Request<?> request, int maxUrlLength, int idsLength) {
+    return maxUrlLength - (request.buildHttpRequestUrl().build().length() - idsLength);
+  }
+
+  /**
+   * Splits the ids into chunks whose encoded length doesn't exceed the given one, an id that is
+   * longer by itself gets its own chunk.
+   */
+  static List<List<String>> split(Collection<String> ids, int maxEncodedLength) {
+    checkArgument(maxEncodedLength > 0 || ids.isEmpty(), "no room left for ids in the URL");
+    List<List<String>> chunks = new ArrayList<List<String>>();
+    List<String> chunk = new ArrayList<String>();
+    int chunkLength = 0;
+    for (String id : ids) {
+      int idLength = CharEscapers.escapeUriPath(id).length();
+      int lengthWithId = chunk.isEmpty() ? idLength : chunkLength + 1 + idLength;
+      if (!chunk.isEmpty() && lengthWithId > maxEncodedLength) {
+        chunks.add(chunk);
+        chunk = new ArrayList<String>();
+        lengthWithId = idLength;
+      }
+      chunk.add(id);
+      chunkLength = lengthWithId;
+    }
+    if (!chunk.isEmpty() || chunks.isEmpty()) {
+      chunks.add(chunk);
+    }
+    return chunks;
+  }
+
+  /**
+   * Executes the requests, at most {@code parallelism} at a time. The calling thread executes
+   * requests too, the others run on the {@link AbstractClient#getExecutor() client executor}.
+   *
+   * @throws InterruptedIOException if interrupted while waiting for the requests
+   */
+  static BulkResult executeAll(AbstractClient client, final List<? extends Request<?>> requests,
+                               int parallelism) throws InterruptedIOException {
+    checkArgument(parallelism > 0, "parallelism must be positive");
+    final List<BulkResult.Failure> failures =
+        Collections.synchronizedList(new ArrayList<BulkResult.Failure>());
+    final AtomicInteger next = new AtomicInteger();
+    int workers = Math.min(parallelism, requests.size());
+    final CountDownLatch done = new CountDownLatch(workers - 1);
+    Runnable worker = new Runnable() {
+      public void run() {
+        int index;
+        while ((index = next.getAndIncrement()) < requests.size()) {
+          Request<?> request = requests.get(index);
+          try {
+            request.execute();
+          } catch (Throwable e) {
+            failures.add(new BulkResult.Failure(request, e));
+          }
+        }
+      }
+    };
+    for (int i = 1; i < workers; i++) {
+      final Runnable counted = worker;
+      try {
+        client.getExecutor().execute(new Runnable() {
+          public void run() {
+            try {
+              counted.run();
+            } finally {
+              done.countDown();
+            }
+          }
+        });
+      } catch (RejectedExecutionException e) {
+        // the calling thread picks up the remaining requests
+        done.countDown();
+      }
+    }
+    worker.run();
+    try {
+      done.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for chunk requests");
+    }
+    return new BulkResult(requests.size(), new ArrayList<BulkResult.Failure>(failures));
+  }
+
+  private Chunks() {}
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2014 Bademus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *    Contributors:
+ *                 Bademus
+ */
+
+package org.github.bademux.feedly.api.service;
+
+import org.github.bademux.feedly.api.model.CompactEntry;
+
+import java.io.IOException;
+
+/**
+ * Receives compact entries one at a time while the response is still being read, see {@link
+ * Feedly.Streams.Contents#forEachCompactEntry(CompactEntryHandler)}.
+ */
+public interface CompactEntryHandler {
+
+  /**
+   * Called for every entry in the order of the response.
+   *
+   * @throws IOException to abort reading of the response
+   */
+  void handle(CompactEntry entry) throws IOException;
+}
@@ -0,0 +1,302 @@
+/*
+ * Copyright 2014 Bademus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *    Contributors:
+ *                 Bademus
+ */
+
+package org.github.bademux.feedly.api.service;
+
+import com.google.api.client.http.GenericUrl;
+import com.google.api.client.http.UriTemplate;
+import com.google.api.client.util.ClassInfo;
+import com.google.api.client.util.Data;
+import com.google.api.client.util.FieldInfo;
+import com.google.api.client.util.GenericData;
+import com.google.api.client.util.escape.CharEscapers;
+
+import org.github.bademux.feedly.api.model.StreamId;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * URI template compiled once per request class into literal segments and field accessors.
+ *
+ * <p> Expansion gives the same URL as {@link UriTemplate#expand(String, String, Object,
+ * boolean)} with unused parameters added as query parameters, parsed into {@link GenericUrl}.
+ * Parameters are read through field accessors resolved at compile time. Only relative templates
+ * with simple {@code {var}} expressions are compiled, other templates and values that are
+ * neither primitive nor lists, ie. enums and maps, are passed to {@link UriTemplate}. </p>
+ *
+ * <p> Implementation is thread-safe. </p>
+ */
+final class CompiledUriTemplate {
+
+  private static final ConcurrentMap<Class<?>, ConcurrentMap<String, CompiledUriTemplate>>
+      COMPILED = new ConcurrentHashMap<Class<?>, ConcurrentMap<String, CompiledUriTemplate>>();
+
+  private final String uriTemplate;
+
+  /** Literal segments around variables or {@code null} if template isn't supported. */
+  private final String[] literals;
+
+  private final String[] names;
+
+  /** Fields of variables, {@code null} for variables set as unknown keys. */
+  private final FieldInfo[] fields;
+
+  /** Fields added as query parameters. */
+  private final FieldInfo[] queryFields;
+
+  private CompiledUriTemplate(Class<?> requestClass, String uriTemplate) {
+    this.uriTemplate = uriTemplate;
+    List<String> literals = new ArrayList<String>();
+    List<String> names = new ArrayList<String>();
+    if (!split(uriTemplate, literals, names)) {
+      this.literals = null;
+      this.names = null;
+      this.fields = null;
+      this.queryFields = null;
+      return;
+    }
+    this.literals = literals.toArray(new String[literals.size()]);
+    this.names = names.toArray(new String[names.size()]);
+    ClassInfo classInfo = ClassInfo.of(requestClass);
+    fields = new FieldInfo[this.names.length];
+    for (int i = 0; i < fields.length; i++) {
+      fields[i] = classInfo.getFieldInfo(this.names[i]);
+    }
+    List<FieldInfo> queryFields = new ArrayList<FieldInfo>();
+    for (String name : classInfo.getNames()) {
+      if (!names.contains(name)) {
+        queryFields.add(classInfo.getFieldInfo(name));
+      }
+    }
+    this.queryFields = queryFields.toArray(new FieldInfo[queryFields.size()]);
+  }
+
+  /** Returns the template compiled for the request class, compiles it on first use. */
+  static CompiledUriTemplate of(Class<?> requestClass, String uriTemplate) {
+    ConcurrentMap<String, CompiledUriTemplate> templates = COMPILED.get(requestClass);
+    if (templates == null) {
+      templates = new ConcurrentHashMap<String, CompiledUriTemplate>(4);
+      ConcurrentMap<String, CompiledUriTemplate> existing =
+          COMPILED.putIfAbsent(requestClass, templates);
+      if (existing != null) {
+        templates = existing;
+      }
+    }
+    CompiledUriTemplate compiled = templates.get(uriTemplate);
+    if (compiled == null) {
+      compiled = new CompiledUriTemplate(requestClass, uriTemplate);
+      templates.putIfAbsent(uriTemplate, compiled);
+    }
+    return compiled;
+  }
+
+  /**
+   * Expands the template with the request parameters, unused parameters are added as query
+   * parameters.
+   *
+   * <p> The URL is assembled from the base URL parsed once and the expanded path, so it isn't
+   * parsed again. </p>
+   *
+   * @param baseUrl    base URL which the template is relative to
+   * @param parameters parameters of the request class the template is compiled for
+   */
+  GenericUrl expand(String baseUrl, GenericData parameters) {
+    if (literals == null) {
+      return new GenericUrl(UriTemplate.expand(baseUrl, uriTemplate, parameters, true));
+    }
+    BaseUrl base = BaseUrl.of(baseUrl);
+    StringBuilder path = new StringBuilder(base.rawPath.length() + 96).append(base.rawPath);
+    Map<String, Object> unknownKeys = parameters.getUnknownKeys();
+    for (int i = 0; i < names.length; i++) {
+      path.append(literals[i]);
+      FieldInfo field = fields[i];
+      Object value = field == null ? unknownKeys.get(names[i]) : field.getValue(parameters);
+      if (!appendVariable(path, value)) {
+        return new GenericUrl(UriTemplate.expand(baseUrl, uriTemplate, parameters, true));
+      }
+    }
+    path.append(literals[names.length]);
+    GenericUrl url = base.url.clone();
+    url.setRawPath(path.toString());
+    for (FieldInfo field : queryFields) {
+      putQuery(url, field.getName(), field.getValue(parameters));
+    }
+    for (Map.Entry<String, Object> entry : unknownKeys.entrySet()) {
+      if (!isVariable(entry.getKey())) {
+        putQuery(url, entry.getKey(), entry.getValue());
+      }
+    }
+    return url;
+  }
+
+  /** @return {@code false} if the value can't be expanded without {@link UriTemplate} */
+  private static boolean appendVariable(StringBuilder path, Object value) {
+    if (value == null || Data.isNull(value)) {
+      return true;
+    }
+    if (value instanceof Enum<?>) {
+      return false;
+    }
+    if (Data.isValueOfPrimitiveType(value)) {
+      path.append(StreamId.encode(value.toString()));
+      return true;
+    }
+    Iterator<?> iterator;
+    if (value instanceof Iterable<?>) {
+      iterator = ((Iterable<?>) value).iterator();
+    } else if (value instanceof Iterator<?>) {
+      iterator = (Iterator<?>) value;
+    } else if (value.getClass().isArray()) {
+      iterator = asList(value).iterator();
+    } else {
+      return false;
+    }
+    // list elements are escaped as in query, ie. ',' is encoded to tell elements apart
+    if (iterator.hasNext()) {
+      path.append(CharEscapers.escapeUri(iterator.next().toString()));
+      while (iterator.hasNext()) {
+        path.append(',').append(CharEscapers.escapeUri(iterator.next().toString()));
+      }
+    }
+    return true;
+  }
+
+  /** Puts the parameter the same way parsing of the query string does, as list of strings. */
+  private static void putQuery(GenericUrl url, String name, Object value) {
+    if (value == null || Data.isNull(value)) {
+      return;
+    }
+    List<String> values;
+    if (value instanceof Collection<?>) {
+      Collection<?> elements = (Collection<?>) value;
+      if (elements.isEmpty()) {
+        return;
+      }
+      values = new ArrayList<String>(elements.size());
+      for (Object element : elements) {
+        values.add(element.toString());
+      }
+    } else {
+      values = new ArrayList<String>(1);
+      values.add(value.toString());
+    }
+    url.put(name, values);
+  }
+
+  /** Base URL parsed once, shared by all templates. */
+  private static final class BaseUrl {
+
+    private static final ConcurrentMap<String, BaseUrl> PARSED =
+        new ConcurrentHashMap<String, BaseUrl>(4);
+
+    /** Parsed base URL without path, cloned for every request. */
+    final GenericUrl url;
+
+    final String rawPath;
+
+    private BaseUrl(String baseUrl) {
+      url = new GenericUrl(baseUrl);
+      String path = url.getRawPath();
+      rawPath = path == null ? "" : path;
+      url.setRawPath(null);
+    }
+
+    static BaseUrl of(String baseUrl) {
+      BaseUrl base = PARSED.get(baseUrl);
+      if (base == null) {
+        base = new BaseUrl(baseUrl);
+        PARSED.putIfAbsent(baseUrl, base);
+      }
+      return base;
+    }
+  }
+
+  private boolean isVariable(String name) {
+    for (String variable : names) {
+      if (variable.equals(name)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static List<Object> asList(Object array) {
+    Object[] elements = new Object[Array.getLength(array)];
+    for (int i = 0; i < elements.length; i++) {
+      elements[i] = Array.get(array, i);
+    }
+    return Arrays.asList(elements);
+  }
+
+  /** @return {@code false} if template is absolute or has other than simple expressions */
+  private static boolean split(String uriTemplate, List<String> literals, List<String> names) {
+    if (uriTemplate.startsWith("/") || uriTemplate.startsWith("http://")
+        || uriTemplate.startsWith("https://")) {
+      return false;
+    }
+    int start = 0;
+    int open;
+    while ((open = uriTemplate.indexOf('{', start)) >= 0) {
+      int close = uriTemplate.indexOf('}', open);
+      if (close < 0) {
+        return false;
+      }
+      String literal = uriTemplate.substring(start, open);
+      String name = uriTemplate.substring(open + 1, close);
+      if (!isLiteral(literal) || !isSimpleName(name) || names.contains(name)) {
+        return false;
+      }
+      literals.add(literal);
+      names.add(name);
+      start = close + 1;
+    }
+    String tail = uriTemplate.substring(start);
+    if (!isLiteral(tail)) {
+      return false;
+    }
+    literals.add(tail);
+    return true;
+  }
+
+  private static boolean isLiteral(String literal) {
+    return literal.indexOf('}') < 0 && literal.indexOf('?') < 0 && literal.indexOf('#') < 0;
+  }
+
+  /** @return {@code false} for empty names, operators, modifiers and variable lists */
+  private static boolean isSimpleName(String name) {
+    if (name.length() == 0) {
+      return false;
+    }
+    for (int i = 0; i < name.length(); i++) {
+      char c = name.charAt(i);
+      if (!Character.isLetterOrDigit(c) && c != '_') {
+        return false;
+      }
+    }
+    return true;
+  }
+}
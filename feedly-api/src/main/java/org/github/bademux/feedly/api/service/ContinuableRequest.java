@@ -0,0 +1,58 @@
+/*
+ * Copyright 2014 Bademus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *    Contributors:
+ *                 Bademus
+ */
+
+package org.github.bademux.feedly.api.service;
+
+import org.github.bademux.feedly.api.model.Continuable;
+
+import java.io.IOException;
+
+/**
+ * Request whose response is split into pages linked by a continuation token, see {@link Pages}.
+ *
+ * <p> Iterators of {@code pages()} fetch in background, close them if the iteration is abandoned
+ * before the last page, ie. on {@code break} or exception: </p>
+ *
+ * <pre>
+ * Pages&lt;EntriesResponse&gt;.PageIterator pages = request.pages().iterator();
+ * try {
+ *   while (pages.hasNext()) {
+ *     process(pages.next());
+ *   }
+ * } finally {
+ *   pages.close();
+ * }
+ * </pre>
+ *
+ * @param <T> type of the page
+ */
+public interface ContinuableRequest<T extends Continuable> {
+
+  /** Returns the continuation of the page to fetch or {@code null} for the first page. */
+  String getContinuation();
+
+  /** Sets the continuation of the page to fetch or {@code null} for the first page. */
+  ContinuableRequest<T> setContinuation(String continuation);
+
+  /** Returns the client the request is executed with. */
+  AbstractClient getAbstractClient();
+
+  /** Fetches the page for the current continuation. */
+  T execute() throws IOException;
+}
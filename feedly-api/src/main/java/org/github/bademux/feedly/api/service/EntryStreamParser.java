@@ -0,0 +1,125 @@
+/*
+ * Copyright 2014 Bademus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *    Contributors:
+ *                 Bademus
+ */
+
+package org.github.bademux.feedly.api.service;
+
+import com.google.api.client.http.HttpResponse;
+import com.google.api.client.json.JsonParser;
+import com.google.api.client.json.JsonToken;
+import com.google.api.client.util.ClassInfo;
+import com.google.api.client.util.FieldInfo;
+
+import org.github.bademux.feedly.api.json.JsonCodec;
+import org.github.bademux.feedly.api.json.JsonCodecs;
+import org.github.bademux.feedly.api.json.ParseContext;
+import org.github.bademux.feedly.api.model.CompactEntry;
+import org.github.bademux.feedly.api.model.CompactEntryCodec;
+import org.github.bademux.feedly.api.model.EntriesResponse;
+import org.github.bademux.feedly.api.model.Entry;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+
+/**
+ * Parses {@link EntriesResponse} from the token stream, handing over each item as soon as it is
+ * parsed instead of collecting them into {@link EntriesResponse#items()}. Items are parsed into
+ * {@link Entry} or {@link CompactEntry}, {@code null} items are skipped.
+ */
+final class EntryStreamParser {
+
+  /** JSON key of the entry array. */
+  static final String ITEMS = "items";
+
+  private static final ClassInfo RESPONSE_INFO = ClassInfo.of(EntriesResponse.class);
+
+  /** Generated codec of entries or {@code null} to parse them reflectively. */
+  private static final JsonCodec<Entry> ENTRY_CODEC = JsonCodecs.get(Entry.class);
+
+  /**
+   * Reads and closes the response content.
+   *
+   * @return response with all fields but {@code items}
+   */
+  static EntriesResponse parse(HttpResponse response, AbstractClient client,
+                               final EntryHandler handler) throws IOException {
+    return parse(response, client, new ItemReader() {
+      public void read(JsonParser parser, ParseContext context) throws IOException {
+        handler.handle(ENTRY_CODEC == null ? parser.parse(Entry.class)
+                                           : ENTRY_CODEC.read(parser, context));
+      }
+    });
+  }
+
+  /**
+   * Reads and closes the response content, entries are parsed into {@link CompactEntry}.
+   *
+   * @return response with all fields but {@code items}
+   */
+  static EntriesResponse parseCompact(HttpResponse response, AbstractClient client,
+                                      final CompactEntryHandler handler) throws IOException {
+    return parse(response, client, new ItemReader() {
+      public void read(JsonParser parser, ParseContext context) throws IOException {
+        handler.handle(CompactEntryCodec.INSTANCE.read(parser, context));
+      }
+    });
+  }
+
+  private static EntriesResponse parse(HttpResponse response, AbstractClient client,
+                                       ItemReader itemReader) throws IOException {
+    ParseContext context = client.parseContext().forPage();
+    JsonParser parser = client.getJsonFactory().createJsonParser(response.getContent(),
+                                                                 response.getContentCharset());
+    try {
+      if (parser.nextToken() != JsonToken.START_OBJECT) {
+        throw new IOException("JSON object expected, but was " + parser.getCurrentToken());
+      }
+      EntriesResponse result = new EntriesResponse();
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String key = parser.getCurrentName();
+        JsonToken valueToken = parser.nextToken();
+        if (ITEMS.equals(key) && valueToken == JsonToken.START_ARRAY) {
+          for (JsonToken token; (token = parser.nextToken()) != JsonToken.END_ARRAY; ) {
+            if (token == JsonToken.START_OBJECT) {
+              itemReader.read(parser, context);
+            } else if (token != JsonToken.VALUE_NULL) {
+              throw new IOException("JSON object expected in " + ITEMS + ", but was " + token);
+            }
+          }
+        } else if (RESPONSE_INFO.getFieldInfo(key) == null && context.getDropUnknownFields()) {
+          parser.skipChildren();
+        } else {
+          FieldInfo fieldInfo = RESPONSE_INFO.getFieldInfo(key);
+          Type type = fieldInfo == null ? Object.class : fieldInfo.getGenericType();
+          result.set(key, parser.parse(type, false));
+        }
+      }
+      return result;
+    } finally {
+      parser.close();
+    }
+  }
+
+  /** Reads an item, the parser is at its start and must be left at its end. */
+  private interface ItemReader {
+
+    void read(JsonParser parser, ParseContext context) throws IOException;
+  }
+
+  private EntryStreamParser() {}
+}
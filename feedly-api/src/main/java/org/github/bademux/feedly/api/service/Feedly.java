@@ -27,13 +27,17 @@ import com.google.api.client.json.JsonFactory;
 import com.google.api.client.util.GenericData;
 import com.google.api.client.util.Key;
 
+import org.github.bademux.feedly.api.json.StringPool;
 import org.github.bademux.feedly.api.model.Category;
+import org.github.bademux.feedly.api.model.CompactEntry;
 import org.github.bademux.feedly.api.model.EntriesResponse;
 import org.github.bademux.feedly.api.model.FeedInfo;
 import org.github.bademux.feedly.api.model.FeedsResponse;
 import org.github.bademux.feedly.api.model.MarkReadsResponse;
 import org.github.bademux.feedly.api.model.MarkTagsResponse;
 import org.github.bademux.feedly.api.model.Stream;
+import org.github.bademux.feedly.api.model.StreamId;
+import org.github.bademux.feedly.api.model.StreamId.Kind;
 import org.github.bademux.feedly.api.model.StreamsResponse;
 import org.github.bademux.feedly.api.model.Subscription;
 import org.github.bademux.feedly.api.model.Tag;
@@ -49,7 +53,9 @@ import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.concurrent.Executor;
 
+import static com.google.api.client.repackaged.com.google.common.base.Preconditions.checkArgument;
 import static com.google.api.client.repackaged.com.google.common.base.Preconditions.checkNotNull;
 
 //TODO: implement /v3/evernote/ Evernote API
@@ -89,6 +95,7 @@ public class Feedly extends AbstractClient {
       public Get() {
         super(Feedly.this, "GET", REST_PATH, null,
               org.github.bademux.feedly.api.model.Profile.class);
+        setCacheable(true);
       }
     }
 
@@ -138,6 +145,7 @@ public class Feedly extends AbstractClient {
       public Get() {
         super(Feedly.this, "GET", REST_PATH, null,
               org.github.bademux.feedly.api.model.Preferences.class);
+        setCacheable(true);
       }
     }
 
@@ -185,6 +193,7 @@ public class Feedly extends AbstractClient {
 
       public List() {
         super(Feedly.this, "GET", REST_PATH, null, Category.Categories.class);
+        setCacheable(true);
       }
 
       @Override
@@ -207,12 +216,13 @@ public class Feedly extends AbstractClient {
 
     public class Update extends Request<Void> {
 
-      private static final
-      String REST_PATH = "categories/user%2F{userId}%2Fcategory%2F{categoryId}";
+      private static final String REST_PATH = "categories/{streamId}";
 
       @Key
+      private final String streamId;
+
       private final String categoryId;
-      @Key
+
       private final String userId;
 
       public Update(Category category) {
@@ -220,13 +230,18 @@ public class Feedly extends AbstractClient {
               Void.class);
         this.userId = checkNotNull(Feedly.this.userId);
         this.categoryId = category.getName();
+        this.streamId = StreamId.of(Kind.CATEGORY, categoryId, userId).getId();
         setDisableGZipContent(true);
       }
 
       public String getUserId() { return userId; }
 
+      /** @return category name */
       public String getCategoryId() { return categoryId; }
 
+      /** @return full category id, ie. 'user/{userId}/category/{name}' */
+      public String getStreamId() { return streamId; }
+
       @Override
       public Update setDisableGZipContent(boolean disableGZipContent) {
         return (Update) super.setDisableGZipContent(disableGZipContent);
@@ -294,6 +309,7 @@ public class Feedly extends AbstractClient {
 
       public List() {
         super(Feedly.this, "GET", REST_PATH, null, Subscription.Subscriptions.class);
+        setCacheable(true);
       }
 
       @Override
@@ -394,6 +410,7 @@ public class Feedly extends AbstractClient {
       public List() {
         super(Feedly.this, "GET", REST_PATH, null,
               org.github.bademux.feedly.api.model.Topic.Topics.class);
+        setCacheable(true);
       }
 
       @Override
@@ -445,23 +462,30 @@ public class Feedly extends AbstractClient {
 
     public class Delete extends Request<Void> {
 
-      private static final String REST_PATH = "topics/user%2F{userId}%2Ftopic%2F{topicId}";
+      private static final String REST_PATH = "topics/{streamId}";
 
       @Key
+      private final String streamId;
+
       private final String topicId;
-      @Key
+
       private final String userId;
 
       public Delete(Topic topic) {
         super(Feedly.this, "DELETE", REST_PATH, null, Void.class);
         this.userId = checkNotNull(Feedly.this.userId);
         this.topicId = topic.getName();
+        this.streamId = StreamId.of(Kind.TOPIC, topicId, userId).getId();
       }
 
       public String getUserId() { return userId; }
 
+      /** @return topic name */
       public String getTopicId() { return topicId; }
 
+      /** @return full topic id, ie. 'user/{userId}/topic/{name}' */
+      public String getStreamId() { return streamId; }
+
       @Override
       public Delete setDisableGZipContent(boolean disableGZipContent) {
         return (Delete) super.setDisableGZipContent(disableGZipContent);
@@ -493,6 +517,7 @@ public class Feedly extends AbstractClient {
       public List() {
         super(Feedly.this, "GET", REST_PATH, null,
               org.github.bademux.feedly.api.model.Tag.Tags.class);
+        setCacheable(true);
       }
 
       @Override
@@ -566,6 +591,32 @@ public class Feedly extends AbstractClient {
         this.tagIds = tagIds;
       }
 
+      /**
+       * Splits tag ids so that request URLs don't exceed 2,000 characters and executes the
+       * chunks concurrently, at most 4 at a time.
+       */
+      public BulkResult executeChunked() throws IOException {
+        return executeChunked(Chunks.DEFAULT_MAX_URL_LENGTH, Chunks.DEFAULT_PARALLELISM);
+      }
+
+      /**
+       * Splits tag ids so that request URLs don't exceed the given length and executes the
+       * chunks concurrently on the client executor and the calling thread.
+       *
+       * @param maxUrlLength max length of the request URL
+       * @param parallelism  max number of chunks executed at a time
+       * @return result of all chunks, failed chunks don't stop the others
+       */
+      public BulkResult executeChunked(int maxUrlLength, int parallelism) throws IOException {
+        int room = Chunks.roomForIds(this, maxUrlLength, Chunks.encodedLength(tagIds));
+        java.util.List<Delete> chunks = new ArrayList<Delete>();
+        for (java.util.List<String> tagIdsChunk : Chunks.split(tagIds, room)) {
+          chunks.add(new Delete(tagIdsChunk).setRequestHeaders(getRequestHeaders())
+                         .setDisableGZipContent(getDisableGZipContent()));
+        }
+        return Chunks.executeAll(Feedly.this, chunks, parallelism);
+      }
+
       @Override
       public Delete setDisableGZipContent(boolean disableGZipContent) {
         return (Delete) super.setDisableGZipContent(disableGZipContent);
@@ -605,13 +656,42 @@ public class Feedly extends AbstractClient {
       @Key
       private final Collection<String> tagIds;
 
+      private final Collection<String> entryIds;
+
       public Tag(final Collection<String> entryIds, final Collection<String> tagIds) {
         super(Feedly.this, "PUT", REST_PATH,
               new GenericData().set("entryIds", checkNotNull(entryIds)), Void.class);
         this.tagIds = tagIds;
+        this.entryIds = entryIds;
         setDisableGZipContent(true);
       }
 
+      /**
+       * Splits tag ids so that request URLs don't exceed 2,000 characters and executes the
+       * chunks concurrently, at most 4 at a time.
+       */
+      public BulkResult executeChunked() throws IOException {
+        return executeChunked(Chunks.DEFAULT_MAX_URL_LENGTH, Chunks.DEFAULT_PARALLELISM);
+      }
+
+      /**
+       * Splits tag ids so that request URLs don't exceed the given length and executes the
+       * chunks concurrently on the client executor and the calling thread.
+       *
+       * @param maxUrlLength max length of the request URL
+       * @param parallelism  max number of chunks executed at a time
+       * @return result of all chunks, failed chunks don't stop the others
+       */
+      public BulkResult executeChunked(int maxUrlLength, int parallelism) throws IOException {
+        int room = Chunks.roomForIds(this, maxUrlLength, Chunks.encodedLength(tagIds));
+        java.util.List<Tag> chunks = new ArrayList<Tag>();
+        for (java.util.List<String> tagIdsChunk : Chunks.split(tagIds, room)) {
+          chunks.add(new Tag(entryIds, tagIdsChunk).setRequestHeaders(getRequestHeaders())
+                         .setDisableGZipContent(getDisableGZipContent()));
+        }
+        return Chunks.executeAll(Feedly.this, chunks, parallelism);
+      }
+
       @Override
       public Tag setDisableGZipContent(boolean disableGZipContent) {
         return (Tag) super.setDisableGZipContent(disableGZipContent);
@@ -659,6 +739,40 @@ public class Feedly extends AbstractClient {
         this.tagIds = tagIds;
       }
 
+      /**
+       * Splits tag and entry ids so that request URLs don't exceed 2,000 characters and executes
+       * the chunks concurrently, at most 4 at a time.
+       */
+      public BulkResult executeChunked() throws IOException {
+        return executeChunked(Chunks.DEFAULT_MAX_URL_LENGTH, Chunks.DEFAULT_PARALLELISM);
+      }
+
+      /**
+       * Splits tag and entry ids so that request URLs don't exceed the given length and executes
+       * the chunks concurrently on the client executor and the calling thread.
+       *
+       * @param maxUrlLength max length of the request URL
+       * @param parallelism  max number of chunks executed at a time
+       * @return result of all chunks, failed chunks don't stop the others
+       */
+      public BulkResult executeChunked(int maxUrlLength, int parallelism) throws IOException {
+        int tagIdsLength = Chunks.encodedLength(tagIds);
+        int room = Chunks.roomForIds(this, maxUrlLength,
+                                     tagIdsLength + Chunks.encodedLength(entryIds));
+        // usually there are a few tags and a lot of entries
+        int roomForTagIds = Math.min(tagIdsLength, room / 2);
+        java.util.List<java.util.List<String>> entryIdsChunks =
+            Chunks.split(entryIds, room - roomForTagIds);
+        java.util.List<Untag> chunks = new ArrayList<Untag>();
+        for (java.util.List<String> tagIdsChunk : Chunks.split(tagIds, roomForTagIds)) {
+          for (java.util.List<String> entryIdsChunk : entryIdsChunks) {
+            chunks.add(new Untag(entryIdsChunk, tagIdsChunk).setRequestHeaders(getRequestHeaders())
+                           .setDisableGZipContent(getDisableGZipContent()));
+          }
+        }
+        return Chunks.executeAll(Feedly.this, chunks, parallelism);
+      }
+
       @Override
       public Untag setDisableGZipContent(boolean disableGZipContent) {
         return (Untag) super.setDisableGZipContent(disableGZipContent);
@@ -716,6 +830,36 @@ public class Feedly extends AbstractClient {
       }
     }
 
+    /**
+     * Returns a new loader that coalesces single entry lookups into {@code entries/.mget}
+     * requests, see {@link BatchLoader}.
+     */
+    public BatchLoader<org.github.bademux.feedly.api.model.Entry> newLoader() {
+      return newLoader(BatchLoader.DEFAULT_WINDOW_MILLIS, BatchLoader.DEFAULT_MAX_BATCH_SIZE);
+    }
+
+    /**
+     * @param windowMillis time to wait for more ids before the batch is sent
+     * @param maxBatchSize max number of ids in one request, at most 1,000
+     */
+    public BatchLoader<org.github.bademux.feedly.api.model.Entry> newLoader(long windowMillis,
+                                                                           int maxBatchSize) {
+      return new BatchLoader<org.github.bademux.feedly.api.model.Entry>(
+          Feedly.this, windowMillis, maxBatchSize) {
+
+        @Override
+        protected java.util.List<org.github.bademux.feedly.api.model.Entry> fetch(
+            java.util.List<String> ids) throws IOException {
+          return list(ids).execute();
+        }
+
+        @Override
+        protected String idOf(org.github.bademux.feedly.api.model.Entry entry) {
+          return entry.getId();
+        }
+      };
+    }
+
     /**
      * BUG: https://groups.google.com/forum/?fromgroups=#!topic/feedly-cloud/vpWT17a_Sec
      * An entry is the atomic unique of content in the feedly cloud. (Authorization is optional)
@@ -833,7 +977,8 @@ public class Feedly extends AbstractClient {
       return new Entries(stream, q);
     }
 
-    public class Entries extends Request<EntriesResponse> {
+    public class Entries extends Request<EntriesResponse>
+        implements ContinuableRequest<EntriesResponse> {
 
       private static final String REST_PATH = "streams/{streamId}/contents";
 
@@ -909,6 +1054,37 @@ public class Feedly extends AbstractClient {
         return this;
       }
 
+      /**
+       * Iterates all pages, see {@link Pages}. Close the {@link Pages.PageIterator} if the
+       * iteration is abandoned before the last page.
+       */
+      public Pages<EntriesResponse> pages() { return new Pages<EntriesResponse>(this); }
+
+      /** Iterates all pages fetching up to {@code prefetchDepth} pages ahead. */
+      public Pages<EntriesResponse> pages(int prefetchDepth) {
+        return new Pages<EntriesResponse>(this, prefetchDepth);
+      }
+
+      /**
+       * Passes entries to the handler one by one while the response is read, so only a single
+       * entry of the page is kept in memory.
+       *
+       * @return page without items, e.g. to read the continuation
+       */
+      public EntriesResponse forEachEntry(EntryHandler handler) throws IOException {
+        return EntryStreamParser.parse(executeUnparsed(), getAbstractClient(), handler);
+      }
+
+      /**
+       * Like {@link #forEachEntry(EntryHandler)}, but entries are parsed into {@link
+       * CompactEntry}, e.g. to be kept in a large in-memory cache.
+       *
+       * @return page without items, e.g. to read the continuation
+       */
+      public EntriesResponse forEachCompactEntry(CompactEntryHandler handler) throws IOException {
+        return EntryStreamParser.parseCompact(executeUnparsed(), getAbstractClient(), handler);
+      }
+
       @Override
       public Entries setDisableGZipContent(boolean disableGZipContent) {
         return (Entries) super.setDisableGZipContent(disableGZipContent);
@@ -982,6 +1158,23 @@ public class Feedly extends AbstractClient {
       }
     }
 
+    /**
+     * Returns a new dispatcher that buffers markers and sends them in as few requests as
+     * possible, see {@link MarkerDispatcher}.
+     */
+    public MarkerDispatcher newDispatcher() {
+      return newDispatcher(MarkerDispatcher.DEFAULT_WINDOW_MILLIS,
+                           MarkerDispatcher.DEFAULT_MAX_PENDING);
+    }
+
+    /**
+     * @param windowMillis time markers are buffered for
+     * @param maxPending   max number of buffered ids
+     */
+    public MarkerDispatcher newDispatcher(long windowMillis, int maxPending) {
+      return new MarkerDispatcher(Feedly.this, windowMillis, maxPending);
+    }
+
     public MarkEntryAs entriesAsRead(Collection<String> entryIds)
         throws IOException {
       return new MarkEntryAs(entryIds, "markAsRead");
@@ -1220,6 +1413,31 @@ public class Feedly extends AbstractClient {
       }
     }
 
+    /**
+     * Returns a new loader that coalesces single feed lookups into {@code feeds/.mget}
+     * requests, see {@link BatchLoader}.
+     */
+    public BatchLoader<FeedInfo> newLoader() {
+      return newLoader(BatchLoader.DEFAULT_WINDOW_MILLIS, BatchLoader.DEFAULT_MAX_BATCH_SIZE);
+    }
+
+    /**
+     * @param windowMillis time to wait for more ids before the batch is sent
+     * @param maxBatchSize max number of ids in one request
+     */
+    public BatchLoader<FeedInfo> newLoader(long windowMillis, int maxBatchSize) {
+      return new BatchLoader<FeedInfo>(Feedly.this, windowMillis, maxBatchSize) {
+
+        @Override
+        protected java.util.List<FeedInfo> fetch(java.util.List<String> ids) throws IOException {
+          return list(ids).execute();
+        }
+
+        @Override
+        protected String idOf(FeedInfo feed) { return feed.getId(); }
+      };
+    }
+
     public Get get(String feedId) throws IOException { return new Get(feedId); }
 
     public class Get extends Request<FeedInfo> {
@@ -1232,6 +1450,7 @@ public class Feedly extends AbstractClient {
       public Get(String feedId) {
         super(Feedly.this, "GET", REST_PATH, null, FeedInfo.class);
         this.feedId = checkNotNull(feedId);
+        setCacheable(true);
         setDisableGZipContent(true);
       }
 
@@ -1261,7 +1480,8 @@ public class Feedly extends AbstractClient {
       return new Ids(stream);
     }
 
-    public class Ids extends Request<StreamsResponse> {
+    public class Ids extends Request<StreamsResponse>
+        implements ContinuableRequest<StreamsResponse> {
 
       private static final String REST_PATH = "streams/{streamId}/ids";
 
@@ -1312,6 +1532,17 @@ public class Feedly extends AbstractClient {
 
       public Ids setRanked(final Ranked ranked) {this.ranked = ranked; return this; }
 
+      /**
+       * Iterates all pages, see {@link Pages}. Close the {@link Pages.PageIterator} if the
+       * iteration is abandoned before the last page.
+       */
+      public Pages<StreamsResponse> pages() { return new Pages<StreamsResponse>(this); }
+
+      /** Iterates all pages fetching up to {@code prefetchDepth} pages ahead. */
+      public Pages<StreamsResponse> pages(int prefetchDepth) {
+        return new Pages<StreamsResponse>(this, prefetchDepth);
+      }
+
       @Override
       public Ids setDisableGZipContent(boolean disableGZipContent) {
         return (Ids) super.setDisableGZipContent(disableGZipContent);
@@ -1331,7 +1562,8 @@ public class Feedly extends AbstractClient {
 
     public Contents contents(Stream stream) { return new Contents(stream); }
 
-    public class Contents extends Request<EntriesResponse> {
+    public class Contents extends Request<EntriesResponse>
+        implements ContinuableRequest<EntriesResponse> {
 
       private static final String REST_PATH = "streams/{streamId}/contents";
 
@@ -1382,6 +1614,37 @@ public class Feedly extends AbstractClient {
 
       public Contents setRanked(final String ranked) {this.ranked = ranked; return this; }
 
+      /**
+       * Iterates all pages, see {@link Pages}. Close the {@link Pages.PageIterator} if the
+       * iteration is abandoned before the last page.
+       */
+      public Pages<EntriesResponse> pages() { return new Pages<EntriesResponse>(this); }
+
+      /** Iterates all pages fetching up to {@code prefetchDepth} pages ahead. */
+      public Pages<EntriesResponse> pages(int prefetchDepth) {
+        return new Pages<EntriesResponse>(this, prefetchDepth);
+      }
+
+      /**
+       * Passes entries to the handler one by one while the response is read, so only a single
+       * entry of the page is kept in memory.
+       *
+       * @return page without items, e.g. to read the continuation
+       */
+      public EntriesResponse forEachEntry(EntryHandler handler) throws IOException {
+        return EntryStreamParser.parse(executeUnparsed(), getAbstractClient(), handler);
+      }
+
+      /**
+       * Like {@link #forEachEntry(EntryHandler)}, but entries are parsed into {@link
+       * CompactEntry}, e.g. to be kept in a large in-memory cache.
+       *
+       * @return page without items, e.g. to read the continuation
+       */
+      public EntriesResponse forEachCompactEntry(CompactEntryHandler handler) throws IOException {
+        return EntryStreamParser.parseCompact(executeUnparsed(), getAbstractClient(), handler);
+      }
+
       @Override
       public Contents setDisableGZipContent(boolean disableGZipContent) {
         return (Contents) super.setDisableGZipContent(disableGZipContent);
@@ -1406,7 +1669,8 @@ public class Feedly extends AbstractClient {
 
     public Get contents(Stream stream) throws IOException { return new Get(stream); }
 
-    public class Get extends Request<EntriesResponse> {
+    public class Get extends Request<EntriesResponse>
+        implements ContinuableRequest<EntriesResponse> {
 
       private static final String REST_PATH = "mixes/{streamId}/contents";
 
@@ -1448,6 +1712,38 @@ public class Feedly extends AbstractClient {
 
       public Get setHours(final String hours) { this.hours = hours; return this; }
 
+      /** Mixes are returned as a single page, there is no continuation. */
+      public String getContinuation() { return null; }
+
+      /** Mixes are returned as a single page, only {@code null} is accepted. */
+      public Get setContinuation(final String continuation) {
+        checkArgument(continuation == null, "mixes have no continuation");
+        return this;
+      }
+
+      /** Iterates the single page of the mix, see {@link Pages}. */
+      public Pages<EntriesResponse> pages() { return new Pages<EntriesResponse>(this); }
+
+      /**
+       * Passes entries to the handler one by one while the response is read, so only a single
+       * entry of the page is kept in memory.
+       *
+       * @return page without items, e.g. to read the continuation
+       */
+      public EntriesResponse forEachEntry(EntryHandler handler) throws IOException {
+        return EntryStreamParser.parse(executeUnparsed(), getAbstractClient(), handler);
+      }
+
+      /**
+       * Like {@link #forEachEntry(EntryHandler)}, but entries are parsed into {@link
+       * CompactEntry}, e.g. to be kept in a large in-memory cache.
+       *
+       * @return page without items, e.g. to read the continuation
+       */
+      public EntriesResponse forEachCompactEntry(CompactEntryHandler handler) throws IOException {
+        return EntryStreamParser.parseCompact(executeUnparsed(), getAbstractClient(), handler);
+      }
+
       @Override
       public Get setDisableGZipContent(boolean disableGZipContent) {
         return (Get) super.setDisableGZipContent(disableGZipContent);
@@ -1611,5 +1907,65 @@ public class Feedly extends AbstractClient {
     public Builder setSuppressAllChecks(boolean suppressAllChecks) {
       return (Builder) super.setSuppressAllChecks(suppressAllChecks);
     }
+
+    @Override
+    public Builder setExecutor(Executor executor) {
+      return (Builder) super.setExecutor(executor);
+    }
+
+    @Override
+    public Builder setResponseCache(ResponseCache responseCache) {
+      return (Builder) super.setResponseCache(responseCache);
+    }
+
+    @Override
+    public Builder setMetrics(RequestMetrics metrics) {
+      return (Builder) super.setMetrics(metrics);
+    }
+
+    @Override
+    public Builder setRateLimiter(RateLimiter rateLimiter) {
+      return (Builder) super.setRateLimiter(rateLimiter);
+    }
+
+    @Override
+    public Builder setReadRetryPolicy(RetryPolicy readRetryPolicy) {
+      return (Builder) super.setReadRetryPolicy(readRetryPolicy);
+    }
+
+    @Override
+    public Builder setWriteRetryPolicy(RetryPolicy writeRetryPolicy) {
+      return (Builder) super.setWriteRetryPolicy(writeRetryPolicy);
+    }
+
+    @Override
+    public Builder setHedgeQuantile(double hedgeQuantile) {
+      return (Builder) super.setHedgeQuantile(hedgeQuantile);
+    }
+
+    @Override
+    public Builder setSingleFlight(boolean singleFlight) {
+      return (Builder) super.setSingleFlight(singleFlight);
+    }
+
+    @Override
+    public Builder setDropUnknownFields(boolean dropUnknownFields) {
+      return (Builder) super.setDropUnknownFields(dropUnknownFields);
+    }
+
+    @Override
+    public Builder setStringPool(StringPool stringPool) {
+      return (Builder) super.setStringPool(stringPool);
+    }
+
+    @Override
+    public Builder setPageStringPool(int capacity) {
+      return (Builder) super.setPageStringPool(capacity);
+    }
+
+    @Override
+    public Builder setVirtualThreadPerRequest() {
+      return (Builder) super.setVirtualThreadPerRequest();
+    }
   }
 }
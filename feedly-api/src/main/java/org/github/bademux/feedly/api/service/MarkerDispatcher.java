@@ -0,0 +1,460 @@
+/*
+ * Copyright 2014 Bademus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *    Contributors:
+ *                 Bademus
+ */
+
+package org.github.bademux.feedly.api.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static com.google.api.client.util.Preconditions.checkArgument;
+import static com.google.api.client.util.Preconditions.checkNotNull;
+import static com.google.api.client.util.Preconditions.checkState;
+
+/**
+ * Buffers read/unread markers and sends them as few {@code POST markers} requests as possible.
+ *
+ * <p> Markers received within the window are merged: entries are sent with one {@link
+ * Feedly.Markers.MarkEntryAs} per action, feeds and categories marked as of the same point are
+ * sent together. A later marker of an entry cancels the earlier contradictory one, so only the
+ * final state is sent. Markers are sent in the order they were received, the window starts with
+ * the first buffered marker, so no marker waits longer than the window plus the time to send
+ * the markers before it. </p>
+ *
+ * <p> {@link #close()} sends the buffered markers and waits for them, call it on shutdown. Example
+ * usage: </p>
+ *
+ * <pre>
+ * MarkerDispatcher markers = service.markers().newDispatcher();
+ * markers.entriesAsRead(Collections.singleton(entryId));
+ * ...
+ * markers.close();
+ * </pre>
+ *
+ * <p> Implementation is thread-safe. </p>
+ */
+public class MarkerDispatcher implements Closeable {
+
+  /** Default time markers are buffered for. */
+  public static final long DEFAULT_WINDOW_MILLIS = 500;
+
+  /** Default max number of ids buffered before the markers are sent regardless of the window. */
+  public static final int DEFAULT_MAX_PENDING = 1000;
+
+  static final Logger LOGGER = Logger.getLogger(MarkerDispatcher.class.getName());
+
+  private final Feedly feedly;
+
+  private final long windowMillis;
+
+  private final int maxPending;
+
+  /** Flushed buffers waiting to be sent, in order. */
+  private final Queue<Buffer> outbox = new ConcurrentLinkedQueue<Buffer>();
+
+  /** Held while the outbox is sent, so buffers never overtake each other. */
+  private final Object sendLock = new Object();
+
+  /** Markers received in the current window. */
+  private Buffer buffer = new Buffer();
+
+  /** Buffers taken for sending and not sent yet. Guarded by {@code this}. */
+  private final Set<Buffer> inFlight = new LinkedHashSet<Buffer>();
+
+  private boolean closed;
+
+  /**
+   * @param feedly       client the markers are sent with
+   * @param windowMillis time markers are buffered for
+   * @param maxPending   max number of buffered ids, the buffer is sent as soon as it is reached
+   */
+  public MarkerDispatcher(Feedly feedly, long windowMillis, int maxPending) {
+    checkArgument(windowMillis >= 0, "window must not be negative");
+    checkArgument(maxPending > 0, "max pending must be positive");
+    this.feedly = checkNotNull(feedly);
+    this.windowMillis = windowMillis;
+    this.maxPending = maxPending;
+  }
+
+  public final long getWindowMillis() { return windowMillis; }
+
+  public final int getMaxPending() { return maxPending; }
+
+  /** @return future completed once the markers are sent */
+  public RequestFuture<Void> entriesAsRead(Collection<String> entryIds) {
+    return markEntries(entryIds, true);
+  }
+
+  /** @return future completed once the markers are sent */
+  public RequestFuture<Void> entriesUnread(Collection<String> entryIds) {
+    return markEntries(entryIds, false);
+  }
+
+  /** @return future completed once the markers are sent */
+  public RequestFuture<Void> feedsAsRead(Collection<String> feedIds, String lastReadEntryId) {
+    return markStreams(new StreamMarker(FEEDS, checkNotNull(lastReadEntryId), null), feedIds);
+  }
+
+  /** @return future completed once the markers are sent */
+  public RequestFuture<Void> feedsAsRead(Collection<String> feedIds, Long asOf) {
+    return markStreams(new StreamMarker(FEEDS, null, checkNotNull(asOf)), feedIds);
+  }
+
+  /** @return future completed once the markers are sent */
+  public RequestFuture<Void> categoriesAsRead(Collection<String> categoryIds,
+                                              String lastReadEntryId) {
+    return markStreams(new StreamMarker(CATEGORIES, checkNotNull(lastReadEntryId), null),
+                       categoryIds);
+  }
+
+  /** @return future completed once the markers are sent */
+  public RequestFuture<Void> categoriesAsRead(Collection<String> categoryIds, Long asOf) {
+    return markStreams(new StreamMarker(CATEGORIES, null, checkNotNull(asOf)), categoryIds);
+  }
+
+  /** Sends the buffered markers without waiting for the window to elapse. */
+  public RequestFuture<Void> flush() {
+    Buffer flushed;
+    synchronized (this) {
+      flushed = takeBuffer();
+    }
+    send(flushed);
+    return flushed.sent;
+  }
+
+  /**
+   * Sends the buffered markers and waits until all markers are sent, further markers are
+   * rejected.
+   *
+   * @throws IOException if any of the markers can't be sent, including markers flushed earlier
+   *                     and still in flight
+   */
+  @Override
+  public void close() throws IOException {
+    Buffer flushed;
+    List<Buffer> outstanding;
+    synchronized (this) {
+      closed = true;
+      flushed = takeBuffer();
+      outstanding = new ArrayList<Buffer>(inFlight);
+    }
+    send(flushed);
+    if (!outstanding.contains(flushed)) {
+      outstanding.add(flushed);
+    }
+    List<Throwable> failures = new ArrayList<Throwable>();
+    for (Buffer sending : outstanding) {
+      try {
+        sending.sent.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException("Interrupted while sending markers", e);
+      } catch (ExecutionException e) {
+        failures.add(e.getCause());
+      }
+    }
+    if (failures.size() == 1) {
+      Throwable cause = failures.get(0);
+      throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+    }
+    if (!failures.isEmpty()) {
+      for (Throwable failure : failures.subList(1, failures.size())) {
+        LOGGER.log(Level.WARNING, "Markers can't be sent", failure);
+      }
+      throw new IOException(failures.size() + " marker requests failed", failures.get(0));
+    }
+  }
+
+  private RequestFuture<Void> markEntries(Collection<String> entryIds, boolean read) {
+    checkNotNull(entryIds);
+    if (entryIds.isEmpty()) {
+      return nothingToSend();
+    }
+    Buffer full = null;
+    Buffer started = null;
+    RequestFuture<Void> sent;
+    synchronized (this) {
+      checkState(!closed, "dispatcher is closed");
+      boolean wasEmpty = buffer.isEmpty();
+      EntryMarkers markers = buffer.lastEntryMarkers();
+      for (String entryId : entryIds) {
+        markers.mark(checkNotNull(entryId), read);
+      }
+      if (wasEmpty && !buffer.isEmpty()) {
+        started = buffer;
+      }
+      buffer.size += entryIds.size();
+      sent = buffer.sent;
+      if (buffer.size >= maxPending) {
+        full = takeBuffer();
+      }
+    }
+    dispatch(full, started);
+    return sent;
+  }
+
+  private RequestFuture<Void> markStreams(StreamMarker marker, Collection<String> streamIds) {
+    checkNotNull(streamIds);
+    if (streamIds.isEmpty()) {
+      return nothingToSend();
+    }
+    Buffer full = null;
+    Buffer started = null;
+    RequestFuture<Void> sent;
+    synchronized (this) {
+      checkState(!closed, "dispatcher is closed");
+      boolean wasEmpty = buffer.isEmpty();
+      buffer.lastStreamMarker(marker).ids.addAll(streamIds);
+      if (wasEmpty && !buffer.isEmpty()) {
+        started = buffer;
+      }
+      buffer.size += streamIds.size();
+      sent = buffer.sent;
+      if (buffer.size >= maxPending) {
+        full = takeBuffer();
+      }
+    }
+    dispatch(full, started);
+    return sent;
+  }
+
+  /** Returns the completed future for markers of no ids, no request is sent. */
+  private RequestFuture<Void> nothingToSend() {
+    synchronized (this) {
+      checkState(!closed, "dispatcher is closed");
+    }
+    RequestFuture<Void> sent = new RequestFuture<Void>();
+    sent.set(null);
+    return sent;
+  }
+
+  /** Sends the full buffer or schedules the started one. */
+  private void dispatch(Buffer full, Buffer started) {
+    if (full != null) {
+      send(full);
+    } else if (started != null) {
+      scheduleFlush(started);
+    }
+  }
+
+  /** Must be called holding the monitor. */
+  private Buffer takeBuffer() {
+    Buffer taken = buffer;
+    buffer = new Buffer();
+    if (!taken.isEmpty()) {
+      inFlight.add(taken);
+    }
+    return taken;
+  }
+
+  /** Sends the given buffer once the window elapses, unless it was already sent. */
+  private void scheduleFlush(final Buffer scheduled) {
+    Runnable flush = new Runnable() {
+      public void run() {
+        synchronized (MarkerDispatcher.this) {
+          if (buffer != scheduled) {
+            return;
+          }
+          takeBuffer();
+        }
+        send(scheduled);
+      }
+    };
+    try {
+      RequestExecutors.timer().schedule(flush, windowMillis, TimeUnit.MILLISECONDS);
+    } catch (RejectedExecutionException e) {
+      flush.run();
+    }
+  }
+
+  /** Queues the buffer and sends the outbox on the client executor. */
+  private void send(Buffer flushed) {
+    outbox.add(flushed);
+    Runnable drain = new Runnable() {
+      public void run() {
+        synchronized (sendLock) {
+          Buffer next;
+          while ((next = outbox.poll()) != null) {
+            next.send();
+          }
+        }
+      }
+    };
+    try {
+      feedly.getExecutor().execute(drain);
+    } catch (RejectedExecutionException e) {
+      drain.run();
+    }
+  }
+
+  /** Markers received in one window. */
+  private class Buffer {
+
+    /** {@link EntryMarkers} and {@link StreamMarker}s in the order they were received. */
+    final List<Object> markers = new ArrayList<Object>();
+
+    /** Completed once the markers are sent. */
+    final RequestFuture<Void> sent = new RequestFuture<Void>();
+
+    /** Number of buffered ids. */
+    int size;
+
+    boolean isEmpty() { return markers.isEmpty(); }
+
+    /** Returns the last markers if they are entry markers, otherwise appends new ones. */
+    EntryMarkers lastEntryMarkers() {
+      Object last = markers.isEmpty() ? null : markers.get(markers.size() - 1);
+      if (last instanceof EntryMarkers) {
+        return (EntryMarkers) last;
+      }
+      EntryMarkers entryMarkers = new EntryMarkers();
+      markers.add(entryMarkers);
+      return entryMarkers;
+    }
+
+    /** Returns the last marker if it is equal to the given one, otherwise appends the given one. */
+    StreamMarker lastStreamMarker(StreamMarker marker) {
+      Object last = markers.isEmpty() ? null : markers.get(markers.size() - 1);
+      if (marker.equals(last)) {
+        return (StreamMarker) last;
+      }
+      markers.add(marker);
+      return marker;
+    }
+
+    /** Sends markers in order, stops at the first failure. */
+    void send() {
+      try {
+        Feedly.Markers api = feedly.markers();
+        for (Object marker : markers) {
+          if (marker instanceof EntryMarkers) {
+            ((EntryMarkers) marker).send(api);
+          } else {
+            ((StreamMarker) marker).send(api);
+          }
+        }
+        sent.set(null);
+      } catch (Throwable e) {
+        sent.setException(e);
+      }
+      synchronized (MarkerDispatcher.this) {
+        inFlight.remove(this);
+      }
+    }
+  }
+
+  /** Entries marked within the same run of entry markers. */
+  private static class EntryMarkers {
+
+    final Set<String> read = new LinkedHashSet<String>();
+
+    final Set<String> unread = new LinkedHashSet<String>();
+
+    /** The last marker of an entry wins. */
+    void mark(String entryId, boolean asRead) {
+      if (asRead) {
+        unread.remove(entryId);
+        read.add(entryId);
+      } else {
+        read.remove(entryId);
+        unread.add(entryId);
+      }
+    }
+
+    void send(Feedly.Markers api) throws IOException {
+      if (!read.isEmpty()) {
+        api.entriesAsRead(read).execute();
+      }
+      if (!unread.isEmpty()) {
+        api.entriesUnread(unread).execute();
+      }
+    }
+  }
+
+  /** Feeds or categories marked as read as of the same point. */
+  private static class StreamMarker {
+
+    final String type;
+
+    final String lastReadEntryId;
+
+    final Long asOf;
+
+    final Set<String> ids = new LinkedHashSet<String>();
+
+    StreamMarker(String type, String lastReadEntryId, Long asOf) {
+      this.type = type;
+      this.lastReadEntryId = lastReadEntryId;
+      this.asOf = asOf;
+    }
+
+    void send(Feedly.Markers api) throws IOException {
+      if (type.equals(FEEDS)) {
+        if (asOf != null) {
+          api.feedsAsRead(ids, asOf).execute();
+        } else {
+          api.feedsAsRead(ids, lastReadEntryId).execute();
+        }
+      } else if (asOf != null) {
+        api.categoriesAsRead(ids, asOf).execute();
+      } else {
+        api.categoriesAsRead(ids, lastReadEntryId).execute();
+      }
+    }
+
+    /** Markers are equal if they can be sent in one request. */
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof StreamMarker)) {
+        return false;
+      }
+      StreamMarker that = (StreamMarker) o;
+      return type.equals(that.type)
+             && (asOf == null ? that.asOf == null : asOf.equals(that.asOf))
+             && (lastReadEntryId == null ? that.lastReadEntryId == null
+                                         : lastReadEntryId.equals(that.lastReadEntryId));
+    }
+
+    @Override
+    public int hashCode() {
+      int result = type.hashCode();
+      result = 31 * result + (lastReadEntryId != null ? lastReadEntryId.hashCode() : 0);
+      result = 31 * result + (asOf != null ? asOf.hashCode() : 0);
+      return result;
+    }
+  }
+
+  private static final String FEEDS = "feeds";
+
+  private static final String CATEGORIES = "categories";
+}
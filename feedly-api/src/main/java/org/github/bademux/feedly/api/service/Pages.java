@@ -0,0 +1,365 @@
+/*
+ * Copyright 2014 Bademus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *    Contributors:
+ *                 Bademus
+ */
+
+package org.github.bademux.feedly.api.service;
+
+import org.github.bademux.feedly.api.model.Continuable;
+import org.github.bademux.feedly.api.model.EntriesResponse;
+import org.github.bademux.feedly.api.model.Entry;
+import org.github.bademux.feedly.api.model.StreamsResponse;
+
+import java.io.Closeable;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.api.client.util.Preconditions.checkArgument;
+import static com.google.api.client.util.Preconditions.checkNotNull;
+import static com.google.api.client.util.Strings.isNullOrEmpty;
+
+/**
+ * Iterates all pages of a {@link ContinuableRequest}, following the continuation token.
+ *
+ * <p> Pages are fetched on the {@link AbstractClient#getExecutor() client executor}: as soon as a
+ * page arrives the request for the next one is sent, while the caller is still busy with the
+ * previous pages. At most {@code prefetchDepth} pages are buffered ahead of the caller. Example
+ * usage: </p>
+ *
+ * <pre>
+ * for (Entry entry : Pages.entries(service.streams().contents(stream).pages())) {
+ *   // process entry
+ * }
+ * </pre>
+ *
+ * <p> The request must not be modified while it is iterated and iterators must not be used
+ * concurrently, as they share the request. A failed fetch is reported by {@link
+ * Iterator#next()} as {@link FetchException}. </p>
+ *
+ * <p> Close the {@link PageIterator} if the iteration is abandoned before the last page, ie. on
+ * {@code break} or exception. An iterator that isn't closed holds the executor thread until its
+ * caller stops pulling pages for {@code idleTimeoutMillis}, then the background fetch stops and is
+ * resumed from the same page if the caller comes back. </p>
+ *
+ * @param <T> type of the page
+ */
+public class Pages<T extends Continuable> implements Iterable<T> {
+
+  /** Default number of pages fetched ahead of the caller. */
+  public static final int DEFAULT_PREFETCH_DEPTH = 1;
+
+  /** Default time the background fetch waits for the caller to take a page in milliseconds. */
+  public static final long DEFAULT_IDLE_TIMEOUT_MILLIS = 30 * 1000;
+
+  private final ContinuableRequest<T> request;
+
+  /** Continuation to start each iteration with. */
+  private final String initialContinuation;
+
+  private final int prefetchDepth;
+
+  private final long idleTimeoutMillis;
+
+  /** @param request request to iterate, iteration starts from its current continuation */
+  public Pages(ContinuableRequest<T> request) {
+    this(request, DEFAULT_PREFETCH_DEPTH);
+  }
+
+  /**
+   * @param request       request to iterate, iteration starts from its current continuation
+   * @param prefetchDepth max number of pages fetched ahead of the caller, at least 1
+   */
+  public Pages(ContinuableRequest<T> request, int prefetchDepth) {
+    this(request, prefetchDepth, DEFAULT_IDLE_TIMEOUT_MILLIS);
+  }
+
+  /**
+   * @param request           request to iterate, iteration starts from its current continuation
+   * @param prefetchDepth     max number of pages fetched ahead of the caller, at least 1
+   * @param idleTimeoutMillis time the background fetch waits for the caller to take a page before
+   *                          it releases the executor thread
+   */
+  public Pages(ContinuableRequest<T> request, int prefetchDepth, long idleTimeoutMillis) {
+    checkArgument(prefetchDepth > 0, "prefetch depth must be positive");
+    checkArgument(idleTimeoutMillis > 0, "idle timeout must be positive");
+    this.request = checkNotNull(request);
+    this.initialContinuation = request.getContinuation();
+    this.prefetchDepth = prefetchDepth;
+    this.idleTimeoutMillis = idleTimeoutMillis;
+  }
+
+  public int getPrefetchDepth() { return prefetchDepth; }
+
+  public long getIdleTimeoutMillis() { return idleTimeoutMillis; }
+
+  /**
+   * Starts fetching pages in background. Call {@link PageIterator#close()} if the iteration is
+   * abandoned before the last page, so the background fetch stops.
+   */
+  @Override
+  public PageIterator iterator() {
+    PageIterator iterator = new PageIterator();
+    iterator.resume();
+    return iterator;
+  }
+
+  /** Returns entries of all pages, pages are fetched lazily as entries are consumed. */
+  public static Iterable<Entry> entries(final Iterable<EntriesResponse> pages) {
+    return new Iterable<Entry>() {
+      @Override
+      public Iterator<Entry> iterator() {
+        return new FlatteningIterator<EntriesResponse, Entry>(pages.iterator()) {
+          @Override
+          protected List<Entry> itemsOf(EntriesResponse page) { return page.items(); }
+        };
+      }
+    };
+  }
+
+  /** Returns entry ids of all pages, pages are fetched lazily as ids are consumed. */
+  public static Iterable<String> ids(final Iterable<StreamsResponse> pages) {
+    return new Iterable<String>() {
+      @Override
+      public Iterator<String> iterator() {
+        return new FlatteningIterator<StreamsResponse, String>(pages.iterator()) {
+          @Override
+          protected List<String> itemsOf(StreamsResponse page) { return page.ids(); }
+        };
+      }
+    };
+  }
+
+  /** Thrown by {@link Iterator#next()} if the page can't be fetched. */
+  @SuppressWarnings("serial")
+  public static class FetchException extends RuntimeException {
+
+    public FetchException(Throwable cause) { super(cause); }
+  }
+
+  /** Iterator that receives pages from the background fetch. */
+  public class PageIterator implements Iterator<T>, Runnable, Closeable {
+
+    /** Pages fetched ahead, the last element is {@link #END} or {@link Failure}. */
+    private final BlockingQueue<Object> queue = new ArrayBlockingQueue<Object>(prefetchDepth);
+
+    private volatile boolean closed;
+
+    /** Element taken from the queue but not returned yet or {@code null} for none. */
+    private Object next;
+
+    /** Whether the background fetch is running or done. Guarded by {@link #queue}. */
+    private boolean fetching;
+
+    /** Continuation of the next page to fetch. Guarded by {@link #queue}. */
+    private String continuation = initialContinuation;
+
+    /**
+     * Element fetched but not queued as the caller was idle or {@code null} for none. Guarded by
+     * {@link #queue}.
+     */
+    private Object parked;
+
+    /** Background fetch loop, runs on the client executor. */
+    @Override
+    public void run() {
+      try {
+        while (true) {
+          String current;
+          synchronized (queue) {
+            current = continuation;
+          }
+          request.setContinuation(current);
+          T page = request.execute();
+          synchronized (queue) {
+            continuation = page.getContinuation();
+          }
+          if (!offer(page)) {
+            return;
+          }
+          if (isNullOrEmpty(page.getContinuation())) {
+            break;
+          }
+        }
+        offer(END);
+      } catch (Throwable e) {
+        offer(new Failure(e));
+      }
+    }
+
+    @Override
+    public boolean hasNext() {
+      try {
+        while (next == null) {
+          if (closed) {
+            return false;
+          }
+          next = queue.poll();
+          if (next == null) {
+            resume();
+            next = queue.poll(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+          }
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new FetchException(e);
+      }
+      return next != END;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public T next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      Object current = next;
+      if (current instanceof Failure) {
+        close();
+        throw new FetchException(((Failure) current).cause);
+      }
+      next = null;
+      return (T) current;
+    }
+
+    @Override
+    public void remove() { throw new UnsupportedOperationException(); }
+
+    /** Stops the background fetch and drops the buffered pages. */
+    @Override
+    public void close() {
+      closed = true;
+      next = END;
+      queue.clear();
+    }
+
+    /**
+     * Starts the background fetch unless it is running or done. Called with the empty queue, the
+     * parked element is queued first.
+     */
+    void resume() {
+      synchronized (queue) {
+        if (fetching || closed) {
+          return;
+        }
+        fetching = true;
+        Object element = parked;
+        parked = null;
+        if (element != null) {
+          queue.offer(element);
+          if (element == END || element instanceof Failure) {
+            return;
+          }
+          if (isNullOrEmpty(continuation)) {
+            // the parked page is the last one
+            parked = END;
+            fetching = false;
+            return;
+          }
+        }
+      }
+      request.getAbstractClient().getExecutor().execute(this);
+    }
+
+    /**
+     * Queues the element, parks it if the caller doesn't take elements for {@link
+     * #idleTimeoutMillis}.
+     *
+     * @return {@code false} if the fetch must stop, the iterator was closed or is idle
+     */
+    private boolean offer(Object element) {
+      long deadline = System.currentTimeMillis() + idleTimeoutMillis;
+      try {
+        while (!closed) {
+          long wait = Math.min(deadline - System.currentTimeMillis(), POLL_TIMEOUT_MS);
+          if (queue.offer(element, Math.max(wait, 0), TimeUnit.MILLISECONDS)) {
+            // close may have cleared the queue while the fetch was waiting
+            return !closed;
+          }
+          if (wait <= 0) {
+            synchronized (queue) {
+              // the caller resumes the fetch once it drained the queue
+              if (queue.offer(element)) {
+                return true;
+              }
+              parked = element;
+              fetching = false;
+              return false;
+            }
+          }
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      return false;
+    }
+  }
+
+  /** Flattens items of pages, empty pages are skipped. */
+  abstract static class FlatteningIterator<P, I> implements Iterator<I> {
+
+    private final Iterator<P> pages;
+
+    private Iterator<I> items = Collections.<I>emptyList().iterator();
+
+    FlatteningIterator(Iterator<P> pages) { this.pages = pages; }
+
+    protected abstract List<I> itemsOf(P page);
+
+    @Override
+    public boolean hasNext() {
+      while (!items.hasNext()) {
+        if (!pages.hasNext()) {
+          return false;
+        }
+        List<I> pageItems = itemsOf(pages.next());
+        if (pageItems != null) {
+          items = pageItems.iterator();
+        }
+      }
+      return true;
+    }
+
+    @Override
+    public I next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      return items.next();
+    }
+
+    @Override
+    public void remove() { throw new UnsupportedOperationException(); }
+  }
+
+  private static final class Failure {
+
+    final Throwable cause;
+
+    Failure(Throwable cause) { this.cause = cause; }
+  }
+
+  /** Marks the last page. */
+  private static final Object END = new Object();
+
+  /** How often the background fetch and the caller check whether the iterator was closed. */
+  private static final long POLL_TIMEOUT_MS = 500;
+}
@@ -0,0 +1,278 @@
+/*
+ * Copyright 2014 Bademus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *    Contributors:
+ *                 Bademus
+ */
+
+package org.github.bademux.feedly.api.service;
+
+import com.google.api.client.http.HttpExecuteInterceptor;
+import com.google.api.client.http.HttpHeaders;
+import com.google.api.client.http.HttpRequest;
+import com.google.api.client.http.HttpResponse;
+import com.google.api.client.http.HttpResponseInterceptor;
+import com.google.api.client.http.HttpUnsuccessfulResponseHandler;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.api.client.util.Preconditions.checkArgument;
+
+/**
+ * Client side token bucket that paces requests to stay within the Feedly API quota.
+ *
+ * <p> Every user has its own bucket, so a limiter may be shared by several clients. A request
+ * waits for a token before it is sent, when the budget is exhausted requests queue up in the
+ * order they arrived instead of failing. The rate adapts to the quota the server reports: </p>
+ * <ul>
+ *   <li> {@code X-RateLimit-Limit}, {@code X-RateLimit-Count} and {@code X-RateLimit-Reset}
+ *   (seconds until the quota is reset) spread the remaining requests evenly over the rest of the
+ *   quota window, so throughput stays just under the quota instead of bursting into it; </li>
+ *   <li> {@code 429 Too Many Requests} pauses the bucket for {@code Retry-After} and the request is
+ *   sent again, up to {@link HttpRequest#getNumberOfRetries()} times. </li>
+ * </ul>
+ *
+ * <p> Set it with {@link AbstractClient.Builder#setRateLimiter(RateLimiter)}. </p>
+ *
+ * <p> Implementation is thread-safe. </p>
+ */
+public class RateLimiter {
+
+  /** Default rate until the server reports the quota. */
+  public static final double DEFAULT_PERMITS_PER_SECOND = 10;
+
+  /** Default number of requests that may be sent at once after the bucket was idle. */
+  public static final int DEFAULT_BURST = 10;
+
+  /** Default share of the reported remaining quota the rate is set to. */
+  public static final double DEFAULT_UTILIZATION = 0.9;
+
+  /** Pause after {@code 429 Too Many Requests} without {@code Retry-After}. */
+  static final long DEFAULT_RETRY_AFTER_MILLIS = 1000;
+
+  static final int STATUS_CODE_TOO_MANY_REQUESTS = 429;
+
+  private final double initialPermitsPerSecond;
+
+  private final int burst;
+
+  private final double utilization;
+
+  private final ConcurrentMap<String, Bucket> buckets = new ConcurrentHashMap<String, Bucket>();
+
+  public RateLimiter() {
+    this(DEFAULT_PERMITS_PER_SECOND, DEFAULT_BURST, DEFAULT_UTILIZATION);
+  }
+
+  /**
+   * @param permitsPerSecond rate until the server reports the quota
+   * @param burst            max number of requests sent at once after the bucket was idle
+   * @param utilization      share of the reported remaining quota to use, in {@code (0, 1]}
+   */
+  public RateLimiter(double permitsPerSecond, int burst, double utilization) {
+    checkArgument(permitsPerSecond > 0, "rate must be positive");
+    checkArgument(burst > 0, "burst must be positive");
+    checkArgument(utilization > 0 && utilization <= 1, "utilization must be in (0, 1]");
+    this.initialPermitsPerSecond = permitsPerSecond;
+    this.burst = burst;
+    this.utilization = utilization;
+  }
+
+  /**
+   * Waits until a request of the given user may be sent.
+   *
+   * @param userId user id or {@code null} for unauthorized requests
+   * @throws InterruptedIOException if interrupted while waiting
+   */
+  public void acquire(String userId) throws InterruptedIOException {
+    Bucket bucket = bucket(userId);
+    try {
+      long reservation = bucket.reserve(System.nanoTime());
+      long waitNanos;
+      // a pause while waiting delays the reserved slot
+      while ((waitNanos = bucket.deadline(reservation) - System.nanoTime()) > 0) {
+        TimeUnit.NANOSECONDS.sleep(waitNanos);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for the rate limiter");
+    }
+  }
+
+  /** Returns the current rate of the given user in requests per second. */
+  public double getRate(String userId) {
+    return bucket(userId).getRate() * TimeUnit.SECONDS.toNanos(1);
+  }
+
+  /**
+   * Paces the request: waits for the rate limiter before every attempt, adapts the rate to the
+   * quota reported by every response and sends the request again after {@code 429 Too Many
+   * Requests}.
+   */
+  void intercept(HttpRequest httpRequest, final String userId) {
+    final HttpExecuteInterceptor interceptor = httpRequest.getInterceptor();
+    httpRequest.setInterceptor(new HttpExecuteInterceptor() {
+      public void intercept(HttpRequest request) throws IOException {
+        acquire(userId);
+        if (interceptor != null) {
+          interceptor.intercept(request);
+        }
+      }
+    });
+    final HttpUnsuccessfulResponseHandler handler = httpRequest.getUnsuccessfulResponseHandler();
+    httpRequest.setUnsuccessfulResponseHandler(new HttpUnsuccessfulResponseHandler() {
+      public boolean handleResponse(HttpRequest request, HttpResponse response,
+                                    boolean supportsRetry) throws IOException {
+        boolean throttled = update(userId, response);
+        if (handler != null && handler.handleResponse(request, response, supportsRetry)) {
+          return true;
+        }
+        return throttled && supportsRetry;
+      }
+    });
+    final HttpResponseInterceptor responseInterceptor = httpRequest.getResponseInterceptor();
+    httpRequest.setResponseInterceptor(new HttpResponseInterceptor() {
+      public void interceptResponse(HttpResponse response) throws IOException {
+        // unsuccessful responses were seen by the handler already
+        if (response.isSuccessStatusCode()) {
+          update(userId, response);
+        }
+        if (responseInterceptor != null) {
+          responseInterceptor.interceptResponse(response);
+        }
+      }
+    });
+  }
+
+  /**
+   * Adapts the bucket of the user to the quota reported by the response.
+   *
+   * @return whether the response is {@code 429 Too Many Requests}
+   */
+  boolean update(String userId, HttpResponse response) {
+    Bucket bucket = bucket(userId);
+    HttpHeaders headers = response.getHeaders();
+    long now = System.nanoTime();
+    Long limit = longHeader(headers, "X-RateLimit-Limit");
+    Long count = longHeader(headers, "X-RateLimit-Count");
+    Long reset = longHeader(headers, "X-RateLimit-Reset");
+    if (limit != null && count != null && reset != null) {
+      bucket.setQuota(now, Math.max(limit - count, 0), TimeUnit.SECONDS.toNanos(reset));
+    }
+    if (response.getStatusCode() != STATUS_CODE_TOO_MANY_REQUESTS) {
+      return false;
+    }
+    Long retryAfter = longHeader(headers, "Retry-After");
+    bucket.pause(now, retryAfter != null
+                      ? TimeUnit.SECONDS.toNanos(retryAfter)
+                      : TimeUnit.MILLISECONDS.toNanos(DEFAULT_RETRY_AFTER_MILLIS));
+    return true;
+  }
+
+  /** Returns the header value as a number or {@code null} if it is missing or not a number. */
+  static Long longHeader(HttpHeaders headers, String name) {
+    String value = headers.getFirstHeaderStringValue(name);
+    if (value == null) {
+      return null;
+    }
+    try {
+      return Long.valueOf(value.trim());
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+  private Bucket bucket(String userId) {
+    String key = userId == null ? "" : userId;
+    Bucket bucket = buckets.get(key);
+    if (bucket == null) {
+      Bucket newBucket = new Bucket(initialPermitsPerSecond / TimeUnit.SECONDS.toNanos(1));
+      bucket = buckets.putIfAbsent(key, newBucket);
+      if (bucket == null) {
+        bucket = newBucket;
+      }
+    }
+    return bucket;
+  }
+
+  /**
+   * Token bucket of a user. Tokens may go negative: every waiting request reserves the next free
+   * slot once, so requests are released in order and one token interval apart. A pause delays
+   * the slots reserved before it by the paused time.
+   */
+  private final class Bucket {
+
+    /** Tokens per nanosecond. */
+    private double rate;
+
+    private double tokens = burst;
+
+    /** Time tokens were refilled up to, it is in the future while the bucket is paused. */
+    private long refilled = System.nanoTime();
+
+    /** Total time the bucket was paused for. */
+    private long pausedNanos;
+
+    Bucket(double rate) { this.rate = rate; }
+
+    synchronized double getRate() { return rate; }
+
+    /** Takes a token and returns its reservation, see {@link #deadline(long)}. */
+    synchronized long reserve(long now) {
+      refill(now);
+      tokens -= 1;
+      long slot = tokens >= 0 ? refilled : refilled + (long) Math.ceil(-tokens / rate);
+      return slot - pausedNanos;
+    }
+
+    /** Returns the time the reserved token is available at. */
+    synchronized long deadline(long reservation) { return reservation + pausedNanos; }
+
+    /** Spreads the remaining requests over the time left until the quota is reset. */
+    synchronized void setQuota(long now, long remaining, long resetNanos) {
+      if (remaining == 0) {
+        pause(now, resetNanos);
+      } else if (resetNanos > 0) {
+        rate = remaining * utilization / resetNanos;
+        tokens = Math.min(tokens, remaining);
+      }
+    }
+
+    /**
+     * Releases no tokens for the given time. Unused tokens are dropped, tokens owed to waiting
+     * requests are kept, their slots are delayed instead.
+     */
+    synchronized void pause(long now, long nanos) {
+      refill(now);
+      long delay = now + nanos - refilled;
+      if (delay > 0) {
+        refilled += delay;
+        pausedNanos += delay;
+        tokens = Math.min(tokens, 0);
+      }
+    }
+
+    private void refill(long now) {
+      if (now - refilled > 0) {
+        tokens = Math.min(burst, tokens + (now - refilled) * rate);
+        refilled = now;
+      }
+    }
+  }
+}
@@ -29,14 +29,27 @@ import com.google.api.client.http.HttpRequest;
 import com.google.api.client.http.HttpResponse;
 import com.google.api.client.http.HttpResponseException;
 import com.google.api.client.http.HttpResponseInterceptor;
+import com.google.api.client.http.HttpStatusCodes;
 import com.google.api.client.http.UriTemplate;
-import com.google.api.client.http.json.JsonHttpContent;
+import com.google.api.client.util.Charsets;
 import com.google.api.client.util.GenericData;
 
+import org.github.bademux.feedly.api.json.CodecJsonHttpContent;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.util.Date;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static com.google.api.client.util.Preconditions.checkArgument;
 import static com.google.api.client.util.Preconditions.checkNotNull;
@@ -59,6 +72,9 @@ public abstract class Request<T> extends GenericData {
   /** URI template for the path relative to the base URL. */
   private final String uriTemplate;
 
+  /** {@link #uriTemplate} compiled for the request class. */
+  private final CompiledUriTemplate compiledUriTemplate;
+
   /** HTTP content or {@code null} for none. */
   private final HttpContent httpContent;
 
@@ -80,13 +96,17 @@ public abstract class Request<T> extends GenericData {
   /** Response class to parse into. */
   private Class<T> responseClass;
 
+  /** Whether the GET response may be served from {@link AbstractClient#getResponseCache()}. */
+  private boolean cacheable;
+
   /**
    * @param abstractClient client
    * @param requestMethod  HTTP Method
    * @param uriTemplate    URI template for the path relative to the base URL. If it starts with a
    *                       "/" the base path from the base URL will be stripped out. The URI
-   *                       template can also be a full URL. URI template expansion is done using
-   *                       {@link UriTemplate#expand(String, String, Object, boolean)}
+   *                       template can also be a full URL. URI template expansion is equivalent to
+   *                       {@link UriTemplate#expand(String, String, Object, boolean)}, the
+   *                       template is compiled once per request class
    * @param jsonContent    POJO that can be serialized into JSON content or {@code null} for none
    * @param responseClass  response class to parse into
    */
@@ -94,7 +114,8 @@ public abstract class Request<T> extends GenericData {
                     String uriTemplate, Object jsonContent, Class<T> responseClass) {
     this(abstractClient, requestMethod, uriTemplate,
          jsonContent == null ? null
-                             : new JsonHttpContent(abstractClient.getJsonFactory(), jsonContent),
+                             : new CodecJsonHttpContent(abstractClient.getJsonFactory(),
+                                                        jsonContent),
          responseClass);
   }
 
@@ -103,8 +124,9 @@ public abstract class Request<T> extends GenericData {
    * @param requestMethod  HTTP Method
    * @param uriTemplate    URI template for the path relative to the base URL. If it starts with a
    *                       "/" the base path from the base URL will be stripped out. The URI
-   *                       template can also be a full URL. URI template expansion is done using
-   *                       {@link UriTemplate#expand(String, String, Object, boolean)}
+   *                       template can also be a full URL. URI template expansion is equivalent to
+   *                       {@link UriTemplate#expand(String, String, Object, boolean)}, the
+   *                       template is compiled once per request class
    * @param httpContent    HttpContent
    * @param responseClass  response class to parse into
    */
@@ -114,6 +136,7 @@ public abstract class Request<T> extends GenericData {
     this.abstractClient = checkNotNull(abstractClient);
     this.requestMethod = checkNotNull(requestMethod);
     this.uriTemplate = checkNotNull(uriTemplate);
+    this.compiledUriTemplate = CompiledUriTemplate.of(getClass(), uriTemplate);
     this.httpContent = httpContent;
   }
 
@@ -136,6 +159,29 @@ public abstract class Request<T> extends GenericData {
     return this;
   }
 
+  /** Returns whether the response may be served from {@link AbstractClient#getResponseCache()}. */
+  public final boolean isCacheable() {
+    return cacheable;
+  }
+
+  /**
+   * Sets whether the response may be served from {@link AbstractClient#getResponseCache()}.
+   *
+   * <p> If the client has a response cache and a credential with user id, cacheable GET requests
+   * are sent without the {@code ck} cache-buster parameter and are revalidated with {@code
+   * If-None-Match}/{@code If-Modified-Since}, on {@code 304 Not Modified} {@link #execute()}
+   * returns a copy of the cached response. Only {@link #execute()} uses the cache. </p>
+   *
+   * <p> By default it is {@code false}. </p>
+   *
+   * <p> Overriding is only supported for the purpose of calling the super implementation and
+   * changing the return type, but nothing else. </p>
+   */
+  public Request<T> setCacheable(boolean cacheable) {
+    this.cacheable = cacheable;
+    return this;
+  }
+
   /** Returns the HTTP method. */
   public final String getRequestMethod() {
     return requestMethod;
@@ -216,8 +262,7 @@ public abstract class Request<T> extends GenericData {
    * @return newly created {@link GenericUrl}
    */
   public GenericUrl buildHttpRequestUrl() {
-    return new GenericUrl(
-        UriTemplate.expand(abstractClient.getBaseUrl(), uriTemplate, this, true));
+    return compiledUriTemplate.expand(abstractClient.getBaseUrl(), this);
   }
 
   /**
@@ -246,7 +291,7 @@ public abstract class Request<T> extends GenericData {
     String requestMethodToUse = usingHead ? HttpMethods.HEAD : requestMethod;
     final GenericUrl requestUrl = buildHttpRequestUrl();
     //Reduce the risk of caching
-    if (requestMethod.equals(HttpMethods.GET)) {
+    if (requestMethod.equals(HttpMethods.GET) && !usesResponseCache()) {
       requestUrl.set("ck", (new Date()).getTime());
     }
     final HttpRequest httpRequest = getAbstractClient()
@@ -275,6 +320,16 @@ public abstract class Request<T> extends GenericData {
         }
       }
     });
+    RateLimiter rateLimiter = abstractClient.getRateLimiter();
+    if (rateLimiter != null) {
+      rateLimiter.intercept(httpRequest, abstractClient.userId());
+    }
+    RetryPolicy retryPolicy = requestMethod.equals(HttpMethods.GET)
+                              ? abstractClient.getReadRetryPolicy()
+                              : abstractClient.getWriteRetryPolicy();
+    if (retryPolicy != null) {
+      retryPolicy.apply(httpRequest);
+    }
     return httpRequest;
   }
 
@@ -330,16 +385,82 @@ public abstract class Request<T> extends GenericData {
    * metadata {@link HttpResponse}.
    */
   private HttpResponse executeUnparsed(boolean usingHead) throws IOException {
-    HttpResponse response;
+    return executeUnparsed(buildHttpRequest(usingHead));
+  }
 
-    response = buildHttpRequest(usingHead).execute();
+  /** Sends the given request to the server and returns the raw metadata {@link HttpResponse}. */
+  private HttpResponse executeUnparsed(HttpRequest httpRequest) throws IOException {
+    HttpResponse response = send(httpRequest);
     // process response
-    lastResponseHeaders = response.getHeaders();
-    lastStatusCode = response.getStatusCode();
-    lastStatusMessage = response.getStatusMessage();
+    record(response.getHeaders(), response.getStatusCode(), response.getStatusMessage());
     return response;
   }
 
+  /** Sends the given request to the server without recording the response as the last one. */
+  private HttpResponse send(HttpRequest httpRequest) throws IOException {
+    RequestMetrics metrics = abstractClient.getMetrics();
+    return metrics == null ? httpRequest.execute() : executeMeasured(httpRequest, metrics);
+  }
+
+  /** Records the metadata of the response returned to the caller as the last response. */
+  private void record(HttpHeaders headers, int statusCode, String statusMessage) {
+    lastResponseHeaders = headers;
+    lastStatusCode = statusCode;
+    lastStatusMessage = statusMessage;
+  }
+
+  /** Executes the request and records first byte latency of its attempts, size and status. */
+  private HttpResponse executeMeasured(HttpRequest httpRequest, RequestMetrics metrics)
+      throws IOException {
+    RequestMetrics.AttemptTimer timer = metrics.timeAttempts(httpRequest, uriTemplate);
+    int statusCode = 0;
+    long responseBytes = -1;
+    try {
+      HttpResponse response = httpRequest.execute();
+      statusCode = response.getStatusCode();
+      Long contentLength = response.getHeaders().getContentLength();
+      responseBytes = contentLength == null ? -1 : contentLength;
+      return response;
+    } catch (HttpResponseException e) {
+      statusCode = e.getStatusCode();
+      throw e;
+    } finally {
+      timer.finished();
+      metrics.recordExchange(uriTemplate, timer.getAttempts(), statusCode,
+                             contentLength(httpRequest.getContent()), responseBytes);
+    }
+  }
+
+  /** Returns the length of the content, {@code 0} for none, negative if unknown. */
+  private static long contentLength(HttpContent content) {
+    try {
+      return content == null ? 0 : content.getLength();
+    } catch (IOException e) {
+      return -1;
+    }
+  }
+
+  /** Parses the response content, records parse latency if metrics are enabled. */
+  private T parse(HttpResponse response) throws IOException {
+    RequestMetrics metrics = abstractClient.getMetrics();
+    int statusCode = response.getStatusCode();
+    if (metrics == null || response.getRequest().getRequestMethod().equals(HttpMethods.HEAD)
+        || statusCode / 100 == 1 || statusCode == HttpStatusCodes.STATUS_CODE_NO_CONTENT
+        || statusCode == HttpStatusCodes.STATUS_CODE_NOT_MODIFIED) {
+      return response.parseAs(responseClass);
+    }
+    long start = System.nanoTime();
+    RequestMetrics.CountingInputStream content =
+        new RequestMetrics.CountingInputStream(response.getContent());
+    T result = response.getRequest().getParser()
+        .parseAndClose(content, response.getContentCharset(), responseClass);
+    Long contentLength = response.getHeaders().getContentLength();
+    metrics.recordParse(uriTemplate, System.nanoTime() - start, content.getCount(),
+                        response.getContentEncoding() == null || contentLength == null
+                        ? -1 : contentLength);
+    return result;
+  }
+
   /**
    * Returns the exception to throw on an HTTP error response as defined by {@link
    * HttpResponse#isSuccessStatusCode()}.
@@ -363,7 +484,259 @@ public abstract class Request<T> extends GenericData {
    * @return parsed HTTP response
    */
   public T execute() throws IOException {
-    return executeUnparsed().parseAs(responseClass);
+    ConcurrentMap<String, RequestFuture<Object>> inFlight = abstractClient.inFlight();
+    if (inFlight != null && requestMethod.equals(HttpMethods.GET)) {
+      return recorded(executeShared(inFlight));
+    }
+    return recorded(executeHedgeable());
+  }
+
+  /** Sends the request, hedged if it is slow. */
+  private Attempt<T> executeHedgeable() throws IOException {
+    long hedgeDelayMillis = hedgeDelayMillis();
+    return hedgeDelayMillis > 0 ? executeHedged(hedgeDelayMillis) : attemptOnce();
+  }
+
+  /** Records the response of the attempt as the last one and returns its result. */
+  private T recorded(Attempt<T> attempt) {
+    record(attempt.headers, attempt.statusCode, attempt.statusMessage);
+    return attempt.result;
+  }
+
+  /**
+   * Sends the request unless an identical one is in flight, in which case waits for it and returns
+   * a copy of its result, see {@link AbstractClient.Builder#setSingleFlight(boolean)}.
+   */
+  @SuppressWarnings("unchecked")
+  private Attempt<T> executeShared(ConcurrentMap<String, RequestFuture<Object>> inFlight)
+      throws IOException {
+    String key = responseClass.getName() + ' ' + buildHttpRequestUrl().build() + ' '
+                 + requestHeaders.entrySet();
+    RequestFuture<Object> call = new RequestFuture<Object>();
+    RequestFuture<Object> sharedCall = inFlight.putIfAbsent(key, call);
+    if (sharedCall != null) {
+      Attempt<T> shared = (Attempt<T>) getResult(sharedCall);
+      return new Attempt<T>(copy(shared.result), shared.headers.clone(), shared.statusCode,
+                            shared.statusMessage);
+    }
+    try {
+      Attempt<T> attempt = executeHedgeable();
+      call.set(attempt);
+      return attempt;
+    } catch (IOException e) {
+      call.setException(e);
+      throw e;
+    } catch (RuntimeException e) {
+      call.setException(e);
+      throw e;
+    } catch (Error e) {
+      call.setException(e);
+      throw e;
+    } finally {
+      inFlight.remove(key, call);
+    }
+  }
+
+  /**
+   * Sends the request once without recording the response as the last one, retries are up to the
+   * {@link RetryPolicy}.
+   */
+  private Attempt<T> attemptOnce() throws IOException {
+    if (usesResponseCache()) {
+      return executeCached(abstractClient.getResponseCache());
+    }
+    HttpResponse response = send(buildHttpRequest(false));
+    return new Attempt<T>(parse(response), response);
+  }
+
+  /**
+   * Returns whether the response is served from {@link AbstractClient#getResponseCache()}, the
+   * cache is keyed by user, so it is bypassed without one.
+   */
+  private boolean usesResponseCache() {
+    return cacheable && requestMethod.equals(HttpMethods.GET)
+           && abstractClient.getResponseCache() != null && abstractClient.userId() != null;
+  }
+
+  /**
+   * Returns the time after which a duplicate of the request is sent or {@code 0} if it is not
+   * hedged, see {@link AbstractClient.Builder#setHedgeQuantile(double)}.
+   */
+  private long hedgeDelayMillis() {
+    double quantile = abstractClient.getHedgeQuantile();
+    if (quantile == 0 || !requestMethod.equals(HttpMethods.GET)) {
+      return 0;
+    }
+    RequestMetrics.EndpointSnapshot endpoint = abstractClient.getMetrics().snapshot(uriTemplate);
+    if (endpoint == null || endpoint.getRequestCount() < MIN_HEDGE_SAMPLES) {
+      return 0;
+    }
+    return (long) Math.ceil(endpoint.getFirstByteLatency().getQuantileMillis(quantile)
+                            + endpoint.getParseLatency().getQuantileMillis(quantile));
+  }
+
+  /**
+   * Sends the request on the calling thread and, if it hasn't completed within the given time, a
+   * duplicate of it on the client executor. Returns the first response, fails only if both
+   * attempts fail. The duplicate doesn't interrupt the request on the calling thread, so the result
+   * is returned once that request completes or fails.
+   */
+  private Attempt<T> executeHedged(long delayMillis) throws IOException {
+    RequestFuture<Attempt<T>> first = new RequestFuture<Attempt<T>>();
+    final RequestFuture<Attempt<T>> second = new RequestFuture<Attempt<T>>();
+    RequestFuture<Attempt<T>> winner = new RequestFuture<Attempt<T>>();
+    AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+    first.addCallback(new Hedge<Attempt<T>>(winner, second, failure));
+    second.addCallback(new Hedge<Attempt<T>>(winner, first, failure));
+    ScheduledFuture<?> hedge = RequestExecutors.timer().schedule(new Runnable() {
+      public void run() {
+        submit(new Callable<Attempt<T>>() {
+          public Attempt<T> call() throws Exception { return attemptOnce(); }
+        }, second);
+      }
+    }, delayMillis, TimeUnit.MILLISECONDS);
+    try {
+      first.set(attemptOnce());
+    } catch (Throwable e) {
+      first.setException(e);
+    }
+    // the duplicate is sent only if the first request hasn't completed in time
+    return getResult(hedge.cancel(false) ? first : winner);
+  }
+
+  /**
+   * Returns an independent copy of the parsed result, it is written and parsed again like a
+   * response, since {@link com.google.api.client.util.Data#clone} can't copy enums.
+   */
+  @SuppressWarnings("unchecked")
+  private T copy(T result) throws IOException {
+    if (result == null) {
+      return null;
+    }
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    new CodecJsonHttpContent(abstractClient.getJsonFactory(), result).writeTo(out);
+    return (T) abstractClient.getObjectParser().parseAndClose(
+        new ByteArrayInputStream(out.toByteArray()), Charsets.UTF_8, responseClass);
+  }
+
+  /** Waits for the result of the future, rethrows its exception. */
+  private static <V> V getResult(RequestFuture<V> future) throws IOException {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for the response");
+    } catch (ExecutionException e) {
+      throw rethrow(e.getCause());
+    }
+  }
+
+  /** Throws unchecked exceptions, returns checked ones as {@link IOException} to be thrown. */
+  private static IOException rethrow(Throwable cause) {
+    if (cause instanceof IOException) {
+      return (IOException) cause;
+    }
+    if (cause instanceof RuntimeException) {
+      throw (RuntimeException) cause;
+    }
+    if (cause instanceof Error) {
+      throw (Error) cause;
+    }
+    return new IOException(cause);
+  }
+
+  /**
+   * Completes the winner with the first result, with the first failure only if both attempts
+   * failed.
+   */
+  private static final class Hedge<T> implements RequestCallback<T> {
+
+    private final RequestFuture<T> winner;
+
+    private final RequestFuture<T> other;
+
+    private final AtomicReference<Throwable> failure;
+
+    Hedge(RequestFuture<T> winner, RequestFuture<T> other, AtomicReference<Throwable> failure) {
+      this.winner = winner;
+      this.other = other;
+      this.failure = failure;
+    }
+
+    public void onSuccess(T result) {
+      if (winner.set(result)) {
+        other.cancel(false);
+      }
+    }
+
+    public void onFailure(Throwable e) {
+      if (!failure.compareAndSet(null, e)) {
+        winner.setException(failure.get());
+      }
+    }
+  }
+
+  /**
+   * Result of a single attempt with the metadata of its response, which is recorded as the last
+   * response only for the attempt returned to the caller.
+   */
+  private static final class Attempt<T> {
+
+    final T result;
+
+    final HttpHeaders headers;
+
+    final int statusCode;
+
+    final String statusMessage;
+
+    Attempt(T result, HttpResponse response) {
+      this(result, response.getHeaders(), response.getStatusCode(), response.getStatusMessage());
+    }
+
+    Attempt(T result, HttpHeaders headers, int statusCode, String statusMessage) {
+      this.result = result;
+      this.headers = headers;
+      this.statusCode = statusCode;
+      this.statusMessage = statusMessage;
+    }
+  }
+
+  /**
+   * Sends the conditional request, on {@code 304 Not Modified} returns a copy of the cached
+   * response.
+   */
+  @SuppressWarnings("unchecked")
+  private Attempt<T> executeCached(ResponseCache cache) throws IOException {
+    HttpRequest httpRequest = buildHttpRequest(false);
+    String key = abstractClient.responseCacheKey(httpRequest.getUrl());
+    if (key == null) {
+      // signed out since the request was built
+      HttpResponse response = send(httpRequest);
+      return new Attempt<T>(parse(response), response);
+    }
+    ResponseCache.Entry cached = cache.get(key);
+    if (cached != null) {
+      httpRequest.getHeaders().setIfNoneMatch(cached.getETag());
+      httpRequest.getHeaders().setIfModifiedSince(cached.getLastModified());
+      // 304 is not a success status code
+      httpRequest.setThrowExceptionOnExecuteError(false);
+    }
+    HttpResponse response = send(httpRequest);
+    if (cached != null && response.getStatusCode() == HttpStatusCodes.STATUS_CODE_NOT_MODIFIED) {
+      response.ignore();
+      return new Attempt<T>(copy((T) cached.getValue()), response);
+    }
+    if (!response.isSuccessStatusCode()) {
+      IOException e = newExceptionOnError(response);
+      response.disconnect();
+      throw e;
+    }
+    T result = parse(response);
+    // the caller may modify its result
+    cache.put(key, copy(result), response.getHeaders().getETag(),
+              response.getHeaders().getLastModified());
+    return new Attempt<T>(result, response);
   }
 
   /**
@@ -408,6 +781,90 @@ public abstract class Request<T> extends GenericData {
     executeUnparsed().download(outputStream);
   }
 
+  /**
+   * Sends the metadata request to the server on the {@link AbstractClient#getExecutor() client
+   * executor} and returns immediately.
+   *
+   * <p> The request must not be modified until the returned future is completed. Example usage:
+   * </p>
+   *
+   * <pre>
+   * request.executeAsync().addCallback(new RequestCallback&lt;EntriesResponse&gt;() {
+   *   public void onSuccess(EntriesResponse result) { ... }
+   *   public void onFailure(Throwable e) { ... }
+   * });
+   * </pre>
+   *
+   * <p> Subclasses may override by calling the super implementation. </p>
+   *
+   * @return future of the parsed HTTP response
+   */
+  public RequestFuture<T> executeAsync() {
+    return submit(new Callable<T>() {
+      public T call() throws Exception { return execute(); }
+    });
+  }
+
+  /**
+   * Sends the metadata request to the server on the {@link AbstractClient#getExecutor() client
+   * executor} and returns immediately.
+   *
+   * <p> Callers are responsible for disconnecting the HTTP response, see {@link
+   * #executeUnparsed()}. </p>
+   *
+   * @return future of the raw {@link HttpResponse}
+   */
+  public RequestFuture<HttpResponse> executeUnparsedAsync() {
+    return submit(new Callable<HttpResponse>() {
+      public HttpResponse call() throws Exception { return executeUnparsed(); }
+    });
+  }
+
+  /**
+   * Sends the metadata request to the server on the {@link AbstractClient#getExecutor() client
+   * executor} and returns immediately.
+   *
+   * <p> Callers are responsible for closing the input stream, see {@link
+   * #executeAsInputStream()}. </p>
+   *
+   * @return future of the response content input stream
+   */
+  public RequestFuture<InputStream> executeAsInputStreamAsync() {
+    return submit(new Callable<InputStream>() {
+      public InputStream call() throws Exception { return executeAsInputStream(); }
+    });
+  }
+
+  /** Runs the task on the client executor, the task is skipped if the future is cancelled. */
+  private <V> RequestFuture<V> submit(Callable<V> task) {
+    return submit(task, new RequestFuture<V>());
+  }
+
+  /** Runs the task on the client executor completing the given future with its result. */
+  private <V> RequestFuture<V> submit(final Callable<V> task, final RequestFuture<V> future) {
+    try {
+      abstractClient.getExecutor().execute(new Runnable() {
+
+        public void run() {
+          if (future.isDone()) {
+            return;
+          }
+          try {
+            future.set(task.call());
+          } catch (Throwable e) {
+            future.setException(e);
+          }
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      future.setException(e);
+    }
+    return future;
+  }
+
+  /** Min number of recorded requests of the endpoint for its latency to be trusted. */
+  private static final int MIN_HEDGE_SAMPLES = 20;
+
   // @SuppressWarnings was added here because this is generic class.
   // see: http://stackoverflow.com/questions/4169806/java-casting-object-to-a-generic-type and
   // http://www.angelikalanger.com/GenericsFAQ/FAQSections/TechnicalDetails.html#Type%20Erasure
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2014 Bademus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *    Contributors:
+ *                 Bademus
+ */
+
+package org.github.bademux.feedly.api.service;
+
+/**
+ * Callback for an asynchronously executed {@link Request}, see {@link RequestFuture#addCallback}.
+ *
+ * <p> Callbacks are invoked on the thread that completes the future, so implementations should
+ * not block. </p>
+ *
+ * @param <T> type of the result
+ */
+public interface RequestCallback<T> {
+
+  /** Called if the request completed successfully. */
+  void onSuccess(T result);
+
+  /**
+   * Called if the request failed or was cancelled.
+   *
+   * @param e {@link java.io.IOException} for transport or HTTP errors, {@link
+   *          java.util.concurrent.CancellationException} if the future was cancelled
+   */
+  void onFailure(Throwable e);
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2014 Bademus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *    Contributors:
+ *                 Bademus
+ */
+
+package org.github.bademux.feedly.api.service;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** Factory methods for executors used by {@link Request#executeAsync()}. */
+public final class RequestExecutors {
+
+  /**
+   * Returns a new cached thread pool with daemon threads. It is the default executor of {@link
+   * AbstractClient}.
+   */
+  public static ExecutorService newDefaultExecutor() {
+    return Executors.newCachedThreadPool(newDaemonThreadFactory("feedly-request-"));
+  }
+
+  /**
+   * Returns an executor that starts a new virtual thread for each request, so thousands of
+   * requests can wait on the network without holding a platform thread each.
+   *
+   * <p> Virtual threads are looked up reflectively as the library targets older runtimes. </p>
+   *
+   * @throws UnsupportedOperationException if the runtime has no virtual threads (Java 21+)
+   */
+  public static ExecutorService newVirtualThreadPerTaskExecutor() {
+    try {
+      return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor")
+          .invoke(null);
+    } catch (NoSuchMethodException e) {
+      throw new UnsupportedOperationException("Virtual threads require Java 21 or newer", e);
+    } catch (Exception e) {
+      throw new UnsupportedOperationException("Can't create virtual thread executor", e);
+    }
+  }
+
+  /**
+   * Returns the timer shared by batching helpers. Scheduled tasks must be short, they should only
+   * hand work over to a client executor.
+   */
+  static ScheduledExecutorService timer() {
+    return Timer.INSTANCE;
+  }
+
+  /** Returns thread factory that creates daemon threads named with the given prefix. */
+  static ThreadFactory newDaemonThreadFactory(final String namePrefix) {
+    return new ThreadFactory() {
+
+      private final AtomicInteger counter = new AtomicInteger();
+
+      public Thread newThread(Runnable r) {
+        Thread thread = new Thread(r, namePrefix + counter.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      }
+    };
+  }
+
+  /** Lazily created timer. */
+  private static final class Timer {
+
+    static final ScheduledExecutorService INSTANCE =
+        new ScheduledThreadPoolExecutor(1, newDaemonThreadFactory("feedly-timer-"));
+  }
+
+  private RequestExecutors() {}
+}
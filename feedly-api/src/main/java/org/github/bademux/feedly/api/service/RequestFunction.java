@@ -0,0 +1,40 @@
+/*
+ * Copyright 2014 Bademus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *    Contributors:
+ *                 Bademus
+ */
+
+package org.github.bademux.feedly.api.service;
+
+/**
+ * Function chained to an asynchronously executed {@link Request}, see {@link
+ * RequestFuture#transform} and {@link RequestFuture#compose}.
+ *
+ * <p> Functions are invoked on the thread that completes the future, so implementations should
+ * not block. </p>
+ *
+ * @param <F> type of the result it is applied to
+ * @param <T> type of the returned value
+ */
+public interface RequestFunction<F, T> {
+
+  /**
+   * Called with the result of the completed request.
+   *
+   * @throws Exception to fail the chained future
+   */
+  T apply(F input) throws Exception;
+}
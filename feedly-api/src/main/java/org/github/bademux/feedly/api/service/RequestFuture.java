@@ -0,0 +1,286 @@
+/*
+ * Copyright 2014 Bademus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *    Contributors:
+ *                 Bademus
+ */
+
+package org.github.bademux.feedly.api.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static com.google.api.client.util.Preconditions.checkNotNull;
+
+/**
+ * Result of an asynchronously executed {@link Request}.
+ *
+ * <p> Unlike a plain {@link Future} it can be observed with {@link RequestCallback}s, so
+ * dependent work can be chained without parking a thread on {@link #get()}. A callback that
+ * throws is logged, it neither stops notification of other callbacks nor reaches the thread that
+ * completed the future. {@link #transform} and {@link #compose} chain a {@link RequestFunction}
+ * and return the future of its result: </p>
+ *
+ * <pre>
+ * RequestFuture&lt;EntriesResponse&gt; secondPage = service.streams().contents(stream)
+ *     .executeAsync()
+ *     .compose(new RequestFunction&lt;EntriesResponse, RequestFuture&lt;EntriesResponse&gt;&gt;() {
+ *       public RequestFuture&lt;EntriesResponse&gt; apply(EntriesResponse page) {
+ *         return service.streams().contents(stream).setContinuation(page.getContinuation())
+ *             .executeAsync();
+ *       }
+ *     });
+ * </pre>
+ *
+ * <p> Implementation is thread-safe. </p>
+ *
+ * @param <T> type of the result
+ */
+public class RequestFuture<T> implements Future<T> {
+
+  private static final int PENDING = 0;
+  private static final int SUCCEEDED = 1;
+  private static final int FAILED = 2;
+  private static final int CANCELLED = 3;
+
+  static final Logger LOGGER = Logger.getLogger(RequestFuture.class.getName());
+
+  /** Released once the future is completed. */
+  private final CountDownLatch latch = new CountDownLatch(1);
+
+  /** Callbacks waiting for completion or {@code null} once the future is completed. */
+  private List<RequestCallback<? super T>> callbacks = new ArrayList<RequestCallback<? super T>>();
+
+  private volatile int state = PENDING;
+
+  private T result;
+
+  private Throwable exception;
+
+  /**
+   * Completes the future with the given result.
+   *
+   * @return {@code false} if the future was already completed
+   */
+  public boolean set(T result) {
+    List<RequestCallback<? super T>> toNotify;
+    synchronized (this) {
+      if (state != PENDING) {
+        return false;
+      }
+      this.result = result;
+      toNotify = complete(SUCCEEDED);
+    }
+    for (RequestCallback<? super T> callback : toNotify) {
+      notifyCallback(callback);
+    }
+    return true;
+  }
+
+  /**
+   * Completes the future with the given exception.
+   *
+   * @return {@code false} if the future was already completed
+   */
+  public boolean setException(Throwable exception) {
+    checkNotNull(exception);
+    List<RequestCallback<? super T>> toNotify;
+    synchronized (this) {
+      if (state != PENDING) {
+        return false;
+      }
+      this.exception = exception;
+      toNotify = complete(FAILED);
+    }
+    for (RequestCallback<? super T> callback : toNotify) {
+      notifyCallback(callback);
+    }
+    return true;
+  }
+
+  /**
+   * Cancels the future. A request that is already on the wire is not interrupted, its result is
+   * discarded.
+   */
+  @Override
+  public boolean cancel(boolean mayInterruptIfRunning) {
+    List<RequestCallback<? super T>> toNotify;
+    synchronized (this) {
+      if (state != PENDING) {
+        return false;
+      }
+      toNotify = complete(CANCELLED);
+    }
+    for (RequestCallback<? super T> callback : toNotify) {
+      notifyCallback(callback);
+    }
+    return true;
+  }
+
+  /**
+   * Registers the callback to be notified on completion. If the future is already completed the
+   * callback is invoked immediately on the calling thread.
+   *
+   * @return this future
+   */
+  public RequestFuture<T> addCallback(RequestCallback<? super T> callback) {
+    checkNotNull(callback);
+    synchronized (this) {
+      if (state == PENDING) {
+        callbacks.add(callback);
+        return this;
+      }
+    }
+    notifyCallback(callback);
+    return this;
+  }
+
+  /**
+   * Returns the future of the function applied to the result of this future. A failure of this
+   * future or of the function fails the returned future, cancelling the returned future cancels
+   * this one.
+   */
+  public <V> RequestFuture<V> transform(final RequestFunction<? super T, ? extends V> function) {
+    checkNotNull(function);
+    final RequestFuture<V> transformed = new RequestFuture<V>();
+    addCallback(new RequestCallback<T>() {
+      public void onSuccess(T result) {
+        try {
+          transformed.set(function.apply(result));
+        } catch (Throwable e) {
+          transformed.setException(e);
+        }
+      }
+
+      public void onFailure(Throwable e) { fail(transformed, e); }
+    });
+    cancelOnCancellationOf(transformed);
+    return transformed;
+  }
+
+  /**
+   * Returns the future of the future returned by the function applied to the result of this
+   * future, e.g. to send a request that depends on the result of this one. A failure of this
+   * future, the function or its future fails the returned future, cancelling the returned future
+   * cancels the future it currently waits for.
+   */
+  public <V> RequestFuture<V> compose(
+      final RequestFunction<? super T, ? extends RequestFuture<? extends V>> function) {
+    checkNotNull(function);
+    final RequestFuture<V> composed = new RequestFuture<V>();
+    addCallback(new RequestCallback<T>() {
+      public void onSuccess(T result) {
+        RequestFuture<? extends V> next;
+        try {
+          next = checkNotNull(function.apply(result), "function returned null future");
+        } catch (Throwable e) {
+          composed.setException(e);
+          return;
+        }
+        next.addCallback(new RequestCallback<V>() {
+          public void onSuccess(V result) { composed.set(result); }
+
+          public void onFailure(Throwable e) { fail(composed, e); }
+        });
+        next.cancelOnCancellationOf(composed);
+      }
+
+      public void onFailure(Throwable e) { fail(composed, e); }
+    });
+    cancelOnCancellationOf(composed);
+    return composed;
+  }
+
+  /** Cancels this future once the chained future is cancelled. */
+  private void cancelOnCancellationOf(final RequestFuture<?> chained) {
+    chained.addCallback(new RequestCallback<Object>() {
+      public void onSuccess(Object result) {}
+
+      public void onFailure(Throwable e) {
+        if (chained.isCancelled()) {
+          cancel(false);
+        }
+      }
+    });
+  }
+
+  /** Fails the chained future with the failure of the future it waits for. */
+  private static void fail(RequestFuture<?> chained, Throwable e) {
+    if (e instanceof CancellationException) {
+      chained.cancel(false);
+    } else {
+      chained.setException(e);
+    }
+  }
+
+  @Override
+  public boolean isCancelled() { return state == CANCELLED; }
+
+  @Override
+  public boolean isDone() { return state != PENDING; }
+
+  @Override
+  public T get() throws InterruptedException, ExecutionException {
+    latch.await();
+    return getDone();
+  }
+
+  @Override
+  public T get(long timeout, TimeUnit unit)
+      throws InterruptedException, ExecutionException, TimeoutException {
+    if (!latch.await(timeout, unit)) {
+      throw new TimeoutException();
+    }
+    return getDone();
+  }
+
+  private T getDone() throws ExecutionException {
+    switch (state) {
+      case SUCCEEDED: return result;
+      case FAILED: throw new ExecutionException(exception);
+      default: throw new CancellationException();
+    }
+  }
+
+  /** Notifies the callback of the completed future, its failure is logged. */
+  private void notifyCallback(RequestCallback<? super T> callback) {
+    try {
+      switch (state) {
+        case SUCCEEDED: callback.onSuccess(result); break;
+        case FAILED: callback.onFailure(exception); break;
+        default: callback.onFailure(new CancellationException());
+      }
+    } catch (RuntimeException e) {
+      LOGGER.log(Level.WARNING, "Request callback failed", e);
+    }
+  }
+
+  /** Must be called holding the monitor. */
+  private List<RequestCallback<? super T>> complete(int newState) {
+    List<RequestCallback<? super T>> toNotify = callbacks;
+    callbacks = null;
+    state = newState;
+    latch.countDown();
+    return toNotify;
+  }
+}
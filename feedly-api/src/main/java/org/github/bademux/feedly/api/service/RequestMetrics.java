@@ -0,0 +1,519 @@
+/*
+ * Copyright 2014 Bademus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *    Contributors:
+ *                 Bademus
+ */
+
+package org.github.bademux.feedly.api.service;
+
+import com.google.api.client.http.HttpExecuteInterceptor;
+import com.google.api.client.http.HttpIOExceptionHandler;
+import com.google.api.client.http.HttpRequest;
+import com.google.api.client.http.HttpResponse;
+import com.google.api.client.http.HttpUnsuccessfulResponseHandler;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Latency, size and status metrics of requests, grouped by the {@link Request#getUriTemplate() URI
+ * template} of the endpoint, for example {@code streams/{streamId}/contents}.
+ *
+ * <p> Each request records: </p>
+ * <ul>
+ *   <li> first byte latency of each attempt: from sending the request until the response headers
+ *   are received or the attempt fails, it includes connecting and waiting for the server, but
+ *   neither {@link RateLimiter} waits, token refresh nor backoff between retries; </li>
+ *   <li> parse latency: reading and parsing the response content into the response class; </li>
+ *   <li> request and response bytes, response bytes on the wire are known only from {@code
+ *   Content-Length}; </li>
+ *   <li> compression ratio of responses with {@code Content-Length} and {@code
+ *   Content-Encoding}; </li>
+ *   <li> retries and counts of status codes, {@code 0} for requests that got no response. </li>
+ * </ul>
+ *
+ * <p> Set it with {@link AbstractClient.Builder#setMetrics(RequestMetrics)} and read it with
+ * {@link #snapshot()} or {@link #export(Appendable)}. </p>
+ *
+ * <p> Implementation is thread-safe and lock-free. </p>
+ */
+public class RequestMetrics {
+
+  /** Upper bounds of latency buckets in milliseconds, the last bucket is unbounded. */
+  static final long[] LATENCY_BOUNDS_MILLIS =
+      {1, 2, 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000, 30000};
+
+  private final ConcurrentMap<String, Endpoint> endpoints =
+      new ConcurrentHashMap<String, Endpoint>();
+
+  /** Returns metrics of all endpoints by URI template, sorted by URI template. */
+  public SortedMap<String, EndpointSnapshot> snapshot() {
+    SortedMap<String, EndpointSnapshot> snapshot = new TreeMap<String, EndpointSnapshot>();
+    for (Map.Entry<String, Endpoint> entry : endpoints.entrySet()) {
+      snapshot.put(entry.getKey(), entry.getValue().snapshot());
+    }
+    return snapshot;
+  }
+
+  /** Returns metrics of the endpoint or {@code null} if it wasn't requested yet. */
+  public EndpointSnapshot snapshot(String uriTemplate) {
+    Endpoint endpoint = endpoints.get(uriTemplate);
+    return endpoint == null ? null : endpoint.snapshot();
+  }
+
+  /** Drops all recorded metrics. */
+  public void reset() { endpoints.clear(); }
+
+  /**
+   * Writes metrics in the Prometheus text exposition format, each metric is labeled with the
+   * endpoint URI template.
+   */
+  public void export(Appendable out) throws IOException {
+    for (Map.Entry<String, EndpointSnapshot> entry : snapshot().entrySet()) {
+      String endpoint = "endpoint=\"" + entry.getKey().replace("\"", "\\\"") + '"';
+      EndpointSnapshot metrics = entry.getValue();
+      exportHistogram(out, "feedly_request_first_byte_seconds", endpoint,
+                      metrics.getFirstByteLatency());
+      exportHistogram(out, "feedly_request_parse_seconds", endpoint, metrics.getParseLatency());
+      for (Map.Entry<Integer, Long> status : metrics.getStatusCounts().entrySet()) {
+        line(out, "feedly_request_total", endpoint + ",status=\"" + status.getKey() + '"',
+             status.getValue());
+      }
+      line(out, "feedly_request_retries_total", endpoint, metrics.getRetryCount());
+      line(out, "feedly_request_bytes_total", endpoint, metrics.getRequestBytes());
+      line(out, "feedly_response_wire_bytes_total", endpoint, metrics.getResponseBytes());
+      line(out, "feedly_response_decoded_bytes_total", endpoint, metrics.getDecodedBytes());
+    }
+  }
+
+  /** Returns metrics in the format of {@link #export(Appendable)}. */
+  public String export() {
+    StringBuilder out = new StringBuilder();
+    try {
+      export(out);
+    } catch (IOException e) {
+      throw new AssertionError(e);
+    }
+    return out.toString();
+  }
+
+  private static void exportHistogram(Appendable out, String name, String labels,
+                                      HistogramSnapshot histogram) throws IOException {
+    long cumulative = 0;
+    for (int i = 0; i < LATENCY_BOUNDS_MILLIS.length; i++) {
+      cumulative += histogram.getBucketCounts()[i];
+      line(out, name + "_bucket", labels + ",le=\"" + LATENCY_BOUNDS_MILLIS[i] / 1000d + '"',
+           cumulative);
+    }
+    line(out, name + "_bucket", labels + ",le=\"+Inf\"", histogram.getCount());
+    line(out, name + "_sum", labels, histogram.getSumMillis() / 1000d);
+    line(out, name + "_count", labels, histogram.getCount());
+  }
+
+  private static void line(Appendable out, String name, String labels, Object value)
+      throws IOException {
+    out.append(name).append('{').append(labels).append("} ").append(String.valueOf(value))
+        .append('\n');
+  }
+
+  /**
+   * Times each attempt of the request, including retries done by the HTTP library, e.g. after a
+   * token refresh. Call it once the request is built, so it wraps the rate limiter and retry
+   * handlers.
+   */
+  AttemptTimer timeAttempts(HttpRequest httpRequest, String uriTemplate) {
+    final AttemptTimer timer = new AttemptTimer(endpoint(uriTemplate));
+    final HttpExecuteInterceptor interceptor = httpRequest.getInterceptor();
+    httpRequest.setInterceptor(new HttpExecuteInterceptor() {
+      public void intercept(HttpRequest request) throws IOException {
+        // rate limiter waits and token refresh happen before the request is sent
+        if (interceptor != null) {
+          interceptor.intercept(request);
+        }
+        timer.started();
+      }
+    });
+    final HttpUnsuccessfulResponseHandler responseHandler =
+        httpRequest.getUnsuccessfulResponseHandler();
+    httpRequest.setUnsuccessfulResponseHandler(new HttpUnsuccessfulResponseHandler() {
+      public boolean handleResponse(HttpRequest request, HttpResponse response,
+                                    boolean supportsRetry) throws IOException {
+        // backoff happens in the handler
+        timer.finished();
+        return responseHandler != null
+               && responseHandler.handleResponse(request, response, supportsRetry);
+      }
+    });
+    final HttpIOExceptionHandler ioExceptionHandler = httpRequest.getIOExceptionHandler();
+    httpRequest.setIOExceptionHandler(new HttpIOExceptionHandler() {
+      public boolean handleIOException(HttpRequest request, boolean supportsRetry)
+          throws IOException {
+        timer.finished();
+        return ioExceptionHandler != null
+               && ioExceptionHandler.handleIOException(request, supportsRetry);
+      }
+    });
+    return timer;
+  }
+
+  /**
+   * Records sent request, latency of its attempts is recorded by {@link AttemptTimer}.
+   *
+   * @param statusCode    status code of the response or {@code 0} if there is none
+   * @param requestBytes  length of the request content, negative if unknown
+   * @param responseBytes length of the response content on the wire, negative if unknown
+   */
+  void recordExchange(String uriTemplate, int attempts, int statusCode, long requestBytes,
+                      long responseBytes) {
+    Endpoint endpoint = endpoint(uriTemplate);
+    endpoint.requests.incrementAndGet();
+    endpoint.retries.addAndGet(Math.max(attempts - 1, 0));
+    endpoint.statusCount(statusCode).incrementAndGet();
+    if (requestBytes > 0) {
+      endpoint.requestBytes.addAndGet(requestBytes);
+    }
+    if (responseBytes > 0) {
+      endpoint.responseBytes.addAndGet(responseBytes);
+    }
+  }
+
+  /**
+   * Records parsed response.
+   *
+   * @param decodedBytes    length of the parsed content
+   * @param compressedBytes length of the compressed content on the wire, negative if the content
+   *                        wasn't compressed or the length is unknown
+   */
+  void recordParse(String uriTemplate, long nanos, long decodedBytes, long compressedBytes) {
+    Endpoint endpoint = endpoint(uriTemplate);
+    endpoint.parse.record(nanos);
+    endpoint.decodedBytes.addAndGet(decodedBytes);
+    if (compressedBytes > 0) {
+      endpoint.compressedWireBytes.addAndGet(compressedBytes);
+      endpoint.compressedDecodedBytes.addAndGet(decodedBytes);
+    }
+  }
+
+  private Endpoint endpoint(String uriTemplate) {
+    Endpoint endpoint = endpoints.get(uriTemplate);
+    if (endpoint == null) {
+      Endpoint created = new Endpoint();
+      endpoint = endpoints.putIfAbsent(uriTemplate, created);
+      if (endpoint == null) {
+        endpoint = created;
+      }
+    }
+    return endpoint;
+  }
+
+  /** Times attempts of one request, used by the thread executing the request only. */
+  static final class AttemptTimer {
+
+    private final Endpoint endpoint;
+
+    private int attempts;
+
+    /** Start of the current attempt or {@code -1} if it is recorded. */
+    private long start = -1;
+
+    AttemptTimer(Endpoint endpoint) { this.endpoint = endpoint; }
+
+    int getAttempts() { return attempts; }
+
+    void started() {
+      attempts++;
+      start = System.nanoTime();
+    }
+
+    /** Records the current attempt, unless it is recorded already. */
+    void finished() {
+      if (start >= 0) {
+        endpoint.firstByte.record(System.nanoTime() - start);
+        start = -1;
+      }
+    }
+  }
+
+  /** Metrics of one endpoint. */
+  private static class Endpoint {
+
+    final AtomicLong requests = new AtomicLong();
+
+    final Histogram firstByte = new Histogram();
+
+    final Histogram parse = new Histogram();
+
+    final AtomicLong retries = new AtomicLong();
+
+    final AtomicLong requestBytes = new AtomicLong();
+
+    final AtomicLong responseBytes = new AtomicLong();
+
+    final AtomicLong decodedBytes = new AtomicLong();
+
+    final AtomicLong compressedWireBytes = new AtomicLong();
+
+    final AtomicLong compressedDecodedBytes = new AtomicLong();
+
+    final ConcurrentMap<Integer, AtomicLong> statusCounts =
+        new ConcurrentHashMap<Integer, AtomicLong>();
+
+    AtomicLong statusCount(int statusCode) {
+      AtomicLong count = statusCounts.get(statusCode);
+      if (count == null) {
+        AtomicLong created = new AtomicLong();
+        count = statusCounts.putIfAbsent(statusCode, created);
+        if (count == null) {
+          count = created;
+        }
+      }
+      return count;
+    }
+
+    EndpointSnapshot snapshot() {
+      SortedMap<Integer, Long> statuses = new TreeMap<Integer, Long>();
+      for (Map.Entry<Integer, AtomicLong> entry : statusCounts.entrySet()) {
+        statuses.put(entry.getKey(), entry.getValue().get());
+      }
+      long compressed = compressedWireBytes.get();
+      return new EndpointSnapshot(requests.get(), firstByte.snapshot(), parse.snapshot(),
+                                  Collections.unmodifiableSortedMap(statuses), retries.get(),
+                                  requestBytes.get(), responseBytes.get(), decodedBytes.get(),
+                                  compressed == 0 ? Double.NaN
+                                                  : (double) compressedDecodedBytes.get()
+                                                    / compressed);
+    }
+  }
+
+  /** Latency histogram with fixed buckets. */
+  private static class Histogram {
+
+    final AtomicLongArray buckets = new AtomicLongArray(LATENCY_BOUNDS_MILLIS.length + 1);
+
+    final AtomicLong count = new AtomicLong();
+
+    final AtomicLong sumNanos = new AtomicLong();
+
+    final AtomicLong maxNanos = new AtomicLong();
+
+    void record(long nanos) {
+      long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+      int bucket = 0;
+      while (bucket < LATENCY_BOUNDS_MILLIS.length && millis >= LATENCY_BOUNDS_MILLIS[bucket]) {
+        bucket++;
+      }
+      buckets.incrementAndGet(bucket);
+      count.incrementAndGet();
+      sumNanos.addAndGet(nanos);
+      long max;
+      do {
+        max = maxNanos.get();
+      } while (nanos > max && !maxNanos.compareAndSet(max, nanos));
+    }
+
+    HistogramSnapshot snapshot() {
+      long[] counts = new long[buckets.length()];
+      for (int i = 0; i < counts.length; i++) {
+        counts[i] = buckets.get(i);
+      }
+      return new HistogramSnapshot(counts, count.get(), sumNanos.get() / 1e6,
+                                   maxNanos.get() / 1e6);
+    }
+  }
+
+  /** Immutable metrics of one endpoint. */
+  public static class EndpointSnapshot {
+
+    private final long requestCount;
+
+    private final HistogramSnapshot firstByteLatency;
+
+    private final HistogramSnapshot parseLatency;
+
+    private final SortedMap<Integer, Long> statusCounts;
+
+    private final long retryCount;
+
+    private final long requestBytes;
+
+    private final long responseBytes;
+
+    private final long decodedBytes;
+
+    private final double compressionRatio;
+
+    EndpointSnapshot(long requestCount, HistogramSnapshot firstByteLatency,
+                     HistogramSnapshot parseLatency, SortedMap<Integer, Long> statusCounts,
+                     long retryCount, long requestBytes, long responseBytes, long decodedBytes,
+                     double compressionRatio) {
+      this.requestCount = requestCount;
+      this.firstByteLatency = firstByteLatency;
+      this.parseLatency = parseLatency;
+      this.statusCounts = statusCounts;
+      this.retryCount = retryCount;
+      this.requestBytes = requestBytes;
+      this.responseBytes = responseBytes;
+      this.decodedBytes = decodedBytes;
+      this.compressionRatio = compressionRatio;
+    }
+
+    /** Returns the number of requests, including failed ones. */
+    public long getRequestCount() { return requestCount; }
+
+    /**
+     * Returns time from sending each attempt until the response headers are received, its count
+     * is the number of attempts.
+     */
+    public HistogramSnapshot getFirstByteLatency() { return firstByteLatency; }
+
+    /** Returns time spent reading and parsing the response content. */
+    public HistogramSnapshot getParseLatency() { return parseLatency; }
+
+    /** Returns number of requests by status code, {@code 0} counts requests without response. */
+    public SortedMap<Integer, Long> getStatusCounts() { return statusCounts; }
+
+    /** Returns the number of retries done by the HTTP library. */
+    public long getRetryCount() { return retryCount; }
+
+    /** Returns the total length of request contents, before compression. */
+    public long getRequestBytes() { return requestBytes; }
+
+    /** Returns the total length of response contents on the wire, as far as it is known. */
+    public long getResponseBytes() { return responseBytes; }
+
+    /** Returns the total length of parsed response contents, after decompression. */
+    public long getDecodedBytes() { return decodedBytes; }
+
+    /**
+     * Returns the ratio of decoded to transferred bytes of compressed responses or {@link
+     * Double#NaN} if no compressed response with known length was parsed.
+     */
+    public double getCompressionRatio() { return compressionRatio; }
+
+    @Override
+    public String toString() {
+      return "requests=" + getRequestCount() + ", firstByte=" + firstByteLatency
+             + ", parse=" + parseLatency + ", status=" + statusCounts + ", retries=" + retryCount
+             + ", requestBytes=" + requestBytes + ", responseBytes=" + responseBytes
+             + ", decodedBytes=" + decodedBytes + ", compressionRatio=" + compressionRatio;
+    }
+  }
+
+  /** Immutable latency histogram. */
+  public static class HistogramSnapshot {
+
+    private final long[] bucketCounts;
+
+    private final long count;
+
+    private final double sumMillis;
+
+    private final double maxMillis;
+
+    HistogramSnapshot(long[] bucketCounts, long count, double sumMillis, double maxMillis) {
+      this.bucketCounts = bucketCounts;
+      this.count = count;
+      this.sumMillis = sumMillis;
+      this.maxMillis = maxMillis;
+    }
+
+    /** Returns upper bounds of buckets in milliseconds, the last bucket is unbounded. */
+    public long[] getBucketBounds() { return LATENCY_BOUNDS_MILLIS.clone(); }
+
+    /** Returns counts of buckets, it has one more element than {@link #getBucketBounds()}. */
+    public long[] getBucketCounts() { return bucketCounts.clone(); }
+
+    public long getCount() { return count; }
+
+    public double getSumMillis() { return sumMillis; }
+
+    public double getMaxMillis() { return maxMillis; }
+
+    public double getMeanMillis() { return count == 0 ? Double.NaN : sumMillis / count; }
+
+    /**
+     * Returns the upper bound of the bucket that holds the given quantile, or the max for the
+     * unbounded bucket, {@link Double#NaN} if nothing was recorded.
+     *
+     * @param quantile quantile between 0 and 1, for example 0.95
+     */
+    public double getQuantileMillis(double quantile) {
+      if (count == 0) {
+        return Double.NaN;
+      }
+      long rank = (long) Math.ceil(quantile * count);
+      long cumulative = 0;
+      for (int i = 0; i < LATENCY_BOUNDS_MILLIS.length; i++) {
+        cumulative += bucketCounts[i];
+        if (cumulative >= rank) {
+          return Math.min(LATENCY_BOUNDS_MILLIS[i], maxMillis);
+        }
+      }
+      return maxMillis;
+    }
+
+    @Override
+    public String toString() {
+      return "{count=" + count + ", mean=" + getMeanMillis() + "ms, p95="
+             + getQuantileMillis(0.95) + "ms, max=" + maxMillis + "ms}";
+    }
+  }
+
+  /** Counts bytes read from the stream. */
+  static final class CountingInputStream extends FilterInputStream {
+
+    private long count;
+
+    CountingInputStream(InputStream in) { super(in); }
+
+    long getCount() { return count; }
+
+    @Override
+    public int read() throws IOException {
+      int b = super.read();
+      if (b != -1) {
+        count++;
+      }
+      return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      int n = super.read(b, off, len);
+      if (n > 0) {
+        count += n;
+      }
+      return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+      long skipped = super.skip(n);
+      count += skipped;
+      return skipped;
+    }
+  }
+}
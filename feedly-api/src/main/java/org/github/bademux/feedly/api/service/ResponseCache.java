@@ -0,0 +1,110 @@
+/*
+ * Copyright 2014 Bademus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *    Contributors:
+ *                 Bademus
+ */
+
+package org.github.bademux.feedly.api.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static com.google.api.client.util.Preconditions.checkArgument;
+
+/**
+ * Client side cache of parsed responses validated with {@code ETag}/{@code Last-Modified}.
+ *
+ * <p> Cacheable requests (see {@link Request#setCacheable(boolean)}) are sent with {@code
+ * If-None-Match}/{@code If-Modified-Since}; on {@code 304 Not Modified} a copy of the cached
+ * object is returned without reading a body. The cache keeps its own copy of the parsed response,
+ * so callers may modify the objects they get. </p>
+ *
+ * <p> Least recently used responses are evicted once {@code maxEntries} is reached. The cache can
+ * be shared by several clients, entries are keyed by the user id of the client credential. </p>
+ *
+ * <p> Implementation is thread-safe. </p>
+ */
+public class ResponseCache {
+
+  /** Default max number of cached responses. */
+  public static final int DEFAULT_MAX_ENTRIES = 1024;
+
+  private final Map<String, Entry> entries;
+
+  public ResponseCache() { this(DEFAULT_MAX_ENTRIES); }
+
+  /** @param maxEntries max number of cached responses */
+  public ResponseCache(final int maxEntries) {
+    checkArgument(maxEntries > 0, "max entries must be positive");
+    entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, ResponseCache.Entry> eldest) {
+        return size() > maxEntries;
+      }
+    };
+  }
+
+  /** Returns the cached response or {@code null} for none. */
+  public synchronized Entry get(String key) { return entries.get(key); }
+
+  /**
+   * Stores the response if it carries a validator.
+   *
+   * @param eTag         value of {@code ETag} header or {@code null} for none
+   * @param lastModified value of {@code Last-Modified} header or {@code null} for none
+   */
+  public void put(String key, Object value, String eTag, String lastModified) {
+    if (eTag == null && lastModified == null) {
+      remove(key);
+      return;
+    }
+    Entry entry = new Entry(value, eTag, lastModified);
+    synchronized (this) {
+      entries.put(key, entry);
+    }
+  }
+
+  public synchronized void remove(String key) { entries.remove(key); }
+
+  public synchronized void clear() { entries.clear(); }
+
+  public synchronized int size() { return entries.size(); }
+
+  /** Cached response with its validators. */
+  public static final class Entry {
+
+    private final Object value;
+
+    private final String eTag;
+
+    private final String lastModified;
+
+    Entry(Object value, String eTag, String lastModified) {
+      this.value = value;
+      this.eTag = eTag;
+      this.lastModified = lastModified;
+    }
+
+    /** Returns the parsed response. */
+    public Object getValue() { return value; }
+
+    /** Returns the {@code ETag} of the response or {@code null} for none. */
+    public String getETag() { return eTag; }
+
+    /** Returns the {@code Last-Modified} of the response or {@code null} for none. */
+    public String getLastModified() { return lastModified; }
+  }
+}
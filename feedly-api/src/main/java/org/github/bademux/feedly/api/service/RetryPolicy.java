@@ -0,0 +1,191 @@
+/*
+ * Copyright 2014 Bademus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *    Contributors:
+ *                 Bademus
+ */
+
+package org.github.bademux.feedly.api.service;
+
+import com.google.api.client.http.HttpBackOffIOExceptionHandler;
+import com.google.api.client.http.HttpBackOffUnsuccessfulResponseHandler;
+import com.google.api.client.http.HttpRequest;
+import com.google.api.client.http.HttpResponse;
+import com.google.api.client.http.HttpUnsuccessfulResponseHandler;
+import com.google.api.client.util.ExponentialBackOff;
+
+import java.io.IOException;
+
+import static com.google.api.client.util.Preconditions.checkArgument;
+
+/**
+ * Retries failed requests with exponential backoff and random jitter.
+ *
+ * <p> Requests are retried on I/O errors, server errors and {@code 429 Too Many Requests}. The
+ * n-th retry waits {@code initialInterval * multiplier^(n-1)}, capped at {@code maxInterval} and
+ * randomized by {@code +-randomizationFactor}, so clients that failed together don't retry
+ * together. Retries stop after {@code maxAttempts} attempts or once {@code maxElapsedTime} has
+ * passed. </p>
+ *
+ * <p> Set it with {@link AbstractClient.Builder#setReadRetryPolicy(RetryPolicy)} for GET requests
+ * and with {@link AbstractClient.Builder#setWriteRetryPolicy(RetryPolicy)} for POST, PUT and
+ * DELETE requests, like marker operations. {@code 401 Unauthorized} and the {@link RateLimiter}
+ * handle their responses before the policy does. </p>
+ *
+ * <p> Implementation is immutable and thread-safe. </p>
+ */
+public class RetryPolicy {
+
+  /** Default max number of attempts, including the first one. */
+  public static final int DEFAULT_MAX_ATTEMPTS = 4;
+
+  private final int maxAttempts;
+
+  private final int initialIntervalMillis;
+
+  private final double multiplier;
+
+  private final double randomizationFactor;
+
+  private final int maxIntervalMillis;
+
+  private final int maxElapsedTimeMillis;
+
+  protected RetryPolicy(Builder builder) {
+    maxAttempts = builder.maxAttempts;
+    initialIntervalMillis = builder.initialIntervalMillis;
+    multiplier = builder.multiplier;
+    randomizationFactor = builder.randomizationFactor;
+    maxIntervalMillis = builder.maxIntervalMillis;
+    maxElapsedTimeMillis = builder.maxElapsedTimeMillis;
+  }
+
+  /** Returns the max number of attempts, including the first one. */
+  public final int getMaxAttempts() { return maxAttempts; }
+
+  /** Returns the interval before the first retry. */
+  public final int getInitialIntervalMillis() { return initialIntervalMillis; }
+
+  /** Returns the factor the interval grows with after every retry. */
+  public final double getMultiplier() { return multiplier; }
+
+  /** Returns the share of the interval it is randomized by. */
+  public final double getRandomizationFactor() { return randomizationFactor; }
+
+  /** Returns the max interval between retries. */
+  public final int getMaxIntervalMillis() { return maxIntervalMillis; }
+
+  /** Returns the time after which retries stop. */
+  public final int getMaxElapsedTimeMillis() { return maxElapsedTimeMillis; }
+
+  /** Returns whether the response is worth retrying: a server error or too many requests. */
+  public boolean isRetryable(HttpResponse response) {
+    int statusCode = response.getStatusCode();
+    return statusCode / 100 == 5 || statusCode == RateLimiter.STATUS_CODE_TOO_MANY_REQUESTS;
+  }
+
+  /** Retries the request with backoff after the handlers already set on it have declined. */
+  void apply(HttpRequest httpRequest) {
+    ExponentialBackOff backOff = new ExponentialBackOff.Builder()
+        .setInitialIntervalMillis(initialIntervalMillis)
+        .setMultiplier(multiplier)
+        .setRandomizationFactor(randomizationFactor)
+        .setMaxIntervalMillis(maxIntervalMillis)
+        .setMaxElapsedTimeMillis(maxElapsedTimeMillis).build();
+    final HttpUnsuccessfulResponseHandler handler = httpRequest.getUnsuccessfulResponseHandler();
+    final HttpUnsuccessfulResponseHandler backOffHandler =
+        new HttpBackOffUnsuccessfulResponseHandler(backOff).setBackOffRequired(
+            new HttpBackOffUnsuccessfulResponseHandler.BackOffRequired() {
+              public boolean isRequired(HttpResponse response) { return isRetryable(response); }
+            });
+    httpRequest.setNumberOfRetries(maxAttempts - 1);
+    httpRequest.setIOExceptionHandler(new HttpBackOffIOExceptionHandler(backOff));
+    httpRequest.setUnsuccessfulResponseHandler(new HttpUnsuccessfulResponseHandler() {
+      public boolean handleResponse(HttpRequest request, HttpResponse response,
+                                    boolean supportsRetry) throws IOException {
+        if (handler != null && handler.handleResponse(request, response, supportsRetry)) {
+          return true;
+        }
+        return backOffHandler.handleResponse(request, response, supportsRetry);
+      }
+    });
+  }
+
+  /**
+   * Builder for {@link RetryPolicy}, defaults to 4 attempts, 500 ms initial interval doubled after
+   * every retry up to 30 seconds, randomized by 50%, for at most 2 minutes.
+   *
+   * <p> Implementation is not thread-safe. </p>
+   */
+  public static class Builder {
+
+    int maxAttempts = DEFAULT_MAX_ATTEMPTS;
+
+    int initialIntervalMillis = ExponentialBackOff.DEFAULT_INITIAL_INTERVAL_MILLIS;
+
+    double multiplier = 2;
+
+    double randomizationFactor = ExponentialBackOff.DEFAULT_RANDOMIZATION_FACTOR;
+
+    int maxIntervalMillis = 30 * 1000;
+
+    int maxElapsedTimeMillis = 2 * 60 * 1000;
+
+    public RetryPolicy build() { return new RetryPolicy(this); }
+
+    /** Sets the max number of attempts, including the first one, {@code 1} disables retries. */
+    public Builder setMaxAttempts(int maxAttempts) {
+      checkArgument(maxAttempts > 0, "max attempts must be positive");
+      this.maxAttempts = maxAttempts;
+      return this;
+    }
+
+    /** Sets the interval before the first retry. */
+    public Builder setInitialIntervalMillis(int initialIntervalMillis) {
+      checkArgument(initialIntervalMillis > 0, "initial interval must be positive");
+      this.initialIntervalMillis = initialIntervalMillis;
+      return this;
+    }
+
+    /** Sets the factor the interval grows with after every retry, at least 1. */
+    public Builder setMultiplier(double multiplier) {
+      checkArgument(multiplier >= 1, "multiplier must be at least 1");
+      this.multiplier = multiplier;
+      return this;
+    }
+
+    /** Sets the share of the interval it is randomized by, in {@code [0, 1)}. */
+    public Builder setRandomizationFactor(double randomizationFactor) {
+      checkArgument(0 <= randomizationFactor && randomizationFactor < 1,
+                    "randomization factor must be in [0, 1)");
+      this.randomizationFactor = randomizationFactor;
+      return this;
+    }
+
+    /** Sets the max interval between retries. */
+    public Builder setMaxIntervalMillis(int maxIntervalMillis) {
+      checkArgument(maxIntervalMillis > 0, "max interval must be positive");
+      this.maxIntervalMillis = maxIntervalMillis;
+      return this;
+    }
+
+    /** Sets the time after which retries stop. */
+    public Builder setMaxElapsedTimeMillis(int maxElapsedTimeMillis) {
+      checkArgument(maxElapsedTimeMillis > 0, "max elapsed time must be positive");
+      this.maxElapsedTimeMillis = maxElapsedTimeMillis;
+      return this;
+    }
+  }
+}
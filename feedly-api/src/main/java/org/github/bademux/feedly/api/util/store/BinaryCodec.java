@@ -0,0 +1,175 @@
+/*
+ * Copyright 2014 Bademus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *    Contributors:
+ *                 Bademus
+ */
+
+package org.github.bademux.feedly.api.util.store;
+
+import com.google.api.client.util.Objects;
+import com.google.api.client.util.StringUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import static com.google.api.client.util.Preconditions.checkArgument;
+import static com.google.api.client.util.Preconditions.checkNotNull;
+
+/**
+ * Compact binary form of values, replacement of Java serialization for small stored values.
+ *
+ * <p> Encoded value starts with the header: {@link #MAGIC}, type id and format version, each one
+ * byte. Java serialization streams start with {@code 0xAC}, so both forms can be told apart. A
+ * codec reads values of its own and all previous versions, newer versions are rejected. Increase
+ * the version whenever {@link #write(Object, DataOutput)} changes. </p>
+ *
+ * <p> Type ids below 16 are reserved for this library. Register codecs at {@link ValueCodecs} to
+ * use them with data stores. </p>
+ *
+ * <p> Implementation is thread-safe if subclasses are. </p>
+ *
+ * @param <V> type of the value
+ */
+public abstract class BinaryCodec<V> {
+
+  /** First byte of encoded values. */
+  public static final int MAGIC = 0xFB;
+
+  /** Size of the header in bytes. */
+  public static final int HEADER_SIZE = 3;
+
+  /**
+   * @param type    type of the value
+   * @param typeId  unique id of the type, 0 to 255
+   * @param version current format version, 1 to 255
+   */
+  protected BinaryCodec(Class<V> type, int typeId, int version) {
+    checkArgument(typeId >= 0 && typeId <= 0xFF, "type id must be 0 to 255");
+    checkArgument(version > 0 && version <= 0xFF, "version must be 1 to 255");
+    this.type = checkNotNull(type);
+    this.typeId = typeId;
+    this.version = version;
+  }
+
+  public final Class<V> getType() { return type; }
+
+  public final int getTypeId() { return typeId; }
+
+  public final int getVersion() { return version; }
+
+  /** Returns the value in the current version of the format. */
+  public final byte[] encode(V value) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeByte(MAGIC);
+    out.writeByte(typeId);
+    out.writeByte(version);
+    write(checkNotNull(value), out);
+    out.flush();
+    return bytes.toByteArray();
+  }
+
+  /**
+   * @throws IOException if bytes aren't an encoded value of this type or of unsupported version
+   */
+  public final V decode(byte[] bytes) throws IOException {
+    if (!isEncoded(bytes)) {
+      throw new IOException("Not a binary encoded value");
+    }
+    if (getTypeId(bytes) != typeId) {
+      throw new IOException("Unexpected type id " + getTypeId(bytes) + ", expected " + typeId);
+    }
+    int encodedVersion = bytes[2] & 0xFF;
+    if (encodedVersion == 0 || encodedVersion > version) {
+      throw new IOException("Unsupported version " + encodedVersion + " of type id " + typeId);
+    }
+    DataInputStream in = new DataInputStream(
+        new ByteArrayInputStream(bytes, HEADER_SIZE, bytes.length - HEADER_SIZE));
+    return read(in, encodedVersion);
+  }
+
+  /** Returns whether bytes start with the header of an encoded value. */
+  public static boolean isEncoded(byte[] bytes) {
+    return bytes != null && bytes.length >= HEADER_SIZE && (bytes[0] & 0xFF) == MAGIC;
+  }
+
+  /** Returns the type id of the encoded value. */
+  public static int getTypeId(byte[] bytes) {
+    return bytes[1] & 0xFF;
+  }
+
+  /** Writes the value without header. */
+  protected abstract void write(V value, DataOutput out) throws IOException;
+
+  /**
+   * Reads the value written by {@link #write(Object, DataOutput)}.
+   *
+   * @param version format version of the value, not above {@link #getVersion()}
+   */
+  protected abstract V read(DataInput in, int version) throws IOException;
+
+  /** Writes UTF-8 string of any length or {@code null}. */
+  protected static void writeString(DataOutput out, String value) throws IOException {
+    if (value == null) {
+      out.writeInt(-1);
+    } else {
+      byte[] bytes = StringUtils.getBytesUtf8(value);
+      out.writeInt(bytes.length);
+      out.write(bytes);
+    }
+  }
+
+  /** Reads string written by {@link #writeString(DataOutput, String)}. */
+  protected static String readString(DataInput in) throws IOException {
+    int length = in.readInt();
+    if (length < 0) {
+      return null;
+    }
+    byte[] bytes = new byte[length];
+    in.readFully(bytes);
+    return StringUtils.newStringUtf8(bytes);
+  }
+
+  /** Writes long or {@code null}. */
+  protected static void writeLong(DataOutput out, Long value) throws IOException {
+    out.writeBoolean(value != null);
+    if (value != null) {
+      out.writeLong(value);
+    }
+  }
+
+  /** Reads long written by {@link #writeLong(DataOutput, Long)}. */
+  protected static Long readLong(DataInput in) throws IOException {
+    return in.readBoolean() ? in.readLong() : null;
+  }
+
+  @Override
+  public String toString() {
+    return Objects.toStringHelper(BinaryCodec.class).add("type", type.getName())
+        .add("typeId", typeId).add("version", version).toString();
+  }
+
+  private final Class<V> type;
+
+  private final int typeId;
+
+  private final int version;
+}
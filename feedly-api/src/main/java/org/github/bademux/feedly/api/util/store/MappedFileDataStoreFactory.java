@@ -0,0 +1,734 @@
+/*
+ * Copyright 2014 Bademus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *    Contributors:
+ *                 Bademus
+ */
+
+package org.github.bademux.feedly.api.util.store;
+
+import com.google.api.client.util.store.AbstractDataStore;
+import com.google.api.client.util.store.AbstractDataStoreFactory;
+import com.google.api.client.util.store.DataStore;
+import com.google.api.client.util.store.DataStoreUtils;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static com.google.api.client.util.Preconditions.checkArgument;
+import static com.google.api.client.util.Preconditions.checkNotNull;
+
+/**
+ * Data store factory for many small values, ie. a {@link
+ * org.github.bademux.feedly.api.oauth2.FeedlyStoredCredential} per user.
+ *
+ * <p> Each data store keeps two files in the data directory: {@code <id>.dat} with records
+ * appended one after another and {@code <id>.idx}, a memory-mapped hash index from key to record.
+ * Lookup costs one index probe and one read of the record, update doesn't rewrite other values.
+ * </p>
+ *
+ * <p> Every record reserves two value slots. Update of a value that fits into the slot, ie. a
+ * refreshed token, writes the spare slot and then flips the active slot byte, so a crash leaves
+ * either the old or the new value. Larger values are appended as a new record. Space of replaced
+ * and deleted records is reclaimed by {@link DataStore#clear()} only. </p>
+ *
+ * <p> Readers share the store, writers are exclusive. Stores may be shared between processes,
+ * they are guarded by file locks. Use a single factory per directory within a process. The index
+ * is rebuilt from records if it doesn't match them, ie. after a crash. </p>
+ *
+ * <p> Values are stored with {@link ValueCodecs}. </p>
+ *
+ * <p> Implementation is thread-safe. </p>
+ */
+public class MappedFileDataStoreFactory extends AbstractDataStoreFactory implements Closeable {
+
+  private final File dataDirectory;
+
+  private final List<MappedFileDataStore<?>> stores = new ArrayList<MappedFileDataStore<?>>();
+
+  /** @param dataDirectory data directory, created if doesn't exist */
+  public MappedFileDataStoreFactory(File dataDirectory) throws IOException {
+    this.dataDirectory = dataDirectory.getCanonicalFile();
+    if (!this.dataDirectory.isDirectory() && !this.dataDirectory.mkdirs()) {
+      throw new IOException("Unable to create directory: " + this.dataDirectory);
+    }
+  }
+
+  /** Returns the data directory. */
+  public final File getDataDirectory() {
+    return dataDirectory;
+  }
+
+  @Override
+  protected <V extends Serializable> DataStore<V> createDataStore(String id) throws IOException {
+    MappedFileDataStore<V> store = new MappedFileDataStore<V>(this, dataDirectory, id);
+    synchronized (stores) {
+      stores.add(store);
+    }
+    return store;
+  }
+
+  /** Closes files of all created data stores, they can't be used afterwards. */
+  @Override
+  public void close() throws IOException {
+    IOException failure = null;
+    synchronized (stores) {
+      for (MappedFileDataStore<?> store : stores) {
+        try {
+          store.close();
+        } catch (IOException e) {
+          failure = e;
+        }
+      }
+      stores.clear();
+    }
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  static class MappedFileDataStore<V extends Serializable> extends AbstractDataStore<V>
+      implements Closeable {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final int DATA_MAGIC = 0x46445344; // FDSD
+    private static final int INDEX_MAGIC = 0x46445349; // FDSI
+    private static final int VERSION = 1;
+
+    /**
+     * Data file header: magic, version, write count. Index matches records if it has the same
+     * write count, index is forced to disk before the count is written here.
+     */
+    private static final int DATA_HEADER = 16;
+    private static final int DATA_WRITE_COUNT_OFFSET = 8;
+
+    /** Index header: magic, version, capacity, size, used slots, padding, write count. */
+    private static final int INDEX_HEADER = 32;
+    private static final int CAPACITY_OFFSET = 8;
+    private static final int SIZE_OFFSET = 12;
+    private static final int USED_OFFSET = 16;
+    private static final int WRITE_COUNT_OFFSET = 24;
+
+    /** Index slot: key hash, padding, record offset. */
+    private static final int SLOT = 16;
+    private static final long EMPTY = 0;
+    private static final long DELETED = -1;
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    /** Record: length, state, active slot, key length, key, slot capacity, 2 x (length, value). */
+    private static final int RECORD_HEADER = 4 + 1 + 1 + 2;
+    private static final int MIN_RECORD_LENGTH = RECORD_HEADER - 4 + 4 + 2 * 4;
+
+    /** Max key length in UTF-8 bytes, it is stored as unsigned short. */
+    static final int MAX_KEY_LENGTH = 0xFFFF;
+    private static final byte LIVE = 0;
+    private static final byte REMOVED = 1;
+
+    private final RandomAccessFile dataFile;
+    private final FileChannel data;
+    private final RandomAccessFile indexFile;
+    private final FileChannel indexChannel;
+
+    /** Guards the files within the process, file locks guard them between processes. */
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /** Guards {@link #sharedLock} and {@link #sharedHolders}. */
+    private final Object sharedLockMonitor = new Object();
+
+    /** File lock shared by all readers of the process. */
+    private FileLock sharedLock;
+
+    private int sharedHolders;
+
+    /** File lock of the writer. */
+    private FileLock exclusiveLock;
+
+    /** Whether the writer changed the store. */
+    private boolean modified;
+
+    /** Mapped index, remapped if another process resized it. */
+    private volatile MappedByteBuffer index;
+
+    private volatile boolean closed;
+
+    MappedFileDataStore(MappedFileDataStoreFactory dataStoreFactory, File dataDirectory,
+                        String id) throws IOException {
+      super(dataStoreFactory, id);
+      dataFile = new RandomAccessFile(new File(dataDirectory, id + ".dat"), "rw");
+      data = dataFile.getChannel();
+      indexFile = new RandomAccessFile(new File(dataDirectory, id + ".idx"), "rw");
+      indexChannel = indexFile.getChannel();
+      lockExclusive();
+      try {
+        open();
+      } finally {
+        unlockExclusive();
+      }
+    }
+
+    @Override
+    public Set<String> keySet() throws IOException {
+      lockShared();
+      try {
+        Set<String> keys = new HashSet<String>();
+        MappedByteBuffer idx = index;
+        for (int slot = 0, capacity = capacity(idx); slot < capacity; slot++) {
+          long offset = idx.getLong(slotPosition(slot) + 8);
+          if (offset > 0) {
+            keys.add(readRecord(offset).key());
+          }
+        }
+        return Collections.unmodifiableSet(keys);
+      } finally {
+        unlockShared();
+      }
+    }
+
+    @Override
+    public Collection<V> values() throws IOException {
+      lockShared();
+      try {
+        List<V> values = new ArrayList<V>();
+        MappedByteBuffer idx = index;
+        for (int slot = 0, capacity = capacity(idx); slot < capacity; slot++) {
+          long offset = idx.getLong(slotPosition(slot) + 8);
+          if (offset > 0) {
+            values.add(ValueCodecs.<V>deserialize(readRecord(offset).value()));
+          }
+        }
+        return Collections.unmodifiableList(values);
+      } finally {
+        unlockShared();
+      }
+    }
+
+    @Override
+    public int size() throws IOException {
+      lockShared();
+      try {
+        return index.getInt(SIZE_OFFSET);
+      } finally {
+        unlockShared();
+      }
+    }
+
+    @Override
+    public boolean containsKey(String key) throws IOException {
+      if (key == null) {
+        return false;
+      }
+      byte[] keyBytes = key.getBytes(UTF8);
+      lockShared();
+      try {
+        return find(keyBytes, hash(keyBytes)) >= 0;
+      } finally {
+        unlockShared();
+      }
+    }
+
+    @Override
+    public V get(String key) throws IOException {
+      if (key == null) {
+        return null;
+      }
+      byte[] keyBytes = key.getBytes(UTF8);
+      byte[] value;
+      lockShared();
+      try {
+        int slot = find(keyBytes, hash(keyBytes));
+        if (slot < 0) {
+          return null;
+        }
+        value = readRecord(index.getLong(slotPosition(slot) + 8)).value();
+      } finally {
+        unlockShared();
+      }
+      return ValueCodecs.deserialize(value);
+    }
+
+    @Override
+    public DataStore<V> set(String key, V value) throws IOException {
+      checkNotNull(key);
+      checkNotNull(value);
+      byte[] keyBytes = key.getBytes(UTF8);
+      checkArgument(keyBytes.length <= MAX_KEY_LENGTH, "key is longer than %s UTF-8 bytes",
+                    MAX_KEY_LENGTH);
+      byte[] bytes = ValueCodecs.serialize(value);
+      int hash = hash(keyBytes);
+      lockExclusive();
+      try {
+        int slot = find(keyBytes, hash);
+        modified = true;
+        if (slot >= 0) {
+          long offset = index.getLong(slotPosition(slot) + 8);
+          Record record = readRecord(offset);
+          if (bytes.length <= record.slotCapacity) {
+            record.update(bytes);
+            return this;
+          }
+          index.putLong(slotPosition(slot) + 8, append(keyBytes, bytes));
+          record.remove();
+        } else {
+          insert(hash, append(keyBytes, bytes));
+        }
+      } finally {
+        unlockExclusive();
+      }
+      return this;
+    }
+
+    @Override
+    public DataStore<V> clear() throws IOException {
+      lockExclusive();
+      try {
+        modified = true;
+        data.truncate(DATA_HEADER);
+        data.force(true);
+        resetIndex(INITIAL_CAPACITY);
+      } finally {
+        unlockExclusive();
+      }
+      return this;
+    }
+
+    @Override
+    public DataStore<V> delete(String key) throws IOException {
+      if (key == null) {
+        return this;
+      }
+      byte[] keyBytes = key.getBytes(UTF8);
+      lockExclusive();
+      try {
+        int slot = find(keyBytes, hash(keyBytes));
+        if (slot >= 0) {
+          modified = true;
+          long offset = index.getLong(slotPosition(slot) + 8);
+          index.putLong(slotPosition(slot) + 8, DELETED);
+          index.putInt(SIZE_OFFSET, index.getInt(SIZE_OFFSET) - 1);
+          readRecord(offset).remove();
+        }
+      } finally {
+        unlockExclusive();
+      }
+      return this;
+    }
+
+    /** Closes the files, the store can't be used afterwards. */
+    @Override
+    public void close() throws IOException {
+      lock.writeLock().lock();
+      try {
+        if (!closed) {
+          closed = true;
+          index.force();
+          dataFile.close();
+          indexFile.close();
+        }
+      } finally {
+        lock.writeLock().unlock();
+      }
+    }
+
+    @Override
+    public MappedFileDataStoreFactory getDataStoreFactory() {
+      return (MappedFileDataStoreFactory) super.getDataStoreFactory();
+    }
+
+    @Override
+    public String toString() {
+      return DataStoreUtils.toString(this);
+    }
+
+    private void open() throws IOException {
+      if (data.size() < DATA_HEADER) {
+        ByteBuffer header = ByteBuffer.allocate(DATA_HEADER);
+        header.putInt(DATA_MAGIC).putInt(VERSION).putLong(0).flip();
+        data.truncate(0);
+        writeFully(header, 0);
+        data.force(true);
+      } else {
+        ByteBuffer header = readFully(0, DATA_HEADER);
+        if (header.getInt() != DATA_MAGIC || header.getInt() != VERSION) {
+          throw new IOException("Not a data store file: " + getId() + ".dat");
+        }
+      }
+      if (indexChannel.size() >= INDEX_HEADER) {
+        index = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, indexChannel.size());
+        if (index.getInt(0) == INDEX_MAGIC && index.getInt(4) == VERSION
+            && indexChannel.size() == INDEX_HEADER + (long) capacity(index) * SLOT
+            && index.getLong(WRITE_COUNT_OFFSET) == readWriteCount()) {
+          return;
+        }
+      }
+      rebuildIndex();
+      modified = true;
+    }
+
+    /** Rebuilds index from records, truncates incomplete record at the end. */
+    private void rebuildIndex() throws IOException {
+      List<byte[]> keys = new ArrayList<byte[]>();
+      List<Long> offsets = new ArrayList<Long>();
+      long end = data.size();
+      long offset = DATA_HEADER;
+      while (offset < end) {
+        Record record;
+        try {
+          record = readRecord(offset);
+        } catch (EOFException e) {
+          break;
+        }
+        if (record.state == LIVE) {
+          keys.add(record.keyBytes);
+          offsets.add(offset);
+        }
+        offset = record.end();
+      }
+      if (offset != end) {
+        data.truncate(offset);
+        data.force(true);
+      }
+      int capacity = INITIAL_CAPACITY;
+      while (keys.size() * 2 > capacity) {
+        capacity <<= 1;
+      }
+      resetIndex(capacity);
+      // later records replace earlier ones with the same key
+      for (int i = 0; i < keys.size(); i++) {
+        byte[] keyBytes = keys.get(i);
+        int hash = hash(keyBytes);
+        int slot = find(keyBytes, hash);
+        if (slot >= 0) {
+          index.putLong(slotPosition(slot) + 8, offsets.get(i));
+        } else {
+          insert(hash, offsets.get(i));
+        }
+      }
+    }
+
+    private void resetIndex(int capacity) throws IOException {
+      if (index != null) {
+        index.force();
+      }
+      long size = INDEX_HEADER + (long) capacity * SLOT;
+      indexChannel.truncate(0);
+      index = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+      for (int position = 0; position < size; position += 8) {
+        index.putLong(position, 0);
+      }
+      index.putInt(0, INDEX_MAGIC);
+      index.putInt(4, VERSION);
+      index.putInt(CAPACITY_OFFSET, capacity);
+    }
+
+    /** @return slot of the key or {@code -1} if there is no such key */
+    private int find(byte[] keyBytes, int hash) throws IOException {
+      MappedByteBuffer idx = index;
+      int mask = capacity(idx) - 1;
+      for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+        int position = slotPosition(slot);
+        long offset = idx.getLong(position + 8);
+        if (offset == EMPTY) {
+          return -1;
+        }
+        if (offset > 0 && idx.getInt(position) == hash) {
+          Record record = readRecord(offset);
+          if (record.state == LIVE && Arrays.equals(record.keyBytes, keyBytes)) {
+            return slot;
+          }
+        }
+      }
+    }
+
+    /** Inserts a key that isn't in the index yet. */
+    private void insert(int hash, long offset) throws IOException {
+      if ((index.getInt(USED_OFFSET) + 1) * 4L > capacity(index) * 3L) {
+        resize();
+      }
+      MappedByteBuffer idx = index;
+      int mask = capacity(idx) - 1;
+      int slot = hash & mask;
+      while (idx.getLong(slotPosition(slot) + 8) > 0) {
+        slot = (slot + 1) & mask;
+      }
+      int position = slotPosition(slot);
+      if (idx.getLong(position + 8) == EMPTY) {
+        idx.putInt(USED_OFFSET, idx.getInt(USED_OFFSET) + 1);
+      }
+      idx.putInt(position, hash);
+      idx.putLong(position + 8, offset);
+      idx.putInt(SIZE_OFFSET, idx.getInt(SIZE_OFFSET) + 1);
+    }
+
+    /** Doubles the index if it has live keys mostly, drops deleted slots. */
+    private void resize() throws IOException {
+      MappedByteBuffer idx = index;
+      int capacity = capacity(idx);
+      int size = idx.getInt(SIZE_OFFSET);
+      int[] hashes = new int[size];
+      long[] offsets = new long[size];
+      int count = 0;
+      for (int slot = 0; slot < capacity; slot++) {
+        long offset = idx.getLong(slotPosition(slot) + 8);
+        if (offset > 0) {
+          hashes[count] = idx.getInt(slotPosition(slot));
+          offsets[count++] = offset;
+        }
+      }
+      resetIndex(size * 2 >= capacity ? capacity << 1 : capacity);
+      for (int i = 0; i < count; i++) {
+        insert(hashes[i], offsets[i]);
+      }
+    }
+
+    /** Appends a new record. */
+    private long append(byte[] keyBytes, byte[] value) throws IOException {
+      int slotCapacity = slotCapacity(value.length);
+      int length = RECORD_HEADER + keyBytes.length + 4 + 2 * (4 + slotCapacity);
+      ByteBuffer record = ByteBuffer.allocate(length);
+      record.putInt(length - 4).put(LIVE).put((byte) 0).putShort((short) keyBytes.length)
+          .put(keyBytes).putInt(slotCapacity).putInt(value.length).put(value);
+      record.position(record.position() + slotCapacity - value.length);
+      record.putInt(0);
+      record.clear();
+      long offset = data.size();
+      writeFully(record, offset);
+      data.force(false);
+      return offset;
+    }
+
+    private Record readRecord(long offset) throws IOException {
+      ByteBuffer length = readFully(offset, 4);
+      int recordLength = length.getInt();
+      if (recordLength < MIN_RECORD_LENGTH || offset + 4 + recordLength > data.size()) {
+        throw new EOFException("Incomplete record at " + offset);
+      }
+      return new Record(offset, readFully(offset + 4, recordLength));
+    }
+
+    private ByteBuffer readFully(long position, int length) throws IOException {
+      ByteBuffer buffer = ByteBuffer.allocate(length);
+      while (buffer.hasRemaining()) {
+        if (data.read(buffer, position + buffer.position()) < 0) {
+          throw new EOFException("Unexpected end of data store file at " + position);
+        }
+      }
+      buffer.flip();
+      return buffer;
+    }
+
+    private void writeFully(ByteBuffer buffer, long position) throws IOException {
+      while (buffer.hasRemaining()) {
+        data.write(buffer, position + buffer.position());
+      }
+    }
+
+    private void lockShared() throws IOException {
+      lock.readLock().lock();
+      try {
+        checkOpen();
+        synchronized (sharedLockMonitor) {
+          if (sharedHolders == 0) {
+            sharedLock = data.lock(0, Long.MAX_VALUE, true);
+          }
+          sharedHolders++;
+        }
+        remapIfResized();
+      } catch (IOException e) {
+        lock.readLock().unlock();
+        throw e;
+      } catch (RuntimeException e) {
+        lock.readLock().unlock();
+        throw e;
+      }
+    }
+
+    private void unlockShared() throws IOException {
+      try {
+        synchronized (sharedLockMonitor) {
+          if (--sharedHolders == 0) {
+            sharedLock.release();
+            sharedLock = null;
+          }
+        }
+      } finally {
+        lock.readLock().unlock();
+      }
+    }
+
+    private void lockExclusive() throws IOException {
+      lock.writeLock().lock();
+      try {
+        checkOpen();
+        exclusiveLock = data.lock(0, Long.MAX_VALUE, false);
+        if (index != null) {
+          remapIfResized();
+        }
+      } catch (IOException e) {
+        lock.writeLock().unlock();
+        throw e;
+      } catch (RuntimeException e) {
+        lock.writeLock().unlock();
+        throw e;
+      }
+    }
+
+    /** Publishes changes by writing the write count and releases the file lock. */
+    private void unlockExclusive() throws IOException {
+      try {
+        if (modified && index != null) {
+          modified = false;
+          long writeCount = index.getLong(WRITE_COUNT_OFFSET) + 1;
+          index.putLong(WRITE_COUNT_OFFSET, writeCount);
+          index.force();
+          ByteBuffer count = ByteBuffer.allocate(8);
+          count.putLong(writeCount).flip();
+          writeFully(count, DATA_WRITE_COUNT_OFFSET);
+          data.force(false);
+        }
+      } finally {
+        try {
+          if (exclusiveLock != null) {
+            exclusiveLock.release();
+            exclusiveLock = null;
+          }
+        } finally {
+          lock.writeLock().unlock();
+        }
+      }
+    }
+
+    private long readWriteCount() throws IOException {
+      return readFully(DATA_WRITE_COUNT_OFFSET, 8).getLong();
+    }
+
+    /** Maps index again if another process resized or rebuilt it. */
+    private void remapIfResized() throws IOException {
+      if (index.capacity() != indexChannel.size()) {
+        synchronized (sharedLockMonitor) {
+          long size = indexChannel.size();
+          if (index.capacity() != size) {
+            index = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+          }
+        }
+      }
+    }
+
+    private void checkOpen() throws IOException {
+      if (closed) {
+        throw new IOException("Data store is closed: " + getId());
+      }
+    }
+
+    private static int capacity(MappedByteBuffer index) {
+      return index.getInt(CAPACITY_OFFSET);
+    }
+
+    private static int slotPosition(int slot) {
+      return INDEX_HEADER + slot * SLOT;
+    }
+
+    /** Slot capacity leaves room for a refreshed value that is slightly larger. */
+    private static int slotCapacity(int length) {
+      return Math.max(64, (length + (length >> 2) + 15) & ~15);
+    }
+
+    private static int hash(byte[] keyBytes) {
+      int hash = Arrays.hashCode(keyBytes) * 0x9E3779B9;
+      return hash ^ (hash >>> 16);
+    }
+
+    /** Record read from the data file. */
+    private final class Record {
+
+      final long offset;
+      final byte state;
+      final int activeSlot;
+      final byte[] keyBytes;
+      final int slotCapacity;
+      /** Position of the slot capacity within the record, after the key. */
+      final int slotsStart;
+      final ByteBuffer buffer;
+
+      Record(long offset, ByteBuffer buffer) throws IOException {
+        this.offset = offset;
+        this.buffer = buffer;
+        state = buffer.get();
+        activeSlot = buffer.get();
+        keyBytes = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(keyBytes);
+        slotsStart = buffer.position();
+        slotCapacity = buffer.getInt();
+        if (slotCapacity < 0 || slotsStart + 4 + 2 * (4 + (long) slotCapacity) != buffer.limit()) {
+          throw new EOFException("Corrupted record at " + offset);
+        }
+      }
+
+      String key() { return new String(keyBytes, UTF8); }
+
+      long end() { return offset + 4 + buffer.limit(); }
+
+      byte[] value() throws IOException {
+        int position = slotPosition(activeSlot);
+        int length = buffer.getInt(position);
+        if (length < 0 || length > slotCapacity) {
+          throw new IOException("Corrupted record at " + offset);
+        }
+        byte[] value = new byte[length];
+        System.arraycopy(buffer.array(), position + 4, value, 0, length);
+        return value;
+      }
+
+      /** Writes the spare slot and then makes it active. */
+      void update(byte[] value) throws IOException {
+        int spare = 1 - activeSlot;
+        ByteBuffer slot = ByteBuffer.allocate(4 + value.length);
+        slot.putInt(value.length).put(value).flip();
+        writeFully(slot, offset + 4 + slotPosition(spare));
+        data.force(false);
+        writeFully(ByteBuffer.wrap(new byte[]{(byte) spare}), offset + 5);
+        data.force(false);
+      }
+
+      void remove() throws IOException {
+        writeFully(ByteBuffer.wrap(new byte[]{REMOVED}), offset + 4);
+        data.force(false);
+      }
+
+      /** @return position of the slot within the record buffer */
+      private int slotPosition(int slot) {
+        return slotsStart + 4 + slot * (4 + slotCapacity);
+      }
+    }
+  }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2014 Bademus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *    Contributors:
+ *                 Bademus
+ */
+
+package org.github.bademux.feedly.api.util.store;
+
+import com.google.api.client.util.IOUtils;
+
+import org.github.bademux.feedly.api.oauth2.FeedlyStoredCredential;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import static com.google.api.client.util.Preconditions.checkArgument;
+import static com.google.api.client.util.Preconditions.checkNotNull;
+
+/**
+ * Serializes values of data stores, replacement of {@link IOUtils#serialize(Object)} and {@link
+ * IOUtils#deserialize(byte[])}.
+ *
+ * <p> Values with a registered {@link BinaryCodec} are stored in its binary form, other values
+ * with Java serialization. Both forms are read, so values stored before a codec was registered
+ * stay readable. {@link FeedlyStoredCredential} is registered by default. </p>
+ *
+ * <p> Implementation is thread-safe. </p>
+ */
+public final class ValueCodecs {
+
+  /**
+   * Registers the codec for values of exactly its type.
+   *
+   * @throws IllegalArgumentException if another codec is registered for the type or the type id
+   */
+  public static synchronized void register(BinaryCodec<?> codec) {
+    checkNotNull(codec);
+    BinaryCodec<?> registered = BY_ID.get(codec.getTypeId());
+    checkArgument(registered == null || registered == codec,
+                  "type id %s is taken by %s", codec.getTypeId(), registered);
+    registered = BY_TYPE.get(codec.getType());
+    checkArgument(registered == null || registered == codec,
+                  "type %s is taken by %s", codec.getType(), registered);
+    BY_ID.set(codec.getTypeId(), codec);
+    BY_TYPE.put(codec.getType(), codec);
+  }
+
+  /** Returns the codec for values of the given type or {@code null} for none. */
+  @SuppressWarnings("unchecked")
+  public static <V> BinaryCodec<V> getCodec(Class<V> type) {
+    return (BinaryCodec<V>) BY_TYPE.get(type);
+  }
+
+  /** Returns the value in the binary form of its codec or Java serialized if it has none. */
+  @SuppressWarnings("unchecked")
+  public static byte[] serialize(Serializable value) throws IOException {
+    BinaryCodec<Object> codec = (BinaryCodec<Object>) BY_TYPE.get(value.getClass());
+    return codec == null ? IOUtils.serialize(value) : codec.encode(value);
+  }
+
+  /**
+   * Reads the value written by {@link #serialize(Serializable)} or Java serialized.
+   *
+   * @throws IOException if the codec of the value isn't registered or bytes are malformed
+   */
+  @SuppressWarnings("unchecked")
+  public static <V extends Serializable> V deserialize(byte[] bytes) throws IOException {
+    if (!BinaryCodec.isEncoded(bytes)) {
+      return IOUtils.deserialize(bytes);
+    }
+    BinaryCodec<?> codec = BY_ID.get(BinaryCodec.getTypeId(bytes));
+    if (codec == null) {
+      throw new IOException("No codec for type id " + BinaryCodec.getTypeId(bytes));
+    }
+    return (V) codec.decode(bytes);
+  }
+
+  private static final AtomicReferenceArray<BinaryCodec<?>> BY_ID =
+      new AtomicReferenceArray<BinaryCodec<?>>(0x100);
+
+  private static final Map<Class<?>, BinaryCodec<?>> BY_TYPE =
+      new ConcurrentHashMap<Class<?>, BinaryCodec<?>>();
+
+  static {
+    register(FeedlyStoredCredential.CODEC);
+  }
+
+  private ValueCodecs() {}
+}
@@ -0,0 +1,362 @@
+/*
+ * Copyright 2014 Bademus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *    Contributors:
+ *                 Bademus
+ */
+
+package org.github.bademux.feedly.api.util.store;
+
+import com.google.api.client.util.store.AbstractDataStore;
+import com.google.api.client.util.store.DataStore;
+import com.google.api.client.util.store.DataStoreUtils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static com.google.api.client.util.Preconditions.checkArgument;
+import static com.google.api.client.util.Preconditions.checkNotNull;
+
+/**
+ * Data store that writes changes to the underlying data store in background.
+ *
+ * <p> {@link #set(String, Serializable)} and {@link #delete(String)} only remember the change and
+ * return, the change is written after {@code writeDelayMillis}. Repeated changes of the same key
+ * within the delay are coalesced, only the latest one is written. {@link #get(String)} sees
+ * changes that are not written yet. Example usage: </p>
+ *
+ * <pre>
+ * WriteBehindDataStore&lt;FeedlyStoredCredential&gt; store =
+ *     new WriteBehindDataStore&lt;FeedlyStoredCredential&gt;(
+ *         FeedlyStoredCredential.getDefaultDataStore(dataStoreFactory));
+ * flow = new FeedlyAuthorizationCodeFlow.Builder(transport, jsonFactory, clientId, clientSecret)
+ *     .setFeedlyCredentialDataStore(store).build();
+ * ...
+ * store.close();
+ * </pre>
+ *
+ * <p> Changes are durable once {@link #flush()} or {@link #close()} returns, pending changes are
+ * lost if the process ends without them. Failed background writes are retried. Other operations
+ * ({@link #keySet()}, {@link #values()}, {@link #clear()}) flush pending changes first. After
+ * close changes are written through. Values must not be modified after they are set. </p>
+ *
+ * <p> Implementation is thread-safe. </p>
+ *
+ * @param <V> serializable type of the mapped value
+ */
+public class WriteBehindDataStore<V extends Serializable> extends AbstractDataStore<V>
+    implements Closeable {
+
+  /** Default delay between the first change and its write in milliseconds. */
+  public static final long DEFAULT_WRITE_DELAY_MILLIS = 1000;
+
+  /** Delay before the retry of a failed write in milliseconds. */
+  static final long RETRY_DELAY_MILLIS = 30 * 1000;
+
+  static final Logger LOGGER = Logger.getLogger(WriteBehindDataStore.class.getName());
+
+  /**
+   * Writes in background with own daemon thread and {@link #DEFAULT_WRITE_DELAY_MILLIS}.
+   *
+   * @param dataStore underlying data store
+   */
+  public WriteBehindDataStore(DataStore<V> dataStore) {
+    this(dataStore, newWriteScheduler(), true, DEFAULT_WRITE_DELAY_MILLIS);
+  }
+
+  /**
+   * @param dataStore        underlying data store
+   * @param scheduler        scheduler to write on, not shut down by {@link #close()}
+   * @param writeDelayMillis delay between the first change and its write in milliseconds
+   */
+  public WriteBehindDataStore(DataStore<V> dataStore, ScheduledExecutorService scheduler,
+                              long writeDelayMillis) {
+    this(dataStore, scheduler, false, writeDelayMillis);
+  }
+
+  private WriteBehindDataStore(DataStore<V> dataStore, ScheduledExecutorService scheduler,
+                               boolean ownScheduler, long writeDelayMillis) {
+    super(dataStore.getDataStoreFactory(), dataStore.getId());
+    checkArgument(writeDelayMillis >= 0, "write delay can't be negative");
+    this.dataStore = dataStore;
+    this.scheduler = checkNotNull(scheduler);
+    this.ownScheduler = ownScheduler;
+    this.writeDelayMillis = writeDelayMillis;
+  }
+
+  /** Returns the underlying data store. */
+  public final DataStore<V> getDataStore() { return dataStore; }
+
+  public final long getWriteDelayMillis() { return writeDelayMillis; }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public V get(String key) throws IOException {
+    if (key == null) {
+      return null;
+    }
+    lock.lock();
+    try {
+      Object value = pending.get(key);
+      if (value != null) {
+        return value == REMOVED ? null : (V) value;
+      }
+    } finally {
+      lock.unlock();
+    }
+    return dataStore.get(key);
+  }
+
+  @Override
+  public DataStore<V> set(String key, V value) throws IOException {
+    checkNotNull(key);
+    checkNotNull(value);
+    if (!enqueue(key, value)) {
+      writeThrough(key, value);
+    }
+    return this;
+  }
+
+  @Override
+  public DataStore<V> delete(String key) throws IOException {
+    if (key != null && !enqueue(key, REMOVED)) {
+      writeThrough(key, REMOVED);
+    }
+    return this;
+  }
+
+  @Override
+  public boolean containsKey(String key) throws IOException {
+    return get(key) != null;
+  }
+
+  @Override
+  public Set<String> keySet() throws IOException {
+    flush();
+    return dataStore.keySet();
+  }
+
+  @Override
+  public Collection<V> values() throws IOException {
+    flush();
+    return dataStore.values();
+  }
+
+  /** Drops pending changes and clears the underlying data store. */
+  @Override
+  public DataStore<V> clear() throws IOException {
+    writeLock.lock();
+    try {
+      lock.lock();
+      try {
+        pending.clear();
+      } finally {
+        lock.unlock();
+      }
+      dataStore.clear();
+    } finally {
+      writeLock.unlock();
+    }
+    return this;
+  }
+
+  /**
+   * Writes pending changes to the underlying data store.
+   *
+   * @throws IOException if a change can't be written, it stays pending
+   */
+  public void flush() throws IOException {
+    writeLock.lock();
+    try {
+      Map<String, Object> changes;
+      lock.lock();
+      try {
+        if (pending.isEmpty()) {
+          return;
+        }
+        changes = new HashMap<String, Object>(pending);
+      } finally {
+        lock.unlock();
+      }
+      for (Map.Entry<String, Object> change : changes.entrySet()) {
+        write(change.getKey(), change.getValue());
+        lock.lock();
+        try {
+          // keep the change made while writing
+          if (pending.get(change.getKey()) == change.getValue()) {
+            pending.remove(change.getKey());
+          }
+        } finally {
+          lock.unlock();
+        }
+      }
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  /** Writes pending changes and stops writing in background. */
+  @Override
+  public void close() throws IOException {
+    lock.lock();
+    try {
+      closed = true;
+      if (scheduledWrite != null) {
+        scheduledWrite.cancel(false);
+        scheduledWrite = null;
+      }
+    } finally {
+      lock.unlock();
+    }
+    try {
+      flush();
+    } finally {
+      if (ownScheduler) {
+        scheduler.shutdown();
+      }
+    }
+  }
+
+  @Override
+  public String toString() {
+    return DataStoreUtils.toString(this);
+  }
+
+  /** @return {@code false} if the store is closed and the change must be written through */
+  private boolean enqueue(String key, Object value) {
+    lock.lock();
+    try {
+      if (closed) {
+        return false;
+      }
+      pending.put(key, value);
+      if (scheduledWrite == null) {
+        scheduledWrite = scheduler.schedule(backgroundWrite, writeDelayMillis,
+                                            TimeUnit.MILLISECONDS);
+      }
+      return true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void writeThrough(String key, Object value) throws IOException {
+    writeLock.lock();
+    try {
+      write(key, value);
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private void write(String key, Object value) throws IOException {
+    if (value == REMOVED) {
+      dataStore.delete(key);
+    } else {
+      dataStore.set(key, (V) value);
+    }
+  }
+
+  /** Writes pending changes, reschedules itself if some of them failed. */
+  private final Runnable backgroundWrite = new Runnable() {
+    @Override
+    public void run() {
+      lock.lock();
+      try {
+        scheduledWrite = null;
+      } finally {
+        lock.unlock();
+      }
+      try {
+        flush();
+      } catch (IOException e) {
+        LOGGER.log(Level.WARNING, "Background write failed, will retry", e);
+        retry();
+      } catch (RuntimeException e) {
+        LOGGER.log(Level.WARNING, "Background write failed, will retry", e);
+        retry();
+      }
+    }
+
+    private void retry() {
+      lock.lock();
+      try {
+        if (!closed && scheduledWrite == null) {
+          scheduledWrite = scheduler.schedule(this, RETRY_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+        }
+      } finally {
+        lock.unlock();
+      }
+    }
+  };
+
+  /** Returns a new scheduler with a single daemon thread. */
+  private static ScheduledExecutorService newWriteScheduler() {
+    ThreadFactory threadFactory = new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread thread = new Thread(r, "feedly-data-store-write");
+        thread.setDaemon(true);
+        return thread;
+      }
+    };
+    ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, threadFactory);
+    scheduler.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+    scheduler.setRemoveOnCancelPolicy(true);
+    return scheduler;
+  }
+
+  /** Marks a pending delete. */
+  private static final Object REMOVED = new Object();
+
+  private final DataStore<V> dataStore;
+
+  private final ScheduledExecutorService scheduler;
+
+  /** Whether the scheduler is created by this store and shut down on close. */
+  private final boolean ownScheduler;
+
+  private final long writeDelayMillis;
+
+  /** Lock on access to pending changes and the scheduled write. */
+  private final Lock lock = new ReentrantLock();
+
+  /** Lock on writes to the underlying data store, keeps them in order. */
+  private final Lock writeLock = new ReentrantLock();
+
+  /** Changes not written yet, {@link #REMOVED} for a delete. Guarded by {@link #lock}. */
+  private final Map<String, Object> pending = new HashMap<String, Object>();
+
+  /** Guarded by {@link #lock}. */
+  private ScheduledFuture<?> scheduledWrite;
+
+  /** Guarded by {@link #lock}. */
+  private boolean closed;
+}
@@ -0,0 +1,235 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *  Contributors:
+ *               Bademus
+ */
+
+
+package org.github.bademux.feedly.api.json;
+
+import com.google.api.client.json.GenericJson;
+import com.google.api.client.json.JsonFactory;
+import com.google.api.client.json.JsonObjectParser;
+import com.google.api.client.json.gson.GsonFactory;
+import com.google.api.client.util.ArrayMap;
+import com.google.api.client.util.Data;
+
+import org.github.bademux.feedly.api.model.EntriesResponse;
+import org.github.bademux.feedly.api.model.Entry;
+import org.github.bademux.feedly.api.model.UnreadResponse;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class CodecObjectParserTest {
+
+  private static final JsonFactory JSON_FACTORY = GsonFactory.getDefaultInstance();
+
+  private static final String USER = "user/c805fcbf-3acf-4302-a97e-d82f9d7c897f";
+
+  /** Two entries of the same feed, with fields the model doesn't know. */
+  static final String ENTRIES = json(
+      "{'id':'" + USER + "/category/global.all','updated':1397848800000,"
+      + "'continuation':'1458a1a0027:201d58bd','direction':'ltr','unknown':'page',"
+      + "'alternate':[{'href':'http://www.theverge.com/','type':'text/html'}],'items':["
+      + "{'id':'babced20:1458a1a0000:72e6cc3a','fingerprint':'49b64a08',"
+      + "'originId':'http://www.theverge.com/rss/full.xml?p=1000','title':'Network \\u00e9 api',"
+      + "'author':'Jane Roe','crawled':1397846400000,'published':1397842800000,"
+      + "'origin':{'streamId':'feed/http://www.theverge.com/rss/full.xml',"
+      + "'title':'www.theverge.com','htmlUrl':'http://www.theverge.com/','extra':1},"
+      + "'alternate':[{'href':'http://www.theverge.com/2014/04/0/story','type':'text/html'}],"
+      + "'summary':{'content':'<p>summary</p>','direction':'ltr'},"
+      + "'content':{'content':'<p>content</p>','direction':'rtl'},"
+      + "'visual':{'url':'http://cdn.example.com/img/0-0.jpg','width':640,'height':360,"
+      + "'contentType':'image/jpeg'},"
+      + "'enclosure':[{'href':'http://cdn.example.com/a.mp3','length':1024,'type':'audio/mpeg'}],"
+      + "'keywords':['android','json'],'engagement':12,'engagementRate':0.75,'unread':true,"
+      + "'tags':[{'id':'" + USER + "/tag/global.saved','label':'saved'}],"
+      + "'categories':[{'id':'" + USER + "/category/tech','label':'tech'}],"
+      + "'unknownObject':{'nested':[1,2.5,'text',null,false,{'deep':{}}]},'unknownNumber':7},"
+      + "{'id':'babced20:1458a1a0000:72e6cc3b','title':'Second','crawled':1397846300000,"
+      + "'origin':{'streamId':'feed/http://www.theverge.com/rss/full.xml',"
+      + "'title':'www.theverge.com','htmlUrl':'http://www.theverge.com/'},"
+      + "'alternate':[{'href':'http://www.theverge.com/2014/04/1/story','type':'text/html'}],"
+      + "'unread':false,'keywords':[]}]}");
+
+  static final String UNREAD = json(
+      "{'unreadcounts':[{'id':'feed/http://www.engadget.com/rss.xml','count':87,"
+      + "'updated':1397851299933},{'id':'" + USER + "/category/global.all','count':374,"
+      + "'updated':1397853726250,'extra':'x'}]}");
+
+  @Test
+  public void testEntriesMatchReflectiveParse() throws Exception {
+    assertEquals(reflective(ENTRIES, EntriesResponse.class),
+                 generated(ENTRIES, EntriesResponse.class, ParseContext.DEFAULT));
+  }
+
+  @Test
+  public void testUnreadMatchesReflectiveParse() throws Exception {
+    assertEquals(reflective(UNREAD, UnreadResponse.class),
+                 generated(UNREAD, UnreadResponse.class, ParseContext.DEFAULT));
+  }
+
+  @Test
+  public void testExplicitNulls() throws Exception {
+    Entry entry = parse(json("{'id':'entry','updated':null,'tags':null,'unknown':null}"),
+                        Entry.class, ParseContext.DEFAULT);
+
+    // unlike the reflective parser known fields hold plain nulls, not magic null objects
+    assertNull(entry.getUpdated());
+    assertNull(entry.getTags());
+    assertTrue(Data.isNull(entry.getUnknownKeys().get("unknown")));
+    assertEquals(json("{'id':'entry','unknown':null}"), JSON_FACTORY.toString(entry));
+  }
+
+  @Test
+  public void testCodecIsGenerated() throws Exception {
+    assertNotNull(JsonCodecs.get(EntriesResponse.class));
+    assertNotNull(JsonCodecs.get(Entry.class));
+  }
+
+  @Test
+  public void testDropUnknownFields() throws Exception {
+    EntriesResponse response = parse(ENTRIES, EntriesResponse.class, new ParseContext(true));
+    Entry entry = response.items().get(0);
+
+    assertTrue(response.getUnknownKeys().isEmpty());
+    assertTrue(entry.getUnknownKeys().isEmpty());
+    assertEquals("babced20:1458a1a0000:72e6cc3a", entry.getId());
+    assertEquals("Network é api", entry.getTitle());
+    assertEquals(Long.valueOf(1397846400000L), entry.getCrawled());
+    assertEquals(Integer.valueOf(640), entry.getVisual().getWidth());
+    assertEquals(Entry.Content.Direction.RTL, entry.getContent().getDirection());
+    assertEquals("saved", entry.getTags().get(0).getLabel());
+  }
+
+  @Test
+  public void testKeepUnknownFields() throws Exception {
+    Entry entry = parse(ENTRIES, EntriesResponse.class, ParseContext.DEFAULT).items().get(0);
+
+    Map<?, ?> unknown = (Map<?, ?>) entry.getUnknownKeys().get("unknownObject");
+    assertTrue(unknown instanceof ArrayMap);
+    List<?> nested = (List<?>) unknown.get("nested");
+    assertEquals(6, nested.size());
+    assertTrue(Data.isNull(nested.get(3)));
+    assertEquals(new BigDecimal(7), entry.getUnknownKeys().get("unknownNumber"));
+  }
+
+  @Test
+  public void testSharedStringPool() throws Exception {
+    ParseContext context = ParseContext.DEFAULT.withStringPool(new StringPool());
+
+    Entry first = parse(ENTRIES, EntriesResponse.class, context).items().get(0);
+    Entry second = parse(ENTRIES, EntriesResponse.class, context).items().get(1);
+
+    assertSame(first.getOrigin().getStreamId(), second.getOrigin().getStreamId());
+    assertSame(first.getAlternate().get(0).getType(), second.getAlternate().get(0).getType());
+    // not pooled
+    assertNotSame(first.getTitle(), parse(ENTRIES, EntriesResponse.class, context).items()
+        .get(0).getTitle());
+  }
+
+  @Test
+  public void testPageStringPool() throws Exception {
+    ParseContext context = ParseContext.DEFAULT.withPageStringPool(16);
+
+    EntriesResponse page = parse(ENTRIES, EntriesResponse.class, context);
+    EntriesResponse otherPage = parse(ENTRIES, EntriesResponse.class, context);
+
+    assertSame(page.items().get(0).getOrigin().getTitle(),
+               page.items().get(1).getOrigin().getTitle());
+    assertNotSame(page.items().get(0).getOrigin().getTitle(),
+                  otherPage.items().get(0).getOrigin().getTitle());
+  }
+
+  @Test
+  public void testWriteMatchesReflectiveWrite() throws Exception {
+    EntriesResponse response = parse(ENTRIES, EntriesResponse.class, ParseContext.DEFAULT);
+    ByteArrayOutputStream written = new ByteArrayOutputStream();
+
+    new CodecJsonHttpContent(JSON_FACTORY, response).writeTo(written);
+
+    assertEquals(normalize(JSON_FACTORY.toString(response)), normalize(written.toString("UTF-8")));
+  }
+
+  @Test
+  public void testStringPool() throws Exception {
+    StringPool pool = new StringPool(2);
+    String value = new String("value");
+
+    assertSame(value, pool.intern(value));
+    assertSame(value, pool.intern(new String("value")));
+    assertEquals(null, pool.intern(null));
+    assertEquals(2, pool.getCapacity());
+    assertEquals(4, new StringPool(3).getCapacity());
+    assertEquals(2, new StringPool(1).getCapacity());
+  }
+
+  @Test
+  public void testStringPoolEvictsLeastRecentlyUsed() throws Exception {
+    StringPool pool = new StringPool(2);
+    String a = new String("a");
+    String b = new String("b");
+    pool.intern(a);
+    pool.intern(b);
+
+    // a is used again, so the newcomer evicts b
+    assertSame(a, pool.intern(new String("a")));
+    pool.intern("c");
+
+    assertSame(a, pool.intern(new String("a")));
+    assertNotSame(b, pool.intern(new String("b")));
+  }
+
+  /** Returns the object parsed reflectively and written back as generic JSON. */
+  private static Object reflective(String json, Type type) throws IOException {
+    Object parsed = new JsonObjectParser(JSON_FACTORY).parseAndClose(new StringReader(json), type);
+    return normalize(JSON_FACTORY.toString(parsed));
+  }
+
+  /** Returns the object parsed with generated codecs and written back as generic JSON. */
+  private static Object generated(String json, Class<?> type, ParseContext context)
+      throws IOException {
+    return normalize(JSON_FACTORY.toString(parse(json, type, context)));
+  }
+
+  private static <T> T parse(String json, Class<T> type, ParseContext context)
+      throws IOException {
+    return type.cast(new CodecObjectParser(JSON_FACTORY, context)
+                         .parseAndClose(new StringReader(json), type));
+  }
+
+  /** Returns JSON parsed into generic maps and lists, so key order doesn't matter. */
+  private static Object normalize(String json) throws IOException {
+    return JSON_FACTORY.createJsonParser(json).parse(GenericJson.class);
+  }
+
+  /** Returns JSON written with single quotes. */
+  static String json(String singleQuoted) {
+    return singleQuoted.replace('\'', '"');
+  }
+}
@@ -0,0 +1,138 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *  Contributors:
+ *               Bademus
+ */
+
+
+package org.github.bademux.feedly.api.model;
+
+import com.google.api.client.json.JsonFactory;
+import com.google.api.client.json.JsonGenerator;
+import com.google.api.client.json.JsonObjectParser;
+import com.google.api.client.json.JsonParser;
+import com.google.api.client.json.gson.GsonFactory;
+
+import org.github.bademux.feedly.api.json.CodecObjectParser;
+import org.github.bademux.feedly.api.json.JsonCodecs;
+import org.github.bademux.feedly.api.json.ParseContext;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class CompactEntryCodecTest {
+
+  private static final JsonFactory JSON_FACTORY = GsonFactory.getDefaultInstance();
+
+  private static final String ENTRY = (
+      "{'id':'babced20:1458a1a0000:72e6cc3a','fingerprint':'49b64a08','sid':'1a2b',"
+      + "'originId':'http://www.theverge.com/rss/full.xml?p=1000','title':'Network api',"
+      + "'author':'Jane Roe','crawled':1397846400000,'recrawled':1397846500000,"
+      + "'published':1397842800000,'updated':1397846400000,'actionTimestamp':1397846600000,"
+      + "'origin':{'streamId':'feed/http://www.theverge.com/rss/full.xml',"
+      + "'title':'www.theverge.com','htmlUrl':'http://www.theverge.com/'},"
+      + "'alternate':[{'href':'http://www.theverge.com/2014/04/0/story','type':'text/html'}],"
+      + "'summary':{'content':'<p>summary</p>','direction':'ltr'},"
+      + "'content':{'content':'<p>content</p>','direction':'rtl'},"
+      + "'visual':{'url':'http://cdn.example.com/img/0-0.jpg','width':640,'height':360,"
+      + "'contentType':'image/jpeg'},"
+      + "'enclosure':[{'href':'http://cdn.example.com/a.mp3','length':1024,'type':'audio/mpeg'}],"
+      + "'keywords':['android','json'],'engagement':12,'engagementRate':0.75,'unread':true,"
+      + "'tags':[{'id':'user/-/tag/global.saved','label':'saved','extra':'tag'}],"
+      + "'categories':[{'id':'user/-/category/tech','label':'tech'}],"
+      + "'canonical':[{'href':'http://www.theverge.com/story'}],"
+      + "'unknown':{'nested':[1,{'deep':null}]}}").replace('\'', '"');
+
+  @Test
+  public void testReadMatchesCompactCopyOfEntry() throws Exception {
+    // the compact copy shares nested objects with their unknown fields
+    String json = ENTRY.replace(",\"extra\":\"tag\"", "");
+    Entry entry = new JsonObjectParser(JSON_FACTORY)
+        .parseAndClose(new StringReader(json), Entry.class);
+
+    assertEquals(write(CompactEntry.of(entry)), write(read(json)));
+  }
+
+  @Test
+  public void testRead() throws Exception {
+    CompactEntry entry = read(ENTRY);
+
+    assertEquals("babced20:1458a1a0000:72e6cc3a", entry.getId());
+    assertEquals(1397846400000L, entry.getCrawled());
+    assertEquals(1397846600000L, entry.getActionTimestamp());
+    assertEquals(12, entry.getEngagement());
+    assertEquals(Boolean.TRUE, entry.getUnread());
+    assertEquals("<p>content</p>", entry.getContent());
+    assertEquals(Entry.Content.Direction.RTL, entry.getContentDirection());
+    assertEquals("www.theverge.com", entry.getOrigin().getTitle());
+    assertEquals("text/html", entry.getAlternate().get(0).getType());
+    assertEquals("saved", entry.getTags().get(0).getLabel());
+    // nested objects are shared, they keep no unknown fields
+    assertTrue(entry.getTags().get(0).getUnknownKeys().isEmpty());
+  }
+
+  @Test
+  public void testMissingValues() throws Exception {
+    CompactEntry entry = read("{\"id\":\"entry\",\"engagement\":null,\"crawled\":null}");
+
+    assertEquals("entry", entry.getId());
+    assertEquals(CompactEntry.NO_TIMESTAMP, entry.getCrawled());
+    assertEquals(CompactEntry.NO_TIMESTAMP, entry.getPublished());
+    assertEquals(CompactEntry.NO_ENGAGEMENT, entry.getEngagement());
+    assertNull(entry.getUnread());
+    assertNull(entry.getContent());
+    assertNull(entry.getTags());
+    assertEquals("{\"id\":\"entry\"}", write(entry));
+  }
+
+  @Test
+  public void testRoundTrip() throws Exception {
+    String written = write(read(ENTRY));
+
+    assertEquals(written, write(read(written)));
+  }
+
+  @Test
+  public void testCodecIsFound() throws Exception {
+    assertSame(CompactEntryCodec.INSTANCE, JsonCodecs.get(CompactEntry.class));
+    CompactEntry entry = new CodecObjectParser(JSON_FACTORY)
+        .parseAndClose(new StringReader(ENTRY), CompactEntry.class);
+    assertEquals(write(read(ENTRY)), write(entry));
+  }
+
+  private static CompactEntry read(String json) throws IOException {
+    JsonParser parser = JSON_FACTORY.createJsonParser(json);
+    try {
+      parser.nextToken();
+      return CompactEntryCodec.INSTANCE.read(parser, ParseContext.DEFAULT);
+    } finally {
+      parser.close();
+    }
+  }
+
+  private static String write(CompactEntry entry) throws IOException {
+    StringWriter out = new StringWriter();
+    JsonGenerator generator = JSON_FACTORY.createJsonGenerator(out);
+    CompactEntryCodec.INSTANCE.write(generator, entry);
+    generator.flush();
+    return out.toString();
+  }
+}
@@ -0,0 +1,107 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *  Contributors:
+ *               Bademus
+ */
+
+
+package org.github.bademux.feedly.api.model;
+
+import com.google.api.client.http.UriTemplate;
+import com.google.api.client.util.GenericData;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class StreamIdTest {
+
+  @Test
+  public void testUserId() throws Exception {
+    StreamId id = StreamId.of("user/c805fcbf-3acf-4302-a97e-d82f9d7c897f/category/tech news");
+
+    assertEquals(StreamId.Kind.CATEGORY, id.getKind());
+    assertEquals(Category.PREFIX, id.getPrefix());
+    assertEquals("c805fcbf-3acf-4302-a97e-d82f9d7c897f", id.getUserId());
+    assertEquals("tech news", id.getName());
+    assertEquals("user%2Fc805fcbf-3acf-4302-a97e-d82f9d7c897f%2Fcategory%2Ftech%20news",
+                 id.getEncodedId());
+  }
+
+  @Test
+  public void testGlobalId() throws Exception {
+    StreamId id = StreamId.of("feed/http://www.theverge.com/rss/full.xml?a=b&c=d");
+
+    assertEquals(StreamId.Kind.FEED, id.getKind());
+    assertNull(id.getUserId());
+    assertEquals("http://www.theverge.com/rss/full.xml?a=b&c=d", id.getName());
+  }
+
+  @Test
+  public void testUnknownPrefix() throws Exception {
+    assertEquals(StreamId.Kind.OTHER, StreamId.of("board/name").getKind());
+    StreamId id = StreamId.of("nothing");
+    assertEquals(StreamId.Kind.OTHER, id.getKind());
+    assertNull(id.getPrefix());
+    assertEquals("nothing", id.getName());
+  }
+
+  @Test
+  public void testBuild() throws Exception {
+    assertEquals("user/-/tag/global.saved",
+                 StreamId.of(StreamId.Kind.TAG, "global.saved", "").getId());
+    assertEquals("user/u/tag/saved", StreamId.of(StreamId.Kind.TAG, "saved", "u").getId());
+    assertEquals("topic/tech", StreamId.of(StreamId.Kind.TOPIC, "tech").getId());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testBuildWithoutPrefix() throws Exception {
+    StreamId.of(StreamId.Kind.OTHER, "name");
+  }
+
+  @Test
+  public void testInterned() throws Exception {
+    StreamId id = StreamId.of(StreamId.Kind.CATEGORY, "interned", "u");
+
+    assertSame(id, StreamId.of("user/u/category/interned"));
+    assertSame(id, StreamId.of(new String("user/u/category/interned")));
+  }
+
+  @Test
+  public void testInternTableIsBounded() throws Exception {
+    StreamId id = StreamId.of("topic/first");
+    for (int i = 0; i < StreamId.MAX_INTERNED; i++) {
+      StreamId.of("topic/" + i);
+    }
+
+    StreamId again = StreamId.of("topic/first");
+    assertNotSame(id, again);
+    assertEquals(id, again);
+  }
+
+  @Test
+  public void testEncodeMatchesUriTemplate() throws Exception {
+    String[] ids = {"user/-/category/global.all", "feed/http://example.com/rss?a=b&c=%20d",
+                    "user/u/tag/café & crème", "topic/a+b#c"};
+    for (String id : ids) {
+      String expanded = UriTemplate.expand("", "{id}", new GenericData().set("id", id), false);
+      assertEquals(id, expanded, StreamId.encode(id));
+      assertEquals(id, expanded, StreamId.of(id).getEncodedId());
+      assertEquals(id, expanded, StreamId.encode(id));
+    }
+  }
+}
@@ -0,0 +1,272 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *  Contributors:
+ *               Bademus
+ */
+
+
+package org.github.bademux.feedly.api.oauth2;
+
+import com.google.api.client.auth.oauth2.Credential;
+import com.google.api.client.auth.oauth2.CredentialRefreshListener;
+import com.google.api.client.auth.oauth2.TokenErrorResponse;
+import com.google.api.client.auth.oauth2.TokenResponse;
+import com.google.api.client.http.GenericUrl;
+import com.google.api.client.http.HttpRequest;
+import com.google.api.client.http.HttpResponse;
+import com.google.api.client.http.LowLevelHttpRequest;
+import com.google.api.client.http.LowLevelHttpResponse;
+import com.google.api.client.json.gson.GsonFactory;
+import com.google.api.client.testing.http.MockHttpTransport;
+import com.google.api.client.testing.http.MockLowLevelHttpRequest;
+import com.google.api.client.testing.http.MockLowLevelHttpResponse;
+import com.google.api.client.util.store.MemoryDataStoreFactory;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class FeedlyCredentialTest {
+
+  private static final String USER_ID = "c805fcbf-3acf-4302-a97e-d82f9d7c897f";
+
+  /** Token requests received by the token server. */
+  private final AtomicInteger tokenRequests = new AtomicInteger();
+
+  private final AtomicInteger tokenResponses = new AtomicInteger();
+
+  private final AtomicInteger tokenErrorResponses = new AtomicInteger();
+
+  /** Token requests wait for it, so concurrent refreshes overlap. */
+  private final CountDownLatch release = new CountDownLatch(1);
+
+  private final CountDownLatch tokenRequested = new CountDownLatch(1);
+
+  /** Listeners are notified after the token is set. */
+  private final CountDownLatch notified = new CountDownLatch(1);
+
+  /** Status code of token responses. */
+  private volatile int tokenStatusCode = 200;
+
+  private ScheduledExecutorService refreshScheduler;
+
+  private ExecutorService executor;
+
+  @Before
+  public void setUp() throws Exception {
+    refreshScheduler = FeedlyCredential.newRefreshScheduler();
+    executor = Executors.newCachedThreadPool();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    release.countDown();
+    refreshScheduler.shutdownNow();
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void testConcurrentRefreshesShareOneRequest() throws Exception {
+    final FeedlyCredential credential =
+        newFlow(null).createAndStoreCredential(token(3600), USER_ID);
+
+    Callable<Boolean> retryUnauthorized = new Callable<Boolean>() {
+      public Boolean call() throws Exception { return retry(credential, unauthorized("old")); }
+    };
+    List<FutureTask<Boolean>> retries = new ArrayList<FutureTask<Boolean>>();
+    retries.add(new FutureTask<Boolean>(retryUnauthorized));
+    executor.execute(retries.get(0));
+    assertTrue(tokenRequested.await(5, TimeUnit.SECONDS));
+    List<Thread> joined = new ArrayList<Thread>();
+    for (int i = 0; i < 3; i++) {
+      retries.add(new FutureTask<Boolean>(retryUnauthorized));
+      joined.add(new Thread(retries.get(i + 1)));
+      joined.get(i).start();
+    }
+    // the other refreshes wait for the request in flight
+    for (Thread thread : joined) {
+      awaitWaiting(thread);
+    }
+    release.countDown();
+
+    for (FutureTask<Boolean> result : retries) {
+      assertTrue(result.get(5, TimeUnit.SECONDS));
+    }
+    assertEquals(1, tokenRequests.get());
+    assertEquals(1, tokenResponses.get());
+    assertEquals("new1", credential.getAccessToken());
+  }
+
+  @Test
+  public void testBackgroundRefreshIsShared() throws Exception {
+    release.countDown();
+    FeedlyAuthorizationCodeFlow flow = newFlow(refreshScheduler);
+    // expires within the refresh ahead time, so the background refresh starts at once
+    FeedlyCredential credential = flow.createAndStoreCredential(token(1), USER_ID);
+
+    assertTrue(notified.await(5, TimeUnit.SECONDS));
+    assertEquals("new1", credential.getAccessToken());
+    assertEquals(1, tokenResponses.get());
+    assertEquals("new1",
+                 flow.getFeedlyCredentialDataStore().get(USER_ID).getSnapshot().getAccessToken());
+    // a request sent with the old token retries without another refresh
+    assertTrue(retry(credential, unauthorized("old")));
+    assertEquals(1, tokenRequests.get());
+  }
+
+  @Test
+  public void testExpiringTokenIsRefreshedBeforeRequest() throws Exception {
+    release.countDown();
+    FeedlyCredential credential = newFlow(null).createAndStoreCredential(token(30), USER_ID);
+    HttpRequest request = new MockHttpTransport().createRequestFactory()
+        .buildGetRequest(new GenericUrl("https://cloud.feedly.com/v3/profile"));
+
+    credential.intercept(request);
+
+    assertEquals(1, tokenRequests.get());
+    assertEquals("new1", request.getHeaders().getAuthorization());
+  }
+
+  @Test
+  public void testRejectedRefreshClearsToken() throws Exception {
+    release.countDown();
+    tokenStatusCode = 400;
+    FeedlyCredential credential = newFlow(null).createAndStoreCredential(token(3600), USER_ID);
+
+    assertFalse(retry(credential, unauthorized("old")));
+
+    assertNull(credential.getAccessToken());
+    assertEquals(1, tokenErrorResponses.get());
+    assertEquals(0, tokenResponses.get());
+  }
+
+  @Test
+  public void testLoadedCredentialIsShared() throws Exception {
+    release.countDown();
+    FeedlyAuthorizationCodeFlow flow = newFlow(refreshScheduler);
+    FeedlyCredential credential = flow.createAndStoreCredential(token(3600), USER_ID);
+
+    assertSame(credential, flow.loadCredential(USER_ID));
+    assertSame(credential, flow.loadCredential(USER_ID));
+
+    flow.releaseCredential(USER_ID);
+    FeedlyCredential loaded = flow.loadCredential(USER_ID);
+    assertNotSame(credential, loaded);
+    assertEquals("old", loaded.getAccessToken());
+    assertSame(loaded, flow.loadCredential(USER_ID));
+
+    flow.getFeedlyCredentialDataStore().delete(USER_ID);
+    assertNull(flow.loadCredential(USER_ID));
+  }
+
+  private FeedlyAuthorizationCodeFlow newFlow(ScheduledExecutorService scheduler)
+      throws IOException {
+    MockHttpTransport tokenServer = new MockHttpTransport() {
+      @Override
+      public LowLevelHttpRequest buildRequest(String method, String url) {
+        return new MockLowLevelHttpRequest(url) {
+          @Override
+          public LowLevelHttpResponse execute() throws IOException {
+            int request = tokenRequests.incrementAndGet();
+            tokenRequested.countDown();
+            try {
+              release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+              throw new InterruptedIOException();
+            }
+            String content = tokenStatusCode == 200
+                ? "{\"access_token\":\"new" + request + "\",\"refresh_token\":\"refresh\","
+                  + "\"expires_in\":3600,\"id\":\"" + USER_ID + "\",\"plan\":\"standard\","
+                  + "\"token_type\":\"Bearer\"}"
+                : "{\"error\":\"invalid_grant\"}";
+            return new MockLowLevelHttpResponse().setStatusCode(tokenStatusCode)
+                .setContentType("application/json; charset=UTF-8").setContent(content);
+          }
+        };
+      }
+    };
+    return new FeedlyAuthorizationCodeFlow.Builder(tokenServer, GsonFactory.getDefaultInstance(),
+                                                   "client", "secret")
+        .setDataStoreFactory(new MemoryDataStoreFactory())
+        .setRefreshScheduler(scheduler)
+        .addRefreshListener(new CredentialRefreshListener() {
+          public void onTokenResponse(Credential credential, TokenResponse tokenResponse) {
+            tokenResponses.incrementAndGet();
+            notified.countDown();
+          }
+
+          public void onTokenErrorResponse(Credential credential,
+                                           TokenErrorResponse tokenErrorResponse) {
+            tokenErrorResponses.incrementAndGet();
+          }
+        }).build();
+  }
+
+  private static FeedlyTokenResponse token(long expiresInSeconds) {
+    FeedlyTokenResponse response = new FeedlyTokenResponse();
+    response.setAccessToken("old");
+    response.setRefreshToken("refresh");
+    response.setExpiresInSeconds(expiresInSeconds);
+    response.set("id", USER_ID);
+    return response;
+  }
+
+  private static void awaitWaiting(Thread thread) throws InterruptedException {
+    while (thread.getState() != Thread.State.WAITING) {
+      assertTrue("thread must not end before the refresh is released", thread.isAlive());
+      Thread.sleep(1);
+    }
+  }
+
+  /** Returns whether the credential retries the request of the response. */
+  private static boolean retry(FeedlyCredential credential, HttpResponse response) {
+    return credential.handleResponse(response.getRequest(), response, true);
+  }
+
+  /** Returns {@code 401} response to a request sent with the given token. */
+  private static HttpResponse unauthorized(String accessToken) throws IOException {
+    MockHttpTransport transport = new MockHttpTransport() {
+      @Override
+      public LowLevelHttpRequest buildRequest(String method, String url) {
+        return new MockLowLevelHttpRequest(url)
+            .setResponse(new MockLowLevelHttpResponse().setStatusCode(401));
+      }
+    };
+    HttpRequest request = transport.createRequestFactory()
+        .buildGetRequest(new GenericUrl("https://cloud.feedly.com/v3/profile"))
+        .setThrowExceptionOnExecuteError(false);
+    request.getHeaders().setAuthorization(accessToken);
+    return request.execute();
+  }
+}
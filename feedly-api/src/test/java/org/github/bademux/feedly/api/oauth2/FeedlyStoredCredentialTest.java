@@ -0,0 +1,160 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *  Contributors:
+ *               Bademus
+ */
+
+
+package org.github.bademux.feedly.api.oauth2;
+
+import com.google.api.client.http.javanet.NetHttpTransport;
+import com.google.api.client.json.gson.GsonFactory;
+import com.google.api.client.util.store.DataStore;
+import com.google.api.client.util.store.MemoryDataStoreFactory;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FeedlyStoredCredentialTest {
+
+  private static final String USER_ID = "c805fcbf-3acf-4302-a97e-d82f9d7c897f";
+
+  private static final int WRITERS = 4;
+
+  private static final int UPDATES = 10000;
+
+  @Test
+  public void testConcurrentUpdatesAreConsistentAndNotLost() throws Exception {
+    final FeedlyStoredCredential credential = new FeedlyStoredCredential(
+        new FeedlyStoredCredential.Snapshot("t0", "r0", 0L, USER_ID, "standard"));
+    final CountDownLatch start = new CountDownLatch(1);
+    final AtomicBoolean writing = new AtomicBoolean(true);
+    ExecutorService executor = Executors.newFixedThreadPool(WRITERS + 1);
+    try {
+      // reads must never see tokens of different updates
+      Future<Integer> reader = executor.submit(new Callable<Integer>() {
+        public Integer call() throws Exception {
+          start.await();
+          int reads = 0;
+          while (writing.get()) {
+            FeedlyStoredCredential.Snapshot snapshot = credential.getSnapshot();
+            assertEquals(snapshot.getAccessToken().substring(1),
+                         snapshot.getRefreshToken().substring(1));
+            reads++;
+          }
+          return reads;
+        }
+      });
+      List<Future<?>> writers = new ArrayList<Future<?>>();
+      for (int i = 0; i < WRITERS; i++) {
+        writers.add(executor.submit(new Callable<Void>() {
+          public Void call() throws Exception {
+            start.await();
+            for (int update = 0; update < UPDATES; update++) {
+              FeedlyStoredCredential.Snapshot current;
+              FeedlyStoredCredential.Snapshot next;
+              do {
+                current = credential.getSnapshot();
+                long version = current.getExpirationTimeMilliseconds() + 1;
+                next = current.withAccessToken("t" + version).withRefreshToken("r" + version)
+                    .withExpirationTimeMilliseconds(version);
+              } while (!credential.compareAndSet(current, next));
+            }
+            return null;
+          }
+        }));
+      }
+      start.countDown();
+      for (Future<?> writer : writers) {
+        writer.get(30, TimeUnit.SECONDS);
+      }
+      writing.set(false);
+      assertTrue(reader.get(5, TimeUnit.SECONDS) > 0);
+    } finally {
+      executor.shutdownNow();
+    }
+
+    long updates = (long) WRITERS * UPDATES;
+    assertEquals(Long.valueOf(updates), credential.getExpirationTimeMilliseconds());
+    assertEquals("t" + updates, credential.getAccessToken());
+    assertEquals("standard", credential.getPlan());
+  }
+
+  @Test
+  public void testStaleCompareAndSetFails() throws Exception {
+    FeedlyStoredCredential credential = new FeedlyStoredCredential(
+        new FeedlyStoredCredential.Snapshot("old", "refresh", null, USER_ID, null));
+    FeedlyStoredCredential.Snapshot stale = credential.getSnapshot();
+    credential.setAccessToken("new");
+
+    assertFalse(credential.compareAndSet(stale, stale.withPlan("pro")));
+    assertEquals("new", credential.getAccessToken());
+    assertEquals(null, credential.getPlan());
+  }
+
+  @Test
+  public void testRefreshKeepsValuesMissingInResponse() throws Exception {
+    FeedlyStoredCredential credential = new FeedlyStoredCredential(
+        new FeedlyStoredCredential.Snapshot("old", "refresh", null, USER_ID, "pro"));
+    FeedlyTokenResponse response = new FeedlyTokenResponse();
+    response.setAccessToken("new");
+    response.setExpiresInSeconds(3600L);
+
+    FeedlyStoredCredential.Snapshot refreshed = credential.refresh(response);
+
+    assertEquals(refreshed, credential.getSnapshot());
+    assertEquals("new", refreshed.getAccessToken());
+    assertEquals("refresh", refreshed.getRefreshToken());
+    assertEquals(USER_ID, refreshed.getUserId());
+    assertEquals("pro", refreshed.getPlan());
+    assertTrue(refreshed.getExpirationTimeMilliseconds() > System.currentTimeMillis());
+  }
+
+  @Test
+  public void testRefreshListenerAppliesTokenResponse() throws Exception {
+    DataStore<FeedlyStoredCredential> store =
+        FeedlyStoredCredential.getDefaultDataStore(new MemoryDataStoreFactory());
+    store.set(USER_ID, new FeedlyStoredCredential(
+        new FeedlyStoredCredential.Snapshot("old", "refresh", null, USER_ID, "pro")));
+    FeedlyCredential credential = new FeedlyCredential.Builder()
+        .setTransport(new NetHttpTransport()).setJsonFactory(GsonFactory.getDefaultInstance())
+        .build();
+    FeedlyTokenResponse response = new FeedlyTokenResponse();
+    response.setAccessToken("new");
+    // the credential lost user id and plan missing in the refresh response
+    credential.setFromTokenResponse(response);
+
+    new FeedlyDataStoreCredentialRefreshListener(USER_ID, store)
+        .onTokenResponse(credential, response);
+
+    FeedlyStoredCredential.Snapshot stored = store.get(USER_ID).getSnapshot();
+    assertEquals("new", stored.getAccessToken());
+    assertEquals("refresh", stored.getRefreshToken());
+    assertEquals(USER_ID, stored.getUserId());
+    assertEquals("pro", stored.getPlan());
+  }
+}
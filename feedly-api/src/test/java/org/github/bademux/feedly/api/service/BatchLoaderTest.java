@@ -0,0 +1,162 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *  Contributors:
+ *               Bademus
+ */
+
+
+package org.github.bademux.feedly.api.service;
+
+import com.google.api.client.http.LowLevelHttpResponse;
+
+import org.github.bademux.feedly.api.model.Entry;
+import org.github.bademux.feedly.api.model.FeedInfo;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class BatchLoaderTest {
+
+  private static final Pattern ID = Pattern.compile("\"(entry\\d+|feed/\\d+)\"");
+
+  private static final List<String> ENTRY_IDS = Arrays.asList("entry1", "entry2", "entry3",
+                                                              "entry4", "entry5", "entry6");
+
+  private Transport transport;
+
+  private Feedly feedly;
+
+  @Before
+  public void setUp() throws Exception {
+    transport = new Transport();
+    feedly = transport.newFeedly().build();
+  }
+
+  @Test
+  public void testLoadsAreCoalesced() throws Exception {
+    BatchLoader<Entry> loader = feedly.entries().newLoader(TimeUnit.SECONDS.toMillis(10), 1000);
+
+    List<RequestFuture<Entry>> entries = new ArrayList<RequestFuture<Entry>>();
+    for (String entryId : ENTRY_IDS) {
+      entries.add(loader.load(entryId));
+    }
+    assertSame(entries.get(0), loader.load(ENTRY_IDS.get(0)));
+    RequestFuture<Entry> missing = loader.load("missing");
+    loader.flush();
+
+    for (int i = 0; i < ENTRY_IDS.size(); i++) {
+      assertEquals(ENTRY_IDS.get(i), entries.get(i).get(5, TimeUnit.SECONDS).getId());
+    }
+    assertNull(missing.get(5, TimeUnit.SECONDS));
+    assertEquals(1, transport.requestCount());
+    assertTrue(transport.requests.get(0).startsWith("POST "));
+    assertTrue(transport.requests.get(0).endsWith("/entries/.mget"));
+    assertTrue(transport.contents.get(0).contains("\"missing\""));
+  }
+
+  @Test
+  public void testWindowElapses() throws Exception {
+    BatchLoader<FeedInfo> loader = feedly.feeds().newLoader(10, 1000);
+
+    FeedInfo feed = loader.load("feed/1").get(5, TimeUnit.SECONDS);
+
+    assertNotNull(feed);
+    assertEquals("feed/1", feed.getId());
+    assertTrue(transport.requests.get(0).endsWith("/feeds/.mget"));
+  }
+
+  @Test
+  public void testFullBatchIsSent() throws Exception {
+    BatchLoader<Entry> loader = feedly.entries().newLoader(TimeUnit.MINUTES.toMillis(1), 5);
+
+    List<RequestFuture<Entry>> entries = new ArrayList<RequestFuture<Entry>>();
+    for (String entryId : ENTRY_IDS.subList(0, 5)) {
+      entries.add(loader.load(entryId));
+    }
+
+    for (RequestFuture<Entry> entry : entries) {
+      assertNotNull(entry.get(5, TimeUnit.SECONDS));
+    }
+    assertEquals(1, transport.requestCount());
+  }
+
+  @Test
+  public void testFailedBatchFailsAllLoads() throws Exception {
+    transport.failing = true;
+    BatchLoader<Entry> loader = feedly.entries().newLoader(TimeUnit.MINUTES.toMillis(1), 1000);
+
+    RequestFuture<Entry> first = loader.load(ENTRY_IDS.get(0));
+    RequestFuture<Entry> second = loader.load(ENTRY_IDS.get(1));
+    loader.flush();
+
+    for (RequestFuture<Entry> entry : Arrays.asList(first, second)) {
+      try {
+        entry.get(5, TimeUnit.SECONDS);
+        fail("failed batch must fail its loads");
+      } catch (ExecutionException e) {
+        assertTrue(e.getCause() instanceof IOException);
+      }
+    }
+  }
+
+  @Test
+  public void testClosedLoaderRejectsLoads() throws Exception {
+    BatchLoader<Entry> loader = feedly.entries().newLoader();
+    RequestFuture<Entry> entry = loader.load(ENTRY_IDS.get(0));
+
+    loader.close();
+
+    assertNotNull(entry.get(5, TimeUnit.SECONDS));
+    try {
+      loader.load("entry");
+      fail("closed loader must reject loads");
+    } catch (IllegalStateException e) {
+      // expected
+    }
+  }
+
+  /** Answers {@code .mget} with an item for every requested id but {@code "missing"}. */
+  private static class Transport extends RecordingTransport {
+
+    volatile boolean failing;
+
+    @Override
+    LowLevelHttpResponse respond(String method, String url, String content) throws IOException {
+      if (failing) {
+        return status(500);
+      }
+      StringBuilder items = new StringBuilder();
+      for (Matcher matcher = ID.matcher(content); matcher.find(); ) {
+        items.append(items.length() == 0 ? "[" : ",");
+        items.append("{\"id\":\"").append(matcher.group(1)).append("\"}");
+      }
+      return json(items.length() == 0 ? "[]" : items.append(']').toString());
+    }
+  }
+}
@@ -0,0 +1,151 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *  Contributors:
+ *               Bademus
+ */
+
+
+package org.github.bademux.feedly.api.service;
+
+import com.google.api.client.http.HttpResponseException;
+import com.google.api.client.http.LowLevelHttpResponse;
+import com.google.api.client.util.escape.CharEscapers;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ChunksTest {
+
+  @Test
+  public void testEncodedLength() throws Exception {
+    assertEquals(0, Chunks.encodedLength(Collections.<String>emptyList()));
+    assertEquals(1, Chunks.encodedLength(Arrays.asList("a")));
+    // "a,b/c" with the slash escaped
+    assertEquals(7, Chunks.encodedLength(Arrays.asList("a", "b/c")));
+  }
+
+  @Test
+  public void testSplit() throws Exception {
+    List<List<String>> chunks = Chunks.split(Arrays.asList("aa", "bb", "cc", "dd", "eeeeee"), 5);
+
+    assertEquals(Arrays.asList(Arrays.asList("aa", "bb"), Arrays.asList("cc", "dd"),
+                               Arrays.asList("eeeeee")), chunks);
+  }
+
+  @Test
+  public void testSplitNothing() throws Exception {
+    assertEquals(Collections.singletonList(Collections.<String>emptyList()),
+                 Chunks.split(Collections.<String>emptyList(), 10));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testSplitWithoutRoom() throws Exception {
+    Chunks.split(Arrays.asList("a"), 0);
+  }
+
+  @Test
+  public void testDeleteTagsIsChunked() throws Exception {
+    RecordingTransport transport = new RecordingTransport();
+    Feedly feedly = transport.newFeedly().build();
+    List<String> tagIds = new ArrayList<String>();
+    for (int i = 0; i < 100; i++) {
+      tagIds.add(feedly.newTag("tag" + i).getId());
+    }
+
+    BulkResult result = feedly.tags().new Delete(tagIds).executeChunked(500, 3);
+
+    assertTrue(result.isSuccessful());
+    assertEquals(transport.requestCount(), result.getRequestCount());
+    assertTrue(result.getRequestCount() > 1);
+    Set<String> sentIds = new HashSet<String>();
+    for (String request : transport.requests) {
+      String url = request.substring("DELETE ".length());
+      assertTrue(url, url.length() <= 500);
+      String path = url.substring(url.indexOf("/tags/") + "/tags/".length());
+      for (String tagId : path.split(",")) {
+        assertTrue(sentIds.add(CharEscapers.decodeUri(tagId)));
+      }
+    }
+    assertEquals(new HashSet<String>(tagIds), sentIds);
+  }
+
+  @Test
+  public void testUntagIsChunked() throws Exception {
+    RecordingTransport transport = new RecordingTransport();
+    Feedly feedly = transport.newFeedly().build();
+    List<String> tagIds = Arrays.asList(feedly.newTag("a").getId(), feedly.newTag("b").getId());
+    List<String> entryIds = new ArrayList<String>();
+    for (int i = 0; i < 100; i++) {
+      entryIds.add("entry_" + i);
+    }
+
+    BulkResult result = feedly.tags().untag(entryIds, tagIds).executeChunked(500, 2);
+
+    assertTrue(result.isSuccessful());
+    assertEquals(transport.requestCount(), result.getRequestCount());
+    Set<String> untagged = new HashSet<String>();
+    for (String request : transport.requests) {
+      String url = request.substring("DELETE ".length());
+      assertTrue(url, url.length() <= 500);
+      String[] path = url.substring(url.indexOf("/tags/") + "/tags/".length()).split("/");
+      for (String tagId : path[0].split(",")) {
+        for (String entryId : path[1].split(",")) {
+          assertTrue(untagged.add(CharEscapers.decodeUri(tagId) + ' ' + entryId));
+        }
+      }
+    }
+    assertEquals(tagIds.size() * entryIds.size(), untagged.size());
+  }
+
+  @Test
+  public void testFailedChunkDoesNotStopOthers() throws Exception {
+    RecordingTransport transport = new RecordingTransport() {
+      @Override
+      LowLevelHttpResponse respond(String method, String url) throws IOException {
+        return url.contains("tag0") ? status(500) : super.respond(method, url);
+      }
+    };
+    Feedly feedly = transport.newFeedly().build();
+    List<String> tagIds = new ArrayList<String>();
+    for (int i = 0; i < 10; i++) {
+      tagIds.add(feedly.newTag("tag" + i).getId());
+    }
+
+    BulkResult result = feedly.tags().new Delete(tagIds).executeChunked(150, 2);
+
+    assertFalse(result.isSuccessful());
+    assertEquals(transport.requestCount(), result.getRequestCount());
+    assertEquals(1, result.getFailures().size());
+    BulkResult.Failure failure = result.getFailures().get(0);
+    assertEquals(500, ((HttpResponseException) failure.getCause()).getStatusCode());
+    try {
+      result.checkSuccessful();
+      fail("failed chunk must be reported");
+    } catch (IOException e) {
+      // expected
+    }
+  }
+}
@@ -0,0 +1,103 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *  Contributors:
+ *               Bademus
+ */
+
+
+package org.github.bademux.feedly.api.service;
+
+import com.google.api.client.http.GenericUrl;
+import com.google.api.client.http.UriTemplate;
+
+import org.github.bademux.feedly.api.model.StreamId;
+import org.github.bademux.feedly.api.model.Topic;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class CompiledUriTemplateTest {
+
+  private final Feedly feedly = new RecordingTransport().newFeedly().build();
+
+  @Test
+  public void testWithoutVariables() throws Exception {
+    assertExpandsLikeUriTemplate(feedly.profile().get());
+  }
+
+  @Test
+  public void testPathVariable() throws Exception {
+    assertExpandsLikeUriTemplate(feedly.entries().get("babced20:1458a1a0000:72e6cc3a"));
+    assertExpandsLikeUriTemplate(feedly.feeds().get("feed/http://example.com/rss?a=b&c=%20d"));
+  }
+
+  @Test
+  public void testQueryParameters() throws Exception {
+    StreamId category = StreamId.of(StreamId.Kind.CATEGORY, "café & crème", "u");
+    assertExpandsLikeUriTemplate(feedly.streams().contents(category).setCount(10)
+                                     .setContinuation("a/b c+d").setUnreadOnly(true)
+                                     .setNewerThan(1397846400000L));
+    assertExpandsLikeUriTemplate(feedly.markers().reads().setNewerThan(5L));
+  }
+
+  @Test
+  public void testListVariables() throws Exception {
+    List<String> tagIds = Arrays.asList(feedly.newTag("a,b").getId(), feedly.newTag("ü").getId());
+    List<String> entryIds = Arrays.asList("e:1/2", "e 3");
+    assertExpandsLikeUriTemplate(feedly.tags().new Delete(tagIds));
+    assertExpandsLikeUriTemplate(feedly.tags().untag(entryIds, tagIds));
+  }
+
+  @Test
+  public void testStreamIdVariable() throws Exception {
+    Feedly.Categories.Update update = feedly.categories().new Update(feedly.newCategory("a b"));
+    Feedly.Topics.Delete delete =
+        feedly.topics().new Delete(feedly.newTopic("c", Topic.Interest.LOW));
+
+    assertEquals("a b", update.getCategoryId());
+    assertEquals(feedly.newCategory("a b").getId(), update.getStreamId());
+    assertEquals("c", delete.getTopicId());
+    assertExpandsLikeUriTemplate(update);
+    assertExpandsLikeUriTemplate(delete);
+  }
+
+  @Test
+  public void testUnknownKeys() throws Exception {
+    assertExpandsLikeUriTemplate(feedly.profile().get().set("unknown", "x y").set("n", 1));
+  }
+
+  @Test
+  public void testEnumFallsBackToUriTemplate() throws Exception {
+    StreamId feed = StreamId.of("feed/http://example.com/rss");
+    assertExpandsLikeUriTemplate(feedly.streams().ids(feed).setRanked(Feedly.Ranked.OLDEST));
+  }
+
+  @Test
+  public void testCompiledOncePerClass() throws Exception {
+    Request<?> request = feedly.profile().get();
+
+    assertSame(CompiledUriTemplate.of(request.getClass(), request.getUriTemplate()),
+               CompiledUriTemplate.of(request.getClass(), request.getUriTemplate()));
+  }
+
+  private void assertExpandsLikeUriTemplate(Request<?> request) {
+    GenericUrl expected = new GenericUrl(
+        UriTemplate.expand(feedly.getBaseUrl(), request.getUriTemplate(), request, true));
+    assertEquals(expected.build(), request.buildHttpRequestUrl().build());
+  }
+}
@@ -0,0 +1,101 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *  Contributors:
+ *               Bademus
+ */
+
+
+package org.github.bademux.feedly.api.service;
+
+import com.google.api.client.http.LowLevelHttpResponse;
+
+import org.github.bademux.feedly.api.model.CompactEntry;
+import org.github.bademux.feedly.api.model.EntriesResponse;
+import org.github.bademux.feedly.api.model.Entry;
+import org.github.bademux.feedly.api.model.StreamId;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class EntryStreamParserTest {
+
+  private static final StreamId STREAM_ID = StreamId.of("feed/http://example.com/rss");
+
+  @Test
+  public void testEntriesAreHandled() throws Exception {
+    final List<String> entryIds = new ArrayList<String>();
+
+    EntriesResponse page = contents("{\"id\":\"feed/http://example.com/rss\","
+                                    + "\"items\":[{\"id\":\"e1\"},{\"id\":\"e2\"}],"
+                                    + "\"continuation\":\"c\"}")
+        .forEachEntry(new EntryHandler() {
+          public void handle(Entry entry) { entryIds.add(entry.getId()); }
+        });
+
+    assertEquals(Arrays.asList("e1", "e2"), entryIds);
+    assertEquals("feed/http://example.com/rss", page.getId());
+    assertEquals("c", page.getContinuation());
+  }
+
+  @Test
+  public void testNullItemsAreSkipped() throws Exception {
+    final List<String> entryIds = new ArrayList<String>();
+
+    EntriesResponse page = contents("{\"items\":[null,{\"id\":\"e1\"},null,{\"id\":\"e2\"}],"
+                                    + "\"continuation\":\"c\"}")
+        .forEachCompactEntry(new CompactEntryHandler() {
+          public void handle(CompactEntry entry) { entryIds.add(entry.getId()); }
+        });
+
+    assertEquals(Arrays.asList("e1", "e2"), entryIds);
+    assertEquals("c", page.getContinuation());
+  }
+
+  @Test
+  public void testNonObjectResponseIsRejected() throws Exception {
+    assertMalformed("[{\"id\":\"e1\"}]");
+  }
+
+  @Test
+  public void testNonObjectItemIsRejected() throws Exception {
+    assertMalformed("{\"items\":[{\"id\":\"e1\"},\"e2\"]}");
+  }
+
+  private static void assertMalformed(String content) throws IOException {
+    try {
+      contents(content).forEachEntry(new EntryHandler() {
+        public void handle(Entry entry) {}
+      });
+      fail("malformed response must be rejected");
+    } catch (IOException e) {
+      // expected
+    }
+  }
+
+  private static Feedly.Streams.Contents contents(final String content) {
+    RecordingTransport transport = new RecordingTransport() {
+      @Override
+      LowLevelHttpResponse respond(String method, String url) {
+        return json(content);
+      }
+    };
+    return transport.newFeedly().build().streams().contents(STREAM_ID);
+  }
+}
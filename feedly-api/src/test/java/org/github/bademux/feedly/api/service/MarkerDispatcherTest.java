@@ -0,0 +1,205 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *  Contributors:
+ *               Bademus
+ */
+
+
+package org.github.bademux.feedly.api.service;
+
+import com.google.api.client.http.LowLevelHttpResponse;
+import com.google.api.client.json.GenericJson;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class MarkerDispatcherTest {
+
+  /** Window long enough for markers to be sent only by flush, close or a full buffer. */
+  private static final long WINDOW_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+  private static final List<String> ENTRY_IDS = Arrays.asList("entry0", "entry1", "entry2",
+                                                              "entry3", "entry4", "entry5");
+
+  private Transport transport;
+
+  private Feedly feedly;
+
+  @Before
+  public void setUp() throws Exception {
+    transport = new Transport();
+    feedly = transport.newFeedly().build();
+  }
+
+  @Test
+  public void testMarkersAreMerged() throws Exception {
+    MarkerDispatcher dispatcher = feedly.markers().newDispatcher(WINDOW_MILLIS, 1000);
+
+    dispatcher.entriesAsRead(ENTRY_IDS.subList(0, 3));
+    dispatcher.entriesAsRead(ENTRY_IDS.subList(3, 6));
+    dispatcher.entriesUnread(ENTRY_IDS.subList(0, 1));
+    dispatcher.close();
+
+    // one request per action
+    assertEquals(2, transport.requestCount());
+    assertMarker(0, "entries", "markAsRead", "entryIds", ENTRY_IDS.subList(1, 6));
+    assertMarker(1, "entries", "keepUnread", "entryIds", ENTRY_IDS.subList(0, 1));
+  }
+
+  @Test
+  public void testLaterMarkerWins() throws Exception {
+    List<String> entryIds = ENTRY_IDS.subList(0, 1);
+    MarkerDispatcher dispatcher = feedly.markers().newDispatcher(WINDOW_MILLIS, 1000);
+
+    dispatcher.entriesUnread(entryIds);
+    dispatcher.entriesAsRead(entryIds);
+    dispatcher.close();
+
+    assertEquals(1, transport.requestCount());
+    assertMarker(0, "entries", "markAsRead", "entryIds", entryIds);
+  }
+
+  @Test
+  public void testFeedsAsOfTheSamePointAreSentTogether() throws Exception {
+    MarkerDispatcher dispatcher = feedly.markers().newDispatcher(WINDOW_MILLIS, 1000);
+    Long asOf = System.currentTimeMillis();
+
+    dispatcher.feedsAsRead(Collections.singleton("feed/0"), asOf);
+    dispatcher.feedsAsRead(Collections.singleton("feed/1"), asOf);
+    dispatcher.flush().get(5, TimeUnit.SECONDS);
+
+    assertEquals(1, transport.requestCount());
+    GenericJson marker = assertMarker(0, "feeds", "markAsRead", "feedIds",
+                                      Arrays.asList("feed/0", "feed/1"));
+    assertEquals(asOf.toString(), marker.get("asOf"));
+    dispatcher.close();
+  }
+
+  @Test
+  public void testFullBufferIsSent() throws Exception {
+    MarkerDispatcher dispatcher = feedly.markers().newDispatcher(WINDOW_MILLIS, 5);
+
+    dispatcher.entriesAsRead(ENTRY_IDS.subList(0, 5)).get(5, TimeUnit.SECONDS);
+
+    assertEquals(1, transport.requestCount());
+    assertMarker(0, "entries", "markAsRead", "entryIds", ENTRY_IDS.subList(0, 5));
+    dispatcher.close();
+  }
+
+  @Test
+  public void testCloseReportsFailures() throws Exception {
+    transport.failing = true;
+    MarkerDispatcher dispatcher = feedly.markers().newDispatcher(WINDOW_MILLIS, 1000);
+
+    dispatcher.entriesAsRead(Arrays.asList("entry"));
+    try {
+      dispatcher.close();
+      fail("failed markers must be reported");
+    } catch (IOException e) {
+      // expected
+    }
+    try {
+      dispatcher.entriesAsRead(Arrays.asList("entry"));
+      fail("closed dispatcher must reject markers");
+    } catch (IllegalStateException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testEmptyMarkersAreNotSent() throws Exception {
+    MarkerDispatcher dispatcher = feedly.markers().newDispatcher(WINDOW_MILLIS, 1000);
+
+    dispatcher.entriesAsRead(Collections.<String>emptyList()).get(5, TimeUnit.SECONDS);
+    dispatcher.feedsAsRead(Collections.<String>emptyList(), 0L).get(5, TimeUnit.SECONDS);
+    dispatcher.close();
+
+    assertEquals(0, transport.requestCount());
+  }
+
+  @Test
+  public void testCloseReportsFailuresOfEarlierFlushes() throws Exception {
+    transport.blocked = new CountDownLatch(1);
+    MarkerDispatcher dispatcher = feedly.markers().newDispatcher(WINDOW_MILLIS, 1000);
+    dispatcher.entriesAsRead(ENTRY_IDS.subList(0, 1));
+    dispatcher.flush();
+    dispatcher.entriesAsRead(ENTRY_IDS.subList(1, 2));
+
+    // the first flush is still in flight when close starts waiting
+    releaseWhenWaiting(Thread.currentThread(), transport.blocked);
+    try {
+      dispatcher.close();
+      fail("failure of the earlier flush must be reported");
+    } catch (IOException e) {
+      // expected
+    }
+    assertEquals(2, transport.requestCount());
+  }
+
+  /** Counts the latch down once the thread waits. */
+  private static void releaseWhenWaiting(final Thread thread, final CountDownLatch latch) {
+    new Thread() {
+      @Override
+      public void run() {
+        while (thread.getState() != State.WAITING) {
+          Thread.yield();
+        }
+        latch.countDown();
+      }
+    }.start();
+  }
+
+  /** Asserts the sent marker and returns it. */
+  private GenericJson assertMarker(int index, String type, String action, String idsKey,
+                                   List<String> ids) throws IOException {
+    GenericJson marker = RecordingTransport.JSON_FACTORY.fromString(transport.contents.get(index),
+                                                                    GenericJson.class);
+    assertEquals(type, marker.get("type"));
+    assertEquals(action, marker.get("action"));
+    assertEquals(ids, marker.get(idsKey));
+    return marker;
+  }
+
+  /** Accepts markers unless failing, the first request fails once blocked is released. */
+  private static class Transport extends RecordingTransport {
+
+    volatile boolean failing;
+
+    volatile CountDownLatch blocked;
+
+    @Override
+    LowLevelHttpResponse respond(String method, String url) throws IOException {
+      if (blocked != null) {
+        try {
+          blocked.await();
+        } catch (InterruptedException e) {
+          throw new IOException(e);
+        }
+        blocked = null;
+        return status(500);
+      }
+      return failing ? status(500) : json("{}");
+    }
+  }
+}
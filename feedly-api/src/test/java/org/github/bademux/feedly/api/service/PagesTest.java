@@ -0,0 +1,207 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *  Contributors:
+ *               Bademus
+ */
+
+
+package org.github.bademux.feedly.api.service;
+
+import com.google.api.client.http.HttpResponseException;
+import com.google.api.client.http.LowLevelHttpResponse;
+
+import org.github.bademux.feedly.api.model.EntriesResponse;
+import org.github.bademux.feedly.api.model.Entry;
+import org.github.bademux.feedly.api.model.StreamId;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class PagesTest {
+
+  private static final StreamId STREAM_ID = StreamId.of("feed/http://example.com/rss");
+
+  private static final int PAGE_COUNT = 5;
+
+  private static final Pattern CONTINUATION = Pattern.compile("[?&]continuation=p(\\d+)");
+
+  /** The only thread of {@link #executor}, set once it is started. */
+  private volatile Thread fetchThread;
+
+  private ExecutorService executor;
+
+  private Transport transport;
+
+  private Feedly feedly;
+
+  @Before
+  public void setUp() throws Exception {
+    executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+      public Thread newThread(Runnable r) {
+        fetchThread = new Thread(r);
+        return fetchThread;
+      }
+    });
+    transport = new Transport();
+    feedly = transport.newFeedly().setExecutor(executor).build();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void testAllPagesAreIterated() throws Exception {
+    List<String> entryIds = new ArrayList<String>();
+    for (Entry entry : Pages.entries(feedly.streams().contents(STREAM_ID).pages())) {
+      entryIds.add(entry.getId());
+    }
+
+    assertEquals(Arrays.asList("e0", "e1", "e2", "e3", "e4"), entryIds);
+    assertEquals(PAGE_COUNT, transport.requestCount());
+  }
+
+  @Test
+  public void testPrefetchDepth() throws Exception {
+    Pages<EntriesResponse>.PageIterator pages =
+        feedly.streams().contents(STREAM_ID).pages(2).iterator();
+
+    // two pages are queued and the third one waits for space in the queue
+    awaitFetchWaiting(3);
+    assertEquals(3, transport.requestCount());
+
+    assertEquals("e0", pages.next().items().get(0).getId());
+    awaitFetchWaiting(4);
+    assertEquals(4, transport.requestCount());
+    pages.close();
+  }
+
+  @Test
+  public void testCloseReleasesFetchThread() throws Exception {
+    Pages<EntriesResponse>.PageIterator pages =
+        feedly.streams().contents(STREAM_ID).pages().iterator();
+    awaitFetchWaiting(2);
+
+    pages.close();
+
+    assertFalse(pages.hasNext());
+    assertExecutorIsFree();
+    assertEquals(2, transport.requestCount());
+  }
+
+  @Test
+  public void testIdleIterationReleasesFetchThread() throws Exception {
+    Pages<EntriesResponse> pages = new Pages<EntriesResponse>(
+        feedly.streams().contents(STREAM_ID), 1, 10);
+    Pages<EntriesResponse>.PageIterator iterator = pages.iterator();
+    assertEquals("e0", iterator.next().items().get(0).getId());
+
+    // the fetch parks its page once the caller is idle for the timeout
+    assertExecutorIsFree();
+
+    // and resumes from the parked page
+    for (int page = 1; page < PAGE_COUNT; page++) {
+      assertEquals("e" + page, iterator.next().items().get(0).getId());
+    }
+    assertFalse(iterator.hasNext());
+    assertEquals(PAGE_COUNT, transport.requestCount());
+  }
+
+  @Test
+  public void testFailedFetchIsThrown() throws Exception {
+    transport.failingPage = 1;
+    Pages<EntriesResponse>.PageIterator pages =
+        feedly.streams().contents(STREAM_ID).pages().iterator();
+
+    assertEquals("e0", pages.next().items().get(0).getId());
+    try {
+      pages.next();
+      fail("failed fetch must be thrown");
+    } catch (Pages.FetchException e) {
+      assertTrue(e.getCause() instanceof HttpResponseException);
+    }
+    assertFalse(pages.hasNext());
+  }
+
+  @Test
+  public void testMixIsSinglePage() throws Exception {
+    Feedly.Mixes.Get mix = feedly.mixes().contents(feedly.newCategory("tech"));
+
+    int pages = 0;
+    for (EntriesResponse page : mix.pages()) {
+      pages++;
+    }
+
+    assertEquals(1, pages);
+    assertFalse(transport.requests.get(0).contains("continuation"));
+    try {
+      mix.setContinuation("p1");
+      fail("mixes must reject a continuation");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  /** Waits until the given pages were requested and the fetch waits for the caller. */
+  private void awaitFetchWaiting(int requests) throws InterruptedException {
+    while (transport.requestCount() < requests
+           || fetchThread.getState() != Thread.State.TIMED_WAITING) {
+      Thread.sleep(1);
+    }
+  }
+
+  /** Asserts that the executor runs other tasks. */
+  private void assertExecutorIsFree() throws Exception {
+    assertTrue(executor.submit(new Runnable() {
+      public void run() {}
+    }, Boolean.TRUE).get(5, TimeUnit.SECONDS));
+  }
+
+  /**
+   * Answers page {@code n} with entry {@code en} and the continuation of the next page, mixes
+   * have no continuation.
+   */
+  private static class Transport extends RecordingTransport {
+
+    volatile int failingPage = -1;
+
+    @Override
+    LowLevelHttpResponse respond(String method, String url) {
+      Matcher matcher = CONTINUATION.matcher(url);
+      int page = matcher.find() ? Integer.parseInt(matcher.group(1)) : 0;
+      if (page == failingPage) {
+        return status(500);
+      }
+      String continuation = page + 1 < PAGE_COUNT && !url.contains("/mixes/")
+                            ? ",\"continuation\":\"p" + (page + 1) + "\"" : "";
+      return json("{\"items\":[{\"id\":\"e" + page + "\"}]" + continuation + "}");
+    }
+  }
+}
@@ -0,0 +1,174 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *  Contributors:
+ *               Bademus
+ */
+
+
+package org.github.bademux.feedly.api.service;
+
+import com.google.api.client.http.GenericUrl;
+import com.google.api.client.http.HttpHeaders;
+import com.google.api.client.http.HttpResponse;
+import com.google.api.client.http.LowLevelHttpResponse;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class RateLimiterTest {
+
+  @Test
+  public void testPacing() throws Exception {
+    RateLimiter rateLimiter = new RateLimiter(100, 1, 1);
+
+    long start = System.nanoTime();
+    for (int i = 0; i <= 10; i++) {
+      rateLimiter.acquire(RecordingTransport.USER_ID);
+    }
+    long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+    assertTrue("10 intervals of 10 ms, but " + elapsed, elapsed >= 90);
+  }
+
+  @Test
+  public void testBurst() throws Exception {
+    RateLimiter rateLimiter = new RateLimiter(1, 5, 1);
+
+    long start = System.nanoTime();
+    for (int i = 0; i < 5; i++) {
+      rateLimiter.acquire(RecordingTransport.USER_ID);
+    }
+    long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+    assertTrue("burst must not wait, but " + elapsed, elapsed < 500);
+  }
+
+  @Test
+  public void testUsersHaveOwnBuckets() throws Exception {
+    RateLimiter rateLimiter = new RateLimiter(1, 1, 1);
+
+    long start = System.nanoTime();
+    rateLimiter.acquire("user1");
+    rateLimiter.acquire("user2");
+    rateLimiter.acquire(null);
+    long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+    assertTrue("buckets must not be shared, but " + elapsed, elapsed < 500);
+  }
+
+  @Test
+  public void testQuotaHeadersAdaptRate() throws Exception {
+    RecordingTransport transport = new RecordingTransport() {
+      @Override
+      LowLevelHttpResponse respond(String method, String url) throws IOException {
+        return json("{}").addHeader("X-RateLimit-Limit", "1000")
+            .addHeader("X-RateLimit-Count", "400").addHeader("X-RateLimit-Reset", "60");
+      }
+    };
+    RateLimiter rateLimiter = new RateLimiter(100, 10, 0.9);
+    Feedly feedly = transport.newFeedly().setRateLimiter(rateLimiter).build();
+
+    feedly.profile().get().execute();
+
+    // 600 remaining requests for 60 seconds at 90%
+    assertEquals(9, rateLimiter.getRate(RecordingTransport.USER_ID), 1e-6);
+    assertEquals(100, rateLimiter.getRate("other"), 1e-6);
+  }
+
+  @Test
+  public void testTooManyRequestsIsRetried() throws Exception {
+    final AtomicBoolean throttled = new AtomicBoolean();
+    RecordingTransport transport = new RecordingTransport() {
+      @Override
+      LowLevelHttpResponse respond(String method, String url) throws IOException {
+        if (throttled.compareAndSet(false, true)) {
+          return status(RateLimiter.STATUS_CODE_TOO_MANY_REQUESTS).addHeader("Retry-After", "0");
+        }
+        return super.respond(method, url);
+      }
+    };
+    Feedly feedly = transport.newFeedly().setRateLimiter(new RateLimiter()).build();
+
+    feedly.profile().get().execute();
+
+    assertEquals(2, transport.requestCount());
+  }
+
+  @Test
+  public void testPauseDelaysWaitingRequests() throws Exception {
+    final RateLimiter rateLimiter = new RateLimiter(5, 1, 1);
+    long start = System.nanoTime();
+    rateLimiter.acquire(RecordingTransport.USER_ID);
+    List<Thread> waiting = new ArrayList<Thread>();
+    for (int i = 0; i < 2; i++) {
+      Thread thread = new Thread() {
+        @Override
+        public void run() {
+          try {
+            rateLimiter.acquire(RecordingTransport.USER_ID);
+          } catch (InterruptedIOException e) {
+            // ends the thread
+          }
+        }
+      };
+      thread.start();
+      waiting.add(thread);
+      // reserved slots are 200 and 400 ms
+      while (thread.getState() != Thread.State.TIMED_WAITING) {
+        Thread.sleep(1);
+      }
+    }
+
+    rateLimiter.update(RecordingTransport.USER_ID, tooManyRequests());
+    for (Thread thread : waiting) {
+      thread.join();
+    }
+    long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+    // slots are delayed by the 1 s pause, a second reservation would add 400 ms
+    assertTrue("slots delayed once, but " + elapsed, elapsed >= 1300 && elapsed < 1650);
+  }
+
+  @Test
+  public void testLongHeader() throws Exception {
+    HttpHeaders headers = new HttpHeaders().setRetryAfter(" 12 ").set("X-RateLimit-Count", "x");
+
+    assertEquals(Long.valueOf(12), RateLimiter.longHeader(headers, "Retry-After"));
+    assertNull(RateLimiter.longHeader(headers, "X-RateLimit-Count"));
+    assertNull(RateLimiter.longHeader(headers, "X-RateLimit-Reset"));
+  }
+
+  /** Returns {@code 429} response asking to retry after a second. */
+  private static HttpResponse tooManyRequests() throws IOException {
+    RecordingTransport transport = new RecordingTransport() {
+      @Override
+      LowLevelHttpResponse respond(String method, String url) throws IOException {
+        return status(RateLimiter.STATUS_CODE_TOO_MANY_REQUESTS).addHeader("Retry-After", "1");
+      }
+    };
+    return transport.createRequestFactory()
+        .buildGetRequest(new GenericUrl("https://cloud.feedly.com/v3/profile"))
+        .setThrowExceptionOnExecuteError(false).execute();
+  }
+}
@@ -0,0 +1,99 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *  Contributors:
+ *               Bademus
+ */
+
+
+package org.github.bademux.feedly.api.service;
+
+import com.google.api.client.http.LowLevelHttpRequest;
+import com.google.api.client.http.LowLevelHttpResponse;
+import com.google.api.client.json.JsonFactory;
+import com.google.api.client.json.gson.GsonFactory;
+import com.google.api.client.testing.http.MockHttpTransport;
+import com.google.api.client.testing.http.MockLowLevelHttpRequest;
+import com.google.api.client.testing.http.MockLowLevelHttpResponse;
+
+import org.github.bademux.feedly.api.oauth2.FeedlyCredential;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Offline transport for unit tests, records requests and answers them with {@link
+ * #respond(String, String, String)}.
+ */
+class RecordingTransport extends MockHttpTransport {
+
+  static final JsonFactory JSON_FACTORY = new GsonFactory();
+
+  static final String USER_ID = "00000000-0000-0000-0000-000000000001";
+
+  /** Method and URL of every sent request, ie. {@code "GET https://..."}. */
+  final List<String> requests = Collections.synchronizedList(new ArrayList<String>());
+
+  /** Content of every sent request in the order of {@link #requests}, empty without content. */
+  final List<String> contents = Collections.synchronizedList(new ArrayList<String>());
+
+  /** Headers of every sent request in the order of {@link #requests}, keys are lower case. */
+  final List<Map<String, List<String>>> headers =
+      Collections.synchronizedList(new ArrayList<Map<String, List<String>>>());
+
+  @Override
+  public LowLevelHttpRequest buildRequest(final String method, final String url) {
+    return new MockLowLevelHttpRequest(url) {
+      @Override
+      public LowLevelHttpResponse execute() throws IOException {
+        String content = getContentAsString();
+        synchronized (requests) {
+          requests.add(method + ' ' + url);
+          contents.add(content);
+          headers.add(getHeaders());
+        }
+        return respond(method, url, content);
+      }
+    };
+  }
+
+  /** Returns the response to the request, calls {@link #respond(String, String)} by default. */
+  LowLevelHttpResponse respond(String method, String url, String content) throws IOException {
+    return respond(method, url);
+  }
+
+  /** Returns the response to the request, an empty JSON object by default. */
+  LowLevelHttpResponse respond(String method, String url) throws IOException {
+    return json("{}");
+  }
+
+  /** Returns a new builder of a client that sends requests with this transport. */
+  Feedly.Builder newFeedly() {
+    FeedlyCredential credential = new FeedlyCredential().setAccessToken("token").setUserId(USER_ID);
+    return new Feedly.Builder(this, JSON_FACTORY, credential);
+  }
+
+  int requestCount() { return requests.size(); }
+
+  static MockLowLevelHttpResponse json(String content) {
+    return new MockLowLevelHttpResponse().setContentType("application/json; charset=UTF-8")
+        .setContent(content);
+  }
+
+  static MockLowLevelHttpResponse status(int statusCode) {
+    return json("{}").setStatusCode(statusCode);
+  }
+}
@@ -0,0 +1,232 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *  Contributors:
+ *               Bademus
+ */
+
+
+package org.github.bademux.feedly.api.service;
+
+import com.google.api.client.http.HttpResponse;
+import com.google.api.client.http.HttpResponseException;
+import com.google.api.client.http.LowLevelHttpResponse;
+
+import org.github.bademux.feedly.api.model.EntriesResponse;
+import org.github.bademux.feedly.api.model.FeedInfo;
+import org.github.bademux.feedly.api.model.Profile;
+import org.github.bademux.feedly.api.model.StreamId;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class RequestFutureTest {
+
+  private static final String PROFILE = "{\"id\":\"user\"}";
+
+  private static final StreamId STREAM_ID = StreamId.of("feed/http://example.com/rss");
+
+  private ExecutorService executor;
+
+  private RecordingTransport transport;
+
+  private Feedly feedly;
+
+  @Before
+  public void setUp() throws Exception {
+    executor = Executors.newCachedThreadPool();
+    transport = new RecordingTransport() {
+      @Override
+      LowLevelHttpResponse respond(String method, String url) {
+        if (url.contains("/profile")) {
+          return json(PROFILE);
+        }
+        if (url.contains("continuation=c")) {
+          return json("{\"id\":\"second\"}");
+        }
+        return url.contains("/streams/") ? json("{\"id\":\"first\",\"continuation\":\"c\"}")
+                                         : status(404);
+      }
+    };
+    feedly = transport.newFeedly().setExecutor(executor).build();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void testExecuteAsync() throws Exception {
+    final CountDownLatch notified = new CountDownLatch(1);
+    final AtomicReference<Profile> notifiedProfile = new AtomicReference<Profile>();
+
+    RequestFuture<Profile> profile = feedly.profile().get().executeAsync();
+    profile.addCallback(new RequestCallback<Profile>() {
+      public void onSuccess(Profile result) {
+        notifiedProfile.set(result);
+        notified.countDown();
+      }
+
+      public void onFailure(Throwable e) {}
+    });
+
+    assertEquals("user", profile.get(5, TimeUnit.SECONDS).getUserId());
+    assertTrue(notified.await(5, TimeUnit.SECONDS));
+    assertEquals("user", notifiedProfile.get().getUserId());
+  }
+
+  @Test
+  public void testExecuteAsyncFailure() throws Exception {
+    final CountDownLatch notified = new CountDownLatch(1);
+    final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+
+    RequestFuture<FeedInfo> missing = feedly.feeds().get("feed/missing").executeAsync();
+    missing.addCallback(new RequestCallback<FeedInfo>() {
+      public void onSuccess(FeedInfo result) {}
+
+      public void onFailure(Throwable e) {
+        failure.set(e);
+        notified.countDown();
+      }
+    });
+
+    assertTrue(notified.await(5, TimeUnit.SECONDS));
+    assertTrue(failure.get() instanceof HttpResponseException);
+    try {
+      missing.get(5, TimeUnit.SECONDS);
+      fail("404 must fail the future");
+    } catch (ExecutionException e) {
+      assertEquals(404, ((HttpResponseException) e.getCause()).getStatusCode());
+    }
+  }
+
+  @Test
+  public void testExecuteUnparsedAsync() throws Exception {
+    HttpResponse response = feedly.profile().get().executeUnparsedAsync()
+        .get(5, TimeUnit.SECONDS);
+    try {
+      assertEquals(200, response.getStatusCode());
+      assertEquals(PROFILE, response.parseAsString());
+    } finally {
+      response.disconnect();
+    }
+  }
+
+  @Test
+  public void testExecuteAsInputStreamAsync() throws Exception {
+    InputStream content = feedly.profile().get().executeAsInputStreamAsync()
+        .get(5, TimeUnit.SECONDS);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try {
+      byte[] buffer = new byte[64];
+      for (int read; (read = content.read(buffer)) != -1; ) {
+        out.write(buffer, 0, read);
+      }
+    } finally {
+      content.close();
+    }
+    assertEquals(PROFILE, out.toString("UTF-8"));
+  }
+
+  @Test
+  public void testTransform() throws Exception {
+    RequestFuture<String> userId = feedly.profile().get().executeAsync()
+        .transform(new RequestFunction<Profile, String>() {
+          public String apply(Profile profile) { return profile.getUserId(); }
+        });
+
+    assertEquals("user", userId.get(5, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testFailingFunctionFailsFuture() throws Exception {
+    RequestFuture<String> userId = feedly.profile().get().executeAsync()
+        .transform(new RequestFunction<Profile, String>() {
+          public String apply(Profile profile) throws IOException {
+            throw new IOException("rejected");
+          }
+        });
+
+    try {
+      userId.get(5, TimeUnit.SECONDS);
+      fail("failure of the function must fail the future");
+    } catch (ExecutionException e) {
+      assertEquals("rejected", e.getCause().getMessage());
+    }
+  }
+
+  @Test
+  public void testCompose() throws Exception {
+    RequestFuture<EntriesResponse> secondPage = feedly.streams().contents(STREAM_ID)
+        .executeAsync()
+        .compose(new RequestFunction<EntriesResponse, RequestFuture<EntriesResponse>>() {
+          public RequestFuture<EntriesResponse> apply(EntriesResponse page) {
+            return feedly.streams().contents(STREAM_ID).setContinuation(page.getContinuation())
+                .executeAsync();
+          }
+        });
+
+    EntriesResponse page = secondPage.get(5, TimeUnit.SECONDS);
+    assertEquals("second", page.getId());
+    assertNull(page.getContinuation());
+    assertEquals(2, transport.requestCount());
+  }
+
+  @Test
+  public void testCancellationIsPropagated() throws Exception {
+    RequestFuture<Profile> profile = new RequestFuture<Profile>();
+    RequestFuture<String> userId = profile.transform(new RequestFunction<Profile, String>() {
+      public String apply(Profile profile) { return profile.getUserId(); }
+    });
+    final RequestFuture<String> next = new RequestFuture<String>();
+    RequestFuture<String> composed = userId.compose(
+        new RequestFunction<String, RequestFuture<String>>() {
+          public RequestFuture<String> apply(String input) { return next; }
+        });
+
+    profile.set(new Profile());
+    composed.cancel(false);
+
+    assertTrue(next.isCancelled());
+    try {
+      composed.get();
+      fail("cancelled future has no result");
+    } catch (CancellationException e) {
+      // expected
+    }
+
+    RequestFuture<Profile> source = new RequestFuture<Profile>();
+    RequestFuture<String> transformed = source.transform(new RequestFunction<Profile, String>() {
+      public String apply(Profile profile) { return profile.getUserId(); }
+    });
+    source.cancel(false);
+    assertTrue(transformed.isCancelled());
+  }
+}
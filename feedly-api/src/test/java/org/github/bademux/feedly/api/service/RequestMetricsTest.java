@@ -0,0 +1,192 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *  Contributors:
+ *               Bademus
+ */
+
+
+package org.github.bademux.feedly.api.service;
+
+import com.google.api.client.http.HttpResponseException;
+import com.google.api.client.http.LowLevelHttpResponse;
+import com.google.api.client.testing.http.MockLowLevelHttpResponse;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class RequestMetricsTest {
+
+  private final RequestMetrics metrics = new RequestMetrics();
+
+  @Test
+  public void testQuantiles() throws Exception {
+    long[] counts = new long[RequestMetrics.LATENCY_BOUNDS_MILLIS.length + 1];
+    // 90 attempts of 3 ms and 10 of 700 ms
+    counts[2] = 90;
+    counts[9] = 10;
+    RequestMetrics.HistogramSnapshot latency =
+        new RequestMetrics.HistogramSnapshot(counts, 100, 90 * 3 + 10 * 700, 700);
+
+    assertEquals(5, latency.getQuantileMillis(0.5), 0);
+    assertEquals(5, latency.getQuantileMillis(0.9), 0);
+    // bound of the 1000 ms bucket is capped by the max
+    assertEquals(700, latency.getQuantileMillis(0.95), 0);
+    assertEquals(700, latency.getQuantileMillis(1), 0);
+    assertEquals(72.7, latency.getMeanMillis(), 0.001);
+  }
+
+  @Test
+  public void testEmptyHistogram() throws Exception {
+    metrics.recordExchange("profile", 1, 200, 0, -1);
+
+    RequestMetrics.HistogramSnapshot parse = metrics.snapshot("profile").getParseLatency();
+    assertEquals(0, parse.getCount());
+    assertTrue(Double.isNaN(parse.getQuantileMillis(0.5)));
+    assertTrue(Double.isNaN(parse.getMeanMillis()));
+    assertNull(metrics.snapshot("feeds/{feedId}"));
+  }
+
+  @Test
+  public void testPrometheusExport() throws Exception {
+    metrics.recordExchange("profile", 2, 200, 10, 100);
+    metrics.recordExchange("profile", 1, 0, 10, -1);
+    metrics.recordExchange("a\"b", 1, 404, 0, -1);
+
+    String export = metrics.export();
+
+    String profile = "{endpoint=\"profile\"";
+    assertLines(export,
+                "feedly_request_first_byte_seconds_bucket" + profile + ",le=\"0.001\"} 0",
+                "feedly_request_first_byte_seconds_bucket" + profile + ",le=\"30.0\"} 0",
+                "feedly_request_first_byte_seconds_bucket" + profile + ",le=\"+Inf\"} 0",
+                "feedly_request_first_byte_seconds_sum" + profile + "} 0.0",
+                "feedly_request_first_byte_seconds_count" + profile + "} 0",
+                "feedly_request_parse_seconds_count" + profile + "} 0",
+                "feedly_request_total" + profile + ",status=\"0\"} 1",
+                "feedly_request_total" + profile + ",status=\"200\"} 1",
+                "feedly_request_retries_total" + profile + "} 1",
+                "feedly_request_bytes_total" + profile + "} 20",
+                "feedly_response_wire_bytes_total" + profile + "} 100",
+                "feedly_request_total{endpoint=\"a\\\"b\",status=\"404\"} 1");
+    // endpoints are sorted by URI template
+    assertTrue(export.indexOf("a\\\"b") < export.indexOf("profile"));
+  }
+
+  @Test
+  public void testAttemptsAreTimed() throws Exception {
+    RecordingTransport transport = new RecordingTransport() {
+      @Override
+      LowLevelHttpResponse respond(String method, String url) throws IOException {
+        return requestCount() == 1 ? status(503) : json("{\"id\":\"user\"}");
+      }
+    };
+    RetryPolicy retryPolicy = new RetryPolicy.Builder().setMaxAttempts(2)
+        .setInitialIntervalMillis(1).setMaxIntervalMillis(1).build();
+    Feedly feedly = transport.newFeedly().setMetrics(metrics).setReadRetryPolicy(retryPolicy)
+        .build();
+
+    feedly.profile().get().execute();
+
+    RequestMetrics.EndpointSnapshot profile = metrics.snapshot("profile");
+    assertEquals(1, profile.getRequestCount());
+    assertEquals(2, profile.getFirstByteLatency().getCount());
+    assertEquals(1, profile.getRetryCount());
+    assertEquals(Long.valueOf(1), profile.getStatusCounts().get(200));
+    assertLines(metrics.export(),
+                "feedly_request_first_byte_seconds_bucket{endpoint=\"profile\",le=\"+Inf\"} 2",
+                "feedly_request_first_byte_seconds_count{endpoint=\"profile\"} 2");
+  }
+
+  @Test
+  public void testRequestsAreRecorded() throws Exception {
+    RecordingTransport transport = new RecordingTransport() {
+      @Override
+      LowLevelHttpResponse respond(String method, String url) throws IOException {
+        return requestCount() == 1 ? json("{\"id\":\"user\"}") : status(404);
+      }
+    };
+    Feedly feedly = transport.newFeedly().setMetrics(metrics).build();
+
+    feedly.profile().get().execute();
+    try {
+      feedly.profile().get().execute();
+      fail("404 must fail the request");
+    } catch (HttpResponseException e) {
+      // expected
+    }
+
+    RequestMetrics.EndpointSnapshot profile = metrics.snapshot("profile");
+    assertEquals(2, profile.getRequestCount());
+    assertEquals(Long.valueOf(1), profile.getStatusCounts().get(200));
+    assertEquals(Long.valueOf(1), profile.getStatusCounts().get(404));
+    assertEquals(1, profile.getParseLatency().getCount());
+    assertEquals("{\"id\":\"user\"}".length(), profile.getDecodedBytes());
+    assertTrue(Double.isNaN(profile.getCompressionRatio()));
+  }
+
+  @Test
+  public void testCompressionRatio() throws Exception {
+    char[] padding = new char[4000];
+    Arrays.fill(padding, 'a');
+    final String content = "{\"id\":\"" + new String(padding) + "\"}";
+    final byte[] compressed = gzip(content);
+    RecordingTransport transport = new RecordingTransport() {
+      @Override
+      LowLevelHttpResponse respond(String method, String url) throws IOException {
+        if (requestCount() == 1) {
+          // uncompressed responses don't count in the ratio
+          return json(content);
+        }
+        MockLowLevelHttpResponse response = json(null);
+        response.addHeader("Content-Length", String.valueOf(compressed.length));
+        return response.setContentEncoding("gzip").setContentLength(compressed.length)
+            .setContent(new ByteArrayInputStream(compressed));
+      }
+    };
+    Feedly feedly = transport.newFeedly().setMetrics(metrics).build();
+
+    feedly.profile().get().execute();
+    feedly.profile().get().execute();
+
+    RequestMetrics.EndpointSnapshot profile = metrics.snapshot("profile");
+    assertEquals(2L * content.length(), profile.getDecodedBytes());
+    assertEquals(compressed.length, profile.getResponseBytes());
+    assertEquals((double) content.length() / compressed.length, profile.getCompressionRatio(),
+                 1e-9);
+  }
+
+  private static void assertLines(String export, String... lines) {
+    for (String line : lines) {
+      assertTrue(line + " in\n" + export, export.contains(line + '\n'));
+    }
+  }
+
+  private static byte[] gzip(String content) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    GZIPOutputStream gzip = new GZIPOutputStream(out);
+    gzip.write(content.getBytes("UTF-8"));
+    gzip.close();
+    return out.toByteArray();
+  }
+}
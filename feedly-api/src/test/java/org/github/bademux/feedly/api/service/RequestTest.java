@@ -0,0 +1,248 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *  Contributors:
+ *               Bademus
+ */
+
+
+package org.github.bademux.feedly.api.service;
+
+import com.google.api.client.http.HttpHeaders;
+import com.google.api.client.http.LowLevelHttpResponse;
+
+import org.github.bademux.feedly.api.model.Profile;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+public class RequestTest {
+
+  private final CountDownLatch release = new CountDownLatch(1);
+
+  private ExecutorService executor;
+
+  @Before
+  public void setUp() throws Exception {
+    executor = Executors.newCachedThreadPool();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    release.countDown();
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void testSlowRequestIsHedged() throws Exception {
+    final int warmUp = 20;
+    RecordingTransport transport = new RecordingTransport() {
+      @Override
+      LowLevelHttpResponse respond(String method, String url) throws IOException {
+        int request = requestCount();
+        if (request <= warmUp) {
+          pause(2);
+        } else if (request == warmUp + 1) {
+          await(release);
+          return json("{\"id\":\"slow\"}");
+        }
+        return json("{\"id\":\"hedge\"}").setStatusCode(203);
+      }
+    };
+    // the slow request completes once the hedge has answered
+    Executor hedgeExecutor = new Executor() {
+      public void execute(final Runnable command) {
+        executor.execute(new Runnable() {
+          public void run() {
+            command.run();
+            release.countDown();
+          }
+        });
+      }
+    };
+    Feedly feedly = transport.newFeedly().setExecutor(hedgeExecutor)
+        .setMetrics(new RequestMetrics()).setHedgeQuantile(0.9).build();
+    for (int i = 0; i < warmUp; i++) {
+      feedly.profile().get().execute();
+    }
+
+    Request<Profile> request = feedly.profile().get();
+    Profile profile = request.execute();
+
+    assertEquals("hedge", profile.getUserId());
+    assertEquals(203, request.getLastStatusCode());
+    assertEquals(warmUp + 2, transport.requestCount());
+  }
+
+  @Test
+  public void testHedgedAsyncRequestDoesNotWaitForExecutor() throws Exception {
+    final int warmUp = 20;
+    RecordingTransport transport = new RecordingTransport() {
+      @Override
+      LowLevelHttpResponse respond(String method, String url) throws IOException {
+        pause(requestCount() <= warmUp ? 2 : 50);
+        return json("{\"id\":\"user\"}");
+      }
+    };
+    // the asynchronous request takes the only thread, the hedge can't run before it completes
+    ExecutorService singleThread = Executors.newSingleThreadExecutor();
+    Feedly feedly = transport.newFeedly().setExecutor(singleThread)
+        .setMetrics(new RequestMetrics()).setHedgeQuantile(0.9).build();
+    for (int i = 0; i < warmUp; i++) {
+      feedly.profile().get().execute();
+    }
+
+    Request<Profile> request = feedly.profile().get();
+    Profile profile = request.executeAsync().get(5, TimeUnit.SECONDS);
+
+    assertEquals("user", profile.getUserId());
+    assertEquals(200, request.getLastStatusCode());
+    singleThread.shutdownNow();
+  }
+
+  @Test
+  public void testFastRequestIsNotHedged() throws Exception {
+    RecordingTransport transport = new RecordingTransport() {
+      @Override
+      LowLevelHttpResponse respond(String method, String url) throws IOException {
+        pause(2);
+        return super.respond(method, url);
+      }
+    };
+    Feedly feedly = transport.newFeedly().setExecutor(executor).setMetrics(new RequestMetrics())
+        .setHedgeQuantile(0.9).build();
+
+    for (int i = 0; i < 10; i++) {
+      feedly.profile().get().execute();
+    }
+
+    assertEquals(10, transport.requestCount());
+  }
+
+  @Test
+  public void testConcurrentRequestsShareOneCall() throws Exception {
+    final CountDownLatch sent = new CountDownLatch(1);
+    RecordingTransport transport = new RecordingTransport() {
+      @Override
+      LowLevelHttpResponse respond(String method, String url) throws IOException {
+        sent.countDown();
+        await(release);
+        return json("{\"id\":\"" + requestCount() + "\"}").addHeader("ETag", "\"v1\"");
+      }
+    };
+    final Feedly feedly = transport.newFeedly().setSingleFlight(true).build();
+    Callable<Profile> getProfile = new Callable<Profile>() {
+      public Profile call() throws Exception {
+        Request<Profile> request = feedly.profile().get();
+        Profile profile = request.execute();
+        assertEquals(200, request.getLastStatusCode());
+        assertEquals("\"v1\"", request.getLastResponseHeaders().getETag());
+        return profile;
+      }
+    };
+
+    List<FutureTask<Profile>> results = new ArrayList<FutureTask<Profile>>();
+    results.add(new FutureTask<Profile>(getProfile));
+    executor.execute(results.get(0));
+    assertTrue(sent.await(5, TimeUnit.SECONDS));
+    List<Thread> followers = new ArrayList<Thread>();
+    for (int i = 0; i < 4; i++) {
+      results.add(new FutureTask<Profile>(getProfile));
+      followers.add(new Thread(results.get(i + 1)));
+      followers.get(i).start();
+    }
+    // followers wait for the call in flight
+    for (Thread follower : followers) {
+      awaitWaiting(follower);
+    }
+    release.countDown();
+
+    Profile leader = results.get(0).get(5, TimeUnit.SECONDS);
+    for (FutureTask<Profile> result : results.subList(1, results.size())) {
+      Profile shared = result.get(5, TimeUnit.SECONDS);
+      assertEquals("1", shared.getUserId());
+      assertNotSame("each request must get its own result", leader, shared);
+    }
+    assertEquals(1, transport.requestCount());
+
+    feedly.profile().get().execute();
+    assertEquals("completed call must not be shared", 2, transport.requestCount());
+  }
+
+  @Test
+  public void testRequestsWithOtherHeadersDoNotShareCall() throws Exception {
+    final CountDownLatch sent = new CountDownLatch(1);
+    RecordingTransport transport = new RecordingTransport() {
+      @Override
+      LowLevelHttpResponse respond(String method, String url) throws IOException {
+        if (requestCount() == 1) {
+          sent.countDown();
+          await(release);
+        }
+        return json("{\"id\":\"" + requestCount() + "\"}");
+      }
+    };
+    final Feedly feedly = transport.newFeedly().setSingleFlight(true).build();
+    FutureTask<Profile> first = new FutureTask<Profile>(new Callable<Profile>() {
+      public Profile call() throws Exception { return feedly.profile().get().execute(); }
+    });
+    executor.execute(first);
+    assertTrue(sent.await(5, TimeUnit.SECONDS));
+
+    Request<Profile> other = feedly.profile().get();
+    other.setRequestHeaders(new HttpHeaders().setAcceptEncoding("identity"));
+
+    assertEquals("2", other.execute().getUserId());
+    release.countDown();
+    assertEquals("2", first.get(5, TimeUnit.SECONDS).getUserId());
+  }
+
+  private static void pause(long millis) throws InterruptedIOException {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      throw new InterruptedIOException();
+    }
+  }
+
+  private static void awaitWaiting(Thread thread) throws InterruptedException {
+    while (thread.getState() != Thread.State.WAITING) {
+      assertTrue("thread must not end before the call is released", thread.isAlive());
+      Thread.sleep(1);
+    }
+  }
+
+  private static void await(CountDownLatch latch) throws InterruptedIOException {
+    try {
+      latch.await(10, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      throw new InterruptedIOException();
+    }
+  }
+}
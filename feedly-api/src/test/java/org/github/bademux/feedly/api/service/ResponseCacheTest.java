@@ -0,0 +1,116 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *  Contributors:
+ *               Bademus
+ */
+
+
+package org.github.bademux.feedly.api.service;
+
+import com.google.api.client.http.LowLevelHttpResponse;
+import com.google.api.client.testing.http.MockLowLevelHttpResponse;
+
+import org.github.bademux.feedly.api.model.Profile;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+
+public class ResponseCacheTest {
+
+  private static final String PROFILE = "{\"id\":\"user\",\"email\":\"user@example.com\"}";
+
+  private final ResponseCache cache = new ResponseCache();
+
+  private Transport transport;
+
+  private Feedly feedly;
+
+  @Before
+  public void setUp() throws Exception {
+    transport = new Transport();
+    feedly = transport.newFeedly().setResponseCache(cache).build();
+  }
+
+  @Test
+  public void testNotModifiedResponseIsCopied() throws Exception {
+    transport.eTag = "\"v1\"";
+    Profile sent = feedly.profile().get().execute();
+    sent.setEmail("changed@example.com");
+
+    Request<Profile> request = feedly.profile().get();
+    Profile cached = request.execute();
+    Profile cachedAgain = feedly.profile().get().execute();
+
+    assertEquals(Arrays.asList("\"v1\""), transport.ifNoneMatch(1));
+    assertEquals(304, request.getLastStatusCode());
+    assertEquals("user@example.com", cached.getEmail());
+    assertNotSame(cached, cachedAgain);
+    assertEquals("user@example.com", cachedAgain.getEmail());
+    assertEquals(3, transport.requestCount());
+    assertFalse(transport.requests.get(0).contains("ck="));
+  }
+
+  @Test
+  public void testChangedResponseReplacesCachedOne() throws Exception {
+    transport.eTag = "\"v1\"";
+    feedly.profile().get().execute();
+    transport.eTag = "\"v2\"";
+    transport.email = "new@example.com";
+
+    Profile changed = feedly.profile().get().execute();
+    Profile cached = feedly.profile().get().execute();
+
+    assertEquals("new@example.com", changed.getEmail());
+    assertEquals("new@example.com", cached.getEmail());
+    assertEquals(Arrays.asList("\"v2\""), transport.ifNoneMatch(2));
+  }
+
+  @Test
+  public void testResponseWithoutValidatorIsNotCached() throws Exception {
+    feedly.profile().get().execute();
+    feedly.profile().get().execute();
+
+    assertNull(transport.ifNoneMatch(1));
+    assertEquals(0, cache.size());
+  }
+
+  /** Answers with {@code 304} if {@code If-None-Match} matches the current {@link #eTag}. */
+  private static class Transport extends RecordingTransport {
+
+    volatile String eTag;
+
+    volatile String email = "user@example.com";
+
+    @Override
+    LowLevelHttpResponse respond(String method, String url) {
+      List<String> ifNoneMatch = ifNoneMatch(requestCount() - 1);
+      if (eTag != null && ifNoneMatch != null && ifNoneMatch.contains(eTag)) {
+        return status(304).addHeader("ETag", eTag);
+      }
+      MockLowLevelHttpResponse response = json(PROFILE.replace("user@example.com", email));
+      return eTag == null ? response : response.addHeader("ETag", eTag);
+    }
+
+    List<String> ifNoneMatch(int request) {
+      return headers.get(request).get("if-none-match");
+    }
+  }
+}
@@ -0,0 +1,153 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *  Contributors:
+ *               Bademus
+ */
+
+
+package org.github.bademux.feedly.api.service;
+
+import com.google.api.client.http.HttpResponseException;
+import com.google.api.client.http.LowLevelHttpResponse;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class RetryPolicyTest {
+
+  private RetryPolicy policy;
+
+  @Before
+  public void setUp() throws Exception {
+    policy = new RetryPolicy.Builder().setMaxAttempts(3).setInitialIntervalMillis(1)
+        .setRandomizationFactor(0).setMaxIntervalMillis(1).build();
+  }
+
+  @Test
+  public void testServerErrorIsRetried() throws Exception {
+    RecordingTransport transport = new FailingTransport(2, 503);
+    Feedly feedly = transport.newFeedly().setReadRetryPolicy(policy).build();
+
+    feedly.profile().get().execute();
+
+    assertEquals(3, transport.requestCount());
+  }
+
+  @Test
+  public void testTooManyRequestsIsRetried() throws Exception {
+    RecordingTransport transport = new FailingTransport(1, 429);
+    Feedly feedly = transport.newFeedly().setReadRetryPolicy(policy).build();
+
+    feedly.profile().get().execute();
+
+    assertEquals(2, transport.requestCount());
+  }
+
+  @Test
+  public void testClientErrorIsNotRetried() throws Exception {
+    RecordingTransport transport = new FailingTransport(1, 400);
+    Feedly feedly = transport.newFeedly().setReadRetryPolicy(policy).build();
+
+    try {
+      feedly.profile().get().execute();
+      fail("400 must not be retried");
+    } catch (HttpResponseException e) {
+      assertEquals(400, e.getStatusCode());
+    }
+    assertEquals(1, transport.requestCount());
+  }
+
+  @Test
+  public void testAttemptsAreLimited() throws Exception {
+    RecordingTransport transport = new FailingTransport(Integer.MAX_VALUE, 500);
+    Feedly feedly = transport.newFeedly().setReadRetryPolicy(policy).build();
+
+    try {
+      feedly.profile().get().execute();
+      fail("last attempt must fail");
+    } catch (HttpResponseException e) {
+      assertEquals(500, e.getStatusCode());
+    }
+    assertEquals(3, transport.requestCount());
+  }
+
+  @Test
+  public void testIOExceptionIsRetried() throws Exception {
+    final AtomicInteger failures = new AtomicInteger(2);
+    RecordingTransport transport = new RecordingTransport() {
+      @Override
+      LowLevelHttpResponse respond(String method, String url) throws IOException {
+        if (failures.getAndDecrement() > 0) {
+          throw new IOException("connection reset");
+        }
+        return super.respond(method, url);
+      }
+    };
+    Feedly feedly = transport.newFeedly().setReadRetryPolicy(policy).build();
+
+    feedly.profile().get().execute();
+
+    assertEquals(3, transport.requestCount());
+  }
+
+  @Test
+  public void testReadPolicyIsNotAppliedToWrites() throws Exception {
+    RecordingTransport transport = new FailingTransport(1, 503);
+    Feedly feedly = transport.newFeedly().setReadRetryPolicy(policy).build();
+
+    try {
+      feedly.tags().delete(feedly.newTag("tag")).execute();
+      fail("DELETE must not be retried by the read policy");
+    } catch (HttpResponseException e) {
+      assertEquals(503, e.getStatusCode());
+    }
+    assertEquals(1, transport.requestCount());
+  }
+
+  @Test
+  public void testWritePolicy() throws Exception {
+    RecordingTransport transport = new FailingTransport(1, 503);
+    Feedly feedly = transport.newFeedly().setWriteRetryPolicy(policy).build();
+
+    feedly.tags().delete(feedly.newTag("tag")).execute();
+
+    assertEquals(2, transport.requestCount());
+    assertTrue(transport.requests.get(1).startsWith("DELETE "));
+  }
+
+  /** Answers the first requests with the given status code. */
+  static class FailingTransport extends RecordingTransport {
+
+    private final AtomicInteger failures;
+
+    private final int statusCode;
+
+    FailingTransport(int failures, int statusCode) {
+      this.failures = new AtomicInteger(failures);
+      this.statusCode = statusCode;
+    }
+
+    @Override
+    LowLevelHttpResponse respond(String method, String url) throws IOException {
+      return failures.getAndDecrement() > 0 ? status(statusCode) : super.respond(method, url);
+    }
+  }
+}
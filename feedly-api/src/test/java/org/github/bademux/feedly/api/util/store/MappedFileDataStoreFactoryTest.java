@@ -0,0 +1,214 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *  Contributors:
+ *               Bademus
+ */
+
+
+package org.github.bademux.feedly.api.util.store;
+
+import com.google.api.client.util.store.DataStore;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class MappedFileDataStoreFactoryTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private File directory;
+
+  private MappedFileDataStoreFactory factory;
+
+  @Before
+  public void setUp() throws IOException {
+    directory = folder.newFolder("store");
+    factory = new MappedFileDataStoreFactory(directory);
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    factory.close();
+  }
+
+  @Test
+  public void testValuesSurviveReopen() throws IOException {
+    DataStore<String> store = factory.getDataStore("test");
+    store.set("a", "1").set("b", "2").set("c", "3").delete("b");
+
+    DataStore<String> reopened = reopen();
+
+    assertEquals(2, reopened.size());
+    assertEquals("1", reopened.get("a"));
+    assertNull(reopened.get("b"));
+    assertEquals(new HashSet<String>(Arrays.asList("a", "c")), reopened.keySet());
+  }
+
+  @Test
+  public void testUpdateInPlaceAndGrowth() throws IOException {
+    DataStore<String> store = factory.getDataStore("test");
+    store.set("key", "short");
+    long length = dataFile().length();
+
+    store.set("key", "tiny");
+    assertEquals("updated in place", length, dataFile().length());
+    store.set("key", repeat('x', 1000));
+    assertTrue("appended", dataFile().length() > length);
+
+    assertEquals(repeat('x', 1000), reopen().get("key"));
+  }
+
+  @Test
+  public void testManyKeysResizeIndex() throws IOException {
+    DataStore<String> store = factory.getDataStore("test");
+    for (int i = 0; i < 2000; i++) {
+      store.set("key" + i, "value" + i);
+    }
+
+    DataStore<String> reopened = reopen();
+
+    assertEquals(2000, reopened.size());
+    for (int i = 0; i < 2000; i++) {
+      assertEquals("value" + i, reopened.get("key" + i));
+    }
+  }
+
+  @Test
+  public void testMissingIndexIsRebuilt() throws IOException {
+    factory.<String>getDataStore("test").set("a", "1").set("a", "2").set("b", "3");
+    factory.close();
+    assertTrue(indexFile().delete());
+
+    DataStore<String> reopened = reopen();
+
+    assertEquals(2, reopened.size());
+    assertEquals("2", reopened.get("a"));
+    assertEquals("3", reopened.get("b"));
+  }
+
+  @Test
+  public void testStaleIndexIsRebuilt() throws IOException {
+    DataStore<String> store = factory.getDataStore("test");
+    store.set("a", "1");
+    factory.close();
+    byte[] staleIndex = read(indexFile());
+    factory = new MappedFileDataStoreFactory(directory);
+    factory.<String>getDataStore("test").set("a", repeat('x', 100)).set("b", "2");
+    factory.close();
+    // crash before the index was written
+    write(indexFile(), staleIndex);
+
+    DataStore<String> reopened = reopen();
+
+    assertEquals(repeat('x', 100), reopened.get("a"));
+    assertEquals("2", reopened.get("b"));
+  }
+
+  @Test
+  public void testIncompleteRecordIsTruncated() throws IOException {
+    factory.<String>getDataStore("test").set("a", "1");
+    factory.close();
+    long length = dataFile().length();
+    // crash while a record was appended
+    RandomAccessFile data = new RandomAccessFile(dataFile(), "rw");
+    try {
+      data.seek(length);
+      data.writeInt(1000);
+      data.write(new byte[10]);
+    } finally {
+      data.close();
+    }
+    assertTrue(indexFile().delete());
+
+    DataStore<String> reopened = reopen();
+
+    assertEquals("1", reopened.get("a"));
+    assertEquals(length, dataFile().length());
+    reopened.set("b", "2");
+    assertEquals("2", reopen().get("b"));
+  }
+
+  @Test
+  public void testClearDropsValues() throws IOException {
+    DataStore<String> store = factory.getDataStore("test");
+    store.set("a", "1").set("b", "2");
+
+    store.clear();
+
+    assertTrue(store.isEmpty());
+    assertFalse(reopen().containsKey("a"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testTooLongKeyIsRejected() throws IOException {
+    factory.<String>getDataStore("test")
+        .set(repeat('x', MappedFileDataStoreFactory.MappedFileDataStore.MAX_KEY_LENGTH + 1), "1");
+  }
+
+  private DataStore<String> reopen() throws IOException {
+    factory.close();
+    factory = new MappedFileDataStoreFactory(directory);
+    return factory.getDataStore("test");
+  }
+
+  private File dataFile() { return new File(directory, "test.dat"); }
+
+  private File indexFile() { return new File(directory, "test.idx"); }
+
+  private static String repeat(char c, int count) {
+    char[] chars = new char[count];
+    Arrays.fill(chars, c);
+    return new String(chars);
+  }
+
+  private static byte[] read(File file) throws IOException {
+    byte[] bytes = new byte[(int) file.length()];
+    FileInputStream in = new FileInputStream(file);
+    try {
+      int position = 0;
+      while (position < bytes.length) {
+        position += in.read(bytes, position, bytes.length - position);
+      }
+    } finally {
+      in.close();
+    }
+    return bytes;
+  }
+
+  private static void write(File file, byte[] bytes) throws IOException {
+    FileOutputStream out = new FileOutputStream(file);
+    try {
+      out.write(bytes);
+    } finally {
+      out.close();
+    }
+  }
+}
@@ -0,0 +1,159 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *  Contributors:
+ *               Bademus
+ */
+
+
+package org.github.bademux.feedly.api.util.store;
+
+import com.google.api.client.util.IOUtils;
+
+import org.github.bademux.feedly.api.oauth2.FeedlyStoredCredential;
+import org.junit.Test;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.Serializable;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ValueCodecsTest {
+
+  @Test
+  public void testCredentialIsStoredInBinaryForm() throws IOException {
+    FeedlyStoredCredential credential = newCredential();
+
+    byte[] bytes = ValueCodecs.serialize(credential);
+
+    assertTrue(BinaryCodec.isEncoded(bytes));
+    assertEquals(FeedlyStoredCredential.CODEC.getTypeId(), BinaryCodec.getTypeId(bytes));
+    assertEquals(credential, ValueCodecs.<FeedlyStoredCredential>deserialize(bytes));
+  }
+
+  @Test
+  public void testJavaSerializedCredentialStaysReadable() throws IOException {
+    FeedlyStoredCredential credential = newCredential();
+
+    byte[] bytes = IOUtils.serialize(credential);
+
+    assertFalse(BinaryCodec.isEncoded(bytes));
+    assertEquals(credential, ValueCodecs.<FeedlyStoredCredential>deserialize(bytes));
+  }
+
+  @Test
+  public void testNullFieldsRoundTrip() throws IOException {
+    FeedlyStoredCredential credential = new FeedlyStoredCredential(
+        new FeedlyStoredCredential.Snapshot(null, "refresh", null, null, null));
+
+    FeedlyStoredCredential read = ValueCodecs.deserialize(ValueCodecs.serialize(credential));
+
+    assertNull(read.getAccessToken());
+    assertNull(read.getExpirationTimeMilliseconds());
+    assertEquals("refresh", read.getRefreshToken());
+  }
+
+  @Test
+  public void testValueWithoutCodecIsJavaSerialized() throws IOException {
+    byte[] bytes = ValueCodecs.serialize("value");
+
+    assertArrayEquals(IOUtils.serialize("value"), bytes);
+    assertEquals("value", ValueCodecs.<String>deserialize(bytes));
+  }
+
+  @Test
+  public void testOlderVersionIsRead() throws IOException {
+    ValueCodecs.register(Point.CODEC_V2);
+    byte[] bytes = Point.CODEC_V1.encode(new Point(1, 2, 0));
+
+    Point point = ValueCodecs.deserialize(bytes);
+
+    assertEquals(1, point.x);
+    assertEquals(2, point.y);
+    assertEquals(-1, point.z);
+    assertEquals(2, ValueCodecs.serialize(new Point(1, 2, 3))[2]);
+  }
+
+  @Test(expected = IOException.class)
+  public void testNewerVersionIsRejected() throws IOException {
+    Point.CODEC_V1.decode(Point.CODEC_V2.encode(new Point(1, 2, 3)));
+  }
+
+  @Test(expected = IOException.class)
+  public void testOtherTypeIsRejected() throws IOException {
+    FeedlyStoredCredential.CODEC.decode(Point.CODEC_V2.encode(new Point(1, 2, 3)));
+  }
+
+  @Test
+  public void testTakenTypeIdIsRejected() {
+    try {
+      ValueCodecs.register(new Point.Codec(FeedlyStoredCredential.CODEC.getTypeId(), 1));
+      fail("type id of the credential codec is taken");
+    } catch (IllegalArgumentException expected) {
+      assertTrue(expected.getMessage().contains("type id"));
+    }
+  }
+
+  private static FeedlyStoredCredential newCredential() {
+    return new FeedlyStoredCredential(new FeedlyStoredCredential.Snapshot(
+        "access", "refresh", 1400000000000L, "user", "pro"));
+  }
+
+  /** Value which got the {@code z} field in the second version. */
+  static final class Point implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    static final BinaryCodec<Point> CODEC_V1 = new Codec(254, 1);
+
+    static final BinaryCodec<Point> CODEC_V2 = new Codec(254, 2);
+
+    final int x;
+
+    final int y;
+
+    final int z;
+
+    Point(int x, int y, int z) {
+      this.x = x;
+      this.y = y;
+      this.z = z;
+    }
+
+    static final class Codec extends BinaryCodec<Point> {
+
+      Codec(int typeId, int version) { super(Point.class, typeId, version); }
+
+      @Override
+      protected void write(Point value, DataOutput out) throws IOException {
+        out.writeInt(value.x);
+        out.writeInt(value.y);
+        if (getVersion() >= 2) {
+          out.writeInt(value.z);
+        }
+      }
+
+      @Override
+      protected Point read(DataInput in, int version) throws IOException {
+        return new Point(in.readInt(), in.readInt(), version >= 2 ? in.readInt() : -1);
+      }
+    }
+  }
+}
@@ -0,0 +1,194 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *  Contributors:
+ *               Bademus
+ */
+
+
+package org.github.bademux.feedly.api.util.store;
+
+import com.google.api.client.util.store.AbstractDataStore;
+import com.google.api.client.util.store.DataStore;
+import com.google.api.client.util.store.MemoryDataStoreFactory;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class WriteBehindDataStoreTest {
+
+  private static final long NEVER = TimeUnit.HOURS.toMillis(1);
+
+  private ScheduledExecutorService scheduler;
+
+  private CountingDataStore underlying;
+
+  @Before
+  public void setUp() {
+    scheduler = new ScheduledThreadPoolExecutor(1);
+    underlying = new CountingDataStore();
+  }
+
+  @After
+  public void tearDown() {
+    scheduler.shutdownNow();
+  }
+
+  @Test
+  public void testChangesOfKeyAreCoalesced() throws IOException {
+    WriteBehindDataStore<String> store =
+        new WriteBehindDataStore<String>(underlying, scheduler, NEVER);
+
+    store.set("key", "1").set("key", "2").set("key", "3");
+
+    assertEquals("3", store.get("key"));
+    assertNull("written before flush", underlying.get("key"));
+    store.flush();
+    assertEquals("3", underlying.get("key"));
+    assertEquals(1, underlying.writes);
+  }
+
+  @Test
+  public void testChangesAreWrittenInBackground() throws Exception {
+    WriteBehindDataStore<String> store =
+        new WriteBehindDataStore<String>(underlying, scheduler, 10);
+
+    store.set("key", "value");
+
+    long deadline = System.currentTimeMillis() + 5000;
+    while (underlying.get("key") == null && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertEquals("value", underlying.get("key"));
+  }
+
+  @Test
+  public void testDeleteIsPending() throws IOException {
+    underlying.set("key", "value");
+    WriteBehindDataStore<String> store =
+        new WriteBehindDataStore<String>(underlying, scheduler, NEVER);
+
+    store.delete("key");
+
+    assertNull(store.get("key"));
+    assertEquals("value", underlying.get("key"));
+    store.flush();
+    assertNull(underlying.get("key"));
+  }
+
+  @Test
+  public void testKeySetSeesPendingChanges() throws IOException {
+    WriteBehindDataStore<String> store =
+        new WriteBehindDataStore<String>(underlying, scheduler, NEVER);
+
+    store.set("key", "value");
+
+    assertEquals(1, store.keySet().size());
+    assertTrue(underlying.containsKey("key"));
+  }
+
+  @Test
+  public void testCloseWritesPendingChangesThenWritesThrough() throws IOException {
+    WriteBehindDataStore<String> store =
+        new WriteBehindDataStore<String>(underlying, scheduler, NEVER);
+    store.set("pending", "value");
+
+    store.close();
+
+    assertEquals("value", underlying.get("pending"));
+    store.set("closed", "value");
+    assertEquals("value", underlying.get("closed"));
+  }
+
+  @Test
+  public void testFailedWriteStaysPending() throws IOException {
+    WriteBehindDataStore<String> store =
+        new WriteBehindDataStore<String>(underlying, scheduler, NEVER);
+    store.set("key", "value");
+    underlying.failures = 1;
+
+    try {
+      store.flush();
+      fail("write should fail");
+    } catch (IOException expected) {
+      // kept for the next flush
+    }
+
+    assertEquals("value", store.get("key"));
+    store.flush();
+    assertEquals("value", underlying.get("key"));
+  }
+
+  /** In-memory data store that counts writes and fails on demand. */
+  static final class CountingDataStore extends AbstractDataStore<String> {
+
+    private final Map<String, String> values = new HashMap<String, String>();
+
+    /** Number of written values. */
+    int writes;
+
+    /** Number of next writes to fail. */
+    int failures;
+
+    CountingDataStore() {
+      super(MemoryDataStoreFactory.getDefaultInstance(), "test");
+    }
+
+    @Override
+    public synchronized Set<String> keySet() { return values.keySet(); }
+
+    @Override
+    public synchronized Collection<String> values() { return values.values(); }
+
+    @Override
+    public synchronized String get(String key) { return values.get(key); }
+
+    @Override
+    public synchronized DataStore<String> set(String key, String value) throws IOException {
+      if (failures > 0) {
+        failures--;
+        throw new IOException("Simulated write failure");
+      }
+      writes++;
+      values.put(key, value);
+      return this;
+    }
+
+    @Override
+    public synchronized DataStore<String> clear() {
+      values.clear();
+      return this;
+    }
+
+    @Override
+    public synchronized DataStore<String> delete(String key) {
+      values.remove(key);
+      return this;
+    }
+  }
+}
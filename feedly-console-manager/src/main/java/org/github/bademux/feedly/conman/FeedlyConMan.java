@@ -23,6 +23,7 @@ import com.google.api.client.http.HttpTransport;
 import com.google.api.client.http.javanet.NetHttpTransport;
 import com.google.api.client.json.JsonFactory;
 import com.google.api.client.json.gson.GsonFactory;
+import com.google.api.client.util.store.DataStore;
 import com.google.api.client.util.store.FileDataStoreFactory;
 
 import org.github.bademux.feedly.api.dev.oauth2.DevFeedlyAuthorizationCodeFlow;
@@ -36,8 +37,10 @@ import org.github.bademux.feedly.api.model.Subscription;
 import org.github.bademux.feedly.api.model.Tag;
 import org.github.bademux.feedly.api.oauth2.FeedlyAuthorizationCodeFlow;
 import org.github.bademux.feedly.api.oauth2.FeedlyCredential;
+import org.github.bademux.feedly.api.oauth2.FeedlyStoredCredential;
 import org.github.bademux.feedly.api.service.Feedly;
 import org.github.bademux.feedly.api.service.Request;
+import org.github.bademux.feedly.api.util.store.MappedFileDataStoreFactory;
 
 import java.io.File;
 import java.io.IOException;
@@ -53,6 +56,7 @@ import java.util.Scanner;
 import static com.google.api.client.repackaged.com.google.common.base.Preconditions.checkState;
 import static com.google.api.client.util.Preconditions.checkNotNull;
 import static java.lang.System.getProperty;
+import static org.github.bademux.feedly.api.oauth2.FeedlyStoredCredential.getDefaultDataStore;
 
 /** Console manager sample application */
 public class FeedlyConMan {
@@ -190,13 +194,16 @@ public class FeedlyConMan {
         break;
       case "logout":
         checkNotNull(service, "Please authorize").clearCredential();
+        DATA_STORE_FACTORY.close();
         deleteDir(DATA_STORE_FACTORY.getDataDirectory());
+        DATA_STORE_FACTORY = null;
         System.out.println("Credential is cleared");
         service = null;
         break;
       case "login":
         if (DATA_STORE_FACTORY == null) {
-          DATA_STORE_FACTORY = new FileDataStoreFactory(DATA_STORE_DIR);
+          DATA_STORE_FACTORY = new MappedFileDataStoreFactory(DATA_STORE_DIR);
+          importFileDataStore(DATA_STORE_FACTORY);
         }
         FeedlyCredential credential = authorize();
         System.out.println("Authorized\n"
@@ -264,6 +271,30 @@ public class FeedlyConMan {
     return (FeedlyCredential) a.authorize("user");
   }
 
+  /**
+   * Moves credentials stored by {@link FileDataStoreFactory} of earlier versions into the given
+   * factory, so users stay logged in.
+   */
+  protected static void importFileDataStore(MappedFileDataStoreFactory dataStoreFactory)
+      throws IOException {
+    File legacyFile = new File(dataStoreFactory.getDataDirectory(),
+                               FeedlyStoredCredential.DEFAULT_DATA_STORE_ID);
+    if (!legacyFile.isFile()) {
+      return;
+    }
+    DataStore<FeedlyStoredCredential> legacy =
+        getDefaultDataStore(new FileDataStoreFactory(dataStoreFactory.getDataDirectory()));
+    DataStore<FeedlyStoredCredential> store = getDefaultDataStore(dataStoreFactory);
+    for (String userId : legacy.keySet()) {
+      if (!store.containsKey(userId)) {
+        store.set(userId, legacy.get(userId));
+      }
+    }
+    if (!legacyFile.delete()) {
+      throw new IOException("Unable to delete " + legacyFile);
+    }
+  }
+
   public static Properties load(String fileName) throws IOException {
     Properties prop = new Properties();
     prop.load(FeedlyConMan.class.getClassLoader().getResourceAsStream(fileName));
@@ -318,7 +349,7 @@ public class FeedlyConMan {
    * practice is to make it a single
    * globally shared instance across your application.
    */
-  private static FileDataStoreFactory DATA_STORE_FACTORY;
+  private static MappedFileDataStoreFactory DATA_STORE_FACTORY;
 
   /** Global instance of the HTTP transport. */
   private static final HttpTransport HTTP_TRANSPORT = new NetHttpTransport();